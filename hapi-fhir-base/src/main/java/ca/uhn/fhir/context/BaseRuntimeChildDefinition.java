@@ -82,6 +82,20 @@ public abstract class BaseRuntimeChildDefinition {
 		default <T extends IBase> Optional<T> getFirstValueOrNull(IBase theTarget) {
 			return (Optional<T>) getValues(theTarget).stream().findFirst();
 		}
+
+		/**
+		 * Returns the value of this child in the given target, or <code>null</code> if there is none.
+		 * This is intended for children which hold at most one value (i.e. which have a maximum
+		 * cardinality of 1), and unlike {@link #getValues(IBase)} it does not need to wrap the
+		 * value in a new list.
+		 */
+		default IBase getSingleValueOrNull(IBase theTarget) {
+			List<IBase> values = getValues(theTarget);
+			if (values == null || values.isEmpty()) {
+				return null;
+			}
+			return values.get(0);
+		}
 	}
 
 	public interface IMutator {
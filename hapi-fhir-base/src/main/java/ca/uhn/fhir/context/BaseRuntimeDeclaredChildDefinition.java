@@ -100,6 +100,15 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		return myField;
 	}
 
+	/**
+	 * Returns the value of the field backing this child in the given target (which is the
+	 * {@link List} itself if the field is a list). Unlike the {@link #getAccessor() accessor},
+	 * this does not check that the value is an {@link IBase}.
+	 */
+	public Object getFieldValue(IBase theTarget) {
+		return getFieldValue(theTarget, myField);
+	}
+
 	public String getFormalDefinition() {
 		return myFormalDefinition;
 	}
@@ -191,6 +200,11 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		public <T extends IBase> Optional<T> getFirstValueOrNull(IBase theTarget) {
 			return Optional.ofNullable(((T)getFieldValue(theTarget, myField)));
 		}
+
+		@Override
+		public IBase getSingleValueOrNull(IBase theTarget) {
+			return (IBase) getFieldValue(theTarget, myField);
+		}
 	}
 
 	protected final class FieldPlainMutator implements IMutator {
@@ -97,6 +97,7 @@ public class FhirContext {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirContext.class);
 	private final IFhirVersion myVersion;
 	private AddProfileTagEnum myAddProfileTagWhenEncoding = AddProfileTagEnum.ONLY_FOR_CUSTOM;
+	private volatile RuntimeChildAny.SharedSealState myAnyChildSealState;
 	private volatile Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> myClassToElementDefinition = Collections.emptyMap();
 	private ArrayList<Class<? extends IBase>> myCustomTypes;
 	private Map<String, Class<? extends IBaseResource>> myDefaultTypeForProfile = new HashMap<>();
@@ -262,6 +263,14 @@ public class FhirContext {
 		myAddProfileTagWhenEncoding = theAddProfileTagWhenEncoding;
 	}
 
+	RuntimeChildAny.SharedSealState getAnyChildSealState() {
+		return myAnyChildSealState;
+	}
+
+	void setAnyChildSealState(RuntimeChildAny.SharedSealState theAnyChildSealState) {
+		myAnyChildSealState = theAnyChildSealState;
+	}
+
 	Collection<RuntimeResourceDefinition> getAllResourceDefinitions() {
 		validateInitialized();
 		return myNameToResourceDefinition.values();
@@ -68,11 +68,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 class ModelScanner {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ModelScanner.class);
+	private static final Map<FhirVersionEnum, Properties> ourVersionPropertyFiles = new ConcurrentHashMap<>();
+	private static final Map<String, Class<?>> ourVersionPropertyFileClasses = new ConcurrentHashMap<>();
 
 	private Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> myClassToElementDefinitions = new HashMap<>();
 	private FhirContext myContext;
@@ -503,9 +506,8 @@ class ModelScanner {
 	static Set<Class<? extends IBase>> scanVersionPropertyFile(Set<Class<? extends IBase>> theDatatypes, Map<String, Class<? extends IBaseResource>> theResourceTypes, FhirVersionEnum theVersion, Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theExistingElementDefinitions) {
 		Set<Class<? extends IBase>> retVal = new HashSet<>();
 
-		try (InputStream str = theVersion.getVersionImplementation().getFhirVersionPropertiesFile()) {
-			Properties prop = new Properties();
-			prop.load(str);
+		try {
+			Properties prop = loadVersionPropertyFile(theVersion);
 			for (Entry<Object, Object> nextEntry : prop.entrySet()) {
 				String nextKey = nextEntry.getKey().toString();
 				String nextValue = nextEntry.getValue().toString();
@@ -516,7 +518,7 @@ class ModelScanner {
 							// Datatypes
 
 							@SuppressWarnings("unchecked")
-							Class<? extends IBase> dtType = (Class<? extends IBase>) Class.forName(nextValue);
+							Class<? extends IBase> dtType = (Class<? extends IBase>) loadVersionPropertyFileClass(nextValue);
 							if (theExistingElementDefinitions.containsKey(dtType)) {
 								continue;
 							}
@@ -544,7 +546,7 @@ class ModelScanner {
 					String resName = nextKey.substring("resource.".length()).toLowerCase();
 					try {
 						@SuppressWarnings("unchecked")
-						Class<? extends IBaseResource> nextClass = (Class<? extends IBaseResource>) Class.forName(nextValue);
+						Class<? extends IBaseResource> nextClass = (Class<? extends IBaseResource>) loadVersionPropertyFileClass(nextValue);
 						if (theExistingElementDefinitions.containsKey(nextClass)) {
 							continue;
 						}
@@ -567,4 +569,30 @@ class ModelScanner {
 		return retVal;
 	}
 
+	/**
+	 * The version property file and the classes it names are the same for every context
+	 * of a given version, so they are only read and resolved once rather than each time
+	 * a resource type is lazily scanned
+	 */
+	private static Properties loadVersionPropertyFile(FhirVersionEnum theVersion) throws IOException {
+		Properties retVal = ourVersionPropertyFiles.get(theVersion);
+		if (retVal == null) {
+			try (InputStream str = theVersion.getVersionImplementation().getFhirVersionPropertiesFile()) {
+				retVal = new Properties();
+				retVal.load(str);
+			}
+			ourVersionPropertyFiles.put(theVersion, retVal);
+		}
+		return retVal;
+	}
+
+	private static Class<?> loadVersionPropertyFileClass(String theClassName) throws ClassNotFoundException {
+		Class<?> retVal = ourVersionPropertyFileClasses.get(theClassName);
+		if (retVal == null) {
+			retVal = Class.forName(theClassName);
+			ourVersionPropertyFileClasses.put(theClassName, retVal);
+		}
+		return retVal;
+	}
+
 }
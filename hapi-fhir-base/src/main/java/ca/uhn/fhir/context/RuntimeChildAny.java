@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseDatatype;
@@ -45,6 +46,30 @@ public class RuntimeChildAny extends RuntimeChildChoiceDefinition {
 
 	@Override
 	void sealAndInitialize(FhirContext theContext, Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theClassToElementDefinitions) {
+		/*
+		 * Every extension and modifierExtension child in the model is an "any" child, and
+		 * all of them sealed against the same definitions end up with the same choices, so
+		 * the sealed state is built once and shared instead of being rebuilt from the full
+		 * set of definitions for each one
+		 */
+		SharedSealState state = theContext.getAnyChildSealState();
+		if (state == null || !state.isFor(theClassToElementDefinitions)) {
+			state = new SharedSealState(theClassToElementDefinitions);
+			theContext.setAnyChildSealState(state);
+		}
+
+		setChoiceTypes(state.getChoiceTypes());
+
+		RuntimeChildAny sealed = state.getSealedChild(getElementName());
+		if (sealed != null) {
+			sealFrom(sealed);
+		} else {
+			super.sealAndInitialize(theContext, theClassToElementDefinitions);
+			state.addSealedChild(this);
+		}
+	}
+
+	private static List<Class<? extends IBase>> findChoiceTypes(Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theClassToElementDefinitions) {
 		List<Class<? extends IBase>> choiceTypes = new ArrayList<Class<? extends IBase>>();
 		
 		for (Class<? extends IBase> next : theClassToElementDefinitions.keySet()) {
@@ -83,11 +108,38 @@ public class RuntimeChildAny extends RuntimeChildChoiceDefinition {
 				}
 			}});
 		
-		setChoiceTypes(choiceTypes);
-		
-		super.sealAndInitialize(theContext, theClassToElementDefinitions);
+		return Collections.unmodifiableList(choiceTypes);
+	}
+
+	static class SharedSealState {
+
+		private final Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> myClassToElementDefinitions;
+		private final int myDefinitionCount;
+		private final List<Class<? extends IBase>> myChoiceTypes;
+		private final Map<String, RuntimeChildAny> myElementNameToSealedChild = new ConcurrentHashMap<>();
+
+		SharedSealState(Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theClassToElementDefinitions) {
+			myClassToElementDefinitions = theClassToElementDefinitions;
+			myDefinitionCount = theClassToElementDefinitions.size();
+			myChoiceTypes = findChoiceTypes(theClassToElementDefinitions);
+		}
+
+		List<Class<? extends IBase>> getChoiceTypes() {
+			return myChoiceTypes;
+		}
+
+		RuntimeChildAny getSealedChild(String theElementName) {
+			return myElementNameToSealedChild.get(theElementName);
+		}
+
+		void addSealedChild(RuntimeChildAny theChild) {
+			myElementNameToSealedChild.putIfAbsent(theChild.getElementName(), theChild);
+		}
+
+		boolean isFor(Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theClassToElementDefinitions) {
+			return myClassToElementDefinitions == theClassToElementDefinitions && myDefinitionCount == theClassToElementDefinitions.size();
+		}
+
 	}
 
-	
-	
 }
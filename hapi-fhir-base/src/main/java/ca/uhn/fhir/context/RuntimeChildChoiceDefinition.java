@@ -164,6 +164,18 @@ public class RuntimeChildChoiceDefinition extends BaseRuntimeDeclaredChildDefini
 	}
 
 
+	/**
+	 * Takes on the state of a definition which has already been sealed with the same
+	 * element name and choice types, instead of building it again
+	 */
+	void sealFrom(RuntimeChildChoiceDefinition theSealed) {
+		myNameToChildDefinition = theSealed.myNameToChildDefinition;
+		myDatatypeToElementName = theSealed.myDatatypeToElementName;
+		myDatatypeToElementDefinition = theSealed.myDatatypeToElementDefinition;
+		myReferenceSuffix = theSealed.myReferenceSuffix;
+		myResourceTypes = theSealed.myResourceTypes;
+	}
+
 	public List<Class<? extends IBaseResource>> getResourceTypes() {
 		return myResourceTypes;
 	}
@@ -93,6 +93,10 @@ public enum Pointcut {
 	 * <li>
 	 *    ca.uhn.fhir.rest.client.api.IRestfulClient - The client object making the request
 	 * </li>
+	 * <li>
+	 * ca.uhn.fhir.rest.client.api.ClientResponseContext - Allows the hook to replace the response which will be
+	 * processed by the client (e.g. with a cached copy)
+	 * </li>
 	 * </ul>
 	 * </p>
 	 * Hook methods must return <code>void</code>.
@@ -100,7 +104,8 @@ public enum Pointcut {
 	CLIENT_RESPONSE(void.class,
 		"ca.uhn.fhir.rest.client.api.IHttpRequest",
 		"ca.uhn.fhir.rest.client.api.IHttpResponse",
-		"ca.uhn.fhir.rest.client.api.IRestfulClient"
+		"ca.uhn.fhir.rest.client.api.IRestfulClient",
+		"ca.uhn.fhir.rest.client.api.ClientResponseContext"
 	),
 
 	/**
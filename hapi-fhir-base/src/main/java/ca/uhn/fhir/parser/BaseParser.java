@@ -317,37 +317,19 @@ public abstract class BaseParser implements IParser {
 				BaseRuntimeElementCompositeDefinition<?> childDef = (BaseRuntimeElementCompositeDefinition<?>) def;
 				for (BaseRuntimeChildDefinition nextChild : childDef.getChildrenAndExtension()) {
 
+					if (nextChild instanceof BaseRuntimeDeclaredChildDefinition) {
+						BaseRuntimeDeclaredChildDefinition declaredChild = (BaseRuntimeDeclaredChildDefinition) nextChild;
+						if (!List.class.equals(declaredChild.getField().getType())) {
+							// Children backed by a plain field hold a single value, so avoid creating a list for each one
+							findBaseReferencesInChildValue(allElements, nextChild, declaredChild.getFieldValue(theElement));
+							continue;
+						}
+					}
+
 					List<?> values = nextChild.getAccessor().getValues(theElement);
 					if (values != null) {
 						for (Object nextValueObject : values) {
-							IBase nextValue;
-							try {
-								nextValue = (IBase) nextValueObject;
-							} catch (ClassCastException e) {
-								String s = "Found instance of " + nextValueObject.getClass() + " - Did you set a field value to the incorrect type? Expected " + IBase.class.getName();
-								throw new ClassCastException(s);
-							}
-							if (nextValue == null) {
-								continue;
-							}
-							if (nextValue.isEmpty()) {
-								continue;
-							}
-							BaseRuntimeElementDefinition<?> childElementDef;
-							childElementDef = nextChild.getChildElementDefinitionByDatatype(nextValue.getClass());
-
-							if (childElementDef == null) {
-								childElementDef = myContext.getElementDefinition(nextValue.getClass());
-							}
-
-							if (nextChild instanceof RuntimeChildDirectResource) {
-								// Don't descend into embedded resources
-								if (nextValue instanceof IBaseReference) {
-									allElements.add((IBaseReference) nextValue);
-								}
-							} else {
-								findBaseReferences(allElements, nextValue, childElementDef);
-							}
+							findBaseReferencesInChildValue(allElements, nextChild, nextValueObject);
 						}
 					}
 				}
@@ -364,6 +346,37 @@ public abstract class BaseParser implements IParser {
 		}
 	}
 
+	private void findBaseReferencesInChildValue(List<IBaseReference> allElements, BaseRuntimeChildDefinition theChild, Object theValueObject) {
+		IBase nextValue;
+		try {
+			nextValue = (IBase) theValueObject;
+		} catch (ClassCastException e) {
+			String s = "Found instance of " + theValueObject.getClass() + " - Did you set a field value to the incorrect type? Expected " + IBase.class.getName();
+			throw new ClassCastException(s);
+		}
+		if (nextValue == null) {
+			return;
+		}
+		if (nextValue.isEmpty()) {
+			return;
+		}
+		BaseRuntimeElementDefinition<?> childElementDef;
+		childElementDef = theChild.getChildElementDefinitionByDatatype(nextValue.getClass());
+
+		if (childElementDef == null) {
+			childElementDef = myContext.getElementDefinition(nextValue.getClass());
+		}
+
+		if (theChild instanceof RuntimeChildDirectResource) {
+			// Don't descend into embedded resources
+			if (nextValue instanceof IBaseReference) {
+				allElements.add((IBaseReference) nextValue);
+			}
+		} else {
+			findBaseReferences(allElements, nextValue, childElementDef);
+		}
+	}
+
 	private String determineReferenceText(IBaseReference theRef, CompositeChildElement theCompositeChildElement) {
 		IIdType ref = theRef.getReferenceElement();
 		if (isBlank(ref.getIdPart())) {
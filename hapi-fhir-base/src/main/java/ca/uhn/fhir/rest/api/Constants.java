@@ -73,6 +73,7 @@ public class Constants {
 	public static final String CT_X_FORM_URLENCODED = "application/x-www-form-urlencoded";
 	public static final String CT_XML = "application/xml";
 	public static final String CT_XML_PATCH = "application/xml-patch+xml";
+	public static final String ENCODING_DEFLATE = "deflate";
 	public static final String ENCODING_GZIP = "gzip";
 	public static final String EXTOP_PROCESS_MESSAGE = "$process-message"; //Used in messaging
 	public static final String EXTOP_VALIDATE = "$validate";
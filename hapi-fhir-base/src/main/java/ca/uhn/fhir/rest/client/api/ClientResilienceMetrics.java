@@ -0,0 +1,164 @@
+package ca.uhn.fhir.rest.client.api;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the requests sent using a {@link ClientResiliencePolicy}. All
+ * clients sharing a policy also share its metrics.
+ *
+ * @since 5.1.0
+ */
+public class ClientResilienceMetrics {
+
+	private final AtomicLong myRequests = new AtomicLong();
+	private final AtomicLong myAttempts = new AtomicLong();
+	private final AtomicLong myRetries = new AtomicLong();
+	private final AtomicLong myHedgedAttempts = new AtomicLong();
+	private final AtomicLong myHedgeWins = new AtomicLong();
+	private final AtomicLong myCircuitBreakerTrips = new AtomicLong();
+	private final AtomicLong myCircuitBreakerRejections = new AtomicLong();
+	private final AtomicLong myTotalLatencyMillis = new AtomicLong();
+	private final AtomicLong myMaxLatencyMillis = new AtomicLong();
+
+	/**
+	 * Returns the number of requests executed, each of which may have
+	 * resulted in several attempts
+	 */
+	public long getRequests() {
+		return myRequests.get();
+	}
+
+	/**
+	 * Returns the number of HTTP requests actually sent, including retries and hedged requests
+	 */
+	public long getAttempts() {
+		return myAttempts.get();
+	}
+
+	/**
+	 * Returns the number of times a request was retried after a failure
+	 */
+	public long getRetries() {
+		return myRetries.get();
+	}
+
+	/**
+	 * Returns the number of hedged requests, which are additional requests sent because the
+	 * first one had not completed within the hedging delay
+	 */
+	public long getHedgedAttempts() {
+		return myHedgedAttempts.get();
+	}
+
+	/**
+	 * Returns the number of times a hedged request completed before the request it was hedging
+	 */
+	public long getHedgeWins() {
+		return myHedgeWins.get();
+	}
+
+	/**
+	 * Returns the number of times a circuit breaker opened
+	 */
+	public long getCircuitBreakerTrips() {
+		return myCircuitBreakerTrips.get();
+	}
+
+	/**
+	 * Returns the number of requests which failed immediately because the
+	 * circuit breaker for the server was open
+	 */
+	public long getCircuitBreakerRejections() {
+		return myCircuitBreakerRejections.get();
+	}
+
+	/**
+	 * Returns the total time spent executing requests, including all attempts and backoff delays
+	 */
+	public long getTotalLatencyMillis() {
+		return myTotalLatencyMillis.get();
+	}
+
+	/**
+	 * Returns the longest time spent executing a single request, including all attempts and backoff delays
+	 */
+	public long getMaxLatencyMillis() {
+		return myMaxLatencyMillis.get();
+	}
+
+	/**
+	 * Returns the average time spent executing a request, including all attempts and backoff delays
+	 */
+	public long getAverageLatencyMillis() {
+		long requests = getRequests();
+		return requests > 0 ? getTotalLatencyMillis() / requests : 0;
+	}
+
+	void incrementRequests() {
+		myRequests.incrementAndGet();
+	}
+
+	void incrementAttempts() {
+		myAttempts.incrementAndGet();
+	}
+
+	void incrementRetries() {
+		myRetries.incrementAndGet();
+	}
+
+	void incrementHedgedAttempts() {
+		myHedgedAttempts.incrementAndGet();
+	}
+
+	void incrementHedgeWins() {
+		myHedgeWins.incrementAndGet();
+	}
+
+	void incrementCircuitBreakerTrips() {
+		myCircuitBreakerTrips.incrementAndGet();
+	}
+
+	void incrementCircuitBreakerRejections() {
+		myCircuitBreakerRejections.incrementAndGet();
+	}
+
+	void recordLatency(long theMillis) {
+		myTotalLatencyMillis.addAndGet(theMillis);
+		myMaxLatencyMillis.accumulateAndGet(theMillis, Math::max);
+	}
+
+	@Override
+	public String toString() {
+		return "ClientResilienceMetrics[requests=" + getRequests() +
+			", attempts=" + getAttempts() +
+			", retries=" + getRetries() +
+			", hedgedAttempts=" + getHedgedAttempts() +
+			", hedgeWins=" + getHedgeWins() +
+			", circuitBreakerTrips=" + getCircuitBreakerTrips() +
+			", circuitBreakerRejections=" + getCircuitBreakerRejections() +
+			", averageLatencyMillis=" + getAverageLatencyMillis() +
+			", maxLatencyMillis=" + getMaxLatencyMillis() +
+			"]";
+	}
+
+}
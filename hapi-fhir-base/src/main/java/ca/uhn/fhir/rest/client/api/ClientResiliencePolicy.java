@@ -0,0 +1,734 @@
+package ca.uhn.fhir.rest.client.api;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Makes the requests sent by a client more resilient to transient server problems. A policy
+ * is applied to a client using {@link IRestfulClient#setResiliencePolicy(ClientResiliencePolicy)}
+ * and provides:
+ * <ul>
+ * <li>
+ * <b>Retries:</b> Requests which fail with an I/O error or with a retryable status code
+ * (by default 408, 429, 502, 503 and 504) are retried, waiting for an exponentially increasing
+ * delay with random jitter between attempts. A <code>Retry-After</code> header supplied by the
+ * server is respected. Only idempotent requests (GET, HEAD, OPTIONS, PUT and DELETE) are retried
+ * unless {@link #setRetryNonIdempotentRequests(boolean)} is enabled, with the exception of
+ * requests which failed because the connection could not be established at all.
+ * </li>
+ * <li>
+ * <b>Timeout budget:</b> An optional limit on the total time spent on a request, after
+ * which no further attempts are started.
+ * </li>
+ * <li>
+ * <b>Hedging:</b> If enabled, a GET request which has not completed within the hedging delay
+ * is sent again, and whichever response arrives first is used. This reduces tail latency when
+ * some replicas behind a load balancer are slow, at the cost of some additional load.
+ * </li>
+ * <li>
+ * <b>Circuit breaking:</b> After a number of consecutive failures (I/O errors or 5xx responses)
+ * the circuit breaker for that server opens and requests fail immediately with a
+ * {@link FhirClientConnectionException} instead of adding load to a struggling server. Once the
+ * open interval has elapsed, a single trial request is allowed through, and the breaker closes
+ * again if it succeeds.
+ * </li>
+ * </ul>
+ * <p>
+ * A policy may be shared by any number of clients, in which case they share the circuit breakers
+ * (which are tracked per scheme, host and port) and the {@link #getMetrics() metrics}.
+ * </p>
+ * <p>
+ * Hedged requests, and asynchronous requests made by clients using this policy, run on the
+ * policy's {@link #getExecutor() executor}. Call {@link #close()} once the policy is no
+ * longer needed to release its threads.
+ * </p>
+ *
+ * @since 5.1.0
+ */
+public class ClientResiliencePolicy implements Closeable {
+
+	/**
+	 * Default value for {@link #setMaximumAttempts(int)}
+	 */
+	public static final int DEFAULT_MAXIMUM_ATTEMPTS = 3;
+	/**
+	 * Default value for {@link #setInitialBackoffMillis(long)}
+	 */
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+	/**
+	 * Default value for {@link #setMaximumBackoffMillis(long)}
+	 */
+	public static final long DEFAULT_MAXIMUM_BACKOFF_MILLIS = 10 * 1000;
+	/**
+	 * Default value for {@link #setBackoffMultiplier(double)}
+	 */
+	public static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+	/**
+	 * Default value for {@link #setCircuitBreakerFailureThreshold(int)}
+	 */
+	public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+	/**
+	 * Default value for {@link #setCircuitBreakerOpenMillis(long)}
+	 */
+	public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS = 30 * 1000;
+	/**
+	 * Default value for {@link #setRetryableStatusCodes(Set)}
+	 */
+	/**
+	 * Default value for {@link #setMaximumThreads(int)}
+	 */
+	public static final int DEFAULT_MAXIMUM_THREADS = 20;
+	/**
+	 * Default value for {@link #setRetryableStatusCodes(Set)}
+	 */
+	public static final Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(408, 429, 502, 503, 504)));
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ClientResiliencePolicy.class);
+	private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE")));
+
+	private final ConcurrentHashMap<String, CircuitBreaker> myCircuitBreakers = new ConcurrentHashMap<>();
+	private final ClientResilienceMetrics myMetrics = new ClientResilienceMetrics();
+	private double myBackoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+	private int myCircuitBreakerFailureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+	private long myCircuitBreakerOpenMillis = DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS;
+	private ExecutorService myExecutor;
+	private boolean myExecutorSupplied;
+	private long myHedgeDelayMillis;
+	private long myInitialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+	private int myMaximumAttempts = DEFAULT_MAXIMUM_ATTEMPTS;
+	private long myMaximumBackoffMillis = DEFAULT_MAXIMUM_BACKOFF_MILLIS;
+	private int myMaximumHedgedRequests = 1;
+	private int myMaximumThreads = DEFAULT_MAXIMUM_THREADS;
+	private boolean myRetryNonIdempotentRequests;
+	private Set<Integer> myRetryableStatusCodes = DEFAULT_RETRYABLE_STATUS_CODES;
+	private long myTimeoutBudgetMillis;
+
+	public double getBackoffMultiplier() {
+		return myBackoffMultiplier;
+	}
+
+	/**
+	 * Sets the factor by which the delay between attempts grows with each retry (default is {@link #DEFAULT_BACKOFF_MULTIPLIER})
+	 */
+	public ClientResiliencePolicy setBackoffMultiplier(double theBackoffMultiplier) {
+		Validate.isTrue(theBackoffMultiplier >= 1.0, "theBackoffMultiplier must be at least 1.0");
+		myBackoffMultiplier = theBackoffMultiplier;
+		return this;
+	}
+
+	public int getCircuitBreakerFailureThreshold() {
+		return myCircuitBreakerFailureThreshold;
+	}
+
+	/**
+	 * Sets the number of consecutive failed attempts against a server after which its
+	 * circuit breaker opens (default is {@link #DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD}).
+	 * Set to 0 to disable circuit breaking.
+	 */
+	public ClientResiliencePolicy setCircuitBreakerFailureThreshold(int theCircuitBreakerFailureThreshold) {
+		Validate.isTrue(theCircuitBreakerFailureThreshold >= 0, "theCircuitBreakerFailureThreshold must not be negative");
+		myCircuitBreakerFailureThreshold = theCircuitBreakerFailureThreshold;
+		return this;
+	}
+
+	public long getCircuitBreakerOpenMillis() {
+		return myCircuitBreakerOpenMillis;
+	}
+
+	/**
+	 * Sets how long a circuit breaker stays open before a trial request is allowed
+	 * through (default is {@link #DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS})
+	 */
+	public ClientResiliencePolicy setCircuitBreakerOpenMillis(long theCircuitBreakerOpenMillis) {
+		Validate.isTrue(theCircuitBreakerOpenMillis > 0, "theCircuitBreakerOpenMillis must be positive");
+		myCircuitBreakerOpenMillis = theCircuitBreakerOpenMillis;
+		return this;
+	}
+
+	public long getHedgeDelayMillis() {
+		return myHedgeDelayMillis;
+	}
+
+	/**
+	 * Sets how long to wait for a GET request to complete before sending a hedged copy of
+	 * it. The default is 0, which disables hedging. A good value is usually around the 95th
+	 * percentile of the server's response time.
+	 */
+	public ClientResiliencePolicy setHedgeDelayMillis(long theHedgeDelayMillis) {
+		Validate.isTrue(theHedgeDelayMillis >= 0, "theHedgeDelayMillis must not be negative");
+		myHedgeDelayMillis = theHedgeDelayMillis;
+		return this;
+	}
+
+	public long getInitialBackoffMillis() {
+		return myInitialBackoffMillis;
+	}
+
+	/**
+	 * Sets the delay before the first retry (default is {@link #DEFAULT_INITIAL_BACKOFF_MILLIS}).
+	 * Each actual delay is randomly chosen between half of and the full computed delay.
+	 */
+	public ClientResiliencePolicy setInitialBackoffMillis(long theInitialBackoffMillis) {
+		Validate.isTrue(theInitialBackoffMillis >= 0, "theInitialBackoffMillis must not be negative");
+		myInitialBackoffMillis = theInitialBackoffMillis;
+		return this;
+	}
+
+	public int getMaximumAttempts() {
+		return myMaximumAttempts;
+	}
+
+	/**
+	 * Sets the maximum number of attempts made for a request, including the first one
+	 * (default is {@link #DEFAULT_MAXIMUM_ATTEMPTS}). Set to 1 to disable retries. Hedged
+	 * requests are not counted as separate attempts.
+	 */
+	public ClientResiliencePolicy setMaximumAttempts(int theMaximumAttempts) {
+		Validate.isTrue(theMaximumAttempts >= 1, "theMaximumAttempts must be at least 1");
+		myMaximumAttempts = theMaximumAttempts;
+		return this;
+	}
+
+	public long getMaximumBackoffMillis() {
+		return myMaximumBackoffMillis;
+	}
+
+	/**
+	 * Sets the maximum delay between attempts, including delays requested by the
+	 * server using a <code>Retry-After</code> header (default is {@link #DEFAULT_MAXIMUM_BACKOFF_MILLIS})
+	 */
+	public ClientResiliencePolicy setMaximumBackoffMillis(long theMaximumBackoffMillis) {
+		Validate.isTrue(theMaximumBackoffMillis >= 0, "theMaximumBackoffMillis must not be negative");
+		myMaximumBackoffMillis = theMaximumBackoffMillis;
+		return this;
+	}
+
+	public int getMaximumHedgedRequests() {
+		return myMaximumHedgedRequests;
+	}
+
+	/**
+	 * Sets the maximum number of hedged copies sent for a single attempt (default is 1). Each
+	 * additional copy is sent once a further hedging delay has elapsed.
+	 */
+	public ClientResiliencePolicy setMaximumHedgedRequests(int theMaximumHedgedRequests) {
+		Validate.isTrue(theMaximumHedgedRequests >= 1, "theMaximumHedgedRequests must be at least 1");
+		myMaximumHedgedRequests = theMaximumHedgedRequests;
+		return this;
+	}
+
+	/**
+	 * Returns the metrics for all requests sent using this policy
+	 */
+	public ClientResilienceMetrics getMetrics() {
+		return myMetrics;
+	}
+
+	public Set<Integer> getRetryableStatusCodes() {
+		return myRetryableStatusCodes;
+	}
+
+	/**
+	 * Sets the HTTP status codes which cause a request to be retried (default is {@link #DEFAULT_RETRYABLE_STATUS_CODES})
+	 */
+	public ClientResiliencePolicy setRetryableStatusCodes(Set<Integer> theRetryableStatusCodes) {
+		Validate.notNull(theRetryableStatusCodes, "theRetryableStatusCodes must not be null");
+		myRetryableStatusCodes = Collections.unmodifiableSet(new HashSet<>(theRetryableStatusCodes));
+		return this;
+	}
+
+	public long getTimeoutBudgetMillis() {
+		return myTimeoutBudgetMillis;
+	}
+
+	/**
+	 * Sets the maximum total time to spend on a request. No further attempt is started if it
+	 * could not begin before this budget is exhausted, although an attempt which is already in
+	 * progress is not interrupted (use the socket timeout for that). The default is 0, which
+	 * means there is no budget.
+	 */
+	public ClientResiliencePolicy setTimeoutBudgetMillis(long theTimeoutBudgetMillis) {
+		Validate.isTrue(theTimeoutBudgetMillis >= 0, "theTimeoutBudgetMillis must not be negative");
+		myTimeoutBudgetMillis = theTimeoutBudgetMillis;
+		return this;
+	}
+
+	public boolean isRetryNonIdempotentRequests() {
+		return myRetryNonIdempotentRequests;
+	}
+
+	/**
+	 * Should requests which are not idempotent (POST and PATCH, e.g. create, transaction and most
+	 * operations) be retried? Default is <code>false</code>, since a request which failed with an
+	 * I/O error or a 5xx status may nonetheless have been processed by the server.
+	 */
+	public ClientResiliencePolicy setRetryNonIdempotentRequests(boolean theRetryNonIdempotentRequests) {
+		myRetryNonIdempotentRequests = theRetryNonIdempotentRequests;
+		return this;
+	}
+
+	/**
+	 * Returns <code>true</code> if the circuit breaker for the server at the given URL is currently open
+	 */
+	public boolean isCircuitOpen(String theUrl) {
+		CircuitBreaker breaker = myCircuitBreakers.get(toCircuitKey(theUrl));
+		return breaker != null && breaker.isOpen(System.currentTimeMillis());
+	}
+
+	public synchronized int getMaximumThreads() {
+		return myMaximumThreads;
+	}
+
+	/**
+	 * Sets the maximum number of threads used by the executor which this policy creates
+	 * (default is {@link #DEFAULT_MAXIMUM_THREADS}). Once all threads are busy, further
+	 * asynchronous requests fail with a {@link FhirClientConnectionException} and GET requests
+	 * are sent without hedging. Asynchronous requests made through a policy are limited by this
+	 * setting rather than by the HTTP client's own limits (such as the OkHttp dispatcher's).
+	 * This has no effect on an executor supplied using {@link #setExecutor(ExecutorService)},
+	 * or on an executor which has already been created.
+	 */
+	public synchronized ClientResiliencePolicy setMaximumThreads(int theMaximumThreads) {
+		Validate.isTrue(theMaximumThreads > 0, "theMaximumThreads must be positive");
+		myMaximumThreads = theMaximumThreads;
+		return this;
+	}
+
+	/**
+	 * Returns the executor used to send hedged requests, and to run asynchronous
+	 * requests for clients using this policy. Unless one was supplied using
+	 * {@link #setExecutor(ExecutorService)}, it is created on first use with up to
+	 * {@link #getMaximumThreads()} daemon threads, which are discarded after a minute
+	 * of inactivity. It does not queue tasks, and rejects them once all threads are busy.
+	 */
+	public synchronized ExecutorService getExecutor() {
+		if (myExecutor == null) {
+			BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern("hapi-fhir-client-resilience-%d")
+				.daemon(true)
+				.build();
+			myExecutor = new ThreadPoolExecutor(0, myMaximumThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+			myExecutorSupplied = false;
+		}
+		return myExecutor;
+	}
+
+	/**
+	 * Supplies the executor used to send hedged requests and to run asynchronous requests,
+	 * instead of the one this policy creates. A supplied executor is not shut down by
+	 * {@link #close()}. It should either start each task straight away or reject it: since
+	 * hedged requests are submitted from within asynchronous requests, an executor which
+	 * queues tasks behind a fixed number of threads can deadlock when all of its threads
+	 * are waiting for hedged requests.
+	 */
+	public synchronized ClientResiliencePolicy setExecutor(ExecutorService theExecutor) {
+		Validate.notNull(theExecutor, "theExecutor must not be null");
+		if (myExecutor != null && !myExecutorSupplied) {
+			myExecutor.shutdown();
+		}
+		myExecutor = theExecutor;
+		myExecutorSupplied = true;
+		return this;
+	}
+
+	/**
+	 * Shuts down the executor created by this policy, once any requests running on it have
+	 * completed. An executor supplied using {@link #setExecutor(ExecutorService)} is left running.
+	 * If the policy is used again afterwards, a new executor is created.
+	 */
+	@Override
+	public synchronized void close() {
+		if (myExecutor != null && !myExecutorSupplied) {
+			myExecutor.shutdown();
+		}
+		myExecutor = null;
+		myExecutorSupplied = false;
+	}
+
+	/**
+	 * Executes a request, applying this policy. This method is called by the client framework
+	 * and does not normally need to be called directly.
+	 *
+	 * @param theRequestFactory Creates the request. It is called once for each attempt (including
+	 *                          hedged requests), since a request can not safely be sent twice.
+	 * @return The request which produced the response, along with the response. If all attempts
+	 * failed with a retryable status code, this is the last of these responses.
+	 * @throws IOException If the last attempt failed with an I/O error
+	 */
+	public ClientResponseContext execute(IRequestFactory theRequestFactory) throws IOException {
+		long start = System.currentTimeMillis();
+		long deadline = myTimeoutBudgetMillis > 0 ? start + myTimeoutBudgetMillis : Long.MAX_VALUE;
+		myMetrics.incrementRequests();
+		try {
+			for (int attempt = 1; ; attempt++) {
+				IHttpRequest request = theRequestFactory.newRequest();
+				CircuitBreaker breaker = getCircuitBreaker(request.getUri());
+				if (!breaker.allowRequest(System.currentTimeMillis())) {
+					myMetrics.incrementCircuitBreakerRejections();
+					throw new FhirClientConnectionException("Circuit breaker is open for " + toCircuitKey(request.getUri()) + ", request to " + request.getUri() + " was not sent");
+				}
+
+				Outcome outcome;
+				if (myHedgeDelayMillis > 0 && "GET".equals(request.getHttpVerbName())) {
+					outcome = executeHedged(theRequestFactory, request, breaker);
+				} else {
+					outcome = executeAttempt(request, breaker);
+				}
+
+				if (!isRetryable(outcome)) {
+					return outcome.toResponseContext();
+				}
+
+				boolean retryAllowed = outcome.myException instanceof ConnectException || myRetryNonIdempotentRequests || IDEMPOTENT_METHODS.contains(outcome.myRequest.getHttpVerbName());
+				long delay = computeBackoffMillis(attempt, outcome.myResponse);
+				if (!retryAllowed || attempt >= myMaximumAttempts || System.currentTimeMillis() + delay >= deadline) {
+					return outcome.toResponseContext();
+				}
+
+				ourLog.debug("Request to {} failed ({}), retrying in {}ms", outcome.myRequest.getUri(), outcome.describe(), delay);
+				outcome.close();
+				myMetrics.incrementRetries();
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting to retry request to " + outcome.myRequest.getUri());
+				}
+			}
+		} finally {
+			myMetrics.recordLatency(System.currentTimeMillis() - start);
+		}
+	}
+
+	private long computeBackoffMillis(int theAttempt, IHttpResponse theResponse) {
+		double backoff = myInitialBackoffMillis * Math.pow(myBackoffMultiplier, theAttempt - 1);
+		long delay = (long) Math.min(myMaximumBackoffMillis, backoff);
+
+		// Randomize the delay so that clients which failed together don't all retry together
+		delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+
+		if (theResponse != null) {
+			List<String> retryAfter = theResponse.getHeaders(Constants.HEADER_RETRY_AFTER);
+			if (retryAfter != null && !retryAfter.isEmpty() && isNotBlank(retryAfter.get(0))) {
+				try {
+					long requested = Long.parseLong(retryAfter.get(0).trim()) * 1000L;
+					delay = Math.max(delay, Math.min(requested, myMaximumBackoffMillis));
+				} catch (NumberFormatException e) {
+					// HTTP-date values are not supported, use the computed delay
+				}
+			}
+		}
+
+		return delay;
+	}
+
+	private Outcome executeAttempt(IHttpRequest theRequest, CircuitBreaker theBreaker) {
+		myMetrics.incrementAttempts();
+		IHttpResponse response;
+		try {
+			response = theRequest.execute();
+		} catch (IOException e) {
+			recordFailure(theBreaker);
+			return new Outcome(theRequest, e);
+		} catch (RuntimeException e) {
+			recordFailure(theBreaker);
+			throw e;
+		}
+
+		if (response.getStatus() >= 500) {
+			recordFailure(theBreaker);
+		} else {
+			theBreaker.recordSuccess();
+		}
+		return new Outcome(theRequest, response);
+	}
+
+	/**
+	 * Sends the request on a worker thread, sending further copies each time the hedging
+	 * delay elapses without a usable response, and returns the first usable outcome. If
+	 * every copy fails, the last failure is returned.
+	 */
+	private Outcome executeHedged(IRequestFactory theRequestFactory, IHttpRequest theFirstRequest, CircuitBreaker theBreaker) throws IOException {
+		HedgedExecution execution = new HedgedExecution();
+		if (!execution.submit(theFirstRequest, theBreaker)) {
+			ourLog.debug("No thread available to hedge request to {}, sending it without hedging", theFirstRequest.getUri());
+			return executeAttempt(theFirstRequest, theBreaker);
+		}
+
+		int hedgedRequests = 0;
+		long nextHedge = System.currentTimeMillis() + myHedgeDelayMillis;
+		Outcome lastFailure = null;
+		try {
+			while (true) {
+				Outcome completed = execution.awaitCompletion(hedgedRequests < myMaximumHedgedRequests ? nextHedge : Long.MAX_VALUE);
+				if (completed != null) {
+					if (!isRetryable(completed)) {
+						if (completed.myRequest != theFirstRequest) {
+							myMetrics.incrementHedgeWins();
+						}
+						if (lastFailure != null) {
+							lastFailure.close();
+						}
+						return completed;
+					}
+					if (lastFailure != null) {
+						lastFailure.close();
+					}
+					lastFailure = completed;
+
+					// Every copy has failed, so leave it to the retry logic (which backs off first)
+					if (!execution.hasPending()) {
+						return lastFailure;
+					}
+					continue;
+				}
+
+				// The hedging delay elapsed without a response
+				if (hedgedRequests < myMaximumHedgedRequests && theBreaker.allowRequest(System.currentTimeMillis())) {
+					hedgedRequests++;
+					if (execution.submit(theRequestFactory.newRequest(), theBreaker)) {
+						myMetrics.incrementHedgedAttempts();
+						nextHedge = System.currentTimeMillis() + myHedgeDelayMillis;
+					} else {
+						hedgedRequests = myMaximumHedgedRequests;
+					}
+				} else {
+					hedgedRequests = myMaximumHedgedRequests;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (lastFailure != null) {
+				lastFailure.close();
+			}
+			throw new InterruptedIOException("Interrupted while waiting for response from " + theFirstRequest.getUri());
+		} finally {
+			execution.finish();
+		}
+	}
+
+	private CircuitBreaker getCircuitBreaker(String theUrl) {
+		return myCircuitBreakers.computeIfAbsent(toCircuitKey(theUrl), t -> new CircuitBreaker());
+	}
+
+	private boolean isRetryable(Outcome theOutcome) {
+		return theOutcome.myException != null || myRetryableStatusCodes.contains(theOutcome.myResponse.getStatus());
+	}
+
+	private void recordFailure(CircuitBreaker theBreaker) {
+		if (theBreaker.recordFailure(myCircuitBreakerFailureThreshold, myCircuitBreakerOpenMillis, System.currentTimeMillis())) {
+			myMetrics.incrementCircuitBreakerTrips();
+		}
+	}
+
+	private static String toCircuitKey(String theUrl) {
+		try {
+			URI uri = URI.create(theUrl);
+			if (uri.getHost() != null) {
+				return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() != -1 ? ":" + uri.getPort() : "");
+			}
+		} catch (IllegalArgumentException e) {
+			// fall through
+		}
+		return theUrl;
+	}
+
+	/**
+	 * Creates a new request for each attempt made by {@link #execute(IRequestFactory)}
+	 */
+	@FunctionalInterface
+	public interface IRequestFactory {
+
+		IHttpRequest newRequest() throws IOException;
+
+	}
+
+	private static class CircuitBreaker {
+
+		private int myConsecutiveFailures;
+		private long myOpenUntil;
+		private boolean myTrialInProgress;
+
+		synchronized boolean allowRequest(long theNow) {
+			if (myOpenUntil == 0) {
+				return true;
+			}
+			if (theNow < myOpenUntil || myTrialInProgress) {
+				return false;
+			}
+			myTrialInProgress = true;
+			return true;
+		}
+
+		synchronized boolean isOpen(long theNow) {
+			return myOpenUntil != 0 && (theNow < myOpenUntil || myTrialInProgress);
+		}
+
+		synchronized void recordSuccess() {
+			myConsecutiveFailures = 0;
+			myOpenUntil = 0;
+			myTrialInProgress = false;
+		}
+
+		/**
+		 * @return Returns <code>true</code> if this failure opened the breaker
+		 */
+		synchronized boolean recordFailure(int theThreshold, long theOpenMillis, long theNow) {
+			myConsecutiveFailures++;
+			if (theThreshold == 0 || myConsecutiveFailures < theThreshold) {
+				return false;
+			}
+			boolean wasClosed = myOpenUntil == 0;
+			myOpenUntil = theNow + theOpenMillis;
+			myTrialInProgress = false;
+			return wasClosed;
+		}
+
+	}
+
+	private class HedgedExecution {
+
+		private final List<Outcome> myCompleted = new ArrayList<>();
+		private boolean myFinished;
+		private int myInFlight;
+
+		synchronized Outcome awaitCompletion(long theDeadline) throws InterruptedException {
+			while (myCompleted.isEmpty() && myInFlight > 0) {
+				long remaining = theDeadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return null;
+				}
+				wait(remaining);
+			}
+			return myCompleted.isEmpty() ? null : myCompleted.remove(0);
+		}
+
+		/**
+		 * Closes any responses which arrive after a winner has been chosen
+		 */
+		synchronized void finish() {
+			myFinished = true;
+			myCompleted.forEach(Outcome::close);
+			myCompleted.clear();
+		}
+
+		/**
+		 * Are any copies still in flight, or completed but not yet collected?
+		 */
+		synchronized boolean hasPending() {
+			return myInFlight > 0 || !myCompleted.isEmpty();
+		}
+
+		/**
+		 * @return Returns <code>false</code> if the executor had no thread available for the request
+		 */
+		synchronized boolean submit(IHttpRequest theRequest, CircuitBreaker theBreaker) {
+			myInFlight++;
+			try {
+				getExecutor().execute(() -> {
+					Outcome outcome;
+					try {
+						outcome = executeAttempt(theRequest, theBreaker);
+					} catch (RuntimeException e) {
+						outcome = new Outcome(theRequest, new IOException(e.toString(), e));
+					}
+					synchronized (this) {
+						myInFlight--;
+						if (myFinished) {
+							outcome.close();
+						} else {
+							myCompleted.add(outcome);
+						}
+						notifyAll();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				myInFlight--;
+				return false;
+			}
+			return true;
+		}
+
+	}
+
+	private static class Outcome {
+
+		private final IOException myException;
+		private final IHttpRequest myRequest;
+		private final IHttpResponse myResponse;
+
+		Outcome(IHttpRequest theRequest, IHttpResponse theResponse) {
+			myRequest = theRequest;
+			myResponse = theResponse;
+			myException = null;
+		}
+
+		Outcome(IHttpRequest theRequest, IOException theException) {
+			myRequest = theRequest;
+			myResponse = null;
+			myException = theException;
+		}
+
+		void close() {
+			if (myResponse != null) {
+				myResponse.close();
+			}
+		}
+
+		String describe() {
+			return myException != null ? myException.toString() : "HTTP " + myResponse.getStatus();
+		}
+
+		ClientResponseContext toResponseContext() throws IOException {
+			if (myException != null) {
+				throw myException;
+			}
+			return new ClientResponseContext(myRequest, myResponse);
+		}
+
+	}
+
+}
@@ -0,0 +1,68 @@
+package ca.uhn.fhir.rest.client.api;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * This object is passed to {@link ca.uhn.fhir.interceptor.api.Pointcut#CLIENT_RESPONSE} hooks,
+ * and allows a hook to replace the HTTP response which will be processed by the client. This
+ * can be used, for example, to substitute a cached response for a <code>304 Not Modified</code>.
+ * <p>
+ * Note that hooks invoked after the response has been replaced will still receive the original
+ * response as their {@link IHttpResponse} parameter, and should use {@link #getHttpResponse()}
+ * if they need to see the replacement.
+ * </p>
+ *
+ * @since 5.1.0
+ */
+public class ClientResponseContext {
+
+	private final IHttpRequest myHttpRequest;
+	private IHttpResponse myHttpResponse;
+
+	/**
+	 * Constructor
+	 */
+	public ClientResponseContext(IHttpRequest theHttpRequest, IHttpResponse theHttpResponse) {
+		myHttpRequest = theHttpRequest;
+		myHttpResponse = theHttpResponse;
+	}
+
+	public IHttpRequest getHttpRequest() {
+		return myHttpRequest;
+	}
+
+	/**
+	 * Returns the response which will be processed by the client
+	 */
+	public IHttpResponse getHttpResponse() {
+		return myHttpResponse;
+	}
+
+	/**
+	 * Replaces the response which will be processed by the client. The original response
+	 * will still be closed by the client once processing is complete.
+	 */
+	public void setHttpResponse(IHttpResponse theHttpResponse) {
+		myHttpResponse = theHttpResponse;
+	}
+
+}
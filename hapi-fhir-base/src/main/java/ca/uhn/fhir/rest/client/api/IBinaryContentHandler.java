@@ -0,0 +1,49 @@
+package ca.uhn.fhir.rest.client.api;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the body of a response as a stream, allowing large content (e.g. the
+ * contents of a <code>Binary</code> resource) to be consumed without first being
+ * read into memory.
+ *
+ * @see ca.uhn.fhir.rest.gclient.IReadExecutable#executeAsStream(IBinaryContentHandler)
+ * @see ca.uhn.fhir.rest.gclient.IOperationUntypedWithInput#executeAsStream(IBinaryContentHandler)
+ * @since 5.1.0
+ */
+@FunctionalInterface
+public interface IBinaryContentHandler<T> {
+
+	/**
+	 * Consume the response body. The stream is closed by the client once this
+	 * method returns, so it must be fully consumed before then.
+	 *
+	 * @param theContentType The content type reported by the server, without any parameters
+	 *                       such as the charset. May be <code>null</code>.
+	 * @param theContent     The response body. Never <code>null</code>.
+	 * @return A value which is returned to the caller of <code>executeAsStream</code>
+	 */
+	T handle(String theContentType, InputStream theContent) throws IOException;
+
+}
@@ -23,6 +23,7 @@ package ca.uhn.fhir.rest.client.api;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Http Request. Allows addition of headers and execution of the request.
@@ -44,6 +45,28 @@ public interface IHttpRequest {
 	 */
 	IHttpResponse execute() throws IOException;
 
+	/**
+	 * Execute the request without blocking the calling thread, if the underlying
+	 * HTTP library supports this. The returned future is completed with the response
+	 * or, if the request could not be sent, with the {@link IOException} that was
+	 * encountered.
+	 * <p>
+	 * The default implementation simply calls {@link #execute()} on the calling
+	 * thread and returns a future which is already complete.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	default CompletableFuture<IHttpResponse> executeAsync() {
+		CompletableFuture<IHttpResponse> retVal = new CompletableFuture<>();
+		try {
+			retVal.complete(execute());
+		} catch (IOException | RuntimeException e) {
+			retVal.completeExceptionally(e);
+		}
+		return retVal;
+	}
+
 	/**
 	 * @return all request headers in lower case. Note that this method
 	 * returns an <b>immutable</b> Map
@@ -127,4 +127,33 @@ public interface IRestfulClient {
 	 * Configures what style of _format parameter should be used in requests
 	 */
 	void setFormatParamStyle(RequestFormatParamStyleEnum theRequestFormatParamStyle);
+
+	/**
+	 * Returns the resilience policy (retries, hedging and circuit breaking) applied to
+	 * requests made by this client, or <code>null</code> if none
+	 *
+	 * @since 5.1.0
+	 */
+	default ClientResiliencePolicy getResiliencePolicy() {
+		return null;
+	}
+
+	/**
+	 * Sets the resilience policy (retries, hedging and circuit breaking) applied to requests
+	 * made by this client. The default is <code>null</code>, meaning that each request is
+	 * sent exactly once. A policy may be shared by several clients, in which case they also
+	 * share its circuit breakers and metrics.
+	 *
+	 * <p>
+	 * All clients created by HAPI FHIR (generic and annotation based) support this. The default
+	 * implementation of this method, used by other implementations of this interface, throws
+	 * {@link UnsupportedOperationException}.
+	 * </p>
+	 *
+	 * @see ClientResiliencePolicy
+	 * @since 5.1.0
+	 */
+	default void setResiliencePolicy(ClientResiliencePolicy theResiliencePolicy) {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support resilience policies");
+	}
 }
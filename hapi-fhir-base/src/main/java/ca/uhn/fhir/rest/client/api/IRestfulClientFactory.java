@@ -57,6 +57,11 @@ public interface IRestfulClientFactory {
 	 * Default value for {@link #getPoolMaxPerRoute() }
 	 */
 	public static final int DEFAULT_POOL_MAX_PER_ROUTE = DEFAULT_POOL_MAX;
+
+	/**
+	 * Default value for {@link #getIdleConnectionTimeout()}
+	 */
+	public static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 5 * 60 * 1000;
 	
 	/**
 	 * Gets the connection request timeout, in milliseconds. This is the amount of time that the HTTPClient connection
@@ -134,6 +139,19 @@ public interface IRestfulClientFactory {
 	 * </p>
 	 */
 	int getPoolMaxPerRoute();
+
+	/**
+	 * Gets the idle connection timeout, in milliseconds. This is the amount of time that a pooled connection
+	 * may remain unused before it is closed.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_IDLE_CONNECTION_TIMEOUT}
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	default int getIdleConnectionTimeout() {
+		return DEFAULT_IDLE_CONNECTION_TIMEOUT;
+	}
 	
 	/**
 	 * Instantiates a new client instance
@@ -248,6 +266,25 @@ public interface IRestfulClientFactory {
 	 * </p>
 	 */
 	void setPoolMaxPerRoute(int thePoolMaxPerRoute);
+
+	/**
+	 * Sets the idle connection timeout, in milliseconds. This is the amount of time that a pooled connection
+	 * may remain unused before it is closed. Connections are also closed sooner if the server indicates
+	 * a shorter keep-alive time.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_IDLE_CONNECTION_TIMEOUT}
+	 * </p>
+	 * <p>
+	 * This setting is honoured by the Apache and OkHttp client factories. Factories whose underlying
+	 * client manages its own connections (such as the JAX-RS client factory) ignore it, as does the
+	 * default implementation of this method.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	default void setIdleConnectionTimeout(int theIdleConnectionTimeout) {
+		// ignored by default
+	}
 	
 	void validateServerBase(String theServerBase, IHttpClient theHttpClient, IRestfulClient theClient);
 
@@ -7,6 +7,7 @@ import ca.uhn.fhir.rest.api.SummaryEnum;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * #%L
@@ -108,6 +109,29 @@ public interface IClientExecutable<T extends IClientExecutable<?, Y>, Y> {
 	 */
 	Y execute();
 
+	/**
+	 * Execute the client operation without blocking the calling thread. The returned future
+	 * is completed with the same result that {@link #execute()} would return, or exceptionally
+	 * with the exception it would throw.
+	 * <p>
+	 * Read, search, transaction and operation invocations are sent using the non-blocking
+	 * support of the underlying HTTP client if it has any (e.g. the OkHttp client). Otherwise,
+	 * including with the default Apache HttpClient based client, the operation is executed on
+	 * the calling thread and an already completed future is returned.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	default CompletableFuture<Y> executeAsync() {
+		CompletableFuture<Y> retVal = new CompletableFuture<>();
+		try {
+			retVal.complete(execute());
+		} catch (RuntimeException e) {
+			retVal.completeExceptionally(e);
+		}
+		return retVal;
+	}
+
 	/**
 	 * Explicitly specify a custom structure type to attempt to use when parsing the response. This
 	 * is useful for invocations where the response is a Bundle/Parameters containing nested resources,
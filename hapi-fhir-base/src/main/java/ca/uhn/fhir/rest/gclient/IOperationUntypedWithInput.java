@@ -21,6 +21,7 @@ package ca.uhn.fhir.rest.gclient;
  */
 
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.client.api.IBinaryContentHandler;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 public interface IOperationUntypedWithInput<T> extends IClientExecutable<IOperationUntypedWithInput<T>, T> {
@@ -49,4 +50,16 @@ public interface IOperationUntypedWithInput<T> extends IClientExecutable<IOperat
 	 * will contain details
 	 */
 	IOperationUntypedWithInput<MethodOutcome> returnMethodOutcome();
+
+	/**
+	 * Invoke the operation and pass the response body to the given handler as a stream
+	 * instead of parsing it. This is useful for operations which return non-FHIR content
+	 * (e.g. <code>$binary-access-read</code>), since the content does not need to be
+	 * held in memory. Unless a specific {@link #accept(String) Accept header} has been
+	 * requested, the client accepts any content type.
+	 *
+	 * @return The value returned by the handler
+	 * @since 5.1.0
+	 */
+	<R> R executeAsStream(IBinaryContentHandler<R> theHandler);
 }
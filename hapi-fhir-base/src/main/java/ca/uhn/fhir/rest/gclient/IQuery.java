@@ -7,10 +7,13 @@ import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /*
  * #%L
@@ -167,6 +170,47 @@ public interface IQuery<Y> extends IBaseQuery<IQuery<Y>>, IClientExecutable<IQue
 	 */
 	IQuery<Y> withTag(String theSystem, String theCode);
 
+	/**
+	 * Executes the search and returns an iterator over the first page of results and every
+	 * page after it, found by following the <code>next</code> link of each page. When a page
+	 * is returned by the iterator, the page after it is requested in the background so that
+	 * it is usually already available by the time the caller has finished processing the
+	 * current page.
+	 * <p>
+	 * The iterator only holds a reference to the page being returned and the page being
+	 * fetched, so a large result set can be processed in constant memory as long as the
+	 * caller does not keep the pages it has finished with. Note that the requests for pages
+	 * after the first are made on a background thread, so any thread-local state used
+	 * by client interceptors will not be visible to them.
+	 * </p>
+	 * <p>
+	 * The generic client created by HAPI FHIR supports this. The default implementation of
+	 * this method, used by other implementations of this interface, throws
+	 * {@link UnsupportedOperationException}.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	default Iterator<Y> executeAndIteratePages() {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support iterating pages");
+	}
+
+	/**
+	 * Executes the search and returns a stream of the resources in the entries of every page
+	 * of results. Pages are fetched as the stream is consumed, with the same background
+	 * prefetching as {@link #executeAndIteratePages()}.
+	 * <p>
+	 * The generic client created by HAPI FHIR supports this. The default implementation of
+	 * this method, used by other implementations of this interface, throws
+	 * {@link UnsupportedOperationException}.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	default Stream<IBaseResource> executeAndStreamResources() {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support streaming resources");
+	}
+
 //	Y execute();
 
 }
@@ -20,6 +20,7 @@ package ca.uhn.fhir.rest.gclient;
  * #L%
  */
 
+import ca.uhn.fhir.rest.client.api.IBinaryContentHandler;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 public interface IReadExecutable<T extends IBaseResource> extends IClientExecutable<IReadExecutable<T>, T>{
@@ -34,4 +35,16 @@ public interface IReadExecutable<T extends IBaseResource> extends IClientExecuta
 	 */
 	IReadIfNoneMatch<T> ifVersionMatches(String theVersion);
 
+	/**
+	 * Execute the read and pass the response body to the given handler as a stream
+	 * instead of parsing it. Unless a specific {@link #accept(String) Accept header}
+	 * has been requested, the client accepts any content type, so a FHIR server will
+	 * return the raw contents of a <code>Binary</code> resource. This allows large
+	 * binary content to be downloaded without holding it in memory.
+	 *
+	 * @return The value returned by the handler
+	 * @since 5.1.0
+	 */
+	<R> R executeAsStream(IBinaryContentHandler<R> theHandler);
+
 }
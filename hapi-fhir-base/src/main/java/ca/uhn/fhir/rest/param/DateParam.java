@@ -37,14 +37,21 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.TimeZone;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQueryParameterType , */IQueryParameterOr<DateParam> {
 
 	private static final long serialVersionUID = 1L;
+	private static final ParameterParseCache<DateParamDateTimeHolder> ourParsedValueCache = new ParameterParseCache<>(ParameterParseCache.DEFAULT_MAXIMUM_SIZE);
 
-	private final DateParamDateTimeHolder myValue = new DateParamDateTimeHolder();
+	private DateParamDateTimeHolder myValue = new DateParamDateTimeHolder();
+	/**
+	 * If true, {@link #myValue} came from the parse cache and is shared with other
+	 * instances, so it must be replaced rather than modified
+	 */
+	private boolean myValueShared;
 
 	/**
 	 * Constructor
@@ -65,7 +72,7 @@ public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQuer
 	 */
 	public DateParam(ParamPrefixEnum thePrefix, DateTimeDt theDate) {
 		setPrefix(thePrefix);
-		myValue.setValueAsString(theDate != null ? theDate.getValueAsString() : null);
+		getValueForUpdate().setValueAsString(theDate != null ? theDate.getValueAsString() : null);
 	}
 
 	/**
@@ -73,7 +80,7 @@ public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQuer
 	 */
 	public DateParam(ParamPrefixEnum thePrefix, IPrimitiveType<Date> theDate) {
 		setPrefix(thePrefix);
-		myValue.setValueAsString(theDate != null ? theDate.getValueAsString() : null);
+		getValueForUpdate().setValueAsString(theDate != null ? theDate.getValueAsString() : null);
 	}
 
 	/**
@@ -131,7 +138,12 @@ public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQuer
 	}
 
 	public Date getValue() {
-			return myValue.getValue();
+		Date retVal = myValue.getValue();
+		if (myValueShared && retVal != null) {
+			// Don't let callers modify the cached value
+			retVal = new Date(retVal.getTime());
+		}
+		return retVal;
 	}
 
 	public String getValueAsString() {
@@ -156,7 +168,7 @@ public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQuer
 	 * precision, and will be encoded using the system local time zone).
 	 */
 	public DateParam setValue(Date theValue) {
-		myValue.setValue(theValue, TemporalPrecisionEnum.MILLI);
+		getValueForUpdate().setValue(theValue, TemporalPrecisionEnum.MILLI);
 		return this;
 	}
 
@@ -165,9 +177,9 @@ public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQuer
 	 */
 	public void setValue(IPrimitiveType<Date> theValue) {
 		if (theValue != null) {
-			myValue.setValueAsString(theValue.getValueAsString());
+			getValueForUpdate().setValueAsString(theValue.getValueAsString());
 		} else {
-			myValue.setValue(null);
+			getValueForUpdate().setValue(null);
 		}
 	}
 
@@ -178,13 +190,33 @@ public class DateParam extends BaseParamWithPrefix<DateParam> implements /*IQuer
 	public void setValueAsString(String theDate) {
 		if (isNotBlank(theDate)) {
 			ParamPrefixEnum existingPrefix = getPrefix();
-			myValue.setValueAsString(super.extractPrefixAndReturnRest(theDate));
+			String value = super.extractPrefixAndReturnRest(theDate);
+			if (BaseDateTimeDt.NOW_DATE_CONSTANT.equalsIgnoreCase(value) || BaseDateTimeDt.TODAY_DATE_CONSTANT.equalsIgnoreCase(value)) {
+				getValueForUpdate().setValueAsString(value);
+			} else {
+				// Dates without an offset are parsed in the default time zone, so it is part of the key
+				String cacheKey = TimeZone.getDefault().getID() + '|' + value;
+				myValue = ourParsedValueCache.get(cacheKey, t -> {
+					DateParamDateTimeHolder parsed = new DateParamDateTimeHolder();
+					parsed.setValueAsString(value);
+					return parsed;
+				});
+				myValueShared = true;
+			}
 			if (getPrefix() == null) {
 				setPrefix(existingPrefix);
 			}
 		} else {
-			myValue.setValue(null);
+			getValueForUpdate().setValue(null);
+		}
+	}
+
+	private DateParamDateTimeHolder getValueForUpdate() {
+		if (myValueShared) {
+			myValue = new DateParamDateTimeHolder();
+			myValueShared = false;
 		}
+		return myValue;
 	}
 
 	@Override
@@ -0,0 +1,76 @@
+package ca.uhn.fhir.rest.param;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A small bounded cache of the immutable results of parsing search parameter
+ * values, keyed by the raw parameter value. Search parameter types are mutable
+ * so instances are never shared, only the components they are built from.
+ * <p>
+ * Once the cache is full it is simply cleared, which keeps lookups lock-free and
+ * is good enough for the typical case where a server sees the same handful of
+ * values (codes, dates, references) over and over.
+ * </p>
+ */
+class ParameterParseCache<T> {
+
+	static final int DEFAULT_MAXIMUM_SIZE = 1000;
+	static final int MAXIMUM_KEY_LENGTH = 200;
+
+	private final ConcurrentHashMap<String, T> myCache = new ConcurrentHashMap<>();
+	private final int myMaximumSize;
+
+	ParameterParseCache(int theMaximumSize) {
+		myMaximumSize = theMaximumSize;
+	}
+
+	/**
+	 * Returns the cached value for the given key, or parses and caches it. Exceptions
+	 * thrown by the parser are propagated and nothing is cached.
+	 */
+	T get(String theKey, Function<String, T> theParser) {
+		if (theKey.length() > MAXIMUM_KEY_LENGTH) {
+			return theParser.apply(theKey);
+		}
+
+		T retVal = myCache.get(theKey);
+		if (retVal == null) {
+			retVal = theParser.apply(theKey);
+			if (myCache.size() >= myMaximumSize) {
+				myCache.clear();
+			}
+			myCache.put(theKey, retVal);
+		}
+		return retVal;
+	}
+
+	int size() {
+		return myCache.size();
+	}
+
+	void clear() {
+		myCache.clear();
+	}
+
+}
@@ -136,10 +136,10 @@ public class ReferenceParam extends BaseParam /*implements IQueryParameterType*/
 				myValue = theValue;
 				myIdPart = theValue;
 
-				IdDt id = new IdDt(theValue);
-				if (!id.hasBaseUrl() && id.hasIdPart() && id.hasResourceType()) {
-					if (id.getResourceType().equals(myResourceType)) {
-						myIdPart = id.getIdPart();
+				ParsedId id = ParsedId.parse(theValue);
+				if (id.myBaseUrl == null && id.myIdPart != null && id.myResourceType != null) {
+					if (id.myResourceType.equals(myResourceType)) {
+						myIdPart = id.myIdPart;
 					}
 				}
 
@@ -152,10 +152,10 @@ public class ReferenceParam extends BaseParam /*implements IQueryParameterType*/
 		} else {
 			myChain = null;
 			myValue = theValue;
-			IdDt id = new IdDt(theValue);
-			myResourceType = id.getResourceType();
-			myIdPart = id.getIdPart();
-			myBaseUrl = id.getBaseUrl();
+			ParsedId id = ParsedId.parse(theValue);
+			myResourceType = id.myResourceType;
+			myIdPart = id.myIdPart;
+			myBaseUrl = id.myBaseUrl;
 		}
 
 	}
@@ -326,4 +326,33 @@ public class ReferenceParam extends BaseParam /*implements IQueryParameterType*/
 	public boolean isIdPartValidLong() {
 		return isValidLong(getIdPart());
 	}
+
+	/**
+	 * The components of a parsed reference value, cached since the same references
+	 * tend to be searched for repeatedly
+	 */
+	private static class ParsedId {
+
+		private static final ParameterParseCache<ParsedId> ourCache = new ParameterParseCache<>(ParameterParseCache.DEFAULT_MAXIMUM_SIZE);
+		private static final ParsedId EMPTY = new ParsedId(new IdDt());
+
+		private final String myResourceType;
+		private final String myIdPart;
+		private final String myBaseUrl;
+
+		private ParsedId(IdDt theId) {
+			myResourceType = theId.getResourceType();
+			myIdPart = theId.getIdPart();
+			myBaseUrl = theId.getBaseUrl();
+		}
+
+		static ParsedId parse(String theValue) {
+			if (theValue == null) {
+				return EMPTY;
+			}
+			return ourCache.get(theValue, t -> new ParsedId(new IdDt(t)));
+		}
+
+	}
+
 }
@@ -37,6 +37,7 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -652,10 +653,32 @@ public class FhirTerser {
 		Validate.notBlank(defaultString(theTarget.getIdPart()), "theTarget must have a populated ID (theTarget.getIdPart() does not return a value)");
 
 		String wantRef = theTarget.toUnqualifiedVersionless().getValue();
+		return isSourceInCompartmentForAnyTarget(theCompartmentName, theSource, Collections.singleton(wantRef));
+	}
+
+	/**
+	 * Returns <code>true</code> if <code>theSource</code> is in the compartment named <code>theCompartmentName</code>
+	 * belonging to any of the given owners. This gives the same result as calling
+	 * {@link #isSourceInCompartmentForTarget(String, IBaseResource, IIdType)} for each owner in turn,
+	 * but the references in <code>theSource</code> are only examined once.
+	 *
+	 * @param theCompartmentName The name of the compartment
+	 * @param theSource          The potential member of the compartment
+	 * @param theTargetRefs      The owners of the compartment, as unqualified versionless IDs (e.g. <code>Patient/123</code>)
+	 * @return <code>true</code> if <code>theSource</code> is in the compartment of any of the owners
+	 * @since 5.1.0
+	 */
+	public boolean isSourceInCompartmentForAnyTarget(String theCompartmentName, IBaseResource theSource, Set<String> theTargetRefs) {
+		Validate.notBlank(theCompartmentName, "theCompartmentName must not be null or blank");
+		Validate.notNull(theSource, "theSource must not be null");
+		Validate.notNull(theTargetRefs, "theTargetRefs must not be null");
+		if (theTargetRefs.isEmpty()) {
+			return false;
+		}
 
 		RuntimeResourceDefinition sourceDef = myContext.getResourceDefinition(theSource);
 		if (theSource.getIdElement().hasIdPart()) {
-			if (wantRef.equals(sourceDef.getName() + '/' + theSource.getIdElement().getIdPart())) {
+			if (theTargetRefs.contains(sourceDef.getName() + '/' + theSource.getIdElement().getIdPart())) {
 				return true;
 			}
 		}
@@ -707,7 +730,7 @@ public class FhirTerser {
 						}
 					}
 
-					if (wantRef.equals(nextRef)) {
+					if (nextRef != null && theTargetRefs.contains(nextRef)) {
 						return true;
 					}
 				}
@@ -17,7 +17,6 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.*;
-import java.util.Map.Entry;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
@@ -232,50 +231,78 @@ public class UrlUtil {
 	}
 
 	public static Map<String, String[]> parseQueryString(String theQueryString) {
-		HashMap<String, List<String>> map = new HashMap<>();
+		HashMap<String, String[]> map = new HashMap<>();
 		parseQueryString(theQueryString, map);
-		return toQueryStringMap(map);
+		return map;
 	}
 
-	private static void parseQueryString(String theQueryString, HashMap<String, List<String>> map) {
-		String query = defaultString(theQueryString);
-		if (query.startsWith("?")) {
-			query = query.substring(1);
+	/**
+	 * Tokenizes the query string in a single pass, adding each value directly to the
+	 * value array for its key (most parameters only ever have a single value, so this
+	 * avoids building an intermediate list per key)
+	 */
+	private static void parseQueryString(String theQueryString, HashMap<String, String[]> map) {
+		if (theQueryString == null) {
+			return;
 		}
 
+		int length = theQueryString.length();
+		int tokenStart = 0;
+		if (length > 0 && theQueryString.charAt(0) == '?') {
+			tokenStart = 1;
+		}
 
-		StringTokenizer tok = new StringTokenizer(query, "&");
-		while (tok.hasMoreTokens()) {
-			String nextToken = tok.nextToken();
-			if (isBlank(nextToken)) {
-				continue;
+		while (tokenStart < length) {
+			int equalsIndex = -1;
+			boolean blank = true;
+			int tokenEnd = tokenStart;
+			for (; tokenEnd < length; tokenEnd++) {
+				char nextChar = theQueryString.charAt(tokenEnd);
+				if (nextChar == '&') {
+					break;
+				}
+				if (nextChar == '=' && equalsIndex == -1) {
+					equalsIndex = tokenEnd;
+				}
+				if (blank && !Character.isWhitespace(nextChar)) {
+					blank = false;
+				}
 			}
 
-			int equalsIndex = nextToken.indexOf('=');
-			String nextValue;
-			String nextKey;
-			if (equalsIndex == -1) {
-				nextKey = nextToken;
-				nextValue = "";
-			} else {
-				nextKey = nextToken.substring(0, equalsIndex);
-				nextValue = nextToken.substring(equalsIndex + 1);
-			}
+			if (!blank) {
+				String nextKey;
+				String nextValue;
+				if (equalsIndex == -1) {
+					nextKey = theQueryString.substring(tokenStart, tokenEnd);
+					nextValue = "";
+				} else {
+					nextKey = theQueryString.substring(tokenStart, equalsIndex);
+					nextValue = theQueryString.substring(equalsIndex + 1, tokenEnd);
+				}
+
+				nextKey = unescape(nextKey);
+				nextValue = unescape(nextValue);
 
-			nextKey = unescape(nextKey);
-			nextValue = unescape(nextValue);
+				String[] existing = map.get(nextKey);
+				if (existing == null) {
+					map.put(nextKey, new String[]{nextValue});
+				} else {
+					String[] values = Arrays.copyOf(existing, existing.length + 1);
+					values[existing.length] = nextValue;
+					map.put(nextKey, values);
+				}
+			}
 
-			List<String> list = map.computeIfAbsent(nextKey, k -> new ArrayList<>());
-			list.add(nextValue);
+			tokenStart = tokenEnd + 1;
 		}
 	}
 
 	public static Map<String, String[]> parseQueryStrings(String... theQueryString) {
-		HashMap<String, List<String>> map = new HashMap<>();
+		HashMap<String, String[]> map = new HashMap<>();
 		for (String next : theQueryString) {
 			parseQueryString(next, map);
 		}
-		return toQueryStringMap(map);
+		return map;
 	}
 
 	/**
@@ -432,14 +459,6 @@ public class UrlUtil {
 		return theString.toString();
 	}
 
-	private static Map<String, String[]> toQueryStringMap(HashMap<String, List<String>> map) {
-		HashMap<String, String[]> retVal = new HashMap<>();
-		for (Entry<String, List<String>> nextEntry : map.entrySet()) {
-			retVal.put(nextEntry.getKey(), nextEntry.getValue().toArray(new String[0]));
-		}
-		return retVal;
-	}
-
 	public static String unescape(String theString) {
 		if (theString == null) {
 			return null;
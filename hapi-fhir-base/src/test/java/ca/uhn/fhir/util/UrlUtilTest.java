@@ -2,6 +2,8 @@ package ca.uhn.fhir.util;
 
 import org.junit.Test;
 
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 public class UrlUtilTest {
@@ -47,6 +49,28 @@ public class UrlUtilTest {
 		assertFalse(UrlUtil.isValid(null));
 	}
 
+	@Test
+	public void testParseQueryString() {
+		Map<String, String[]> params = UrlUtil.parseQueryString("?name=smith&name:exact=John%20Smith&&  &code=http://loinc.org|1234-5&flag&name=jones&plus=a+b");
+		assertEquals(5, params.size());
+		assertArrayEquals(new String[]{"smith", "jones"}, params.get("name"));
+		assertArrayEquals(new String[]{"John Smith"}, params.get("name:exact"));
+		assertArrayEquals(new String[]{"http://loinc.org|1234-5"}, params.get("code"));
+		assertArrayEquals(new String[]{""}, params.get("flag"));
+		assertArrayEquals(new String[]{"a b"}, params.get("plus"));
+
+		assertTrue(UrlUtil.parseQueryString(null).isEmpty());
+		assertTrue(UrlUtil.parseQueryString("?").isEmpty());
+		assertArrayEquals(new String[]{"b=c"}, UrlUtil.parseQueryString("a=b=c").get("a"));
+	}
+
+	@Test
+	public void testParseQueryStrings() {
+		Map<String, String[]> params = UrlUtil.parseQueryStrings("a=1&b=2", "a=3");
+		assertArrayEquals(new String[]{"1", "3"}, params.get("a"));
+		assertArrayEquals(new String[]{"2"}, params.get("b"));
+	}
+
 	@Test
 	public void testParseUrl() {
 		assertEquals("ConceptMap", UrlUtil.parseUrl("http://hl7.org/fhir/ConceptMap/ussgfht-loincde").getResourceType());
@@ -2,6 +2,8 @@ package ca.uhn.fhir.okhttp.client;
 
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -30,9 +32,13 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.client.api.Header;
 import ca.uhn.fhir.rest.client.api.IHttpClient;
+import ca.uhn.fhir.rest.client.impl.ConnectionPoolStats;
 import ca.uhn.fhir.rest.client.impl.RestfulClientFactory;
 import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 
 /**
  * A Restful client factory based on OkHttp.
@@ -42,6 +48,7 @@ import okhttp3.OkHttpClient;
 public class OkHttpRestfulClientFactory extends RestfulClientFactory {
 
     private Call.Factory myNativeClient;
+    private boolean myHttp2Enabled = true;
 
     public OkHttpRestfulClientFactory() {
         super();
@@ -57,23 +64,82 @@ public class OkHttpRestfulClientFactory extends RestfulClientFactory {
     }
 
     @Override
-    protected void resetHttpClient() {
+    protected synchronized void resetHttpClient() {
         myNativeClient = null;
     }
 
+    /**
+     * Returns the OkHttp client used by this factory, creating it if needed. The
+     * {@link #setPoolMaxTotal(int) pool max total} and {@link #setPoolMaxPerRoute(int) pool max per route}
+     * settings limit the number of asynchronous requests (see
+     * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync()}) that are in flight at
+     * any given time. Additional requests are queued until a slot becomes available.
+     * The pool max total setting also limits the number of idle connections which are kept
+     * open for reuse.
+     */
     public synchronized Call.Factory getNativeClient() {
         if (myNativeClient == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(getPoolMaxTotal());
+            dispatcher.setMaxRequestsPerHost(getPoolMaxPerRoute());
+
+            ConnectionPool connectionPool = new ConnectionPool(getPoolMaxTotal(), getIdleConnectionTimeout(), TimeUnit.MILLISECONDS);
+            List<Protocol> protocols = myHttp2Enabled ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1);
+
             myNativeClient = new OkHttpClient()
 				.newBuilder()
 				.connectTimeout(getConnectTimeout(), TimeUnit.MILLISECONDS)
 					.readTimeout(getSocketTimeout(), TimeUnit.MILLISECONDS)
 					.writeTimeout(getSocketTimeout(), TimeUnit.MILLISECONDS)
+				.dispatcher(dispatcher)
+				.connectionPool(connectionPool)
+				.protocols(protocols)
 				.build();
         }
 
         return myNativeClient;
     }
 
+    /**
+     * Returns whether HTTP/2 may be used (see {@link #setHttp2Enabled(boolean)})
+     */
+    public synchronized boolean isHttp2Enabled() {
+        return myHttp2Enabled;
+    }
+
+    /**
+     * Sets whether HTTP/2 may be used for connections to servers which support it (default is <code>true</code>).
+     * HTTP/2 is negotiated during the TLS handshake, so it is only used for <code>https</code> URLs. When it is
+     * used, concurrent requests to the same server are multiplexed over a single connection.
+     *
+     * @since 5.1.0
+     */
+    public synchronized void setHttp2Enabled(boolean theHttp2Enabled) {
+        myHttp2Enabled = theHttp2Enabled;
+        resetHttpClient();
+    }
+
+    /**
+     * Returns a snapshot of the state of the connection pool and request queue, or <code>null</code> if
+     * the client supplied using {@link #setHttpClient(Object)} is not an {@link OkHttpClient}. The
+     * leased and available counts are connections, and the pending count is the number of asynchronous
+     * requests waiting for a slot (see {@link #getNativeClient()}). OkHttp does not report how long
+     * requests wait, so the lease count and wait times are always zero.
+     *
+     * @since 5.1.0
+     */
+    public synchronized ConnectionPoolStats getConnectionPoolStats() {
+        if (!(getNativeClient() instanceof OkHttpClient)) {
+            return null;
+        }
+        OkHttpClient client = (OkHttpClient) getNativeClient();
+        ConnectionPool connectionPool = client.connectionPool();
+        Dispatcher dispatcher = client.dispatcher();
+        int available = connectionPool.idleConnectionCount();
+        int leased = connectionPool.connectionCount() - available;
+        return new ConnectionPoolStats(leased, dispatcher.queuedCallsCount(), available, dispatcher.getMaxRequests(), 0, 0, 0);
+    }
+
     @Override
     public IHttpClient getHttpClient(StringBuilder theUrl,
                                      Map<String, List<String>> theIfNoneExistParams,
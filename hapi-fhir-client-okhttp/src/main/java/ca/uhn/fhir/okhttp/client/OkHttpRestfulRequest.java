@@ -7,13 +7,16 @@ import ca.uhn.fhir.rest.client.api.IHttpResponse;
 import ca.uhn.fhir.util.StopWatch;
 import okhttp3.Call;
 import okhttp3.Call.Factory;
+import okhttp3.Callback;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * #%L
@@ -74,6 +77,32 @@ public class OkHttpRestfulRequest extends BaseHttpRequest implements IHttpReques
 		 return new OkHttpRestfulResponse(call.execute(), responseStopWatch);
     }
 
+	/**
+	 * Enqueues the call with the OkHttp dispatcher, which limits the number of calls in flight
+	 * (see {@link OkHttpRestfulClientFactory}) and holds any others in a queue without tying
+	 * up a thread. The future is completed on the dispatcher thread which performed the call.
+	 */
+	@Override
+	public CompletableFuture<IHttpResponse> executeAsync() {
+		StopWatch responseStopWatch = new StopWatch();
+		myRequestBuilder.method(getHttpVerbName(), myRequestBody);
+		Call call = myClient.newCall(myRequestBuilder.build());
+
+		CompletableFuture<IHttpResponse> retVal = new CompletableFuture<>();
+		call.enqueue(new Callback() {
+			@Override
+			public void onFailure(Call theCall, IOException theException) {
+				retVal.completeExceptionally(theException);
+			}
+
+			@Override
+			public void onResponse(Call theCall, Response theResponse) {
+				retVal.complete(new OkHttpRestfulResponse(theResponse, responseStopWatch));
+			}
+		});
+		return retVal;
+	}
+
     @Override
     public Map<String, List<String>> getAllHeaders() {
         return Collections.unmodifiableMap(myRequestBuilder.build().headers().toMultimap());
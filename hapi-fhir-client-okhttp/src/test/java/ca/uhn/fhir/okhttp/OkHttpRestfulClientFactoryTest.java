@@ -1,11 +1,15 @@
 package ca.uhn.fhir.okhttp;
 
 import ca.uhn.fhir.okhttp.client.OkHttpRestfulClientFactory;
+import ca.uhn.fhir.rest.client.impl.ConnectionPoolStats;
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
@@ -50,6 +54,27 @@ public class OkHttpRestfulClientFactoryTest {
 		assertEquals(1515, ((OkHttpClient)clientFactory.getNativeClient()).writeTimeoutMillis());
 	}
 
+	@Test
+	public void testHttp2Enabled() {
+		assertEquals(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1), ((OkHttpClient) clientFactory.getNativeClient()).protocols());
+
+		clientFactory.setHttp2Enabled(false);
+
+		assertEquals(Collections.singletonList(Protocol.HTTP_1_1), ((OkHttpClient) clientFactory.getNativeClient()).protocols());
+	}
+
+	@Test
+	public void testConnectionPoolStats() {
+		clientFactory.setPoolMaxTotal(7);
+
+		ConnectionPoolStats stats = clientFactory.getConnectionPoolStats();
+
+		assertEquals(7, stats.getMax());
+		assertEquals(0, stats.getLeased());
+		assertEquals(0, stats.getAvailable());
+		assertEquals(0, stats.getPending());
+	}
+
 	@Test
 	public void testConnectTimeout() {
 		clientFactory.setConnectTimeout(1516);
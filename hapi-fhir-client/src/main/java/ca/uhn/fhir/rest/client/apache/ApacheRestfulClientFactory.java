@@ -20,27 +20,39 @@ package ca.uhn.fhir.rest.client.apache;
  * #L%
  */
 
+import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.client.ProxyAuthenticationStrategy;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.client.api.Header;
 import ca.uhn.fhir.rest.client.api.IHttpClient;
+import ca.uhn.fhir.rest.client.impl.ConnectionPoolStats;
 import ca.uhn.fhir.rest.client.impl.RestfulClientFactory;
 
 /**
@@ -50,8 +62,16 @@ import ca.uhn.fhir.rest.client.impl.RestfulClientFactory;
  */
 public class ApacheRestfulClientFactory extends RestfulClientFactory {
 
+	/**
+	 * Default value for {@link #getConnectionTimeToLive()}
+	 */
+	public static final int DEFAULT_CONNECTION_TIME_TO_LIVE = 5000;
+
 	private HttpClient myHttpClient;
+	private InstrumentedConnectionManager myConnectionManager;
 	private HttpHost myProxy;
+	private int myConnectionTimeToLive = DEFAULT_CONNECTION_TIME_TO_LIVE;
+	private final Map<HttpRoute, Integer> myPoolMaxForRoute = new HashMap<>();
 
 	/**
 	 * Constructor
@@ -82,13 +102,77 @@ public class ApacheRestfulClientFactory extends RestfulClientFactory {
 				theHeaders);
 	}
 
-	public HttpClient getNativeHttpClient() {
+	/**
+	 * Returns the maximum time in milliseconds that a pooled connection may be kept open, regardless
+	 * of how recently it was used
+	 */
+	public synchronized int getConnectionTimeToLive() {
+		return myConnectionTimeToLive;
+	}
+
+	/**
+	 * Sets the maximum time in milliseconds that a pooled connection may be kept open, regardless
+	 * of how recently it was used (default is {@link #DEFAULT_CONNECTION_TIME_TO_LIVE})
+	 *
+	 * @since 5.1.0
+	 */
+	public synchronized void setConnectionTimeToLive(int theConnectionTimeToLive) {
+		Validate.isTrue(theConnectionTimeToLive > 0, "theConnectionTimeToLive must be positive");
+		myConnectionTimeToLive = theConnectionTimeToLive;
+		resetHttpClient();
+	}
+
+	/**
+	 * Sets the maximum number of connections allowed in the pool for requests to the given server,
+	 * overriding {@link #setPoolMaxPerRoute(int)} for that server
+	 *
+	 * @param theServerBase The base URL (or any URL) of the server, e.g. <code>https://example.com/fhir</code>
+	 * @param thePoolMax    The maximum number of connections
+	 * @since 5.1.0
+	 */
+	public synchronized void setPoolMaxForRoute(String theServerBase, int thePoolMax) {
+		Validate.isTrue(thePoolMax > 0, "thePoolMax must be positive");
+		URI uri = URI.create(theServerBase);
+		Validate.isTrue(StringUtils.isNotBlank(uri.getHost()), "theServerBase must be an absolute URL");
+		boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+		int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+		HttpHost host = new HttpHost(uri.getHost(), port, secure ? "https" : "http");
+		myPoolMaxForRoute.put(new HttpRoute(host, null, secure), thePoolMax);
+		resetHttpClient();
+	}
+
+	/**
+	 * Returns a snapshot of the state of the connection pool, or <code>null</code> if the
+	 * HTTP client was supplied using {@link #setHttpClient(Object)} or has not yet been created.
+	 *
+	 * @since 5.1.0
+	 */
+	public synchronized ConnectionPoolStats getConnectionPoolStats() {
+		if (myConnectionManager == null) {
+			return null;
+		}
+		PoolStats stats = myConnectionManager.getTotalStats();
+		return new ConnectionPoolStats(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax(),
+				myConnectionManager.myLeaseCount.get(), myConnectionManager.myTotalLeaseWaitMillis.get(), myConnectionManager.myMaxLeaseWaitMillis.get());
+	}
+
+	/**
+	 * Returns the connection manager created by {@link #getNativeHttpClient()}, or <code>null</code>
+	 */
+	synchronized PoolingHttpClientConnectionManager getConnectionManager() {
+		return myConnectionManager;
+	}
+
+	public synchronized HttpClient getNativeHttpClient() {
 		if (myHttpClient == null) {
 
-			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000,
-					TimeUnit.MILLISECONDS);
+			InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(getConnectionTimeToLive(), getIdleConnectionTimeout());
 			connectionManager.setMaxTotal(getPoolMaxTotal());
 			connectionManager.setDefaultMaxPerRoute(getPoolMaxPerRoute());
+			for (Map.Entry<HttpRoute, Integer> next : myPoolMaxForRoute.entrySet()) {
+				connectionManager.setMaxPerRoute(next.getKey(), next.getValue());
+			}
+			myConnectionManager = connectionManager;
 
 			//TODO: Use of a deprecated method should be resolved.
 			RequestConfig defaultRequestConfig =
@@ -100,8 +184,14 @@ public class ApacheRestfulClientFactory extends RestfulClientFactory {
 					.setProxy(myProxy)
 					.build();
 
+			// Don't keep connections open for longer than the server asks us to, or longer than the idle timeout
+			long idleConnectionTimeout = getIdleConnectionTimeout();
 			HttpClientBuilder builder = HttpClients.custom().setConnectionManager(connectionManager)
-					.setDefaultRequestConfig(defaultRequestConfig).disableCookieManagement();
+					.setDefaultRequestConfig(defaultRequestConfig).disableCookieManagement()
+					.setKeepAliveStrategy((response, context) -> {
+						long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+						return keepAlive > 0 ? Math.min(keepAlive, idleConnectionTimeout) : idleConnectionTimeout;
+					});
 
 			if (myProxy != null && StringUtils.isNotBlank(getProxyUsername()) && StringUtils.isNotBlank(getProxyPassword())) {
 				CredentialsProvider credsProvider = new BasicCredentialsProvider();
@@ -119,8 +209,9 @@ public class ApacheRestfulClientFactory extends RestfulClientFactory {
 	}
 
 	@Override
-	protected void resetHttpClient() {
+	protected synchronized void resetHttpClient() {
 		this.myHttpClient = null;
+		this.myConnectionManager = null;
 	}
 
 	/**
@@ -130,6 +221,7 @@ public class ApacheRestfulClientFactory extends RestfulClientFactory {
 	@Override
 	public synchronized void setHttpClient(Object theHttpClient) {
 		this.myHttpClient = (HttpClient) theHttpClient;
+		this.myConnectionManager = null;
 	}
 
 	@Override
@@ -141,4 +233,56 @@ public class ApacheRestfulClientFactory extends RestfulClientFactory {
 		}
 	}
 
+	/**
+	 * Connection manager which records how long requests wait to obtain a connection, and
+	 * closes idle connections (at most once per second, as connections are requested) so
+	 * that no background eviction thread is needed
+	 */
+	private static class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+		private static final long EVICTION_INTERVAL_MILLIS = 1000;
+		private final long myIdleConnectionTimeout;
+		private final AtomicLong myLastEviction = new AtomicLong();
+		private final AtomicLong myLeaseCount = new AtomicLong();
+		private final AtomicLong myTotalLeaseWaitMillis = new AtomicLong();
+		private final AtomicLong myMaxLeaseWaitMillis = new AtomicLong();
+
+		InstrumentedConnectionManager(long theConnectionTimeToLive, long theIdleConnectionTimeout) {
+			super(theConnectionTimeToLive, TimeUnit.MILLISECONDS);
+			myIdleConnectionTimeout = theIdleConnectionTimeout;
+		}
+
+		@Override
+		public ConnectionRequest requestConnection(HttpRoute theRoute, Object theState) {
+			long now = System.currentTimeMillis();
+			long lastEviction = myLastEviction.get();
+			if (now - lastEviction > EVICTION_INTERVAL_MILLIS && myLastEviction.compareAndSet(lastEviction, now)) {
+				closeExpiredConnections();
+				closeIdleConnections(myIdleConnectionTimeout, TimeUnit.MILLISECONDS);
+			}
+
+			ConnectionRequest request = super.requestConnection(theRoute, theState);
+			return new ConnectionRequest() {
+				@Override
+				public HttpClientConnection get(long theTimeout, TimeUnit theTimeUnit) throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+					long start = System.currentTimeMillis();
+					try {
+						return request.get(theTimeout, theTimeUnit);
+					} finally {
+						long wait = System.currentTimeMillis() - start;
+						myLeaseCount.incrementAndGet();
+						myTotalLeaseWaitMillis.addAndGet(wait);
+						myMaxLeaseWaitMillis.accumulateAndGet(wait, Math::max);
+					}
+				}
+
+				@Override
+				public boolean cancel() {
+					return request.cancel();
+				}
+			};
+		}
+
+	}
+
 }
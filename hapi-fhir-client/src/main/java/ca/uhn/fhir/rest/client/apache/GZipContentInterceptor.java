@@ -20,49 +20,109 @@ package ca.uhn.fhir.rest.client.apache;
  * #L%
  */
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPOutputStream;
-
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.api.IClientInterceptor;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+import org.apache.commons.lang3.Validate;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
 
-import ca.uhn.fhir.rest.api.Constants;
-import ca.uhn.fhir.rest.client.api.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Client interceptor which GZip compresses outgoing (POST/PUT) contents being uploaded
  * from the client to the server. This can improve performance by reducing network 
  * load time.
+ * <p>
+ * Contents are compressed as they are written to the connection, so no compressed copy
+ * of the request body is held in memory. Requests smaller than the
+ * {@link #setMinimumContentLength(int) minimum content length} are sent uncompressed,
+ * since compressing them costs more than it saves.
+ * </p>
  */
 public class GZipContentInterceptor implements IClientInterceptor {
-	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(GZipContentInterceptor.class);
-	
+
+	/**
+	 * The default value for {@link #setMinimumContentLength(int)}: 0 (compress everything)
+	 */
+	public static final int DEFAULT_MINIMUM_CONTENT_LENGTH = 0;
+
+	private String myContentEncoding = Constants.ENCODING_GZIP;
+	private int myMinimumContentLength = DEFAULT_MINIMUM_CONTENT_LENGTH;
+
+	/**
+	 * Returns the content coding used to compress request bodies (default is <code>gzip</code>)
+	 */
+	public String getContentEncoding() {
+		return myContentEncoding;
+	}
+
+	/**
+	 * Sets the content coding used to compress request bodies. Supported values are
+	 * <code>gzip</code> (the default) and <code>deflate</code>. Note that a HAPI FHIR server
+	 * accepts both, but other servers may only accept <code>gzip</code>.
+	 */
+	public GZipContentInterceptor setContentEncoding(String theContentEncoding) {
+		Validate.isTrue(Constants.ENCODING_GZIP.equals(theContentEncoding) || Constants.ENCODING_DEFLATE.equals(theContentEncoding), "Unsupported content encoding: %s", theContentEncoding);
+		myContentEncoding = theContentEncoding;
+		return this;
+	}
+
+	/**
+	 * Returns the size in bytes below which request bodies are sent uncompressed
+	 */
+	public int getMinimumContentLength() {
+		return myMinimumContentLength;
+	}
+
+	/**
+	 * Sets the size in bytes below which request bodies are sent uncompressed. Bodies
+	 * whose length is not known in advance are always compressed. Defaults to
+	 * {@link #DEFAULT_MINIMUM_CONTENT_LENGTH}.
+	 */
+	public GZipContentInterceptor setMinimumContentLength(int theMinimumContentLength) {
+		Validate.isTrue(theMinimumContentLength >= 0, "theMinimumContentLength must not be negative");
+		myMinimumContentLength = theMinimumContentLength;
+		return this;
+	}
+
 	@Override
 	public void interceptRequest(IHttpRequest theRequestInterface) {
 		HttpRequestBase theRequest = ((ApacheHttpRequest) theRequestInterface).getApacheRequest();
+
 		if (theRequest instanceof HttpEntityEnclosingRequest) {
 			Header[] encodingHeaders = theRequest.getHeaders(Constants.HEADER_CONTENT_ENCODING);
 			if (encodingHeaders == null || encodingHeaders.length == 0) {
 				HttpEntityEnclosingRequest req = (HttpEntityEnclosingRequest)theRequest;
-				
-				ByteArrayOutputStream bos = new ByteArrayOutputStream();
-				GZIPOutputStream gos;
-				try {
-					gos = new GZIPOutputStream(bos);
-					req.getEntity().writeTo(gos);
-					gos.finish();
-				} catch (IOException e) {
-					ourLog.warn("Failed to GZip outgoing content", e);
+				HttpEntity entity = req.getEntity();
+				if (entity == null) {
 					return;
 				}
-				
-				byte[] byteArray = bos.toByteArray();
-				ByteArrayEntity newEntity = new ByteArrayEntity(byteArray);
-				req.setEntity(newEntity);
-				req.addHeader(Constants.HEADER_CONTENT_ENCODING, "gzip");
+
+				/*
+				 * Servers read form parameters from the raw body, so a compressed
+				 * form (e.g. a search using POST) would lose its parameters
+				 */
+				Header contentType = entity.getContentType();
+				if (contentType != null && contentType.getValue().startsWith(Constants.CT_X_FORM_URLENCODED)) {
+					return;
+				}
+
+				long contentLength = entity.getContentLength();
+				if (contentLength >= 0 && contentLength < myMinimumContentLength) {
+					return;
+				}
+
+				req.setEntity(new CompressingEntity(entity, myContentEncoding));
+				req.addHeader(Constants.HEADER_CONTENT_ENCODING, myContentEncoding);
 			}
 		}
 		
@@ -73,4 +133,47 @@ public class GZipContentInterceptor implements IClientInterceptor {
 		// nothing
 	}
 
+	/**
+	 * Compresses the wrapped entity while it is being written to the connection. The
+	 * compressed length is not known in advance, so the request is sent chunked.
+	 */
+	private static class CompressingEntity extends HttpEntityWrapper {
+
+		private final String myEncoding;
+
+		CompressingEntity(HttpEntity theWrappedEntity, String theEncoding) {
+			super(theWrappedEntity);
+			myEncoding = theEncoding;
+		}
+
+		@Override
+		public Header getContentEncoding() {
+			return new BasicHeader(Constants.HEADER_CONTENT_ENCODING, myEncoding);
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean isChunked() {
+			return true;
+		}
+
+		@Override
+		public void writeTo(OutputStream theOutputStream) throws IOException {
+			DeflaterOutputStream compressingStream;
+			if (Constants.ENCODING_GZIP.equals(myEncoding)) {
+				compressingStream = new GZIPOutputStream(theOutputStream, 8192);
+			} else {
+				compressingStream = new DeflaterOutputStream(theOutputStream);
+			}
+			wrappedEntity.writeTo(compressingStream);
+			compressingStream.finish();
+			compressingStream.flush();
+		}
+
+	}
+
 }
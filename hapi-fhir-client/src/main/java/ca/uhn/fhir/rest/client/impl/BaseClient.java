@@ -44,6 +44,7 @@ import ca.uhn.fhir.util.OperationOutcomeUtil;
 import ca.uhn.fhir.util.XmlDetectionUtil;
 import com.google.common.base.Charsets;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.*;
@@ -53,7 +54,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -81,6 +86,7 @@ public abstract class BaseClient implements IRestfulClient {
 	private SummaryEnum mySummary;
 	private RequestFormatParamStyleEnum myRequestFormatParamStyle = RequestFormatParamStyleEnum.SHORT;
 	private IInterceptorService myInterceptorService;
+	private ClientResiliencePolicy myResiliencePolicy;
 
 	BaseClient(IHttpClient theClient, String theUrlBase, RestfulClientFactory theFactory) {
 		super();
@@ -205,6 +211,16 @@ public abstract class BaseClient implements IRestfulClient {
 		return myUrlBase;
 	}
 
+	@Override
+	public ClientResiliencePolicy getResiliencePolicy() {
+		return myResiliencePolicy;
+	}
+
+	@Override
+	public void setResiliencePolicy(ClientResiliencePolicy theResiliencePolicy) {
+		myResiliencePolicy = theResiliencePolicy;
+	}
+
 	@Override
 	public void setFormatParamStyle(RequestFormatParamStyleEnum theRequestFormatParamStyle) {
 		Validate.notNull(theRequestFormatParamStyle, "theRequestFormatParamStyle must not be null");
@@ -232,181 +248,266 @@ public abstract class BaseClient implements IRestfulClient {
 		IHttpRequest httpRequest = null;
 		IHttpResponse response = null;
 		try {
-			Map<String, List<String>> params = createExtraParams(theCustomAcceptHeader);
-
-			if (clientInvocation instanceof HttpGetClientInvocation) {
-				if (myRequestFormatParamStyle == RequestFormatParamStyleEnum.SHORT && isBlank(theCustomAcceptHeader)) {
-					if (theEncoding == EncodingEnum.XML) {
-						params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
-					} else if (theEncoding == EncodingEnum.JSON) {
-						params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
-					}
-				}
+			if (myResiliencePolicy != null) {
+				ClientResponseContext attempt = myResiliencePolicy.execute(() -> createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective, theCustomAcceptHeader, theCustomHeaders));
+				httpRequest = attempt.getHttpRequest();
+				response = attempt.getHttpResponse();
+			} else {
+				httpRequest = createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective, theCustomAcceptHeader, theCustomHeaders);
+				response = httpRequest.execute();
 			}
-
-			if (theSummaryMode != null) {
-				params.put(Constants.PARAM_SUMMARY, Collections.singletonList(theSummaryMode.getCode()));
-			} else if (mySummary != null) {
-				params.put(Constants.PARAM_SUMMARY, Collections.singletonList(mySummary.getCode()));
+			return processResponse(theContext, binding, httpRequest, response, theLogRequestAndResponse);
+		} catch (Exception e) {
+			throw toClientException(httpRequest, e);
+		} finally {
+			if (response != null) {
+				response.close();
 			}
+		}
+	}
 
-			if (thePrettyPrint == Boolean.TRUE) {
-				params.put(Constants.PARAM_PRETTY, Collections.singletonList(Constants.PARAM_PRETTY_VALUE_TRUE));
+	/**
+	 * Asynchronous equivalent of {@link #invokeClient(FhirContext, IClientResponseHandler, BaseHttpClientInvocation, EncodingEnum, Boolean, boolean, SummaryEnum, Set, CacheControlDirective, String, Map)}.
+	 * The request is built and the {@link Pointcut#CLIENT_REQUEST} hooks are invoked on the calling thread, and the
+	 * response is processed on whichever thread the HTTP client completes the request on.
+	 * <p>
+	 * If a {@link ClientResiliencePolicy} is set, the whole request (including any retries) is instead executed
+	 * on one of the policy's worker threads. If none is available, the returned future fails with a
+	 * {@link FhirClientConnectionException}.
+	 * </p>
+	 */
+	<T> CompletableFuture<T> invokeClientAsync(FhirContext theContext, IClientResponseHandler<T> binding, BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint,
+															 boolean theLogRequestAndResponse, SummaryEnum theSummaryMode, Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective, String theCustomAcceptHeader,
+															 Map<String, List<String>> theCustomHeaders) {
+		ClientResiliencePolicy resiliencePolicy = myResiliencePolicy;
+		if (resiliencePolicy != null) {
+			try {
+				return CompletableFuture.supplyAsync(() -> invokeClient(theContext, binding, clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective, theCustomAcceptHeader, theCustomHeaders), resiliencePolicy.getExecutor());
+			} catch (RejectedExecutionException e) {
+				CompletableFuture<T> retVal = new CompletableFuture<>();
+				retVal.completeExceptionally(new FhirClientConnectionException("Too many asynchronous requests in progress for the resilience policy, request to " + myUrlBase + " was not sent", e));
+				return retVal;
 			}
+		}
 
-			if (theSubsetElements != null && theSubsetElements.isEmpty() == false) {
-				params.put(Constants.PARAM_ELEMENTS, Collections.singletonList(StringUtils.join(theSubsetElements, ',')));
+		IHttpRequest httpRequest = null;
+		CompletableFuture<IHttpResponse> responseFuture;
+		try {
+			if (!myDontValidateConformance) {
+				myFactory.validateServerBaseIfConfiguredToDoSo(myUrlBase, myClient, this);
 			}
+			httpRequest = createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective, theCustomAcceptHeader, theCustomHeaders);
+			responseFuture = httpRequest.executeAsync();
+		} catch (Exception e) {
+			CompletableFuture<T> retVal = new CompletableFuture<>();
+			retVal.completeExceptionally(toClientException(httpRequest, e));
+			return retVal;
+		}
 
-			EncodingEnum encoding = getEncoding();
-			if (theEncoding != null) {
-				encoding = theEncoding;
+		final IHttpRequest request = httpRequest;
+		return responseFuture.handle((response, error) -> {
+			if (error != null) {
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				if (cause instanceof Exception) {
+					throw new CompletionException(toClientException(request, (Exception) cause));
+				}
+				throw new CompletionException(cause);
 			}
-
-			httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding, thePrettyPrint);
-
-			if (isNotBlank(theCustomAcceptHeader)) {
-				httpRequest.removeHeaders(Constants.HEADER_ACCEPT);
-				httpRequest.addHeader(Constants.HEADER_ACCEPT, theCustomAcceptHeader);
+			try {
+				return processResponse(theContext, binding, request, response, theLogRequestAndResponse);
+			} catch (Exception e) {
+				throw new CompletionException(toClientException(request, e));
+			} finally {
+				response.close();
 			}
+		});
+	}
 
-			if (theCacheControlDirective != null) {
-				StringBuilder b = new StringBuilder();
-				addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_CACHE, theCacheControlDirective.isNoCache());
-				addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_STORE, theCacheControlDirective.isNoStore());
-				if (theCacheControlDirective.getMaxResults() != null) {
-					addToCacheControlHeader(b, Constants.CACHE_CONTROL_MAX_RESULTS + "=" + theCacheControlDirective.getMaxResults().intValue(), true);
-				}
-				if (b.length() > 0) {
-					httpRequest.addHeader(Constants.HEADER_CACHE_CONTROL, b.toString());
-				}
-			}
+	private IHttpRequest createHttpRequest(BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint, boolean theLogRequestAndResponse, SummaryEnum theSummaryMode,
+														Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective, String theCustomAcceptHeader, Map<String, List<String>> theCustomHeaders) throws IOException {
+		Map<String, List<String>> params = createExtraParams(theCustomAcceptHeader);
 
-			if (theLogRequestAndResponse) {
-				ourLog.info("Client invoking: {}", httpRequest);
-				String body = httpRequest.getRequestBodyFromStream();
-				if (body != null) {
-					ourLog.info("Client request body: {}", body);
+		if (clientInvocation instanceof HttpGetClientInvocation) {
+			if (myRequestFormatParamStyle == RequestFormatParamStyleEnum.SHORT && isBlank(theCustomAcceptHeader)) {
+				if (theEncoding == EncodingEnum.XML) {
+					params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
+				} else if (theEncoding == EncodingEnum.JSON) {
+					params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
 				}
 			}
+		}
 
-			if (theCustomHeaders != null) {
-				AdditionalRequestHeadersInterceptor interceptor = new AdditionalRequestHeadersInterceptor(theCustomHeaders);
-				interceptor.interceptRequest(httpRequest);
-			}
+		if (theSummaryMode != null) {
+			params.put(Constants.PARAM_SUMMARY, Collections.singletonList(theSummaryMode.getCode()));
+		} else if (mySummary != null) {
+			params.put(Constants.PARAM_SUMMARY, Collections.singletonList(mySummary.getCode()));
+		}
 
-			HookParams requestParams = new HookParams();
-			requestParams.add(IHttpRequest.class, httpRequest);
-			requestParams.add(IRestfulClient.class, this);
-			getInterceptorService().callHooks(Pointcut.CLIENT_REQUEST, requestParams);
+		if (thePrettyPrint == Boolean.TRUE) {
+			params.put(Constants.PARAM_PRETTY, Collections.singletonList(Constants.PARAM_PRETTY_VALUE_TRUE));
+		}
 
-			response = httpRequest.execute();
+		if (theSubsetElements != null && theSubsetElements.isEmpty() == false) {
+			params.put(Constants.PARAM_ELEMENTS, Collections.singletonList(StringUtils.join(theSubsetElements, ',')));
+		}
 
-			HookParams responseParams = new HookParams();
-			responseParams.add(IHttpRequest.class, httpRequest);
-			responseParams.add(IHttpResponse.class, response);
-			responseParams.add(IRestfulClient.class, this);
-			getInterceptorService().callHooks(Pointcut.CLIENT_RESPONSE, responseParams);
+		EncodingEnum encoding = getEncoding();
+		if (theEncoding != null) {
+			encoding = theEncoding;
+		}
 
-			String mimeType;
-			if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatus()) {
-				mimeType = null;
-			} else {
-				mimeType = response.getMimeType();
+		IHttpRequest httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding, thePrettyPrint);
+
+		if (isNotBlank(theCustomAcceptHeader)) {
+			httpRequest.removeHeaders(Constants.HEADER_ACCEPT);
+			httpRequest.addHeader(Constants.HEADER_ACCEPT, theCustomAcceptHeader);
+		}
+
+		if (theCacheControlDirective != null) {
+			StringBuilder b = new StringBuilder();
+			addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_CACHE, theCacheControlDirective.isNoCache());
+			addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_STORE, theCacheControlDirective.isNoStore());
+			if (theCacheControlDirective.getMaxResults() != null) {
+				addToCacheControlHeader(b, Constants.CACHE_CONTROL_MAX_RESULTS + "=" + theCacheControlDirective.getMaxResults().intValue(), true);
 			}
+			if (b.length() > 0) {
+				httpRequest.addHeader(Constants.HEADER_CACHE_CONTROL, b.toString());
+			}
+		}
 
-			Map<String, List<String>> headers = response.getAllHeaders();
+		if (theLogRequestAndResponse) {
+			ourLog.info("Client invoking: {}", httpRequest);
+			String body = httpRequest.getRequestBodyFromStream();
+			if (body != null) {
+				ourLog.info("Client request body: {}", body);
+			}
+		}
 
-			if (response.getStatus() < 200 || response.getStatus() > 299) {
-				String body = null;
-				try (Reader reader = response.createReader()) {
-					body = IOUtils.toString(reader);
-				} catch (Exception e) {
-					ourLog.debug("Failed to read input stream", e);
-				}
+		if (theCustomHeaders != null) {
+			AdditionalRequestHeadersInterceptor interceptor = new AdditionalRequestHeadersInterceptor(theCustomHeaders);
+			interceptor.interceptRequest(httpRequest);
+		}
 
-				String message = "HTTP " + response.getStatus() + " " + response.getStatusInfo();
-				IBaseOperationOutcome oo = null;
-				if (Constants.CT_TEXT.equals(mimeType)) {
-					message = message + ": " + body;
-				} else {
-					EncodingEnum enc = EncodingEnum.forContentType(mimeType);
-					if (enc != null) {
-						IParser p = enc.newParser(theContext);
-						try {
-							// TODO: handle if something other than OO comes back
-							oo = (IBaseOperationOutcome) p.parseResource(body);
-							String details = OperationOutcomeUtil.getFirstIssueDetails(getFhirContext(), oo);
-							if (isNotBlank(details)) {
-								message = message + ": " + details;
-							}
-						} catch (Exception e) {
-							ourLog.debug("Failed to process OperationOutcome response");
-						}
-					}
-				}
+		HookParams requestParams = new HookParams();
+		requestParams.add(IHttpRequest.class, httpRequest);
+		requestParams.add(IRestfulClient.class, this);
+		getInterceptorService().callHooks(Pointcut.CLIENT_REQUEST, requestParams);
 
-				keepResponseAndLogIt(theLogRequestAndResponse, response, body);
+		return httpRequest;
+	}
 
-				BaseServerResponseException exception = BaseServerResponseException.newInstance(response.getStatus(), message);
-				exception.setOperationOutcome(oo);
+	private <T> T processResponse(FhirContext theContext, IClientResponseHandler<T> binding, IHttpRequest httpRequest, IHttpResponse theResponse, boolean theLogRequestAndResponse) throws IOException {
+		ClientResponseContext responseContext = new ClientResponseContext(httpRequest, theResponse);
+		HookParams responseParams = new HookParams();
+		responseParams.add(IHttpRequest.class, httpRequest);
+		responseParams.add(IHttpResponse.class, theResponse);
+		responseParams.add(IRestfulClient.class, this);
+		responseParams.add(ClientResponseContext.class, responseContext);
+		getInterceptorService().callHooks(Pointcut.CLIENT_RESPONSE, responseParams);
+
+		// A hook may have replaced the response (e.g. with a cached copy)
+		IHttpResponse response = responseContext.getHttpResponse();
+
+		String mimeType;
+		if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatus()) {
+			mimeType = null;
+		} else {
+			mimeType = response.getMimeType();
+		}
 
-				if (body != null) {
-					exception.setResponseBody(body);
-				}
+		Map<String, List<String>> headers = response.getAllHeaders();
 
-				throw exception;
+		if (response.getStatus() < 200 || response.getStatus() > 299) {
+			String body = null;
+			try (Reader reader = response.createReader()) {
+				body = IOUtils.toString(reader);
+			} catch (Exception e) {
+				ourLog.debug("Failed to read input stream", e);
 			}
-			if (binding instanceof IClientResponseHandlerHandlesBinary) {
-				IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
-				if (handlesBinary.isBinary()) {
-					try (InputStream reader = response.readEntity()) {
-						return handlesBinary.invokeClientForBinary(mimeType, reader, response.getStatus(), headers);
+
+			String message = "HTTP " + response.getStatus() + " " + response.getStatusInfo();
+			IBaseOperationOutcome oo = null;
+			if (Constants.CT_TEXT.equals(mimeType)) {
+				message = message + ": " + body;
+			} else {
+				EncodingEnum enc = EncodingEnum.forContentType(mimeType);
+				if (enc != null) {
+					IParser p = enc.newParser(theContext);
+					try {
+						// TODO: handle if something other than OO comes back
+						oo = (IBaseOperationOutcome) p.parseResource(body);
+						String details = OperationOutcomeUtil.getFirstIssueDetails(getFhirContext(), oo);
+						if (isNotBlank(details)) {
+							message = message + ": " + details;
+						}
+					} catch (Exception e) {
+						ourLog.debug("Failed to process OperationOutcome response");
 					}
 				}
 			}
 
-			try (InputStream inputStream = response.readEntity()) {
-				InputStream inputStreamToReturn = inputStream;
+			keepResponseAndLogIt(theLogRequestAndResponse, response, body);
 
-				if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
-					if (inputStream != null) {
-						String responseString = IOUtils.toString(inputStream, Charsets.UTF_8);
-						keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
-						inputStreamToReturn = new ByteArrayInputStream(responseString.getBytes(Charsets.UTF_8));
-					}
+			BaseServerResponseException exception = BaseServerResponseException.newInstance(response.getStatus(), message);
+			exception.setOperationOutcome(oo);
+
+			if (body != null) {
+				exception.setResponseBody(body);
+			}
+
+			throw exception;
+		}
+		if (binding instanceof IClientResponseHandlerHandlesBinary) {
+			IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
+			if (handlesBinary.isBinary()) {
+				try (InputStream reader = response.readEntity()) {
+					return handlesBinary.invokeClientForBinary(mimeType, reader, response.getStatus(), headers);
 				}
+			}
+		}
+
+		try (InputStream inputStream = response.readEntity()) {
+			InputStream inputStreamToReturn = inputStream;
 
-				if (inputStreamToReturn == null) {
-					inputStreamToReturn = new ByteArrayInputStream(new byte[]{});
+			if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
+				if (inputStream != null) {
+					String responseString = IOUtils.toString(inputStream, Charsets.UTF_8);
+					keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
+					inputStreamToReturn = new ReaderInputStream(new StringReader(responseString), Charsets.UTF_8);
 				}
+			}
 
-				return binding.invokeClient(mimeType, inputStreamToReturn, response.getStatus(), headers);
+			if (inputStreamToReturn == null) {
+				inputStreamToReturn = new ByteArrayInputStream(new byte[]{});
 			}
 
-		} catch (DataFormatException e) {
+			return binding.invokeClient(mimeType, inputStreamToReturn, response.getStatus(), headers);
+		}
+	}
+
+	private RuntimeException toClientException(IHttpRequest httpRequest, Exception e) {
+		if (e instanceof DataFormatException) {
 			String msg;
 			if (httpRequest != null) {
 				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
 			} else {
 				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", e.toString());
 			}
-			throw new FhirClientConnectionException(msg, e);
-		} catch (IllegalStateException e) {
-			throw new FhirClientConnectionException(e);
-		} catch (IOException e) {
+			return new FhirClientConnectionException(msg, e);
+		} else if (e instanceof IllegalStateException) {
+			return new FhirClientConnectionException(e);
+		} else if (e instanceof IOException) {
 			String msg;
-			msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
-			throw new FhirClientConnectionException(msg, e);
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			throw new FhirClientConnectionException(e);
-		} finally {
-			if (response != null) {
-				response.close();
+			if (httpRequest != null) {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
+			} else {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", e.toString());
 			}
+			return new FhirClientConnectionException(msg, e);
+		} else if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
 		}
+		return new FhirClientConnectionException(e);
 	}
 
 	private void addToCacheControlHeader(StringBuilder theBuilder, String theDirective, boolean theActive) {
@@ -0,0 +1,375 @@
+package ca.uhn.fhir.rest.client.impl;
+
+/*-
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.FhirTerser;
+import ca.uhn.fhir.util.OperationOutcomeUtil;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * An opt-in facade over {@link IGenericClient} which collects individual read, create, update
+ * and delete calls and sends them to the server together as a single FHIR <code>batch</code>
+ * Bundle. Each call returns a {@link CompletableFuture} which is completed with the result of
+ * its own entry in the batch response, or completed exceptionally with the appropriate
+ * {@link BaseServerResponseException} if that entry failed.
+ * <p>
+ * A batch is sent as soon as {@link #setMaximumBatchSize(int) the maximum batch size} is
+ * reached, or once {@link #setMaximumDelayMillis(long) the maximum delay} has elapsed since the
+ * first call in the batch was made, whichever comes first. Batches are sent from a single
+ * background thread, in the order they were filled.
+ * </p>
+ * <p>
+ * Note that the server processes the entries of a batch independently and in no particular
+ * order, so calls which depend on each other (e.g. a read of a resource that is being created
+ * by another call) should not be made through the same batch. This class is thread safe, and
+ * should be {@link #close() closed} when it is no longer needed.
+ * </p>
+ *
+ * @since 5.1.0
+ */
+public class BatchingClient implements Closeable {
+
+	public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 50;
+	public static final long DEFAULT_MAXIMUM_DELAY_MILLIS = 10;
+
+	private final IGenericClient myClient;
+	private final FhirContext myContext;
+	private final FhirTerser myTerser;
+	private final ScheduledThreadPoolExecutor myExecutor;
+	private int myMaximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+	private long myMaximumDelayMillis = DEFAULT_MAXIMUM_DELAY_MILLIS;
+	private List<PendingEntry<?>> myPendingEntries = new ArrayList<>();
+	private ScheduledFuture<?> myScheduledFlush;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theClient The client which will be used to send the batches
+	 */
+	public BatchingClient(IGenericClient theClient) {
+		Validate.notNull(theClient, "theClient must not be null");
+		myClient = theClient;
+		myContext = theClient.getFhirContext();
+		myTerser = myContext.newTerser();
+
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+			.namingPattern("hapi-fhir-client-batch-%d")
+			.daemon(true)
+			.build();
+		myExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
+	}
+
+	public int getMaximumBatchSize() {
+		return myMaximumBatchSize;
+	}
+
+	/**
+	 * Sets the maximum number of calls which will be sent in a single batch (default is {@link #DEFAULT_MAXIMUM_BATCH_SIZE})
+	 */
+	public void setMaximumBatchSize(int theMaximumBatchSize) {
+		Validate.isTrue(theMaximumBatchSize > 0, "theMaximumBatchSize must be positive");
+		myMaximumBatchSize = theMaximumBatchSize;
+	}
+
+	public long getMaximumDelayMillis() {
+		return myMaximumDelayMillis;
+	}
+
+	/**
+	 * Sets the maximum time in milliseconds that a call will wait for other calls to join its batch
+	 * before the batch is sent (default is {@link #DEFAULT_MAXIMUM_DELAY_MILLIS})
+	 */
+	public void setMaximumDelayMillis(long theMaximumDelayMillis) {
+		Validate.isTrue(theMaximumDelayMillis >= 0, "theMaximumDelayMillis must not be negative");
+		myMaximumDelayMillis = theMaximumDelayMillis;
+	}
+
+	/**
+	 * Reads the resource with the given type and ID
+	 */
+	public <T extends IBaseResource> CompletableFuture<T> read(Class<T> theType, String theId) {
+		Validate.notNull(theType, "theType must not be null");
+		Validate.notBlank(theId, "theId must not be blank");
+		String url = myContext.getResourceType(theType) + "/" + theId;
+		return submit(RequestTypeEnum.GET, url, null, t -> theType.cast(t.myResource));
+	}
+
+	/**
+	 * Reads the resource with the given ID, which must include a resource type
+	 */
+	public CompletableFuture<IBaseResource> read(IIdType theId) {
+		Validate.isTrue(theId != null && theId.hasResourceType() && theId.hasIdPart(), "theId must contain a resource type and ID");
+		return submit(RequestTypeEnum.GET, theId.toUnqualifiedVersionless().getValue(), null, t -> t.myResource);
+	}
+
+	/**
+	 * Creates the given resource
+	 */
+	public CompletableFuture<MethodOutcome> create(IBaseResource theResource) {
+		Validate.notNull(theResource, "theResource must not be null");
+		return submit(RequestTypeEnum.POST, myContext.getResourceType(theResource), theResource, this::toMethodOutcome);
+	}
+
+	/**
+	 * Updates the given resource, which must have an ID
+	 */
+	public CompletableFuture<MethodOutcome> update(IBaseResource theResource) {
+		Validate.notNull(theResource, "theResource must not be null");
+		IIdType id = theResource.getIdElement();
+		Validate.isTrue(id != null && id.hasIdPart(), "theResource must have an ID");
+		String url = myContext.getResourceType(theResource) + "/" + id.getIdPart();
+		return submit(RequestTypeEnum.PUT, url, theResource, this::toMethodOutcome);
+	}
+
+	/**
+	 * Deletes the resource with the given ID, which must include a resource type
+	 */
+	public CompletableFuture<MethodOutcome> delete(IIdType theId) {
+		Validate.isTrue(theId != null && theId.hasResourceType() && theId.hasIdPart(), "theId must contain a resource type and ID");
+		return submit(RequestTypeEnum.DELETE, theId.toUnqualifiedVersionless().getValue(), null, this::toMethodOutcome);
+	}
+
+	/**
+	 * Sends any calls which are waiting to be batched without waiting for the batch to fill
+	 */
+	public synchronized void flush() {
+		List<PendingEntry<?>> entries = takePendingEntries();
+		if (!entries.isEmpty()) {
+			dispatch(entries);
+		}
+	}
+
+	/**
+	 * Sends any calls which are waiting to be batched, and waits for all batches to complete
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			flush();
+			myExecutor.shutdown();
+		}
+		try {
+			myExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private <T> CompletableFuture<T> submit(RequestTypeEnum theMethod, String theUrl, IBaseResource theResource, Function<EntryResponse, T> theResultFunction) {
+		PendingEntry<T> entry = new PendingEntry<>(theMethod, theUrl, theResource, theResultFunction);
+		synchronized (this) {
+			Validate.isTrue(!myExecutor.isShutdown(), "This client has been closed");
+			myPendingEntries.add(entry);
+			if (myPendingEntries.size() >= myMaximumBatchSize) {
+				dispatch(takePendingEntries());
+			} else if (myScheduledFlush == null) {
+				myScheduledFlush = myExecutor.schedule(this::flush, myMaximumDelayMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		return entry.myFuture;
+	}
+
+	/**
+	 * Hands a batch to the executor. This is only called while holding the lock, so
+	 * that the executor can not be shut down by {@link #close()} in the meantime.
+	 */
+	private void dispatch(List<PendingEntry<?>> theEntries) {
+		try {
+			myExecutor.execute(() -> sendBatch(theEntries));
+		} catch (RejectedExecutionException e) {
+			for (PendingEntry<?> next : theEntries) {
+				next.myFuture.completeExceptionally(e);
+			}
+		}
+	}
+
+	private synchronized List<PendingEntry<?>> takePendingEntries() {
+		List<PendingEntry<?>> retVal = myPendingEntries;
+		myPendingEntries = new ArrayList<>();
+		if (myScheduledFlush != null) {
+			myScheduledFlush.cancel(false);
+			myScheduledFlush = null;
+		}
+		return retVal;
+	}
+
+	private void sendBatch(List<PendingEntry<?>> theEntries) {
+		List<IBase> responseEntries;
+		try {
+			IBaseBundle response = myClient
+				.transaction()
+				.withBundle(createBatchBundle(theEntries))
+				.execute();
+			responseEntries = myTerser.getValues(response, "Bundle.entry");
+		} catch (Exception e) {
+			for (PendingEntry<?> next : theEntries) {
+				next.myFuture.completeExceptionally(e);
+			}
+			return;
+		}
+
+		for (int i = 0; i < theEntries.size(); i++) {
+			PendingEntry<?> next = theEntries.get(i);
+			if (i >= responseEntries.size()) {
+				next.myFuture.completeExceptionally(new InternalErrorException("Batch response from server did not contain an entry for: " + next.myMethod + " " + next.myUrl));
+				continue;
+			}
+			try {
+				next.complete(toEntryResponse(responseEntries.get(i)));
+			} catch (Exception e) {
+				next.myFuture.completeExceptionally(e);
+			}
+		}
+	}
+
+	private IBaseBundle createBatchBundle(List<PendingEntry<?>> theEntries) {
+		RuntimeResourceDefinition bundleDef = myContext.getResourceDefinition("Bundle");
+		IBaseBundle bundle = (IBaseBundle) bundleDef.newInstance();
+		setPrimitive(bundle, "Bundle.type", "batch");
+
+		BaseRuntimeChildDefinition entryChildDef = bundleDef.getChildByName("entry");
+		BaseRuntimeElementCompositeDefinition<?> entryDef = (BaseRuntimeElementCompositeDefinition<?>) entryChildDef.getChildByName("entry");
+		BaseRuntimeChildDefinition resourceChildDef = entryDef.getChildByName("resource");
+		for (PendingEntry<?> next : theEntries) {
+			IBase entry = entryDef.newInstance(entryChildDef.getInstanceConstructorArguments());
+			entryChildDef.getMutator().addValue(bundle, entry);
+			if (next.myResource != null) {
+				resourceChildDef.getMutator().setValue(entry, next.myResource);
+			}
+			setPrimitive(entry, "request.method", next.myMethod.name());
+			setPrimitive(entry, "request.url", next.myUrl);
+		}
+		return bundle;
+	}
+
+	private void setPrimitive(IBase theTarget, String thePath, String theValue) {
+		myTerser.getValues(theTarget, thePath, IPrimitiveType.class, true).get(0).setValueAsString(theValue);
+	}
+
+	private String getPrimitive(IBase theTarget, String thePath) {
+		return myTerser
+			.getSingleValue(theTarget, thePath, IPrimitiveType.class)
+			.map(IPrimitiveType::getValueAsString)
+			.orElse(null);
+	}
+
+	private EntryResponse toEntryResponse(IBase theEntry) {
+		EntryResponse retVal = new EntryResponse();
+		retVal.myResource = myTerser.getSingleValueOrNull(theEntry, "resource", IBaseResource.class);
+		retVal.myLocation = getPrimitive(theEntry, "response.location");
+		retVal.myOperationOutcome = myTerser.getSingleValueOrNull(theEntry, "response.outcome", IBaseOperationOutcome.class);
+
+		String status = getPrimitive(theEntry, "response.status");
+		try {
+			retVal.myStatusCode = Integer.parseInt(status.trim().split(" ")[0]);
+		} catch (RuntimeException e) {
+			throw new InternalErrorException("Batch response from server contained an invalid status: " + status);
+		}
+
+		if (retVal.myStatusCode < 200 || retVal.myStatusCode > 299) {
+			String message = "HTTP " + status.trim();
+			if (retVal.myOperationOutcome != null) {
+				String details = OperationOutcomeUtil.getFirstIssueDetails(myContext, retVal.myOperationOutcome);
+				if (isNotBlank(details)) {
+					message = message + ": " + details;
+				}
+			}
+			BaseServerResponseException exception = BaseServerResponseException.newInstance(retVal.myStatusCode, message);
+			exception.setOperationOutcome(retVal.myOperationOutcome);
+			throw exception;
+		}
+
+		return retVal;
+	}
+
+	private MethodOutcome toMethodOutcome(EntryResponse theResponse) {
+		MethodOutcome retVal = new MethodOutcome();
+		if (isNotBlank(theResponse.myLocation)) {
+			retVal.setId(myContext.getVersion().newIdType().setValue(theResponse.myLocation));
+		} else if (theResponse.myResource != null) {
+			retVal.setId(theResponse.myResource.getIdElement());
+		}
+		retVal.setCreatedUsingStatusCode(theResponse.myStatusCode);
+		retVal.setResource(theResponse.myResource);
+		retVal.setOperationOutcome(theResponse.myOperationOutcome);
+		return retVal;
+	}
+
+	private static class EntryResponse {
+
+		private int myStatusCode;
+		private String myLocation;
+		private IBaseResource myResource;
+		private IBaseOperationOutcome myOperationOutcome;
+
+	}
+
+	private static class PendingEntry<T> {
+
+		private final RequestTypeEnum myMethod;
+		private final String myUrl;
+		private final IBaseResource myResource;
+		private final Function<EntryResponse, T> myResultFunction;
+		private final CompletableFuture<T> myFuture = new CompletableFuture<>();
+
+		PendingEntry(RequestTypeEnum theMethod, String theUrl, IBaseResource theResource, Function<EntryResponse, T> theResultFunction) {
+			myMethod = theMethod;
+			myUrl = theUrl;
+			myResource = theResource;
+			myResultFunction = theResultFunction;
+		}
+
+		void complete(EntryResponse theResponse) {
+			myFuture.complete(myResultFunction.apply(theResponse));
+		}
+
+	}
+
+}
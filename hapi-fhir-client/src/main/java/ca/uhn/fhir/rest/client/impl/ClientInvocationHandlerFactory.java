@@ -30,6 +30,7 @@ import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.client.api.ClientResiliencePolicy;
 import ca.uhn.fhir.rest.client.api.IClientInterceptor;
 import ca.uhn.fhir.rest.client.api.IHttpClient;
 import ca.uhn.fhir.rest.client.api.IRestfulClient;
@@ -60,6 +61,8 @@ public class ClientInvocationHandlerFactory {
 			myMethodToLambda.put(theClientType.getMethod("unregisterInterceptor", Object.class), new UnregisterInterceptorLambda());
 			myMethodToLambda.put(theClientType.getMethod("setSummary", SummaryEnum.class), new SetSummaryLambda());
 			myMethodToLambda.put(theClientType.getMethod("fetchResourceFromUrl", Class.class, String.class), new FetchResourceFromUrlLambda());
+			myMethodToLambda.put(theClientType.getMethod("getResiliencePolicy"), new GetResiliencePolicyLambda());
+			myMethodToLambda.put(theClientType.getMethod("setResiliencePolicy", ClientResiliencePolicy.class), new SetResiliencePolicyLambda());
 
 		} catch (NoSuchMethodException e) {
 			throw new ConfigurationException("Failed to find methods on client. This is a HAPI bug!", e);
@@ -100,6 +103,13 @@ public class ClientInvocationHandlerFactory {
 		}
 	}
 	
+	class GetResiliencePolicyLambda implements ILambda {
+		@Override
+		public Object handle(ClientInvocationHandler theTarget, Object[] theArgs) {
+			return theTarget.getResiliencePolicy();
+		}
+	}
+
 	class SetEncodingLambda implements ILambda {
 		@Override
 		public Object handle(ClientInvocationHandler theTarget, Object[] theArgs) {
@@ -118,6 +128,15 @@ public class ClientInvocationHandlerFactory {
 		}
 	}
 
+	class SetResiliencePolicyLambda implements ILambda {
+		@Override
+		public Object handle(ClientInvocationHandler theTarget, Object[] theArgs) {
+			ClientResiliencePolicy resiliencePolicy = (ClientResiliencePolicy) theArgs[0];
+			theTarget.setResiliencePolicy(resiliencePolicy);
+			return null;
+		}
+	}
+
 	class SetSummaryLambda implements ILambda {
 		@Override
 		public Object handle(ClientInvocationHandler theTarget, Object[] theArgs) {
@@ -0,0 +1,113 @@
+package ca.uhn.fhir.rest.client.impl;
+
+/*-
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * A point-in-time snapshot of the state of the HTTP connection pool used by a
+ * client factory. This can be used to diagnose pool starvation, e.g. a
+ * consistently non-zero {@link #getPending() pending} count indicates that
+ * the pool is too small for the number of concurrent requests being made.
+ *
+ * @since 5.1.0
+ */
+public class ConnectionPoolStats {
+
+	private final int myLeased;
+	private final int myPending;
+	private final int myAvailable;
+	private final int myMax;
+	private final long myLeaseCount;
+	private final long myTotalLeaseWaitMillis;
+	private final long myMaxLeaseWaitMillis;
+
+	/**
+	 * Constructor
+	 */
+	public ConnectionPoolStats(int theLeased, int thePending, int theAvailable, int theMax, long theLeaseCount, long theTotalLeaseWaitMillis, long theMaxLeaseWaitMillis) {
+		myLeased = theLeased;
+		myPending = thePending;
+		myAvailable = theAvailable;
+		myMax = theMax;
+		myLeaseCount = theLeaseCount;
+		myTotalLeaseWaitMillis = theTotalLeaseWaitMillis;
+		myMaxLeaseWaitMillis = theMaxLeaseWaitMillis;
+	}
+
+	/**
+	 * Returns the number of connections which are currently in use
+	 */
+	public int getLeased() {
+		return myLeased;
+	}
+
+	/**
+	 * Returns the number of requests which are waiting for a connection to become available
+	 */
+	public int getPending() {
+		return myPending;
+	}
+
+	/**
+	 * Returns the number of idle connections which are available for reuse
+	 */
+	public int getAvailable() {
+		return myAvailable;
+	}
+
+	/**
+	 * Returns the maximum number of connections (or concurrent requests) allowed
+	 */
+	public int getMax() {
+		return myMax;
+	}
+
+	/**
+	 * Returns the number of times a connection has been requested from the pool, or
+	 * <code>0</code> if the transport does not track this
+	 */
+	public long getLeaseCount() {
+		return myLeaseCount;
+	}
+
+	/**
+	 * Returns the average time in milliseconds that a request has waited to obtain
+	 * a connection from the pool
+	 */
+	public double getAverageLeaseWaitMillis() {
+		return myLeaseCount > 0 ? (double) myTotalLeaseWaitMillis / myLeaseCount : 0;
+	}
+
+	/**
+	 * Returns the longest time in milliseconds that a request has waited to obtain
+	 * a connection from the pool
+	 */
+	public long getMaxLeaseWaitMillis() {
+		return myMaxLeaseWaitMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPoolStats[leased=" + myLeased + ", pending=" + myPending + ", available=" + myAvailable + ", max=" + myMax
+			+ ", leaseCount=" + myLeaseCount + ", averageLeaseWaitMillis=" + getAverageLeaseWaitMillis() + ", maxLeaseWaitMillis=" + myMaxLeaseWaitMillis + "]";
+	}
+
+}
@@ -50,6 +50,7 @@ import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.SortOrderEnum;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.client.api.IBinaryContentHandler;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.client.api.IHttpClient;
 import ca.uhn.fhir.rest.client.api.IHttpRequest;
@@ -62,6 +63,7 @@ import ca.uhn.fhir.rest.client.method.HttpDeleteClientInvocation;
 import ca.uhn.fhir.rest.client.method.HttpGetClientInvocation;
 import ca.uhn.fhir.rest.client.method.HttpSimpleGetClientInvocation;
 import ca.uhn.fhir.rest.client.method.IClientResponseHandler;
+import ca.uhn.fhir.rest.client.method.IClientResponseHandlerHandlesBinary;
 import ca.uhn.fhir.rest.client.method.MethodUtil;
 import ca.uhn.fhir.rest.client.method.OperationMethodBinding;
 import ca.uhn.fhir.rest.client.method.ReadMethodBinding;
@@ -128,6 +130,7 @@ import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.NotModifiedException;
+import ca.uhn.fhir.util.BundleUtil;
 import ca.uhn.fhir.util.ICallable;
 import ca.uhn.fhir.util.ParametersUtil;
 import ca.uhn.fhir.util.UrlUtil;
@@ -147,6 +150,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -163,7 +167,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
-
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -208,24 +220,67 @@ public class GenericClient extends BaseClient implements IGenericClient {
 	private <T extends IBaseResource> T doReadOrVRead(final Class<T> theType, IIdType theId, boolean theVRead, ICallable<T> theNotModifiedHandler, String theIfVersionMatches, Boolean thePrettyPrint,
 																	  SummaryEnum theSummary, EncodingEnum theEncoding, Set<String> theSubsetElements, String theCustomAcceptHeaderValue,
 																	  Map<String, List<String>> theCustomHeaders) {
-		String resName = toResourceName(theType);
+		IIdType id = toReadId(theType, theId);
+		HttpGetClientInvocation invocation = createReadInvocation(theType, id, theVRead, theIfVersionMatches, theCustomAcceptHeaderValue);
+		ResourceResponseHandler<T> binding = createReadHandler(theType, id, theSummary);
+
+		if (theNotModifiedHandler == null) {
+			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue, theCustomHeaders);
+		}
+		try {
+			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue, theCustomHeaders);
+		} catch (NotModifiedException e) {
+			return theNotModifiedHandler.call();
+		}
+
+	}
+
+	private <T extends IBaseResource> CompletableFuture<T> doReadOrVReadAsync(final Class<T> theType, IIdType theId, boolean theVRead, ICallable<T> theNotModifiedHandler, String theIfVersionMatches, Boolean thePrettyPrint,
+																							SummaryEnum theSummary, EncodingEnum theEncoding, Set<String> theSubsetElements, String theCustomAcceptHeaderValue,
+																							Map<String, List<String>> theCustomHeaders) {
+		IIdType id = toReadId(theType, theId);
+		HttpGetClientInvocation invocation = createReadInvocation(theType, id, theVRead, theIfVersionMatches, theCustomAcceptHeaderValue);
+		ResourceResponseHandler<T> binding = createReadHandler(theType, id, theSummary);
+
+		CompletableFuture<T> retVal = invokeClientAsync(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue, theCustomHeaders);
+		if (theNotModifiedHandler == null) {
+			return retVal;
+		}
+		return retVal.handle((resource, error) -> {
+			if (error == null) {
+				return resource;
+			}
+			Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+			if (cause instanceof NotModifiedException) {
+				return theNotModifiedHandler.call();
+			}
+			throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+		});
+	}
+
+	private IIdType toReadId(Class<? extends IBaseResource> theType, IIdType theId) {
 		IIdType id = theId;
 		if (!id.hasBaseUrl()) {
-			id = new IdDt(resName, id.getIdPart(), id.getVersionIdPart());
+			id = new IdDt(toResourceName(theType), id.getIdPart(), id.getVersionIdPart());
 		}
+		return id;
+	}
+
+	private HttpGetClientInvocation createReadInvocation(Class<? extends IBaseResource> theType, IIdType theId, boolean theVRead, String theIfVersionMatches, String theCustomAcceptHeaderValue) {
+		String resName = toResourceName(theType);
 
 		HttpGetClientInvocation invocation;
-		if (id.hasBaseUrl()) {
+		if (theId.hasBaseUrl()) {
 			if (theVRead) {
-				invocation = ReadMethodBinding.createAbsoluteVReadInvocation(getFhirContext(), id);
+				invocation = ReadMethodBinding.createAbsoluteVReadInvocation(getFhirContext(), theId);
 			} else {
-				invocation = ReadMethodBinding.createAbsoluteReadInvocation(getFhirContext(), id);
+				invocation = ReadMethodBinding.createAbsoluteReadInvocation(getFhirContext(), theId);
 			}
 		} else {
 			if (theVRead) {
-				invocation = ReadMethodBinding.createVReadInvocation(getFhirContext(), id, resName);
+				invocation = ReadMethodBinding.createVReadInvocation(getFhirContext(), theId, resName);
 			} else {
-				invocation = ReadMethodBinding.createReadInvocation(getFhirContext(), id, resName);
+				invocation = ReadMethodBinding.createReadInvocation(getFhirContext(), theId, resName);
 			}
 		}
 		if (isKeepResponses()) {
@@ -235,19 +290,12 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		if (theIfVersionMatches != null) {
 			invocation.addHeader(Constants.HEADER_IF_NONE_MATCH, '"' + theIfVersionMatches + '"');
 		}
+		return invocation;
+	}
 
+	private <T extends IBaseResource> ResourceResponseHandler<T> createReadHandler(Class<T> theType, IIdType theId, SummaryEnum theSummary) {
 		boolean allowHtmlResponse = SummaryEnum.TEXT.equals(theSummary);
-		ResourceResponseHandler<T> binding = new ResourceResponseHandler<>(theType, (Class<? extends IBaseResource>) null, id, allowHtmlResponse);
-
-		if (theNotModifiedHandler == null) {
-			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue, theCustomHeaders);
-		}
-		try {
-			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue, theCustomHeaders);
-		} catch (NotModifiedException e) {
-			return theNotModifiedHandler.call();
-		}
-
+		return new ResourceResponseHandler<>(theType, (Class<? extends IBaseResource>) null, theId, allowHtmlResponse);
 	}
 
 	@Override
@@ -541,6 +589,24 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return resp;
 		}
 
+		protected <Z> Z invokeForStream(Map<String, List<String>> theParams, IBinaryContentHandler<Z> theHandler, BaseHttpClientInvocation theInvocation) {
+			if (isKeepResponses()) {
+				myLastRequest = theInvocation.asHttpRequest(getServerBase(), theParams, getEncoding(), myPrettyPrint);
+			}
+
+			String accept = defaultIfBlank(myCustomAcceptHeaderValue, "*/*");
+			BinaryContentResponseHandler<Z> handler = new BinaryContentResponseHandler<>(theHandler);
+			return invokeClient(myContext, handler, theInvocation, myParamEncoding, myPrettyPrint, myQueryLogRequestAndResponse || myLogRequestAndResponse, mySummaryMode, mySubsetElements, myCacheControlDirective, accept, myCustomHeaderValues);
+		}
+
+		protected <Z> CompletableFuture<Z> invokeAsync(Map<String, List<String>> theParams, IClientResponseHandler<Z> theHandler, BaseHttpClientInvocation theInvocation) {
+			if (isKeepResponses()) {
+				myLastRequest = theInvocation.asHttpRequest(getServerBase(), theParams, getEncoding(), myPrettyPrint);
+			}
+
+			return invokeClientAsync(myContext, theHandler, theInvocation, myParamEncoding, myPrettyPrint, myQueryLogRequestAndResponse || myLogRequestAndResponse, mySummaryMode, mySubsetElements, myCacheControlDirective, myCustomAcceptHeaderValue, myCustomHeaderValues);
+		}
+
 		protected IBaseResource parseResourceBody(String theResourceBody) {
 			EncodingEnum encoding = EncodingEnum.detectEncodingNoDefault(theResourceBody);
 			if (encoding == null) {
@@ -1255,10 +1321,33 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return this;
 		}
 
-		@SuppressWarnings("unchecked")
 		@Override
 		public Object execute() {
-			if (myOperationName != null && myOperationName.equals(Constants.EXTOP_PROCESS_MESSAGE) && myMsgBundle != null) {
+			BaseHttpClientInvocation invocation = createOperationInvocation();
+			Object retVal = invoke(null, createOperationResponseHandler(), invocation);
+			return toOperationResult(retVal);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public CompletableFuture<Object> executeAsync() {
+			BaseHttpClientInvocation invocation = createOperationInvocation();
+			CompletableFuture<Object> retVal = invokeAsync(null, createOperationResponseHandler(), invocation);
+			return retVal.thenApply(this::toOperationResult);
+		}
+
+		@Override
+		public Object executeAsStream(IBinaryContentHandler theHandler) {
+			Validate.notNull(theHandler, "theHandler must not be null");
+			return invokeForStream(null, theHandler, createOperationInvocation());
+		}
+
+		private boolean isProcessMessage() {
+			return myOperationName != null && myOperationName.equals(Constants.EXTOP_PROCESS_MESSAGE) && myMsgBundle != null;
+		}
+
+		private BaseHttpClientInvocation createOperationInvocation() {
+			if (isProcessMessage()) {
 				Map<String, List<String>> urlParams = new LinkedHashMap<String, List<String>>();
 				// Set Url parameter Async and Response-Url
 				if (myIsAsync != null) {
@@ -1269,13 +1358,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 					urlParams.put(Constants.PARAM_RESPONSE_URL, Arrays.asList(String.valueOf(myResponseUrl)));
 				}
 				// If is $process-message operation
-				BaseHttpClientInvocation invocation = OperationMethodBinding.createProcessMsgInvocation(myContext, myOperationName, myMsgBundle, urlParams);
-
-				ResourceResponseHandler handler = new ResourceResponseHandler();
-				handler.setPreferResponseTypes(getPreferResponseTypes(myType));
-
-				Object retVal = invoke(null, handler, invocation);
-				return retVal;
+				return OperationMethodBinding.createProcessMsgInvocation(myContext, myOperationName, myMsgBundle, urlParams);
 			}
 
 			String resourceName;
@@ -1296,29 +1379,41 @@ public class GenericClient extends BaseClient implements IGenericClient {
 				version = null;
 			}
 
-			BaseHttpClientInvocation invocation = OperationMethodBinding.createOperationInvocation(myContext, resourceName, id, version, myOperationName, myParameters, myUseHttpGet);
+			return OperationMethodBinding.createOperationInvocation(myContext, resourceName, id, version, myOperationName, myParameters, myUseHttpGet);
+		}
+
+		@SuppressWarnings("unchecked")
+		private IClientResponseHandler createOperationResponseHandler() {
+			if (isProcessMessage()) {
+				ResourceResponseHandler handler = new ResourceResponseHandler();
+				handler.setPreferResponseTypes(getPreferResponseTypes(myType));
+				return handler;
+			}
 
 			if (myReturnResourceType != null) {
-				ResourceResponseHandler handler;
-				handler = new ResourceResponseHandler(myReturnResourceType);
-				Object retVal = invoke(null, handler, invocation);
-				return retVal;
+				return new ResourceResponseHandler(myReturnResourceType);
 			}
+
 			IClientResponseHandler handler = new ResourceOrBinaryResponseHandler()
 				.setPreferResponseTypes(getPreferResponseTypes(myType));
 
 			if (myReturnMethodOutcome) {
 				handler = new MethodOutcomeResponseHandler(handler);
 			}
+			return handler;
+		}
 
-			Object retVal = invoke(null, handler, invocation);
-
-			if (myReturnMethodOutcome) {
-				return retVal;
+		/**
+		 * Wraps a plain resource returned by the server in a Parameters resource, unless
+		 * the caller asked for a specific return type
+		 */
+		private Object toOperationResult(Object theResponse) {
+			if (isProcessMessage() || myReturnResourceType != null || myReturnMethodOutcome) {
+				return theResponse;
 			}
 
-			if (myContext.getResourceDefinition((IBaseResource) retVal).getName().equals("Parameters")) {
-				return retVal;
+			if (myContext.getResourceDefinition((IBaseResource) theResponse).getName().equals("Parameters")) {
+				return theResponse;
 			}
 			RuntimeResourceDefinition def = myContext.getResourceDefinition("Parameters");
 			IBaseResource parameters = def.newInstance();
@@ -1329,7 +1424,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			paramChild.getMutator().addValue(parameters, parameter);
 
 			BaseRuntimeChildDefinition resourceElem = paramChildElem.getChildByName("resource");
-			resourceElem.getMutator().addValue(parameter, (IBase) retVal);
+			resourceElem.getMutator().addValue(parameter, (IBase) theResponse);
 
 			return parameters;
 		}
@@ -1679,6 +1774,19 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return doReadOrVRead(myType.getImplementingClass(), myId, false, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements(), getCustomAcceptHeaderValue(), myCustomHeaderValues);
 		}
 
+		@Override
+		public Object executeAsStream(IBinaryContentHandler theHandler) {
+			Validate.notNull(theHandler, "theHandler must not be null");
+			IIdType id = toReadId(myType.getImplementingClass(), myId);
+			HttpGetClientInvocation invocation = createReadInvocation(myType.getImplementingClass(), id, myId.hasVersionIdPart(), myIfVersionMatches, getCustomAcceptHeaderValue());
+			return invokeForStream(null, theHandler, invocation);
+		}
+
+		@Override
+		public CompletableFuture executeAsync() {
+			return doReadOrVReadAsync(myType.getImplementingClass(), myId, myId.hasVersionIdPart(), myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements(), getCustomAcceptHeaderValue(), myCustomHeaderValues);
+		}
+
 		@Override
 		public IReadIfNoneMatch ifVersionMatches(String theVersion) {
 			myIfVersionMatches = theVersion;
@@ -1876,15 +1984,62 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 		@Override
 		public OUTPUT execute() {
+			Map<String, List<String>> params = getParamMap();
+			BaseHttpClientInvocation invocation = createSearchInvocation(params);
+			return invoke(params, createSearchResponseHandler(), invocation);
+		}
 
+		@Override
+		public CompletableFuture<OUTPUT> executeAsync() {
 			Map<String, List<String>> params = getParamMap();
+			BaseHttpClientInvocation invocation = createSearchInvocation(params);
+			return invokeAsync(params, createSearchResponseHandler(), invocation);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Iterator<OUTPUT> executeAndIteratePages() {
+			IBaseBundle firstPage = (IBaseBundle) execute();
+			Class<? extends IBaseBundle> bundleType = firstPage.getClass();
+			Function<String, IBaseBundle> pageLoader = theUrl -> loadPageForIterator(theUrl, bundleType);
+			PrefetchingPageIterator<IBaseBundle> retVal = new PrefetchingPageIterator<>(myContext, firstPage, pageLoader);
+			return (Iterator<OUTPUT>) retVal;
+		}
 
+		@Override
+		public Stream<IBaseResource> executeAndStreamResources() {
+			Iterator<OUTPUT> pages = executeAndIteratePages();
+			Spliterator<OUTPUT> spliterator = Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL);
+			return StreamSupport
+				.stream(spliterator, false)
+				.flatMap(t -> BundleUtil.toListOfResources(myContext, (IBaseBundle) t).stream());
+		}
+
+		/**
+		 * Loads a subsequent page using the same encoding, headers, etc. as this search
+		 */
+		private IBaseBundle loadPageForIterator(String theUrl, Class<? extends IBaseBundle> theBundleType) {
+			GetPageInternal page = new GetPageInternal(theUrl, theBundleType);
+			page.myParamEncoding = myParamEncoding;
+			page.myPrettyPrint = myPrettyPrint;
+			page.myCacheControlDirective = myCacheControlDirective;
+			page.myCustomHeaderValues = myCustomHeaderValues;
+			page.accept(getCustomAcceptHeaderValue());
+			page.preferResponseTypes(getPreferResponseTypes());
+			return (IBaseBundle) page.execute();
+		}
+
+		private IClientResponseHandler<OUTPUT> createSearchResponseHandler() {
+			return new ResourceResponseHandler(myReturnBundleType, getPreferResponseTypes(myResourceType));
+		}
+
+		private BaseHttpClientInvocation createSearchInvocation(Map<String, List<String>> theParams) {
 			for (TokenParam next : myTags) {
-				addParam(params, Constants.PARAM_TAG, next.getValueAsQueryToken(myContext));
+				addParam(theParams, Constants.PARAM_TAG, next.getValueAsQueryToken(myContext));
 			}
 
 			for (TokenParam next : mySecurity) {
-				addParam(params, Constants.PARAM_SECURITY, next.getValueAsQueryToken(myContext));
+				addParam(theParams, Constants.PARAM_SECURITY, next.getValueAsQueryToken(myContext));
 			}
 
 			for (Collection<String> profileUris : myProfiles) {
@@ -1895,30 +2050,30 @@ public class GenericClient extends BaseClient implements IGenericClient {
 						builder.append(',');
 					}
 				}
-				addParam(params, Constants.PARAM_PROFILE, builder.toString());
+				addParam(theParams, Constants.PARAM_PROFILE, builder.toString());
 			}
 
 			for (Include next : myInclude) {
 				if (next.isRecurse()) {
 					if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.R4)) {
-						addParam(params, Constants.PARAM_INCLUDE_ITERATE, next.getValue());
+						addParam(theParams, Constants.PARAM_INCLUDE_ITERATE, next.getValue());
 					} else {
-						addParam(params, Constants.PARAM_INCLUDE_RECURSE, next.getValue());
+						addParam(theParams, Constants.PARAM_INCLUDE_RECURSE, next.getValue());
 					}
 				} else {
-					addParam(params, Constants.PARAM_INCLUDE, next.getValue());
+					addParam(theParams, Constants.PARAM_INCLUDE, next.getValue());
 				}
 			}
 
 			for (Include next : myRevInclude) {
 				if (next.isRecurse()) {
 					if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.R4)) {
-						addParam(params, Constants.PARAM_REVINCLUDE_ITERATE, next.getValue());
+						addParam(theParams, Constants.PARAM_REVINCLUDE_ITERATE, next.getValue());
 					} else {
-						addParam(params, Constants.PARAM_REVINCLUDE_RECURSE, next.getValue());
+						addParam(theParams, Constants.PARAM_REVINCLUDE_RECURSE, next.getValue());
 					}
 				} else {
-					addParam(params, Constants.PARAM_REVINCLUDE, next.getValue());
+					addParam(theParams, Constants.PARAM_REVINCLUDE, next.getValue());
 				}
 			}
 
@@ -1937,42 +2092,38 @@ public class GenericClient extends BaseClient implements IGenericClient {
 					lastSs = nextSortSpec;
 				}
 				if (rootSs != null) {
-					addParam(params, Constants.PARAM_SORT, SortParameter.createSortStringDstu3(rootSs));
+					addParam(theParams, Constants.PARAM_SORT, SortParameter.createSortStringDstu3(rootSs));
 				}
 			} else {
 				for (SortInternal next : mySort) {
-					addParam(params, next.getParamName(), next.getParamValue());
+					addParam(theParams, next.getParamName(), next.getParamValue());
 				}
 			}
 
 			if (myParamLimit != null) {
-				addParam(params, Constants.PARAM_COUNT, Integer.toString(myParamLimit));
+				addParam(theParams, Constants.PARAM_COUNT, Integer.toString(myParamLimit));
 			}
 
 			if (myLastUpdated != null) {
 				for (DateParam next : myLastUpdated.getValuesAsQueryTokens()) {
-					addParam(params, Constants.PARAM_LASTUPDATED, next.getValueAsQueryToken(myContext));
+					addParam(theParams, Constants.PARAM_LASTUPDATED, next.getValueAsQueryToken(myContext));
 				}
 			}
 
 			if (myTotalMode != null) {
-				addParam(params, Constants.PARAM_SEARCH_TOTAL_MODE, myTotalMode.getCode());
+				addParam(theParams, Constants.PARAM_SEARCH_TOTAL_MODE, myTotalMode.getCode());
 			}
 
-			IClientResponseHandler<? extends IBase> binding;
-			binding = new ResourceResponseHandler(myReturnBundleType, getPreferResponseTypes(myResourceType));
-
 			IdDt resourceId = myResourceId != null ? new IdDt(myResourceId) : null;
 
 			BaseHttpClientInvocation invocation;
 			if (mySearchUrl != null) {
-				invocation = SearchMethodBinding.createSearchInvocation(myContext, mySearchUrl, UrlSourceEnum.EXPLICIT, params);
+				invocation = SearchMethodBinding.createSearchInvocation(myContext, mySearchUrl, UrlSourceEnum.EXPLICIT, theParams);
 			} else {
-				invocation = SearchMethodBinding.createSearchInvocation(myContext, myResourceName, params, resourceId, myCompartmentName, mySearchStyle);
+				invocation = SearchMethodBinding.createSearchInvocation(myContext, myResourceName, theParams, resourceId, myCompartmentName, mySearchStyle);
 			}
 
-			return (OUTPUT) invoke(params, binding, invocation);
-
+			return invocation;
 		}
 
 		@Override
@@ -2102,6 +2253,35 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 	}
 
+	private static final class BinaryContentResponseHandler<T> implements IClientResponseHandlerHandlesBinary<T> {
+
+		private final IBinaryContentHandler<T> myHandler;
+
+		BinaryContentResponseHandler(IBinaryContentHandler<T> theHandler) {
+			myHandler = theHandler;
+		}
+
+		@Override
+		public boolean isBinary() {
+			return true;
+		}
+
+		@Override
+		public T invokeClient(String theResponseMimeType, InputStream theResponseInputStream, int theResponseStatusCode, Map<String, List<String>> theHeaders) throws IOException {
+			return invokeClientForBinary(theResponseMimeType, theResponseInputStream, theResponseStatusCode, theHeaders);
+		}
+
+		@Override
+		public T invokeClientForBinary(String theResponseMimeType, InputStream theResponseInputStream, int theResponseStatusCode, Map<String, List<String>> theHeaders) throws IOException {
+			InputStream content = theResponseInputStream;
+			if (content == null) {
+				content = new ByteArrayInputStream(new byte[0]);
+			}
+			return myHandler.handle(theResponseMimeType, content);
+		}
+
+	}
+
 	private final class StringResponseHandler implements IClientResponseHandler<String> {
 
 		@Override
@@ -2134,21 +2314,26 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			}
 		}
 
-		@SuppressWarnings({"unchecked", "rawtypes"})
 		@Override
 		public T execute() {
 			Map<String, List<String>> params = new HashMap<String, List<String>>();
+			BaseHttpClientInvocation invocation = createTransactionInvocation();
+			return invoke(params, createTransactionResponseHandler(), invocation);
+		}
+
+		@Override
+		public CompletableFuture<T> executeAsync() {
+			Map<String, List<String>> params = new HashMap<String, List<String>>();
+			BaseHttpClientInvocation invocation = createTransactionInvocation();
+			return invokeAsync(params, createTransactionResponseHandler(), invocation);
+		}
+
+		private BaseHttpClientInvocation createTransactionInvocation() {
 			if (myResources != null) {
-				ResourceListResponseHandler binding = new ResourceListResponseHandler();
-				BaseHttpClientInvocation invocation = TransactionMethodBinding.createTransactionInvocation(myResources, myContext);
-				return (T) invoke(params, binding, invocation);
+				return TransactionMethodBinding.createTransactionInvocation(myResources, myContext);
 			} else if (myBaseBundle != null) {
-				ResourceResponseHandler binding = new ResourceResponseHandler(myBaseBundle.getClass(), getPreferResponseTypes());
-				BaseHttpClientInvocation invocation = TransactionMethodBinding.createTransactionInvocation(myBaseBundle, myContext);
-				return (T) invoke(params, binding, invocation);
-				// } else if (myRawBundle != null) {
+				return TransactionMethodBinding.createTransactionInvocation(myBaseBundle, myContext);
 			} else {
-				StringResponseHandler binding = new StringResponseHandler();
 				/*
 				 * If the user has explicitly requested a given encoding, we may need to re-encode the raw string
 				 */
@@ -2158,8 +2343,18 @@ public class GenericClient extends BaseClient implements IGenericClient {
 						myRawBundle = getParamEncoding().newParser(getFhirContext()).encodeResourceToString(parsed);
 					}
 				}
-				BaseHttpClientInvocation invocation = TransactionMethodBinding.createTransactionInvocation(myRawBundle, myContext);
-				return (T) invoke(params, binding, invocation);
+				return TransactionMethodBinding.createTransactionInvocation(myRawBundle, myContext);
+			}
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private IClientResponseHandler<T> createTransactionResponseHandler() {
+			if (myResources != null) {
+				return (IClientResponseHandler) new ResourceListResponseHandler();
+			} else if (myBaseBundle != null) {
+				return new ResourceResponseHandler(myBaseBundle.getClass(), getPreferResponseTypes());
+			} else {
+				return (IClientResponseHandler) new StringResponseHandler();
 			}
 		}
 
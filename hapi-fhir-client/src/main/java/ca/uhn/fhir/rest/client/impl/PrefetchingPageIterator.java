@@ -0,0 +1,110 @@
+package ca.uhn.fhir.rest.client.impl;
+
+/*
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.BundleUtil;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Iterates over the pages of a search result by following the <code>next</code> link
+ * of each page. As soon as a page is handed to the caller, the page after it is
+ * requested on a background thread so that it is usually available by the time the
+ * caller has finished with the current page.
+ * <p>
+ * The iterator holds no more than two pages (the one being returned and the one being
+ * fetched), so pages the caller is finished with can be garbage collected. The
+ * background thread is discarded shortly after the last page has been fetched, so an
+ * iterator which is abandoned part way through does not need to be closed.
+ * </p>
+ */
+class PrefetchingPageIterator<T extends IBaseBundle> implements Iterator<T> {
+
+	private static final int THREAD_KEEPALIVE_SECONDS = 5;
+
+	private final FhirContext myContext;
+	private final Function<String, T> myPageLoader;
+	private final ThreadPoolExecutor myExecutor;
+	private T myNextPage;
+	private CompletableFuture<T> myPrefetchedPage;
+
+	/**
+	 * @param theFirstPage  The first page of results, which has already been fetched
+	 * @param thePageLoader Loads a page given its URL
+	 */
+	PrefetchingPageIterator(FhirContext theContext, T theFirstPage, Function<String, T> thePageLoader) {
+		myContext = theContext;
+		myNextPage = theFirstPage;
+		myPageLoader = thePageLoader;
+
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+			.namingPattern("hapi-fhir-client-prefetch-%d")
+			.daemon(true)
+			.build();
+		myExecutor = new ThreadPoolExecutor(0, 1, THREAD_KEEPALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return myNextPage != null || myPrefetchedPage != null;
+	}
+
+	@Override
+	public T next() {
+		T retVal;
+		if (myNextPage != null) {
+			retVal = myNextPage;
+			myNextPage = null;
+		} else if (myPrefetchedPage != null) {
+			try {
+				retVal = myPrefetchedPage.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			} finally {
+				myPrefetchedPage = null;
+			}
+		} else {
+			throw new NoSuchElementException();
+		}
+
+		String nextUrl = BundleUtil.getLinkUrlOfType(myContext, retVal, Constants.LINK_NEXT);
+		if (nextUrl != null) {
+			myPrefetchedPage = CompletableFuture.supplyAsync(() -> myPageLoader.apply(nextUrl), myExecutor);
+		}
+
+		return retVal;
+	}
+
+}
@@ -53,6 +53,7 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 	private String myProxyPassword;
 	private int myPoolMaxTotal = DEFAULT_POOL_MAX;
 	private int myPoolMaxPerRoute = DEFAULT_POOL_MAX_PER_ROUTE;
+	private int myIdleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
 
 	/**
 	 * Constructor
@@ -120,6 +121,11 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 		return myPoolMaxPerRoute;
 	}
 
+	@Override
+	public synchronized int getIdleConnectionTimeout() {
+		return myIdleConnectionTimeout;
+	}
+
 	@SuppressWarnings("unchecked")
 	private <T extends IRestfulClient> T instantiateProxy(Class<T> theClientType, InvocationHandler theInvocationHandler) {
 		return (T) Proxy.newProxyInstance(theClientType.getClassLoader(), new Class[] { theClientType }, theInvocationHandler);
@@ -240,6 +246,13 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 		resetHttpClient();
 	}
 
+	@Override
+	public synchronized void setIdleConnectionTimeout(int theIdleConnectionTimeout) {
+		Validate.isTrue(theIdleConnectionTimeout > 0, "theIdleConnectionTimeout must be positive");
+		myIdleConnectionTimeout = theIdleConnectionTimeout;
+		resetHttpClient();
+	}
+
 	@Deprecated // override deprecated method
 	@Override
 	public synchronized ServerValidationModeEnum getServerValidationModeEnum() {
@@ -0,0 +1,356 @@
+package ca.uhn.fhir.rest.client.interceptor;
+
+/*-
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.api.ClientResponseContext;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+import ca.uhn.fhir.rest.client.impl.BaseHttpResponse;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Client interceptor which keeps a copy of responses to <code>GET</code> requests which carry
+ * an <code>ETag</code>, and revalidates them using <code>If-None-Match</code> the next time the
+ * same URL is requested. When the server responds with <code>304 Not Modified</code> the cached
+ * copy is handed to the client, so the resource does not need to be transferred again. This is
+ * particularly useful for clients which repeatedly read conformance and terminology resources
+ * (StructureDefinitions, ValueSets, CodeSystems, etc.) that rarely change.
+ * <p>
+ * Responses are cached by URL, <code>Accept</code> header and a hash of the <code>Authorization</code>
+ * header, so responses are only reused for requests made with the same credentials. Responses marked with
+ * <code>Cache-Control: no-store</code>, and requests made with a {@link ca.uhn.fhir.rest.api.CacheControlDirective}
+ * specifying no-store, are never cached. Requests which already carry an <code>If-None-Match</code>
+ * header (e.g. a read using <code>ifVersionMatches()</code>) are left alone. The cache is bounded by
+ * a maximum number of entries and a maximum total size, and the least recently used entries are
+ * evicted first.
+ * </p>
+ * <p>
+ * Credentials which are not sent in the <code>Authorization</code> header (e.g. cookies or client
+ * certificates) are not part of the key, so a single instance of this interceptor should not be shared
+ * between clients which authenticate as different users in that way. The <code>Authorization</code>
+ * header must be added by an interceptor which runs before this one (such as
+ * {@link BearerTokenAuthInterceptor} or {@link BasicAuthInterceptor}).
+ * </p>
+ *
+ * @since 5.1.0
+ */
+@Interceptor
+public class ClientResponseCachingInterceptor {
+
+	public static final int DEFAULT_MAXIMUM_ENTRIES = 1000;
+	public static final int DEFAULT_MAXIMUM_ENTRY_SIZE = 1024 * 1024;
+	public static final long DEFAULT_MAXIMUM_TOTAL_SIZE = 50L * 1024 * 1024;
+
+	private final LinkedHashMap<String, CachedResponse> myCache = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<IHttpRequest, CachedResponse> myRevalidatingRequests = Collections.synchronizedMap(new WeakHashMap<>());
+	private int myMaximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+	private int myMaximumEntrySize = DEFAULT_MAXIMUM_ENTRY_SIZE;
+	private long myMaximumTotalSize = DEFAULT_MAXIMUM_TOTAL_SIZE;
+	private long myTotalSize;
+
+	/**
+	 * Removes all entries from the cache
+	 */
+	public void clear() {
+		synchronized (myCache) {
+			myCache.clear();
+			myTotalSize = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of responses currently held in the cache
+	 */
+	public int getCachedResponseCount() {
+		synchronized (myCache) {
+			return myCache.size();
+		}
+	}
+
+	public int getMaximumEntries() {
+		return myMaximumEntries;
+	}
+
+	/**
+	 * Sets the maximum number of responses to hold in the cache (default is {@link #DEFAULT_MAXIMUM_ENTRIES})
+	 */
+	public void setMaximumEntries(int theMaximumEntries) {
+		Validate.isTrue(theMaximumEntries > 0, "theMaximumEntries must be positive");
+		myMaximumEntries = theMaximumEntries;
+	}
+
+	public int getMaximumEntrySize() {
+		return myMaximumEntrySize;
+	}
+
+	/**
+	 * Sets the size in bytes of the largest response body which will be cached (default is {@link #DEFAULT_MAXIMUM_ENTRY_SIZE})
+	 */
+	public void setMaximumEntrySize(int theMaximumEntrySize) {
+		Validate.isTrue(theMaximumEntrySize > 0, "theMaximumEntrySize must be positive");
+		myMaximumEntrySize = theMaximumEntrySize;
+	}
+
+	public long getMaximumTotalSize() {
+		return myMaximumTotalSize;
+	}
+
+	/**
+	 * Sets the total size in bytes of the response bodies held in the cache (default is {@link #DEFAULT_MAXIMUM_TOTAL_SIZE})
+	 */
+	public void setMaximumTotalSize(long theMaximumTotalSize) {
+		Validate.isTrue(theMaximumTotalSize > 0, "theMaximumTotalSize must be positive");
+		myMaximumTotalSize = theMaximumTotalSize;
+	}
+
+	@Hook(value = Pointcut.CLIENT_REQUEST, order = InterceptorOrders.RESPONSE_CACHING_INTERCEPTOR_REQUEST)
+	public void interceptRequest(IHttpRequest theRequest) {
+		if (!isCacheable(theRequest) || !getRequestHeaders(theRequest, Constants.HEADER_IF_NONE_MATCH).isEmpty()) {
+			return;
+		}
+
+		CachedResponse cached;
+		synchronized (myCache) {
+			cached = myCache.get(toKey(theRequest));
+		}
+		if (cached != null) {
+			theRequest.addHeader(Constants.HEADER_IF_NONE_MATCH, cached.myETag);
+			myRevalidatingRequests.put(theRequest, cached);
+		}
+	}
+
+	@Hook(value = Pointcut.CLIENT_RESPONSE, order = InterceptorOrders.RESPONSE_CACHING_INTERCEPTOR_RESPONSE)
+	public void interceptResponse(IHttpRequest theRequest, ClientResponseContext theResponseContext) throws IOException {
+		CachedResponse revalidated = myRevalidatingRequests.remove(theRequest);
+		if (!isCacheable(theRequest)) {
+			return;
+		}
+
+		IHttpResponse response = theResponseContext.getHttpResponse();
+		String key = toKey(theRequest);
+		switch (response.getStatus()) {
+			case Constants.STATUS_HTTP_304_NOT_MODIFIED:
+				if (revalidated != null) {
+					theResponseContext.setHttpResponse(new CachedHttpResponse(revalidated, response.getRequestStopWatch()));
+				}
+				return;
+			case Constants.STATUS_HTTP_200_OK:
+				break;
+			default:
+				remove(key);
+				return;
+		}
+
+		String eTag = response.getHeaders(Constants.HEADER_ETAG).stream().findFirst().orElse(null);
+		if (isBlank(eTag) || hasNoStoreDirective(response.getHeaders(Constants.HEADER_CACHE_CONTROL))) {
+			remove(key);
+			return;
+		}
+
+		// Buffer the response so that the client (and any other interceptors) can still read it
+		response.bufferEntity();
+		byte[] body;
+		try (InputStream inputStream = response.readEntity()) {
+			body = inputStream != null ? IOUtils.toByteArray(inputStream) : new byte[0];
+		}
+
+		if (body.length > myMaximumEntrySize) {
+			remove(key);
+			return;
+		}
+
+		put(key, new CachedResponse(eTag, response, body));
+	}
+
+	private void put(String theKey, CachedResponse theResponse) {
+		synchronized (myCache) {
+			CachedResponse previous = myCache.put(theKey, theResponse);
+			if (previous != null) {
+				myTotalSize -= previous.myBody.length;
+			}
+			myTotalSize += theResponse.myBody.length;
+
+			Iterator<CachedResponse> iterator = myCache.values().iterator();
+			while (iterator.hasNext() && (myCache.size() > myMaximumEntries || myTotalSize > myMaximumTotalSize)) {
+				myTotalSize -= iterator.next().myBody.length;
+				iterator.remove();
+			}
+		}
+	}
+
+	private void remove(String theKey) {
+		synchronized (myCache) {
+			CachedResponse previous = myCache.remove(theKey);
+			if (previous != null) {
+				myTotalSize -= previous.myBody.length;
+			}
+		}
+	}
+
+	private static boolean isCacheable(IHttpRequest theRequest) {
+		return "GET".equals(theRequest.getHttpVerbName()) && !hasNoStoreDirective(getRequestHeaders(theRequest, Constants.HEADER_CACHE_CONTROL));
+	}
+
+	private static boolean hasNoStoreDirective(List<String> theCacheControlHeaders) {
+		for (String nextHeader : theCacheControlHeaders) {
+			for (String nextDirective : nextHeader.split(",")) {
+				if (Constants.CACHE_CONTROL_NO_STORE.equalsIgnoreCase(nextDirective.trim())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static List<String> getRequestHeaders(IHttpRequest theRequest, String theName) {
+		return getHeaders(theRequest.getAllHeaders(), theName);
+	}
+
+	private static List<String> getHeaders(Map<String, List<String>> theHeaders, String theName) {
+		for (Map.Entry<String, List<String>> next : theHeaders.entrySet()) {
+			if (theName.equalsIgnoreCase(next.getKey())) {
+				return next.getValue();
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	private static String toKey(IHttpRequest theRequest) {
+		StringBuilder b = new StringBuilder();
+		b.append(theRequest.getUri());
+		b.append(' ').append(String.join(",", getRequestHeaders(theRequest, Constants.HEADER_ACCEPT)));
+		List<String> authorization = getRequestHeaders(theRequest, Constants.HEADER_AUTHORIZATION);
+		if (!authorization.isEmpty()) {
+			b.append(' ').append(Hashing.sha256().hashString(String.join(",", authorization), StandardCharsets.UTF_8));
+		}
+		return b.toString();
+	}
+
+	private static class CachedResponse {
+
+		private final String myETag;
+		private final String myStatusInfo;
+		private final String myMimeType;
+		private final Map<String, List<String>> myHeaders;
+		private final byte[] myBody;
+
+		CachedResponse(String theETag, IHttpResponse theResponse, byte[] theBody) {
+			myETag = theETag;
+			myStatusInfo = theResponse.getStatusInfo();
+			myMimeType = theResponse.getMimeType();
+			myHeaders = Collections.unmodifiableMap(new LinkedHashMap<>(theResponse.getAllHeaders()));
+			myBody = theBody;
+		}
+
+	}
+
+	/**
+	 * A copy of a previously received response which is substituted for a <code>304 Not Modified</code>
+	 */
+	private static class CachedHttpResponse extends BaseHttpResponse {
+
+		private final CachedResponse myCachedResponse;
+
+		CachedHttpResponse(CachedResponse theCachedResponse, StopWatch theRequestStopWatch) {
+			super(theRequestStopWatch);
+			myCachedResponse = theCachedResponse;
+		}
+
+		@Override
+		public void bufferEntity() {
+			// nothing - the entity is already held in memory
+		}
+
+		@Override
+		public void close() {
+			// nothing
+		}
+
+		@Override
+		public Reader createReader() {
+			// FHIR content is always UTF-8
+			return new InputStreamReader(readEntity(), StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public Map<String, List<String>> getAllHeaders() {
+			return myCachedResponse.myHeaders;
+		}
+
+		@Override
+		public List<String> getHeaders(String theName) {
+			return ClientResponseCachingInterceptor.getHeaders(myCachedResponse.myHeaders, theName);
+		}
+
+		@Override
+		public String getMimeType() {
+			return myCachedResponse.myMimeType;
+		}
+
+		/**
+		 * Returns <code>null</code>, as there is no underlying HTTP library response for a cached copy
+		 */
+		@Override
+		public Object getResponse() {
+			return null;
+		}
+
+		@Override
+		public int getStatus() {
+			return Constants.STATUS_HTTP_200_OK;
+		}
+
+		@Override
+		public String getStatusInfo() {
+			return myCachedResponse.myStatusInfo;
+		}
+
+		@Override
+		public InputStream readEntity() {
+			return new ByteArrayInputStream(myCachedResponse.myBody);
+		}
+
+	}
+
+}
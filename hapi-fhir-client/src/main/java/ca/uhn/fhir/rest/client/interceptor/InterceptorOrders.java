@@ -24,8 +24,10 @@ public interface InterceptorOrders {
 
 	int LOGGING_INTERCEPTOR_REQUEST = -2;
 	int URL_TENANT_SELECTION_INTERCEPTOR_REQUEST = 100;
+	int RESPONSE_CACHING_INTERCEPTOR_REQUEST = 500;
 	int CAPTURING_INTERCEPTOR_REQUEST = 1000;
 
+	int RESPONSE_CACHING_INTERCEPTOR_RESPONSE = -10;
 	int CAPTURING_INTERCEPTOR_RESPONSE = -1;
 	int LOGGING_INTERCEPTOR_RESPONSE = 1001;
 }
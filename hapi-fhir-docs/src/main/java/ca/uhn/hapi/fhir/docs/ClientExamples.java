@@ -24,19 +24,35 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.okhttp.client.OkHttpRestfulClientFactory;
 import ca.uhn.fhir.rest.api.CacheControlDirective;
 import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.client.apache.ApacheRestfulClientFactory;
 import ca.uhn.fhir.rest.client.apache.GZipContentInterceptor;
+import ca.uhn.fhir.rest.client.api.ClientResilienceMetrics;
+import ca.uhn.fhir.rest.client.api.ClientResiliencePolicy;
 import ca.uhn.fhir.rest.client.api.IBasicClient;
 import ca.uhn.fhir.rest.client.api.IClientInterceptor;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import ca.uhn.fhir.rest.client.impl.BatchingClient;
+import ca.uhn.fhir.rest.client.impl.ConnectionPoolStats;
 import ca.uhn.fhir.rest.client.interceptor.AdditionalRequestHeadersInterceptor;
 import ca.uhn.fhir.rest.client.interceptor.BasicAuthInterceptor;
 import ca.uhn.fhir.rest.client.interceptor.BearerTokenAuthInterceptor;
+import ca.uhn.fhir.rest.client.interceptor.ClientResponseCachingInterceptor;
 import ca.uhn.fhir.rest.client.interceptor.CookieInterceptor;
 import ca.uhn.fhir.rest.client.interceptor.LoggingInterceptor;
 import ca.uhn.fhir.rest.client.interceptor.UrlTenantSelectionInterceptor;
+import org.hl7.fhir.r4.model.Binary;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ValueSet;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ClientExamples {
 
@@ -124,6 +140,76 @@ public class ClientExamples {
 		// END SNIPPET: cacheControl
 	}
 
+	@SuppressWarnings("unused")
+	public void executeAsStream() {
+		FhirContext ctx = FhirContext.forR4();
+		IGenericClient client = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+
+		// START SNIPPET: executeAsStream
+		// Copy the contents of a Binary resource to a file without
+		// holding it in memory
+		long size = client
+			.read()
+			.resource(Binary.class)
+			.withId("123")
+			.executeAsStream((contentType, content) -> Files.copy(content, Paths.get("/tmp/binary.dat")));
+		// END SNIPPET: executeAsStream
+	}
+
+	@SuppressWarnings("unused")
+	public void executeAsync() {
+		// START SNIPPET: executeAsync
+		FhirContext ctx = FhirContext.forR4();
+
+		// OkHttp sends asynchronous requests without blocking the calling thread
+		ctx.setRestfulClientFactory(new OkHttpRestfulClientFactory(ctx));
+
+		// At most this many requests will be in flight at once, others are queued
+		ctx.getRestfulClientFactory().setPoolMaxTotal(50);
+		ctx.getRestfulClientFactory().setPoolMaxPerRoute(50);
+
+		IGenericClient client = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+
+		List<CompletableFuture<Patient>> futures = new ArrayList<>();
+		for (String id : Arrays.asList("1", "2", "3")) {
+			CompletableFuture<Patient> future = client
+				.read()
+				.resource(Patient.class)
+				.withId(id)
+				.executeAsync();
+			futures.add(future);
+		}
+
+		// Wait for all of the reads to complete
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		// END SNIPPET: executeAsync
+	}
+
+	@SuppressWarnings("unused")
+	public void batchingClient() {
+		// START SNIPPET: batchingClient
+		FhirContext ctx = FhirContext.forR4();
+		IGenericClient client = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+
+		// Calls are sent as a single batch once 100 have been made, or
+		// 20ms after the first call in the batch, whichever comes first
+		try (BatchingClient batchingClient = new BatchingClient(client)) {
+			batchingClient.setMaximumBatchSize(100);
+			batchingClient.setMaximumDelayMillis(20);
+
+			List<CompletableFuture<Patient>> futures = new ArrayList<>();
+			for (String id : Arrays.asList("1", "2", "3")) {
+				futures.add(batchingClient.read(Patient.class, id));
+			}
+			CompletableFuture<MethodOutcome> outcome = batchingClient.create(new Patient());
+
+			// Each future is completed with the result of its own entry in
+			// the batch response, or exceptionally if that entry failed
+			Patient patient = futures.get(0).join();
+		}
+		// END SNIPPET: batchingClient
+	}
+
    @SuppressWarnings("unused")
    public void createOkHttp() {
       // START SNIPPET: okhttp
@@ -153,6 +239,63 @@ public class ClientExamples {
       // END SNIPPET: timeouts
    }
 
+   @SuppressWarnings("unused")
+   public void connectionPool() {
+      // START SNIPPET: connectionPool
+      FhirContext ctx = FhirContext.forR4();
+      ApacheRestfulClientFactory clientFactory = new ApacheRestfulClientFactory(ctx);
+      ctx.setRestfulClientFactory(clientFactory);
+
+      // Allow up to 100 connections, and up to 50 to any one server
+      clientFactory.setPoolMaxTotal(100);
+      clientFactory.setPoolMaxPerRoute(50);
+
+      // Allow fewer connections to a specific server
+      clientFactory.setPoolMaxForRoute("https://terminology.example.com/fhir", 10);
+
+      // Close connections which have been idle for 30 seconds, and
+      // close all connections after 5 minutes
+      clientFactory.setIdleConnectionTimeout(30 * 1000);
+      clientFactory.setConnectionTimeToLive(5 * 60 * 1000);
+
+      IGenericClient client = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+
+      // Later, check whether requests are waiting for connections
+      ConnectionPoolStats stats = clientFactory.getConnectionPoolStats();
+      System.out.println("Leased: " + stats.getLeased() + ", pending: " + stats.getPending() + ", average wait: " + stats.getAverageLeaseWaitMillis() + "ms");
+      // END SNIPPET: connectionPool
+   }
+
+   @SuppressWarnings("unused")
+   public void resiliencePolicy() {
+      // START SNIPPET: resiliencePolicy
+      FhirContext ctx = FhirContext.forR4();
+      IGenericClient client = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+
+      // Make up to 4 attempts, starting with a 200ms delay and giving up after 30 seconds
+      ClientResiliencePolicy policy = new ClientResiliencePolicy();
+      policy.setMaximumAttempts(4);
+      policy.setInitialBackoffMillis(200);
+      policy.setTimeoutBudgetMillis(30 * 1000);
+
+      // Send a second copy of a read or search which hasn't completed within 500ms
+      policy.setHedgeDelayMillis(500);
+
+      // Stop sending requests for a minute after 10 consecutive failures
+      policy.setCircuitBreakerFailureThreshold(10);
+      policy.setCircuitBreakerOpenMillis(60 * 1000);
+
+      client.setResiliencePolicy(policy);
+
+      // Later, check how often requests needed to be retried
+      ClientResilienceMetrics metrics = policy.getMetrics();
+      System.out.println("Requests: " + metrics.getRequests() + ", retries: " + metrics.getRetries() + ", average latency: " + metrics.getAverageLatencyMillis() + "ms");
+
+      // Release the policy's threads once it is no longer needed
+      policy.close();
+      // END SNIPPET: resiliencePolicy
+   }
+
    @SuppressWarnings("unused")
    public void createSecurity() {
       // START SNIPPET: security
@@ -235,8 +378,33 @@ public class ClientExamples {
       // Register the interceptor with your client (either style)
       IPatientClient annotationClient = ctx.newRestfulClient(IPatientClient.class, "http://localhost:9999/fhir");
       annotationClient.registerInterceptor(new GZipContentInterceptor());
+
+      // Optionally, only compress requests larger than 2KB
+      GZipContentInterceptor gzipInterceptor = new GZipContentInterceptor();
+      gzipInterceptor.setMinimumContentLength(2048);
+      IGenericClient genericClient = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+      genericClient.registerInterceptor(gzipInterceptor);
       // END SNIPPET: gzip
    }
+
+   @SuppressWarnings("unused")
+   public void responseCaching() {
+      // START SNIPPET: responseCaching
+      FhirContext ctx = FhirContext.forR4();
+      IGenericClient client = ctx.newRestfulGenericClient("http://localhost:9999/fhir");
+
+      // Keep up to 500 responses, and no more than 20MB in total
+      ClientResponseCachingInterceptor cachingInterceptor = new ClientResponseCachingInterceptor();
+      cachingInterceptor.setMaximumEntries(500);
+      cachingInterceptor.setMaximumTotalSize(20L * 1024 * 1024);
+      client.registerInterceptor(cachingInterceptor);
+
+      // The second read sends If-None-Match, and if the server responds with
+      // 304 Not Modified the cached copy of the resource is returned
+      ValueSet valueSet = client.read().resource(ValueSet.class).withId("my-value-set").execute();
+      valueSet = client.read().resource(ValueSet.class).withId("my-value-set").execute();
+      // END SNIPPET: responseCaching
+   }
    
    @SuppressWarnings("unused")
    public void createSecurityBearer() {
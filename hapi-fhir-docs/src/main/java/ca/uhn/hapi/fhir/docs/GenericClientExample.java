@@ -50,7 +50,9 @@ import org.hl7.fhir.r4.model.Provenance;
 import org.hl7.fhir.r4.model.StringType;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class GenericClientExample {
 	public static void deferModelScanning() {
@@ -570,6 +572,33 @@ public class GenericClientExample {
 			}
 			// END SNIPPET: searchPaging
 		}
+		{
+			// START SNIPPET: searchPagingIterator
+			FhirContext ctx = FhirContext.forR4();
+			IGenericClient client = ctx.newRestfulGenericClient("http://hapi.fhir.org/baseR4");
+
+			// Iterate over every page of results. The next page is fetched
+			// in the background while the current page is being processed.
+			Iterator<Bundle> pages = client.search()
+				.forResource(Patient.class)
+				.where(Patient.NAME.matches().value("Smith"))
+				.returnBundle(Bundle.class)
+				.executeAndIteratePages();
+			while (pages.hasNext()) {
+				Bundle page = pages.next();
+				// process the page
+			}
+
+			// Or stream the resources across all pages
+			List<String> ids = client.search()
+				.forResource(Patient.class)
+				.where(Patient.NAME.matches().value("Smith"))
+				.returnBundle(Bundle.class)
+				.executeAndStreamResources()
+				.map(t -> t.getIdElement().getIdPart())
+				.collect(Collectors.toList());
+			// END SNIPPET: searchPagingIterator
+		}
 	}
 
 	@SuppressWarnings("unused")
@@ -92,6 +92,16 @@ public class JaxRsRestfulClientFactory extends RestfulClientFactory {
 		throw new UnsupportedOperationException("Proxies are not supported yet in JAX-RS client");
 	}
   
+	/**
+	 * Not supported with the JAX-RS client. The value is stored (and returned by
+	 * {@link #getIdleConnectionTimeout()}) but has no effect, since the JAX-RS client
+	 * implementation manages its own connections.
+	 */
+	@Override
+	public synchronized void setIdleConnectionTimeout(int theIdleConnectionTimeout) {
+		super.setIdleConnectionTimeout(theIdleConnectionTimeout);
+	}
+
   /**
   * Only accept clients of type javax.ws.rs.client.Client
   * Can be used to set a specific Client implementation
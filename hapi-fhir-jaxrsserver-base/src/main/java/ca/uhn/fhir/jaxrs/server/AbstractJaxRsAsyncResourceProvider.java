@@ -0,0 +1,424 @@
+package ca.uhn.fhir.jaxrs.server;
+
+/*
+ * #%L
+ * HAPI FHIR JAX-RS Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jaxrs.server.interceptor.JaxRsExceptionInterceptor;
+import ca.uhn.fhir.jaxrs.server.util.JaxRsMethodBindings;
+import ca.uhn.fhir.jaxrs.server.util.JaxRsRequest;
+import ca.uhn.fhir.jaxrs.server.util.JaxRsRequest.Builder;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.interceptor.Interceptors;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A variant of {@link AbstractJaxRsResourceProvider} which suspends each request using a JAX-RS
+ * {@link AsyncResponse} and processes it on the {@link #getAsyncExecutor() async executor}, so that
+ * the container's request threads are released while the resource provider methods run.
+ * <p>
+ * The default executor has {@link #DEFAULT_ASYNC_THREAD_COUNT} threads and queues at most
+ * {@link #DEFAULT_ASYNC_QUEUE_CAPACITY} requests. Providers should normally supply an executor
+ * managed by the container (e.g. a <code>ManagedExecutorService</code>) using
+ * {@link #setAsyncExecutor(Executor)}, or create one with their own limits using
+ * {@link #newAsyncExecutor(int, int)}. Requests which are rejected by the executor receive an
+ * <code>HTTP 503 Service Unavailable</code> response. Combining this class with
+ * {@link #isStreamResponses() streamed responses} means that neither the request thread nor the
+ * heap needs to hold on to large responses.
+ * </p>
+ *
+ * @param <R> The resource type
+ * @since 5.1.0
+ */
+@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN, Constants.CT_FHIR_JSON, Constants.CT_FHIR_XML })
+@Consumes({ MediaType.APPLICATION_FORM_URLENCODED, MediaType.APPLICATION_JSON, Constants.CT_FHIR_JSON, Constants.CT_FHIR_XML, Constants.CT_FHIR_JSON_NEW, Constants.CT_FHIR_XML_NEW, "application/octet-stream" })
+@Interceptors(JaxRsExceptionInterceptor.class)
+public abstract class AbstractJaxRsAsyncResourceProvider<R extends IBaseResource> extends BaseJaxRsResourceProvider<R> {
+
+	/**
+	 * The number of threads in the executor returned by the default implementation of {@link #getAsyncExecutor()}
+	 */
+	public static final int DEFAULT_ASYNC_THREAD_COUNT = 20;
+
+	/**
+	 * The maximum number of requests queued by the executor returned by the default implementation of {@link #getAsyncExecutor()}
+	 */
+	public static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 200;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(AbstractJaxRsAsyncResourceProvider.class);
+
+	private volatile Executor myAsyncExecutor;
+
+	/**
+	 * The default constructor. The method bindings are retrieved from the class
+	 * being constructed.
+	 */
+	protected AbstractJaxRsAsyncResourceProvider() {
+		super();
+	}
+
+	/**
+	 * Provides the ability to specify the {@link FhirContext}.
+	 *
+	 * @param ctx the {@link FhirContext} instance.
+	 */
+	protected AbstractJaxRsAsyncResourceProvider(final FhirContext ctx) {
+		super(ctx);
+	}
+
+	/**
+	 * This constructor takes in an explicit interface class. This subclass
+	 * should be identical to the class being constructed but is given
+	 * explicitly in order to avoid issues with proxy classes in a jee
+	 * environment.
+	 *
+	 * @param theProviderClass the interface of the class
+	 */
+	protected AbstractJaxRsAsyncResourceProvider(final Class<? extends AbstractJaxRsProvider> theProviderClass) {
+		super(theProviderClass);
+	}
+
+	/**
+	 * This constructor takes in an explicit interface class. This subclass
+	 * should be identical to the class being constructed but is given
+	 * explicitly in order to avoid issues with proxy classes in a jee
+	 * environment.
+	 *
+	 * @param ctx              the {@link FhirContext} instance.
+	 * @param theProviderClass the interface of the class
+	 */
+	protected AbstractJaxRsAsyncResourceProvider(final FhirContext ctx, final Class<? extends AbstractJaxRsProvider> theProviderClass) {
+		super(ctx, theProviderClass);
+	}
+
+	/**
+	 * The executor on which requests are processed. Unless one has been set using
+	 * {@link #setAsyncExecutor(Executor)}, this returns an executor with
+	 * {@link #DEFAULT_ASYNC_THREAD_COUNT} daemon threads and a queue of
+	 * {@link #DEFAULT_ASYNC_QUEUE_CAPACITY} requests which is shared by all providers.
+	 */
+	protected Executor getAsyncExecutor() {
+		Executor retVal = myAsyncExecutor;
+		if (retVal == null) {
+			retVal = DefaultExecutorHolder.EXECUTOR;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Sets the executor on which requests are processed. The executor should be bounded, since
+	 * each queued task holds on to a suspended request. If it throws a {@link RejectedExecutionException}
+	 * the client receives an <code>HTTP 503 Service Unavailable</code> response. The provider does not
+	 * shut the executor down.
+	 *
+	 * @param theAsyncExecutor The executor, or <code>null</code> to use the shared default executor
+	 */
+	public void setAsyncExecutor(Executor theAsyncExecutor) {
+		myAsyncExecutor = theAsyncExecutor;
+	}
+
+	/**
+	 * Creates an executor with a fixed number of daemon threads and a bounded queue, which rejects
+	 * requests once the queue is full
+	 *
+	 * @param theThreadCount   The number of threads
+	 * @param theQueueCapacity The maximum number of requests waiting for a thread
+	 */
+	public static ExecutorService newAsyncExecutor(int theThreadCount, int theQueueCapacity) {
+		Validate.isTrue(theThreadCount > 0, "theThreadCount must be positive");
+		Validate.isTrue(theQueueCapacity > 0, "theQueueCapacity must be positive");
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+			.namingPattern("hapi-fhir-jaxrs-async-%d")
+			.daemon(true)
+			.build();
+		return new ThreadPoolExecutor(theThreadCount, theThreadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(theQueueCapacity), threadFactory);
+	}
+
+	/**
+	 * Create a new resource with a server assigned id
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param resource         the body of the post method containing resource being created in a xml/json form
+	 * @see <a href="https://www.hl7.org/fhir/http.html#create">https://www.hl7. org/fhir/http.html#create</a>
+	 */
+	@POST
+	public void create(@Suspended final AsyncResponse theAsyncResponse, final String resource) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.POST, RestOperationTypeEnum.CREATE).resource(resource));
+	}
+
+	/**
+	 * Search the resource type based on some filter criteria
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @see <a href="https://www.hl7.org/fhir/http.html#search">https://www.hl7.org/fhir/http.html#search</a>
+	 */
+	@POST
+	@Path("/_search")
+	public void searchWithPost(@Suspended final AsyncResponse theAsyncResponse) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.POST, RestOperationTypeEnum.SEARCH_TYPE));
+	}
+
+	/**
+	 * Search the resource type based on some filter criteria
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @see <a href="https://www.hl7.org/fhir/http.html#search">https://www.hl7.org/fhir/http.html#search</a>
+	 */
+	@GET
+	public void search(@Suspended final AsyncResponse theAsyncResponse) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.GET, RestOperationTypeEnum.SEARCH_TYPE));
+	}
+
+	/**
+	 * Update an existing resource based on the given condition
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param resource         the body contents for the put method
+	 * @see <a href="https://www.hl7.org/fhir/http.html#update">https://www.hl7.org/fhir/http.html#update</a>
+	 */
+	@PUT
+	public void conditionalUpdate(@Suspended final AsyncResponse theAsyncResponse, final String resource) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.PUT, RestOperationTypeEnum.UPDATE).resource(resource));
+	}
+
+	/**
+	 * Update an existing resource by its id (or create it if it is new)
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param id               the id of the resource
+	 * @param resource         the body contents for the put method
+	 * @see <a href="https://www.hl7.org/fhir/http.html#update">https://www.hl7.org/fhir/http.html#update</a>
+	 */
+	@PUT
+	@Path("/{id}")
+	public void update(@Suspended final AsyncResponse theAsyncResponse, @PathParam("id") final String id, final String resource) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.PUT, RestOperationTypeEnum.UPDATE).id(id).resource(resource));
+	}
+
+	/**
+	 * Delete a resource based on the given condition
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @see <a href="https://www.hl7.org/fhir/http.html#delete">https://www.hl7.org/fhir/http.html#delete</a>
+	 */
+	@DELETE
+	public void delete(@Suspended final AsyncResponse theAsyncResponse) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.DELETE, RestOperationTypeEnum.DELETE));
+	}
+
+	/**
+	 * Delete a resource
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param id               the id of the resource to delete
+	 * @see <a href="https://www.hl7.org/fhir/http.html#delete">https://www.hl7.org/fhir/http.html#delete</a>
+	 */
+	@DELETE
+	@Path("/{id}")
+	public void delete(@Suspended final AsyncResponse theAsyncResponse, @PathParam("id") final String id) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.DELETE, RestOperationTypeEnum.DELETE).id(id));
+	}
+
+	/**
+	 * Read the current state of the resource
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param id               the id of the resource to read
+	 * @see <a href="https://www.hl7.org/fhir/http.html#read">https://www.hl7.org/fhir/http.html#read</a>
+	 */
+	@GET
+	@Path("/{id : ((?!_history).)*}")
+	public void find(@Suspended final AsyncResponse theAsyncResponse, @PathParam("id") final String id) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.GET, RestOperationTypeEnum.READ).id(id));
+	}
+
+	/**
+	 * Execute a custom operation
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param resource         the resource to create
+	 * @param requestType      the type of request
+	 * @param id               the id of the resource on which to perform the operation
+	 * @param operationName    the name of the operation to execute
+	 * @param operationType    the rest operation type
+	 * @see <a href="https://www.hl7.org/fhir/operations.html">https://www.hl7.org/fhir/operations.html</a>
+	 */
+	protected void customOperation(final AsyncResponse theAsyncResponse, final String resource, final RequestTypeEnum requestType, final String id,
+											 final String operationName, final RestOperationTypeEnum operationType) {
+		final Builder request = getResourceRequest(requestType, operationType).resource(resource).id(id);
+		execute(theAsyncResponse, request, operationName);
+	}
+
+	/**
+	 * Retrieve a version of a resource
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param id               the id of the resource
+	 * @param version          the version of the resource
+	 * @see <a href="https://www.hl7.org/fhir/http.html#history">https://www.hl7.org/fhir/http.html#history</a>
+	 */
+	@GET
+	@Path("/{id}/_history/{version}")
+	public void findVersion(@Suspended final AsyncResponse theAsyncResponse, @PathParam("id") final String id, @PathParam("version") final String version) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.GET, RestOperationTypeEnum.VREAD).id(id).version(version));
+	}
+
+	/**
+	 * Retrieve the update history for a particular resource
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param id               the id of the resource
+	 * @see <a href="https://www.hl7.org/fhir/http.html#history">https://www.hl7.org/fhir/http.html#history</a>
+	 */
+	@GET
+	@Path("/{id}/_history")
+	public void historyForInstance(@Suspended final AsyncResponse theAsyncResponse, @PathParam("id") final String id) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.GET, RestOperationTypeEnum.HISTORY_INSTANCE).id(id));
+	}
+
+	/**
+	 * Retrieve the update history for a particular type
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @see <a href="https://www.hl7.org/fhir/http.html#history">https://www.hl7.org/fhir/http.html#history</a>
+	 */
+	@GET
+	@Path("/_history")
+	public void historyForType(@Suspended final AsyncResponse theAsyncResponse) {
+		execute(theAsyncResponse, getResourceRequest(RequestTypeEnum.GET, RestOperationTypeEnum.HISTORY_TYPE));
+	}
+
+	/**
+	 * Compartment Based Access
+	 *
+	 * @param theAsyncResponse the suspended response
+	 * @param id               the resource to which the compartment belongs
+	 * @param compartment      the compartment
+	 * @see <a href="https://www.hl7.org/fhir/http.html#search">https://www.hl7.org/fhir/http.html#search</a>
+	 * @see <a href="https://www.hl7.org/fhir/compartments.html#compartment">https://www.hl7.org/fhir/compartments.html#compartment</a>
+	 */
+	@GET
+	@Path("/{id}/{compartment : ((?!_history).)*}")
+	public void findCompartment(@Suspended final AsyncResponse theAsyncResponse, @PathParam("id") final String id, @PathParam("compartment") final String compartment) {
+		final Builder theRequest = getResourceRequest(RequestTypeEnum.GET, RestOperationTypeEnum.SEARCH_TYPE).id(id).compartment(compartment);
+		execute(theAsyncResponse, theRequest, compartment);
+	}
+
+	@POST
+	@Path("/$validate")
+	public void validate(@Suspended final AsyncResponse theAsyncResponse, final String resource) {
+		customOperation(theAsyncResponse, resource, RequestTypeEnum.POST, null, "$validate", RestOperationTypeEnum.EXTENDED_OPERATION_TYPE);
+	}
+
+	/**
+	 * Execute the method described by the requestBuilder and methodKey on the async executor,
+	 * resuming the suspended response with the result
+	 *
+	 * @param theAsyncResponse  the suspended response
+	 * @param theRequestBuilder the requestBuilder that contains the information about the request
+	 * @param methodKey         the key determining the method to be executed
+	 */
+	private void execute(final AsyncResponse theAsyncResponse, final Builder theRequestBuilder, final String methodKey) {
+		// The request is built on the container thread, since it reads from the injected context
+		final JaxRsRequest theRequest = theRequestBuilder.build();
+		theRequest.detachFromRequestThread();
+		try {
+			getAsyncExecutor().execute(() -> resume(theAsyncResponse, invokeSafely(theRequest, methodKey)));
+		} catch (RejectedExecutionException e) {
+			ourLog.warn("Async executor rejected request: {}", e.toString());
+			UnclassifiedServerFailureException unavailable = new UnclassifiedServerFailureException(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), "Server is too busy to process the request");
+			resume(theAsyncResponse, handleExceptionSafely(theRequest, unavailable));
+		}
+	}
+
+	private Response invokeSafely(final JaxRsRequest theRequest, final String methodKey) {
+		try {
+			return invoke(theRequest, methodKey);
+		} catch (final Throwable theException) {
+			return handleExceptionSafely(theRequest, theException);
+		}
+	}
+
+	private Response handleExceptionSafely(final JaxRsRequest theRequest, final Throwable theException) {
+		try {
+			return handleException(theRequest, theException);
+		} catch (final Throwable e) {
+			ourLog.error("Failed to convert exception into a response", e);
+			return Response.serverError().build();
+		}
+	}
+
+	private static void resume(final AsyncResponse theAsyncResponse, final Response theResponse) {
+		if (!theAsyncResponse.resume(theResponse)) {
+			// The request was cancelled or timed out, so the container will never write a
+			// streamed entity (which would otherwise remove its temporary file)
+			if (theResponse.getEntity() instanceof Closeable) {
+				try {
+					((Closeable) theResponse.getEntity()).close();
+				} catch (IOException e) {
+					ourLog.warn("Failed to discard response entity: {}", e.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Execute the method described by the requestBuilder
+	 *
+	 * @param theAsyncResponse  the suspended response
+	 * @param theRequestBuilder the requestBuilder that contains the information about the request
+	 */
+	private void execute(final AsyncResponse theAsyncResponse, final Builder theRequestBuilder) {
+		execute(theAsyncResponse, theRequestBuilder, JaxRsMethodBindings.DEFAULT_METHOD_KEY);
+	}
+
+	private static class DefaultExecutorHolder {
+		private static final ExecutorService EXECUTOR = newAsyncExecutor(DEFAULT_ASYNC_THREAD_COUNT, DEFAULT_ASYNC_QUEUE_CAPACITY);
+	}
+
+}
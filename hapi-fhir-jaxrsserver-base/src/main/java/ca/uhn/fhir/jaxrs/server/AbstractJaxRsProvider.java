@@ -50,6 +50,11 @@ public abstract class AbstractJaxRsProvider implements IRestfulServerDefaults {
 
 	private static final String PROCESSING = "processing";
 
+	/**
+	 * Default value for {@link #getStreamingResponseMemoryThreshold()}
+	 */
+	public static final int DEFAULT_STREAMING_RESPONSE_MEMORY_THRESHOLD = 1024 * 1024;
+
 	private final FhirContext CTX;
 	/** the http headers */
 	@Context
@@ -257,6 +262,34 @@ public abstract class AbstractJaxRsProvider implements IRestfulServerDefaults {
 		return true;
 	}
 
+	/**
+	 * If this returns <code>true</code>, encoded resources and bundles are returned to the
+	 * JAX-RS container as a {@link StreamingOutput} instead of a String. The encoded response
+	 * is held in memory up to {@link #getStreamingResponseMemoryThreshold()} bytes and spooled
+	 * to a temporary file beyond that, so large responses do not need to be built up in memory.
+	 * <p>
+	 * DEFAULT = false
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public boolean isStreamResponses() {
+		return false;
+	}
+
+	/**
+	 * The maximum number of bytes of an encoded response which are held in memory when
+	 * {@link #isStreamResponses() streaming responses}. Larger responses are spooled to a temporary file.
+	 * <p>
+	 * DEFAULT = {@link #DEFAULT_STREAMING_RESPONSE_MEMORY_THRESHOLD} (1 MB)
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public int getStreamingResponseMemoryThreshold() {
+		return DEFAULT_STREAMING_RESPONSE_MEMORY_THRESHOLD;
+	}
+
 	/**
 	 * Set the headers
 	 * 
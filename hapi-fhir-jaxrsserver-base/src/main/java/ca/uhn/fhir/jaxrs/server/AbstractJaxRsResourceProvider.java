@@ -21,7 +21,6 @@ package ca.uhn.fhir.jaxrs.server;
  */
 
 import java.io.IOException;
-import java.net.URL;
 
 import javax.interceptor.Interceptors;
 import javax.ws.rs.*;
@@ -31,16 +30,10 @@ import javax.ws.rs.core.Response;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.context.api.BundleInclusionRule;
 import ca.uhn.fhir.jaxrs.server.interceptor.JaxRsExceptionInterceptor;
 import ca.uhn.fhir.jaxrs.server.util.JaxRsMethodBindings;
-import ca.uhn.fhir.jaxrs.server.util.JaxRsRequest;
 import ca.uhn.fhir.jaxrs.server.util.JaxRsRequest.Builder;
 import ca.uhn.fhir.rest.api.*;
-import ca.uhn.fhir.rest.api.server.IRestfulServer;
-import ca.uhn.fhir.rest.server.IPagingProvider;
-import ca.uhn.fhir.rest.server.IResourceProvider;
-import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
 
 /**
  * This server is the abstract superclass for all resource providers. It exposes
@@ -50,12 +43,7 @@ import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
 @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN, Constants.CT_FHIR_JSON, Constants.CT_FHIR_XML })
 @Consumes({ MediaType.APPLICATION_FORM_URLENCODED, MediaType.APPLICATION_JSON, Constants.CT_FHIR_JSON, Constants.CT_FHIR_XML, Constants.CT_FHIR_JSON_NEW, Constants.CT_FHIR_XML_NEW, "application/octet-stream" })
 @Interceptors(JaxRsExceptionInterceptor.class)
-public abstract class AbstractJaxRsResourceProvider<R extends IBaseResource> extends AbstractJaxRsProvider
-
-implements IRestfulServer<JaxRsRequest>, IResourceProvider {
-
-    /** the method bindings for this class */
-    private final JaxRsMethodBindings theBindings;
+public abstract class AbstractJaxRsResourceProvider<R extends IBaseResource> extends BaseJaxRsResourceProvider<R> {
 
     /**
      * The default constructor. The method bindings are retrieved from the class
@@ -63,7 +51,6 @@ implements IRestfulServer<JaxRsRequest>, IResourceProvider {
      */
     protected AbstractJaxRsResourceProvider() {
         super();
-        theBindings = JaxRsMethodBindings.getMethodBindings(this, getClass());
     }
 
     /**
@@ -72,7 +59,6 @@ implements IRestfulServer<JaxRsRequest>, IResourceProvider {
      */
     protected AbstractJaxRsResourceProvider(final FhirContext ctx) {
         super(ctx);
-        theBindings = JaxRsMethodBindings.getMethodBindings(this, getClass());
     }
 
     /**
@@ -84,8 +70,7 @@ implements IRestfulServer<JaxRsRequest>, IResourceProvider {
      * @param theProviderClass the interface of the class
      */
     protected AbstractJaxRsResourceProvider(final Class<? extends AbstractJaxRsProvider> theProviderClass) {
-        super();
-        theBindings = JaxRsMethodBindings.getMethodBindings(this, theProviderClass);
+        super(theProviderClass);
     }
 
     /**
@@ -98,26 +83,7 @@ implements IRestfulServer<JaxRsRequest>, IResourceProvider {
      * @param theProviderClass the interface of the class
      */
     protected AbstractJaxRsResourceProvider(final FhirContext ctx, final Class<? extends AbstractJaxRsProvider> theProviderClass) {
-        super(ctx);
-        theBindings = JaxRsMethodBindings.getMethodBindings(this, theProviderClass);
-    }
-
-	/**
-     * The base for request for a resource provider has the following form:</br>
-     * {@link AbstractJaxRsResourceProvider#getBaseForServer()
-     * getBaseForServer()} + "/" +
-     * {@link AbstractJaxRsResourceProvider#getResourceType() getResourceType()}
-     * .{@link java.lang.Class#getSimpleName() getSimpleName()}
-     */
-    @Override
-    public String getBaseForRequest() {
-        try {
-            return new URL(getUriInfo().getBaseUri().toURL(), getResourceType().getSimpleName()).toExternalForm();
-        }
-        catch (final Exception e) {
-            // cannot happen
-            return null;
-        }
+        super(ctx, theProviderClass);
     }
 
     /**
@@ -321,14 +287,7 @@ implements IRestfulServer<JaxRsRequest>, IResourceProvider {
      */
     private Response execute(final Builder theRequestBuilder, final String methodKey)
             throws IOException {
-        final JaxRsRequest theRequest = theRequestBuilder.build();
-        final BaseMethodBinding<?> method = getBinding(theRequest.getRestOperationType(), methodKey);
-        try {
-            return (Response) method.invokeServer(this, theRequest);
-        }
-        catch (final Throwable theException) {
-            return handleException(theRequest, theException);
-        }
+        return invoke(theRequestBuilder.build(), methodKey);
     }
 
     /**
@@ -342,61 +301,4 @@ implements IRestfulServer<JaxRsRequest>, IResourceProvider {
         return execute(theRequestBuilder, JaxRsMethodBindings.DEFAULT_METHOD_KEY);
     }
 
-    /**
-     * Return the method binding for the given rest operation
-     * 
-     * @param restOperation the rest operation to retrieve
-     * @param theBindingKey the key determining the method to be executed (needed for e.g. custom operation)
-     * @return
-     */
-    protected BaseMethodBinding<?> getBinding(final RestOperationTypeEnum restOperation, final String theBindingKey) {
-        return getBindings().getBinding(restOperation, theBindingKey);
-    }
-
-    /**
-     * Default: no paging provider
-     */
-    @Override
-    public IPagingProvider getPagingProvider() {
-        return null;
-    }
-
-    /**
-     * Default: BundleInclusionRule.BASED_ON_INCLUDES
-     */
-    @Override
-    public BundleInclusionRule getBundleInclusionRule() {
-        return BundleInclusionRule.BASED_ON_INCLUDES;
-    }
-
-	@Override
-	public PreferReturnEnum getDefaultPreferReturn() {
-		return PreferReturnEnum.REPRESENTATION;
-	}
-
-	/**
-     * The resource type should return conform to the generic resource included
-     * in the topic
-     */
-    @Override
-    public abstract Class<R> getResourceType();
-
-    /**
-     * Return the bindings defined in this resource provider
-     * 
-     * @return the jax-rs method bindings
-     */
-    public JaxRsMethodBindings getBindings() {
-        return theBindings;
-    }
-
-    /**
-     * Return the request builder based on the resource name for the server
-     * @param requestType the type of the request
-     * @param restOperation the rest operation type
-     * @return the requestbuilder
-     */
-    private Builder getResourceRequest(final RequestTypeEnum requestType, final RestOperationTypeEnum restOperation) {
-        return getRequest(requestType, restOperation, getResourceType().getSimpleName());
-    }
 }
@@ -0,0 +1,194 @@
+package ca.uhn.fhir.jaxrs.server;
+
+/*
+ * #%L
+ * HAPI FHIR JAX-RS Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.api.BundleInclusionRule;
+import ca.uhn.fhir.jaxrs.server.util.JaxRsMethodBindings;
+import ca.uhn.fhir.jaxrs.server.util.JaxRsRequest;
+import ca.uhn.fhir.jaxrs.server.util.JaxRsRequest.Builder;
+import ca.uhn.fhir.rest.api.PreferReturnEnum;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.IRestfulServer;
+import ca.uhn.fhir.rest.server.IPagingProvider;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Common superclass of {@link AbstractJaxRsResourceProvider} and {@link AbstractJaxRsAsyncResourceProvider}.
+ * It holds the method bindings and dispatches requests to them, while the subclasses declare the
+ * JAX-RS endpoints and decide on which thread the request is processed.
+ *
+ * @param <R> The resource type
+ * @since 5.1.0
+ */
+public abstract class BaseJaxRsResourceProvider<R extends IBaseResource> extends AbstractJaxRsProvider implements IRestfulServer<JaxRsRequest>, IResourceProvider {
+
+	/** the method bindings for this class */
+	private final JaxRsMethodBindings myBindings;
+
+	/**
+	 * The default constructor. The method bindings are retrieved from the class
+	 * being constructed.
+	 */
+	protected BaseJaxRsResourceProvider() {
+		super();
+		myBindings = JaxRsMethodBindings.getMethodBindings(this, getClass());
+	}
+
+	/**
+	 * Provides the ability to specify the {@link FhirContext}.
+	 *
+	 * @param ctx the {@link FhirContext} instance.
+	 */
+	protected BaseJaxRsResourceProvider(final FhirContext ctx) {
+		super(ctx);
+		myBindings = JaxRsMethodBindings.getMethodBindings(this, getClass());
+	}
+
+	/**
+	 * This constructor takes in an explicit interface class. This subclass
+	 * should be identical to the class being constructed but is given
+	 * explicitly in order to avoid issues with proxy classes in a jee
+	 * environment.
+	 *
+	 * @param theProviderClass the interface of the class
+	 */
+	protected BaseJaxRsResourceProvider(final Class<? extends AbstractJaxRsProvider> theProviderClass) {
+		super();
+		myBindings = JaxRsMethodBindings.getMethodBindings(this, theProviderClass);
+	}
+
+	/**
+	 * This constructor takes in an explicit interface class. This subclass
+	 * should be identical to the class being constructed but is given
+	 * explicitly in order to avoid issues with proxy classes in a jee
+	 * environment.
+	 *
+	 * @param ctx              the {@link FhirContext} instance.
+	 * @param theProviderClass the interface of the class
+	 */
+	protected BaseJaxRsResourceProvider(final FhirContext ctx, final Class<? extends AbstractJaxRsProvider> theProviderClass) {
+		super(ctx);
+		myBindings = JaxRsMethodBindings.getMethodBindings(this, theProviderClass);
+	}
+
+	/**
+	 * The base for request for a resource provider has the following form:</br>
+	 * {@link BaseJaxRsResourceProvider#getBaseForServer()
+	 * getBaseForServer()} + "/" +
+	 * {@link BaseJaxRsResourceProvider#getResourceType() getResourceType()}
+	 * .{@link java.lang.Class#getSimpleName() getSimpleName()}
+	 */
+	@Override
+	public String getBaseForRequest() {
+		try {
+			return new URL(getUriInfo().getBaseUri().toURL(), getResourceType().getSimpleName()).toExternalForm();
+		} catch (final Exception e) {
+			// cannot happen
+			return null;
+		}
+	}
+
+	/**
+	 * Invoke the method bound to the request's rest operation and methodKey, converting
+	 * any exception thrown by the method into a response
+	 *
+	 * @param theRequest the request
+	 * @param methodKey  the key determining the method to be executed
+	 * @return the response
+	 */
+	protected Response invoke(final JaxRsRequest theRequest, final String methodKey)
+		throws IOException {
+		final BaseMethodBinding<?> method = getBinding(theRequest.getRestOperationType(), methodKey);
+		try {
+			return (Response) method.invokeServer(this, theRequest);
+		} catch (final Throwable theException) {
+			return handleException(theRequest, theException);
+		}
+	}
+
+	/**
+	 * Return the method binding for the given rest operation
+	 *
+	 * @param restOperation the rest operation to retrieve
+	 * @param theBindingKey the key determining the method to be executed (needed for e.g. custom operation)
+	 * @return
+	 */
+	protected BaseMethodBinding<?> getBinding(final RestOperationTypeEnum restOperation, final String theBindingKey) {
+		return getBindings().getBinding(restOperation, theBindingKey);
+	}
+
+	/**
+	 * Default: no paging provider
+	 */
+	@Override
+	public IPagingProvider getPagingProvider() {
+		return null;
+	}
+
+	/**
+	 * Default: BundleInclusionRule.BASED_ON_INCLUDES
+	 */
+	@Override
+	public BundleInclusionRule getBundleInclusionRule() {
+		return BundleInclusionRule.BASED_ON_INCLUDES;
+	}
+
+	@Override
+	public PreferReturnEnum getDefaultPreferReturn() {
+		return PreferReturnEnum.REPRESENTATION;
+	}
+
+	/**
+	 * The resource type should return conform to the generic resource included
+	 * in the topic
+	 */
+	@Override
+	public abstract Class<R> getResourceType();
+
+	/**
+	 * Return the bindings defined in this resource provider
+	 *
+	 * @return the jax-rs method bindings
+	 */
+	public JaxRsMethodBindings getBindings() {
+		return myBindings;
+	}
+
+	/**
+	 * Return the request builder based on the resource name for the server
+	 *
+	 * @param requestType   the type of the request
+	 * @param restOperation the rest operation type
+	 * @return the requestbuilder
+	 */
+	protected Builder getResourceRequest(final RequestTypeEnum requestType, final RestOperationTypeEnum restOperation) {
+		return getRequest(requestType, restOperation, getResourceType().getSimpleName());
+	}
+
+}
@@ -40,10 +40,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * The JaxRsRequest is a jax-rs specific implementation of the RequestDetails.
@@ -56,6 +58,9 @@ public class JaxRsRequest extends RequestDetails {
 	private String myResourceString;
 	private AbstractJaxRsProvider myServer;
 	private Map<String, Object> myAttributes = new HashMap<>();
+	private Map<String, List<String>> myDetachedHeaders;
+	private MediaType myDetachedMediaType;
+	private String myDetachedServerBaseForRequest;
 
 	/**
 	 * Utility Constructor
@@ -87,8 +92,9 @@ public class JaxRsRequest extends RequestDetails {
 	public Charset getCharset() {
 		String charset = null;
 
-		if (myHeaders.getMediaType() != null && myHeaders.getMediaType().getParameters() != null) {
-			charset = myHeaders.getMediaType().getParameters().get(MediaType.CHARSET_PARAMETER);
+		MediaType mediaType = myDetachedHeaders != null ? myDetachedMediaType : myHeaders.getMediaType();
+		if (mediaType != null && mediaType.getParameters() != null) {
+			charset = mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
 		}
 		if (charset != null) {
 			return Charset.forName(charset);
@@ -110,7 +116,12 @@ public class JaxRsRequest extends RequestDetails {
 
 	@Override
 	public List<String> getHeaders(String name) {
-		List<String> requestHeader = myHeaders.getRequestHeader(name);
+		List<String> requestHeader;
+		if (myDetachedHeaders != null) {
+			requestHeader = myDetachedHeaders.get(name);
+		} else {
+			requestHeader = myHeaders.getRequestHeader(name);
+		}
 		return requestHeader == null ? Collections.<String>emptyList() : requestHeader;
 	}
 
@@ -160,9 +171,32 @@ public class JaxRsRequest extends RequestDetails {
 
 	@Override
 	public String getServerBaseForRequest() {
+		if (myDetachedServerBaseForRequest != null) {
+			return myDetachedServerBaseForRequest;
+		}
 		return getServer().getServerAddressStrategy().determineServerBase(null, null);
 	}
 
+	/**
+	 * Copies the headers and the server base for this request out of the injected JAX-RS
+	 * context objects, which are only guaranteed to be usable on the thread the container
+	 * dispatched the request on. This must be called on that thread before the request is
+	 * processed on another one.
+	 *
+	 * @since 5.1.0
+	 */
+	public void detachFromRequestThread() {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		if (myHeaders != null && myHeaders.getRequestHeaders() != null) {
+			for (Map.Entry<String, List<String>> next : myHeaders.getRequestHeaders().entrySet()) {
+				headers.put(next.getKey(), new ArrayList<>(next.getValue()));
+			}
+		}
+		myDetachedMediaType = myHeaders != null ? myHeaders.getMediaType() : null;
+		myDetachedServerBaseForRequest = getServerBaseForRequest();
+		myDetachedHeaders = headers;
+	}
+
 	/**
 	 * An implementation of the builder pattern for the JaxRsRequest
 	 */
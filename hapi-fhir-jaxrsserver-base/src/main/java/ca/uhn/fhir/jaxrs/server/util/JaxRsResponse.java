@@ -1,6 +1,7 @@
 package ca.uhn.fhir.jaxrs.server.util;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jaxrs.server.AbstractJaxRsProvider;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.EncodingEnum;
@@ -17,6 +18,7 @@ import javax.ws.rs.core.Response.ResponseBuilder;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -49,6 +51,8 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
  */
 public class JaxRsResponse extends RestfulResponse<JaxRsRequest> {
 
+	private JaxRsStreamingWriter myStreamingWriter;
+
 	/**
 	 * The constructor
 	 * 
@@ -59,22 +63,42 @@ public class JaxRsResponse extends RestfulResponse<JaxRsRequest> {
 	}
 
 	/**
-	 * The response writer is a simple String Writer. All output is configured
+	 * The response writer is a simple String Writer, unless the server
+	 * {@link AbstractJaxRsProvider#isStreamResponses() streams responses}. All output is configured
 	 * by the server.
 	 */
 	@Override
-	public Writer getResponseWriter(int theStatusCode, String theStatusMessage, String theContentType, String theCharset, boolean theRespondGzip) {
+	public Writer getResponseWriter(int theStatusCode, String theStatusMessage, String theContentType, String theCharset, boolean theRespondGzip) throws IOException {
+		if (myStreamingWriter != null) {
+			// A previous response was abandoned before being sent (e.g. because encoding failed
+			// and an error is now being written instead), so discard its content
+			myStreamingWriter.close();
+			myStreamingWriter = null;
+		}
+		AbstractJaxRsProvider server = getRequestDetails().getServer();
+		if (server != null && server.isStreamResponses()) {
+			Charset charset = Charset.forName(StringUtils.defaultIfBlank(theCharset, Constants.CHARSET_NAME_UTF8));
+			myStreamingWriter = new JaxRsStreamingWriter(charset, server.getStreamingResponseMemoryThreshold());
+			return myStreamingWriter;
+		}
 		return new StringWriter();
 	}
 
 	@Override
-	public Response sendWriterResponse(int theStatus, String theContentType, String theCharset, Writer theWriter) {
+	public Response sendWriterResponse(int theStatus, String theContentType, String theCharset, Writer theWriter) throws IOException {
 		ResponseBuilder builder = buildResponse(theStatus);
 		if (isNotBlank(theContentType)) {
 			String charContentType = theContentType + "; charset=" + StringUtils.defaultIfBlank(theCharset, Constants.CHARSET_NAME_UTF8);
 			builder.header(Constants.HEADER_CONTENT_TYPE, charContentType);
 		}
-		builder.entity(theWriter.toString());
+		if (myStreamingWriter != null) {
+			// The writer we created may have been wrapped, so make sure everything has reached it
+			theWriter.flush();
+			builder.entity(myStreamingWriter);
+			myStreamingWriter = null;
+		} else {
+			builder.entity(theWriter.toString());
+		}
 		Response retVal = builder.build();
 		return retVal;
 	}
@@ -91,7 +115,7 @@ public class JaxRsResponse extends RestfulResponse<JaxRsRequest> {
 	@Override
 	public Response returnResponse(ParseAction<?> outcome, int operationStatus, boolean allowPrefer,
 			MethodOutcome response, String resourceName) throws IOException {
-		StringWriter writer = new StringWriter();
+		Writer writer = getResponseWriter(operationStatus, null, getParserType(), null, false);
 		if (outcome != null) {
 			FhirContext fhirContext = getRequestDetails().getServer().getFhirContext();
 			IParser parser = RestfulServerUtils.getNewParser(fhirContext, fhirContext.getVersion().getVersion(), getRequestDetails());
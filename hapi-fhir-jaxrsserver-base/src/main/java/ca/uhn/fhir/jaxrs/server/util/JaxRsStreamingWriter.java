@@ -0,0 +1,114 @@
+package ca.uhn.fhir.jaxrs.server.util;
+
+/*
+ * #%L
+ * HAPI FHIR JAX-RS Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * A response writer which encodes the characters written to it straight to bytes, holding
+ * them in memory up to a threshold and spooling them to a temporary file beyond that. The
+ * content is then handed to the JAX-RS container as a {@link StreamingOutput}.
+ * <p>
+ * The temporary file is removed once the content has been written to the container, or when
+ * the writer is {@link #close() closed} without the content being written.
+ * </p>
+ */
+class JaxRsStreamingWriter extends Writer implements StreamingOutput {
+
+	private final DeferredFileOutputStream myOutputStream;
+	private final Writer myWriter;
+
+	JaxRsStreamingWriter(Charset theCharset, int theMemoryThreshold) {
+		myOutputStream = new DeferredFileOutputStream(theMemoryThreshold, "hapi-fhir-jaxrs-", ".tmp", null);
+		myWriter = new OutputStreamWriter(myOutputStream, theCharset);
+	}
+
+	@Override
+	public void write(char[] theBuffer, int theOffset, int theLength) throws IOException {
+		myWriter.write(theBuffer, theOffset, theLength);
+	}
+
+	@Override
+	public void write(String theString, int theOffset, int theLength) throws IOException {
+		myWriter.write(theString, theOffset, theLength);
+	}
+
+	@Override
+	public void write(int theChar) throws IOException {
+		myWriter.write(theChar);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		myWriter.flush();
+	}
+
+	/**
+	 * Discards the content, removing the temporary file if one was created
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			myWriter.close();
+		} finally {
+			deleteFile();
+		}
+	}
+
+	boolean isInMemory() {
+		return myOutputStream.isInMemory();
+	}
+
+	File getFile() {
+		return myOutputStream.getFile();
+	}
+
+	/**
+	 * Copies the encoded response to the container's output stream and removes the
+	 * temporary file, if one was created
+	 */
+	@Override
+	public void write(OutputStream theOutput) throws IOException {
+		try {
+			myWriter.close();
+			myOutputStream.writeTo(theOutput);
+		} finally {
+			deleteFile();
+		}
+	}
+
+	private void deleteFile() {
+		File file = myOutputStream.getFile();
+		if (file != null && file.exists()) {
+			//noinspection ResultOfMethodCallIgnored
+			file.delete();
+		}
+	}
+
+}
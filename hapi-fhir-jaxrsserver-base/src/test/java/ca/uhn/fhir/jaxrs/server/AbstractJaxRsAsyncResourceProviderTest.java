@@ -0,0 +1,218 @@
+package ca.uhn.fhir.jaxrs.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.Create;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.RequiredParam;
+import ca.uhn.fhir.rest.annotation.ResourceParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.jboss.resteasy.specimpl.ResteasyHttpHeaders;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AbstractJaxRsAsyncResourceProviderTest {
+
+	private static FhirContext ourCtx = FhirContext.forR4();
+	/**
+	 * Method bindings are cached per provider class, so all tests share one provider instance
+	 */
+	private static TestAsyncPatientProvider ourProvider;
+
+	private AsyncResponse myAsyncResponse;
+	private MultivaluedMap<String, String> myQueryParameters;
+	private MultivaluedMap<String, String> myRequestHeaders;
+
+	@Before
+	public void before() throws Exception {
+		myQueryParameters = new MultivaluedHashMap<>();
+		myRequestHeaders = new MultivaluedHashMap<>();
+		myRequestHeaders.putSingle(Constants.HEADER_ACCEPT, Constants.CT_FHIR_JSON_NEW);
+
+		ourProvider.myCreated = null;
+		ourProvider.myLastThreadName = null;
+		ourProvider.setAsyncExecutor(Runnable::run);
+		ourProvider.setHeaders(new ResteasyHttpHeaders(myRequestHeaders));
+
+		myAsyncResponse = mock(AsyncResponse.class);
+		when(myAsyncResponse.resume(any(Object.class))).thenReturn(true);
+	}
+
+	private void setRequestUri(String theUri) throws Exception {
+		UriInfo uriInfo = mock(UriInfo.class);
+		when(uriInfo.getBaseUri()).thenReturn(new URI("http://localhost/"));
+		when(uriInfo.getRequestUri()).thenReturn(new URI(theUri));
+		when(uriInfo.getQueryParameters()).thenReturn(myQueryParameters);
+		ourProvider.setUriInfo(uriInfo);
+	}
+
+	private Response getResumedResponse() {
+		ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+		verify(myAsyncResponse, timeout(10000)).resume(captor.capture());
+		return captor.getValue();
+	}
+
+	@Test
+	public void testRead() throws Exception {
+		setRequestUri("http://localhost/Patient/1");
+
+		ourProvider.find(myAsyncResponse, "1");
+
+		Response response = getResumedResponse();
+		assertEquals(Constants.STATUS_HTTP_200_OK, response.getStatus());
+		Patient patient = ourCtx.newJsonParser().parseResource(Patient.class, response.getEntity().toString());
+		assertEquals("Simpson", patient.getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testReadNotFound() throws Exception {
+		setRequestUri("http://localhost/Patient/2");
+
+		ourProvider.find(myAsyncResponse, "2");
+
+		Response response = getResumedResponse();
+		assertEquals(Constants.STATUS_HTTP_404_NOT_FOUND, response.getStatus());
+		assertThat(response.getEntity().toString(), containsString("Patient/2 is not known"));
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		setRequestUri("http://localhost/Patient?name=Simpson");
+		myQueryParameters.putSingle("name", "Simpson");
+
+		ourProvider.search(myAsyncResponse);
+
+		Response response = getResumedResponse();
+		assertEquals(Constants.STATUS_HTTP_200_OK, response.getStatus());
+		Bundle bundle = ourCtx.newJsonParser().parseResource(Bundle.class, response.getEntity().toString());
+		assertEquals(1, bundle.getEntry().size());
+		assertEquals("Simpson", ((Patient) bundle.getEntryFirstRep().getResource()).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testCreate() throws Exception {
+		setRequestUri("http://localhost/Patient");
+		myRequestHeaders.putSingle(Constants.HEADER_CONTENT_TYPE, Constants.CT_FHIR_JSON_NEW);
+
+		ourProvider.create(myAsyncResponse, "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Flanders\"}]}");
+
+		Response response = getResumedResponse();
+		assertEquals(Constants.STATUS_HTTP_201_CREATED, response.getStatus());
+		assertEquals("Flanders", ourProvider.myCreated.getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testRequestProcessedOnAsyncExecutor() throws Exception {
+		ExecutorService executor = AbstractJaxRsAsyncResourceProvider.newAsyncExecutor(1, 1);
+		try {
+			ourProvider.setAsyncExecutor(executor);
+			setRequestUri("http://localhost/Patient/1");
+
+			ourProvider.find(myAsyncResponse, "1");
+
+			Response response = getResumedResponse();
+			assertEquals(Constants.STATUS_HTTP_200_OK, response.getStatus());
+			assertThat(ourProvider.myLastThreadName, startsWith("hapi-fhir-jaxrs-async-"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectedByAsyncExecutor() throws Exception {
+		ourProvider.setAsyncExecutor(theTask -> {
+			throw new RejectedExecutionException("Queue is full");
+		});
+		setRequestUri("http://localhost/Patient/1");
+
+		ourProvider.find(myAsyncResponse, "1");
+
+		Response response = getResumedResponse();
+		assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourProvider = new TestAsyncPatientProvider();
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	public static class TestAsyncPatientProvider extends AbstractJaxRsAsyncResourceProvider<Patient> {
+
+		private volatile Patient myCreated;
+		private volatile String myLastThreadName;
+
+		public TestAsyncPatientProvider() {
+			super(ourCtx);
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			myLastThreadName = Thread.currentThread().getName();
+			if (!"1".equals(theId.getIdPart())) {
+				throw new ResourceNotFoundException(theId);
+			}
+			return createPatient();
+		}
+
+		@Search
+		public List<Patient> search(@RequiredParam(name = Patient.SP_NAME) StringParam theName) {
+			return Collections.singletonList(createPatient());
+		}
+
+		@Create
+		public MethodOutcome create(@ResourceParam Patient thePatient) {
+			myCreated = thePatient;
+			return new MethodOutcome(new IdType("Patient/3/_history/1"), true);
+		}
+
+		@Override
+		public Class<Patient> getResourceType() {
+			return Patient.class;
+		}
+
+		private static Patient createPatient() {
+			Patient retVal = new Patient();
+			retVal.setId("Patient/1");
+			retVal.addName().setFamily("Simpson");
+			return retVal;
+		}
+	}
+
+}
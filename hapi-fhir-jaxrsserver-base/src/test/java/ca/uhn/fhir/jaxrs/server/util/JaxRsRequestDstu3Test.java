@@ -49,6 +49,16 @@ public class JaxRsRequestDstu3Test {
 		assertEquals(Arrays.asList(headerValue, headerValue2), details.getHeaders(headerKey));
 	}
 	
+	@Test
+	public void testDetachFromRequestThread() {
+		queryParameters.add("key", "value");
+		details.detachFromRequestThread();
+		queryParameters.clear();
+
+		assertEquals("value", details.getHeader("key"));
+		assertEquals(BASEURI, details.getServerBaseForRequest());
+	}
+
 	@Test
 	public void testGetByteStreamRequestContents() {
 		assertEquals(RESOURCE_STRING, new String(details.getByteStreamRequestContents()));
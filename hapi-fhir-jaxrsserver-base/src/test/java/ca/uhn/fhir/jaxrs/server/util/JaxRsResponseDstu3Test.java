@@ -1,20 +1,27 @@
 package ca.uhn.fhir.jaxrs.server.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Set;
 
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.hl7.fhir.dstu3.model.*;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
 import org.junit.Before;
 import org.junit.Test;
 
+import ca.uhn.fhir.jaxrs.server.AbstractJaxRsProvider;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.SummaryEnum;
@@ -48,6 +55,59 @@ public class JaxRsResponseDstu3Test {
 		assertTrue(result.getEntity().toString().contains("15"));
 	}
 
+	@Test
+	public void testStreamResponse() throws IOException {
+		AbstractJaxRsProvider server = request.getServer();
+		doReturn(true).when(server).isStreamResponses();
+		doReturn(10).when(server).getStreamingResponseMemoryThreshold();
+
+		Response result = (Response) RestfulServerUtils.streamResponseAsResource(request.getServer(), bundle, theSummaryMode, 200, false, false, request);
+		assertEquals(200, result.getStatus());
+		assertEquals(Constants.CT_FHIR_JSON_NEW + Constants.CHARSET_UTF8_CTSUFFIX, result.getHeaderString(Constants.HEADER_CONTENT_TYPE));
+		assertTrue(result.getEntity() instanceof StreamingOutput);
+
+		File file = ((JaxRsStreamingWriter) result.getEntity()).getFile();
+		assertTrue(file.exists());
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		((StreamingOutput) result.getEntity()).write(output);
+		String body = new String(output.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(body.contains("Patient"));
+		assertTrue(body.contains("15"));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testStreamResponseDiscardedOnClose() throws IOException {
+		AbstractJaxRsProvider server = request.getServer();
+		doReturn(true).when(server).isStreamResponses();
+		doReturn(10).when(server).getStreamingResponseMemoryThreshold();
+
+		Response result = (Response) RestfulServerUtils.streamResponseAsResource(request.getServer(), bundle, theSummaryMode, 200, false, false, request);
+		JaxRsStreamingWriter writer = (JaxRsStreamingWriter) result.getEntity();
+		File file = writer.getFile();
+		assertTrue(file.exists());
+
+		writer.close();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testStreamResponseAbandonedWriterDiscarded() throws IOException {
+		AbstractJaxRsProvider server = request.getServer();
+		doReturn(true).when(server).isStreamResponses();
+		doReturn(10).when(server).getStreamingResponseMemoryThreshold();
+
+		JaxRsStreamingWriter abandoned = (JaxRsStreamingWriter) response.getResponseWriter(200, null, Constants.CT_FHIR_JSON_NEW, null, false);
+		abandoned.write("{\"resourceType\":\"Bundle\"");
+		abandoned.flush();
+		File file = abandoned.getFile();
+		assertTrue(file.exists());
+
+		response.getResponseWriter(500, null, Constants.CT_FHIR_JSON_NEW, null, false);
+		assertFalse(file.exists());
+	}
+
 	@Test
 	public void testSendAttachmentResponse() throws IOException {
 		boolean theRequestIsBrowser = true;
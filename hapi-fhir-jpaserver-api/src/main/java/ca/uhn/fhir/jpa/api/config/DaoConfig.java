@@ -127,6 +127,10 @@ public class DaoConfig {
 	private int myMaximumExpansionSize = DEFAULT_MAX_EXPANSION_SIZE;
 	private Integer myMaximumSearchResultCountInTransaction = DEFAULT_MAXIMUM_SEARCH_RESULT_COUNT_IN_TRANSACTION;
 	private ResourceEncodingEnum myResourceEncoding = ResourceEncodingEnum.JSONC;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myHistoryDeltaSnapshotInterval = 10;
 	/**
 	 * update setter javadoc if default changes
 	 */
@@ -142,6 +146,8 @@ public class DaoConfig {
 	private boolean myMarkResourcesForReindexingUponSearchParameterChange;
 	private boolean myExpungeEnabled;
 	private int myExpungeBatchSize = DEFAULT_EXPUNGE_BATCH_SIZE;
+	private Integer myExpungeMaxRecordsPerSecond = null;
+	private boolean myConcurrentIncludeLoadingEnabled = false;
 	private int myReindexThreadCount;
 	private int myExpungeThreadCount;
 	private Set<String> myBundleTypesAllowedForStorage;
@@ -714,14 +720,72 @@ public class DaoConfig {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * Returns the encoding used to store resource bodies in the database. The default
+	 * is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * If set to {@link ResourceEncodingEnum#JSOND}, current versions are stored as compressed
+	 * JSON, and each version is converted into a compact delta against the next version
+	 * when it is superseded, except for every N'th version which is kept as a full snapshot
+	 * (see {@link #setHistoryDeltaSnapshotInterval(int)}). This greatly reduces the storage
+	 * used by resources that are updated frequently.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the encoding used to store resource bodies in the database. The default
+	 * is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * If set to {@link ResourceEncodingEnum#JSOND}, current versions are stored as compressed
+	 * JSON, and each version is converted into a compact delta against the next version
+	 * when it is superseded, except for every N'th version which is kept as a full snapshot
+	 * (see {@link #setHistoryDeltaSnapshotInterval(int)}). This greatly reduces the storage
+	 * used by resources that are updated frequently.
+	 * </p>
+	 * <p>
+	 * If set to {@link ResourceEncodingEnum#JSONZ}, resource bodies are compressed using deflate
+	 * with a fixed, versioned dictionary of common element names, which is noticeably smaller
+	 * than plain gzip for small resources.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
 
+	/**
+	 * When the resource encoding is {@link ResourceEncodingEnum#JSOND}, every historical version
+	 * whose version number is a multiple of this value is kept as a full snapshot instead of
+	 * being stored as a delta. This bounds the number of versions that need to be loaded in
+	 * order to rebuild an old version.
+	 * <p>
+	 * The default value for this setting is 10.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public int getHistoryDeltaSnapshotInterval() {
+		return myHistoryDeltaSnapshotInterval;
+	}
+
+	/**
+	 * When the resource encoding is {@link ResourceEncodingEnum#JSOND}, every historical version
+	 * whose version number is a multiple of this value is kept as a full snapshot instead of
+	 * being stored as a delta. This bounds the number of versions that need to be loaded in
+	 * order to rebuild an old version.
+	 * <p>
+	 * The default value for this setting is 10.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public void setHistoryDeltaSnapshotInterval(int theHistoryDeltaSnapshotInterval) {
+		Validate.isTrue(theHistoryDeltaSnapshotInterval > 0, "theHistoryDeltaSnapshotInterval must be a positive integer");
+		myHistoryDeltaSnapshotInterval = theHistoryDeltaSnapshotInterval;
+	}
+
 	/**
 	 * If set, an individual resource will not be allowed to have more than the
 	 * given number of tags, profiles, and security labels (the limit is for the combined
@@ -1316,6 +1380,67 @@ public class DaoConfig {
 		myExpungeBatchSize = theExpungeBatchSize;
 	}
 
+	/**
+	 * If set to a non-null value (default is <code>null</code>), the expunge operation will
+	 * process at most this many records (resources or resource versions) per second across all of
+	 * its threads. This can be used to limit the load that a large expunge places on the database
+	 * while other requests are being served.
+	 *
+	 * @since 5.1.0
+	 */
+	public Integer getExpungeMaxRecordsPerSecond() {
+		return myExpungeMaxRecordsPerSecond;
+	}
+
+	/**
+	 * If set to a non-null value (default is <code>null</code>), the expunge operation will
+	 * process at most this many records (resources or resource versions) per second across all of
+	 * its threads. This can be used to limit the load that a large expunge places on the database
+	 * while other requests are being served.
+	 *
+	 * @since 5.1.0
+	 */
+	public void setExpungeMaxRecordsPerSecond(Integer theExpungeMaxRecordsPerSecond) {
+		Validate.isTrue(theExpungeMaxRecordsPerSecond == null || theExpungeMaxRecordsPerSecond > 0, "theExpungeMaxRecordsPerSecond must be null or positive");
+		myExpungeMaxRecordsPerSecond = theExpungeMaxRecordsPerSecond;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the link lookups used to resolve
+	 * <code>_include</code> and <code>_revinclude</code> parameters are executed concurrently
+	 * on a dedicated thread pool when a search has several include paths or a large page of
+	 * results. This reduces latency for searches with several includes, at the cost of using
+	 * additional database connections.
+	 * <p>
+	 * Note that concurrent lookups run in their own read-only transactions, so they will not
+	 * see uncommitted changes made earlier in the calling transaction (e.g. by earlier entries
+	 * in a FHIR transaction bundle which also performs searches with includes).
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public boolean isConcurrentIncludeLoadingEnabled() {
+		return myConcurrentIncludeLoadingEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the link lookups used to resolve
+	 * <code>_include</code> and <code>_revinclude</code> parameters are executed concurrently
+	 * on a dedicated thread pool when a search has several include paths or a large page of
+	 * results. This reduces latency for searches with several includes, at the cost of using
+	 * additional database connections.
+	 * <p>
+	 * Note that concurrent lookups run in their own read-only transactions, so they will not
+	 * see uncommitted changes made earlier in the calling transaction (e.g. by earlier entries
+	 * in a FHIR transaction bundle which also performs searches with includes).
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public void setConcurrentIncludeLoadingEnabled(boolean theConcurrentIncludeLoadingEnabled) {
+		myConcurrentIncludeLoadingEnabled = theConcurrentIncludeLoadingEnabled;
+	}
+
 	/**
 	 * Should contained IDs be indexed the same way that non-contained IDs are (default is
 	 * <code>true</code>)
@@ -77,6 +77,7 @@ import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
@@ -238,6 +239,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	private IPartitionLookupSvc myPartitionLookupSvc;
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
+	@Autowired
+	private ResourceHistoryDeltaService myResourceHistoryDeltaService;
 
 	@Override
 	protected IInterceptorBroadcaster getInterceptorBroadcaster() {
@@ -515,7 +518,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		if (theEntity.getDeleted() == null) {
 
-			encoding = myConfig.getResourceEncoding();
+			encoding = myConfig.getResourceEncoding().getSnapshotEncoding();
 			Set<String> excludeElements = ResourceMetaParams.EXCLUDE_ELEMENTS_IN_ENCODED;
 			theEntity.setFhirVersion(myContext.getVersion().getVersion());
 
@@ -821,9 +824,21 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		return toResource(resourceType, theEntity, null, theForHistoryOperation);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <R extends IBaseResource> R toResource(Class<R> theResourceType, IBaseResourceEntity theEntity, Collection<ResourceTag> theTagList, boolean theForHistoryOperation) {
+		return toResource(theResourceType, theEntity, theTagList, theForHistoryOperation, false);
+	}
+
+	/**
+	 * @param theAllowPreEncodedJson If <code>true</code>, the stored resource body is not parsed. Instead, the
+	 *                               returned resource contains only the ID and metadata, and the stored JSON is
+	 *                               attached using {@link RestfulServerUtils#setPreEncodedJson(IBaseResource, String)}.
+	 *                               This must only be used for resources which are returned directly to the client.
+	 *                               The stored body is parsed anyway if it was stored using a different FHIR
+	 *                               version, or if parsing would normalise it (see {@link #isStoredJsonCanonical(String)}).
+	 */
+	@SuppressWarnings("unchecked")
+	protected <R extends IBaseResource> R toResource(Class<R> theResourceType, IBaseResourceEntity theEntity, Collection<ResourceTag> theTagList, boolean theForHistoryOperation, boolean theAllowPreEncodedJson) {
 
 		// 1. get resource, it's encoding and the tags if any
 		byte[] resourceBytes;
@@ -833,8 +848,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		String provenanceSourceUri = null;
 		String provenanceRequestId = null;
 
+		ResourceHistoryTable historyEntity = null;
+
 		if (theEntity instanceof ResourceHistoryTable) {
 			ResourceHistoryTable history = (ResourceHistoryTable) theEntity;
+			historyEntity = history;
 			resourceBytes = history.getResource();
 			resourceEncoding = history.getEncoding();
 			if (history.isHasTags()) {
@@ -861,6 +879,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 					return null;
 				}
 			}
+			historyEntity = history;
 			resourceBytes = history.getResource();
 			resourceEncoding = history.getEncoding();
 			if (resource.isHasTags()) {
@@ -891,7 +910,12 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		}
 
 		// 2. get The text
-		String resourceText = decodeResource(resourceBytes, resourceEncoding);
+		String resourceText;
+		if (resourceEncoding == ResourceEncodingEnum.JSOND && historyEntity != null) {
+			resourceText = myResourceHistoryDeltaService.decodeDeltaVersion(historyEntity);
+		} else {
+			resourceText = decodeResource(resourceBytes, resourceEncoding);
+		}
 
 		// 3. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = theResourceType;
@@ -913,7 +937,12 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		// 4. parse the text to FHIR
 		R retVal;
-		if (resourceEncoding != ResourceEncodingEnum.DEL) {
+		if (resourceEncoding != ResourceEncodingEnum.DEL && theAllowPreEncodedJson && theEntity.getFhirVersion() == myContext.getVersion().getVersion() && isStoredJsonCanonical(resourceText)) {
+
+			retVal = (R) myContext.getResourceDefinition(resourceType).newInstance();
+			RestfulServerUtils.setPreEncodedJson(retVal, resourceText);
+
+		} else if (resourceEncoding != ResourceEncodingEnum.DEL) {
 
 			LenientErrorHandler errorHandler = new LenientErrorHandler(false).setErrorOnInvalidValue(false);
 			IParser parser = new TolerantJsonParser(getContext(theEntity.getFhirVersion()), errorHandler);
@@ -976,6 +1005,48 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		return retVal;
 	}
 
+	/**
+	 * Stored JSON may only be returned as-is if parsing and encoding it again would produce the
+	 * same JSON. This is not the case for JSON written by older versions which contains numbers
+	 * with no leading integer (e.g. <code>.5</code>) or with leading zeros (e.g. <code>00.5</code>),
+	 * which {@link TolerantJsonParser} corrects when parsing.
+	 */
+	static boolean isStoredJsonCanonical(String theJson) {
+		boolean inString = false;
+		char previous = 0;
+		for (int i = 0; i < theJson.length(); i++) {
+			char next = theJson.charAt(i);
+			if (inString) {
+				if (next == '\\') {
+					i++;
+				} else if (next == '"') {
+					inString = false;
+					previous = next;
+				}
+				continue;
+			}
+			if (Character.isWhitespace(next)) {
+				continue;
+			}
+			if (next == '"') {
+				inString = true;
+			} else if (previous == ':' || previous == '[' || previous == ',') {
+				int start = next == '-' ? i + 1 : i;
+				if (start < theJson.length()) {
+					char first = theJson.charAt(start);
+					if (first == '.') {
+						return false;
+					}
+					if (first == '0' && start + 1 < theJson.length() && Character.isDigit(theJson.charAt(start + 1))) {
+						return false;
+					}
+				}
+			}
+			previous = next;
+		}
+		return true;
+	}
+
 	public String toResourceName(Class<? extends IBaseResource> theResourceType) {
 		return myContext.getResourceType(theResourceType);
 	}
@@ -1118,6 +1189,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 			ourLog.debug("Saving history entry {}", historyEntry.getIdDt());
 			myResourceHistoryTableDao.save(historyEntry);
+			myResourceHistoryDeltaService.supersedeVersion(historyEntry);
 
 			// Save resource source
 			String source = null;
@@ -1503,6 +1575,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case JSONZ:
+				resourceText = DictionaryCompressionUtil.decompress(theResourceBytes);
+				break;
+			case JSOND:
+				throw new InternalErrorException("Resource stored as a delta can not be decoded without its history");
 			case DEL:
 				break;
 		}
@@ -1523,6 +1600,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				bytes = GZipUtil.compress(encoded);
 				break;
+			case JSONZ:
+				bytes = DictionaryCompressionUtil.compress(encoded);
+				break;
 			default:
 			case DEL:
 				bytes = new byte[0];
@@ -70,6 +70,7 @@ import ca.uhn.fhir.rest.api.server.IPreResourceShowDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.SimplePreResourceAccessDetails;
 import ca.uhn.fhir.rest.api.server.SimplePreResourceShowDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.MethodNotAllowedException;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
@@ -974,7 +975,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		BaseHasResource entity = readEntity(theId, theRequest);
 		validateResourceType(entity);
 
-		T retVal = toResource(myResourceType, entity, null, false);
+		T retVal = toResource(myResourceType, entity, null, false, isPreEncodedJsonReadPossible(theId, theRequest));
 
 		if (theDeletedOk == false) {
 			if (entity.getDeleted() != null) {
@@ -1011,6 +1012,34 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		return retVal;
 	}
 
+	/**
+	 * Can the stored JSON for the resource being read be returned to the client without being
+	 * parsed? This is only possible if the resource is the one requested by the client, and no
+	 * interceptors need to examine it. It is not possible if any of the following apply:
+	 * <ul>
+	 * <li>{@link ca.uhn.fhir.rest.server.RestfulServer#setPreEncodedResourcePassThrough(boolean)} is not enabled</li>
+	 * <li>The request is not a read or vread of this resource, or is for a Binary</li>
+	 * <li>The response will not be compact JSON (XML, <code>_pretty</code>, or pretty printing by default)</li>
+	 * <li>The request uses <code>_summary</code>, <code>_elements</code> or <code>_elements:exclude</code></li>
+	 * <li>A narrative generator is configured on the FhirContext</li>
+	 * <li>Interceptors are registered for {@link Pointcut#SERVER_OUTGOING_RESPONSE},
+	 * {@link Pointcut#STORAGE_PREACCESS_RESOURCES} or {@link Pointcut#STORAGE_PRESHOW_RESOURCES}</li>
+	 * </ul>
+	 * Even if this returns <code>true</code>, {@link #toResource(Class, IBaseResourceEntity, Collection, boolean, boolean)}
+	 * still parses stored JSON which would not be encoded identically after parsing.
+	 */
+	private boolean isPreEncodedJsonReadPossible(IIdType theId, RequestDetails theRequest) {
+		if (!RestfulServerUtils.isPreEncodedJsonResponsePossible(theRequest)) {
+			return false;
+		}
+		IIdType requestId = theRequest.getId();
+		if (requestId == null || !getResourceName().equals(theRequest.getResourceName()) || !theId.getIdPart().equals(requestId.getIdPart())) {
+			return false;
+		}
+		return !JpaInterceptorBroadcaster.hasHooks(Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, theRequest)
+			&& !JpaInterceptorBroadcaster.hasHooks(Pointcut.STORAGE_PRESHOW_RESOURCES, myInterceptorBroadcaster, theRequest);
+	}
+
 	@Override
 	public BaseHasResource readEntity(IIdType theId, RequestDetails theRequest) {
 		return readEntity(theId, true, theRequest);
@@ -0,0 +1,313 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Computes and applies compact binary deltas between two byte arrays. A delta
+ * is a sequence of COPY (offset/length into the base) and INSERT (literal bytes)
+ * instructions that rebuild the target from the base.
+ * <p>
+ * This is used to store historical resource versions as a delta against the
+ * next newer version (see {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum#JSOND}).
+ * </p>
+ */
+public class DeltaUtil {
+
+	private static final int BLOCK_SIZE = 16;
+	private static final int FORMAT_VERSION = 1;
+	private static final int OP_COPY = 1;
+	private static final int OP_INSERT = 2;
+	private static final int HASH_MULTIPLIER = 31;
+	private static final int MAX_CHAIN_LENGTH = 64;
+
+	/**
+	 * Non instantiable
+	 */
+	private DeltaUtil() {
+		super();
+	}
+
+	/**
+	 * Creates a delta which can be used with {@link #applyDelta(byte[], byte[])} in order
+	 * to rebuild <code>theTarget</code> from <code>theBase</code>
+	 */
+	public static byte[] computeDelta(byte[] theBase, byte[] theTarget) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		os.write(FORMAT_VERSION);
+		writeVarInt(os, theTarget.length);
+
+		// Most updates only touch a small part of a resource, so first trim the common prefix and suffix
+		int maxCommon = Math.min(theBase.length, theTarget.length);
+		int prefix = 0;
+		while (prefix < maxCommon && theBase[prefix] == theTarget[prefix]) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < maxCommon - prefix && theBase[theBase.length - 1 - suffix] == theTarget[theTarget.length - 1 - suffix]) {
+			suffix++;
+		}
+		int baseEnd = theBase.length - suffix;
+		int targetEnd = theTarget.length - suffix;
+
+		if (prefix > 0) {
+			writeCopy(os, 0, prefix);
+		}
+
+		// Index the base in fixed size blocks, chaining together blocks with the same hash
+		int blockCount = Math.max(0, (baseEnd - prefix) / BLOCK_SIZE);
+		int bucketCount = Integer.highestOneBit(Math.max(blockCount, 1) * 2);
+		int[] buckets = new int[bucketCount];
+		Arrays.fill(buckets, -1);
+		int[] chain = new int[blockCount];
+		for (int block = 0; block < blockCount; block++) {
+			int bucket = hash(theBase, prefix + block * BLOCK_SIZE) & (bucketCount - 1);
+			chain[block] = buckets[bucket];
+			buckets[bucket] = block;
+		}
+
+		int highPower = 1;
+		for (int i = 1; i < BLOCK_SIZE; i++) {
+			highPower *= HASH_MULTIPLIER;
+		}
+
+		Matcher matcher = new Matcher(theBase, prefix, baseEnd, theTarget, targetEnd, buckets, chain);
+		int insertStart = prefix;
+		int pos = prefix;
+		int diagonal = 0;
+		int hash = pos + BLOCK_SIZE <= targetEnd ? hash(theTarget, pos) : 0;
+		while (pos + BLOCK_SIZE <= targetEnd) {
+
+			if (matcher.findLongestMatch(pos, hash, diagonal, insertStart)) {
+
+				// A match starting slightly later may cover more of the target (e.g. if
+				// the match found here is a repeated fragment from elsewhere in the base)
+				int matchStart = matcher.myStart;
+				int matchBase = matcher.myBaseOffset;
+				int matchEnd = matcher.myEnd;
+				for (int lookahead = 1; lookahead < BLOCK_SIZE && pos + lookahead + BLOCK_SIZE <= targetEnd; lookahead++) {
+					if (matcher.findLongestMatch(pos + lookahead, hash(theTarget, pos + lookahead), diagonal, insertStart) && matcher.myEnd > matchEnd) {
+						matchStart = matcher.myStart;
+						matchBase = matcher.myBaseOffset;
+						matchEnd = matcher.myEnd;
+					}
+				}
+
+				writeInsert(os, theTarget, insertStart, matchStart);
+				writeCopy(os, matchBase, matchEnd - matchStart);
+
+				diagonal = matchBase - matchStart;
+				pos = matchEnd;
+				insertStart = matchEnd;
+				if (pos + BLOCK_SIZE <= targetEnd) {
+					hash = hash(theTarget, pos);
+				}
+				continue;
+			}
+
+			if (pos + BLOCK_SIZE < targetEnd) {
+				hash = (hash - theTarget[pos] * highPower) * HASH_MULTIPLIER + theTarget[pos + BLOCK_SIZE];
+			}
+			pos++;
+		}
+
+		writeInsert(os, theTarget, insertStart, targetEnd);
+		if (suffix > 0) {
+			writeCopy(os, baseEnd, suffix);
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Rebuilds the target of a delta created by {@link #computeDelta(byte[], byte[])}
+	 *
+	 * @throws DataFormatException If the delta is invalid or does not apply to the given base
+	 */
+	public static byte[] applyDelta(byte[] theBase, byte[] theDelta) {
+		int[] pos = new int[]{0};
+		if (theDelta.length == 0 || theDelta[pos[0]++] != FORMAT_VERSION) {
+			throw new DataFormatException("Unknown delta format");
+		}
+
+		int targetLength = readVarInt(theDelta, pos);
+		byte[] retVal = new byte[targetLength];
+		int outPos = 0;
+		try {
+			while (pos[0] < theDelta.length) {
+				int op = theDelta[pos[0]++];
+				switch (op) {
+					case OP_COPY: {
+						int offset = readVarInt(theDelta, pos);
+						int length = readVarInt(theDelta, pos);
+						System.arraycopy(theBase, offset, retVal, outPos, length);
+						outPos += length;
+						break;
+					}
+					case OP_INSERT: {
+						int length = readVarInt(theDelta, pos);
+						System.arraycopy(theDelta, pos[0], retVal, outPos, length);
+						pos[0] += length;
+						outPos += length;
+						break;
+					}
+					default:
+						throw new DataFormatException("Unknown delta instruction: " + op);
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new DataFormatException("Delta does not apply to the given base", e);
+		}
+
+		if (outPos != targetLength) {
+			throw new DataFormatException("Delta produced " + outPos + " bytes but expected " + targetLength);
+		}
+		return retVal;
+	}
+
+	private static int hash(byte[] theBytes, int theOffset) {
+		int retVal = 0;
+		for (int i = theOffset; i < theOffset + BLOCK_SIZE; i++) {
+			retVal = retVal * HASH_MULTIPLIER + theBytes[i];
+		}
+		return retVal;
+	}
+
+
+	private static void writeCopy(ByteArrayOutputStream theOs, int theOffset, int theLength) {
+		theOs.write(OP_COPY);
+		writeVarInt(theOs, theOffset);
+		writeVarInt(theOs, theLength);
+	}
+
+	private static void writeInsert(ByteArrayOutputStream theOs, byte[] theTarget, int theFrom, int theTo) {
+		if (theTo > theFrom) {
+			theOs.write(OP_INSERT);
+			writeVarInt(theOs, theTo - theFrom);
+			theOs.write(theTarget, theFrom, theTo - theFrom);
+		}
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream theOs, int theValue) {
+		int value = theValue;
+		while ((value & ~0x7F) != 0) {
+			theOs.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		theOs.write(value);
+	}
+
+	private static int readVarInt(byte[] theBytes, int[] thePos) {
+		int retVal = 0;
+		int shift = 0;
+		while (true) {
+			if (thePos[0] >= theBytes.length || shift > 28) {
+				throw new DataFormatException("Truncated delta");
+			}
+			byte next = theBytes[thePos[0]++];
+			retVal |= (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return retVal;
+			}
+			shift += 7;
+		}
+	}
+
+	/**
+	 * Finds the longest match in the base for a given position in the target
+	 */
+	private static class Matcher {
+
+		private final byte[] myBase;
+		private final int myBaseStart;
+		private final int myBaseEnd;
+		private final byte[] myTarget;
+		private final int myTargetEnd;
+		private final int[] myBuckets;
+		private final int[] myChain;
+		private int myStart;
+		private int myEnd;
+		private int myBaseOffset;
+
+		Matcher(byte[] theBase, int theBaseStart, int theBaseEnd, byte[] theTarget, int theTargetEnd, int[] theBuckets, int[] theChain) {
+			myBase = theBase;
+			myBaseStart = theBaseStart;
+			myBaseEnd = theBaseEnd;
+			myTarget = theTarget;
+			myTargetEnd = theTargetEnd;
+			myBuckets = theBuckets;
+			myChain = theChain;
+		}
+
+		/**
+		 * Prefers continuing on the same diagonal as the previous copy, otherwise takes the
+		 * longest match among the indexed blocks. Matches are extended backward as far as
+		 * <code>theMinStart</code>.
+		 *
+		 * @return Returns <code>true</code> if a match of at least one block was found
+		 */
+		boolean findLongestMatch(int thePos, int theHash, int theDiagonal, int theMinStart) {
+			int bestOffset = -1;
+			int bestLength = 0;
+			int diagonalOffset = thePos + theDiagonal;
+			if (diagonalOffset >= myBaseStart && diagonalOffset + BLOCK_SIZE <= myBaseEnd) {
+				bestLength = matchLength(diagonalOffset, thePos);
+				bestOffset = diagonalOffset;
+			}
+			int chainLength = 0;
+			for (int block = myBuckets[theHash & (myBuckets.length - 1)]; block != -1 && chainLength < MAX_CHAIN_LENGTH; block = myChain[block], chainLength++) {
+				int offset = myBaseStart + block * BLOCK_SIZE;
+				int length = matchLength(offset, thePos);
+				if (length > bestLength) {
+					bestLength = length;
+					bestOffset = offset;
+				}
+			}
+			if (bestLength < BLOCK_SIZE) {
+				return false;
+			}
+
+			int start = thePos;
+			int baseOffset = bestOffset;
+			while (start > theMinStart && baseOffset > myBaseStart && myTarget[start - 1] == myBase[baseOffset - 1]) {
+				start--;
+				baseOffset--;
+			}
+			myStart = start;
+			myBaseOffset = baseOffset;
+			myEnd = thePos + bestLength;
+			return true;
+		}
+
+		private int matchLength(int theBaseOffset, int theTargetOffset) {
+			int retVal = 0;
+			while (theBaseOffset + retVal < myBaseEnd && theTargetOffset + retVal < myTargetEnd && myBase[theBaseOffset + retVal] == myTarget[theTargetOffset + retVal]) {
+				retVal++;
+			}
+			return retVal;
+		}
+
+	}
+
+}
@@ -0,0 +1,179 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.util.ClasspathUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses encoded resources using deflate with a preset dictionary.
+ * <p>
+ * Small resources compress poorly with plain gzip because every resource repeats the same
+ * element names. The dictionary contains the JSON element names that are common across
+ * resource types, so even the first occurrence of a name can be encoded as a short
+ * back-reference.
+ * </p>
+ * <p>
+ * Dictionaries are fixed files shipped on the classpath and are never changed once released,
+ * since stored payloads can only be decoded with the exact dictionary they were written with.
+ * A new dictionary gets a new ID and is added to {@link #ourDictionaryPaths} alongside the old
+ * ones, and {@link #CURRENT_DICTIONARY_ID} is updated so that new payloads use it. The Adler-32
+ * checksum of each dictionary is pinned here too, so an accidentally modified dictionary file
+ * is detected rather than silently producing corrupt output.
+ * </p>
+ * <p>
+ * Compressed payloads start with a one byte dictionary ID followed by the uncompressed length
+ * (so that decompression can inflate directly into a correctly sized buffer) and then the
+ * deflate stream.
+ * </p>
+ */
+public class DictionaryCompressionUtil {
+
+	static final int CURRENT_DICTIONARY_ID = 1;
+	private static final int HEADER_LENGTH = 5;
+	/**
+	 * Deflate can not expand data by more than this factor, so a header claiming a longer
+	 * length than this allows is corrupt (the extra allowance covers block overhead for
+	 * very short streams)
+	 */
+	private static final int MAXIMUM_EXPANSION_RATIO = 1032;
+	private static final int MAXIMUM_EXPANSION_ALLOWANCE = 1024;
+	private static final Map<Integer, String> ourDictionaryPaths;
+	private static final Map<Integer, Integer> ourDictionaryChecksums;
+	private static final Map<Integer, byte[]> ourDictionaries = new ConcurrentHashMap<>();
+
+	static {
+		Map<Integer, String> paths = new HashMap<>();
+		Map<Integer, Integer> checksums = new HashMap<>();
+		paths.put(1, "/ca/uhn/fhir/jpa/dao/jsonz-dictionary-1.txt");
+		checksums.put(1, 0x63DFA794);
+		ourDictionaryPaths = paths;
+		ourDictionaryChecksums = checksums;
+	}
+
+	/**
+	 * Non instantiable
+	 */
+	private DictionaryCompressionUtil() {
+		super();
+	}
+
+	public static byte[] compress(String theEncoded) {
+		byte[] input = theEncoded.getBytes(StandardCharsets.UTF_8);
+		byte[] dictionary = getDictionary(CURRENT_DICTIONARY_ID);
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try {
+			deflater.setDictionary(dictionary);
+			deflater.setInput(input);
+			deflater.finish();
+
+			ByteArrayOutputStream os = new ByteArrayOutputStream(input.length / 4 + 16);
+			os.write(CURRENT_DICTIONARY_ID);
+			os.write(input.length >>> 24);
+			os.write(input.length >>> 16);
+			os.write(input.length >>> 8);
+			os.write(input.length);
+			byte[] buffer = new byte[Math.max(64, Math.min(input.length, 8192))];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				os.write(buffer, 0, count);
+			}
+			return os.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	public static String decompress(byte[] theCompressed) {
+		if (theCompressed.length < HEADER_LENGTH) {
+			throw new DataFormatException("Failed to decompress contents: Truncated input");
+		}
+		int dictionaryId = theCompressed[0] & 0xFF;
+		int length = ((theCompressed[1] & 0xFF) << 24) | ((theCompressed[2] & 0xFF) << 16) | ((theCompressed[3] & 0xFF) << 8) | (theCompressed[4] & 0xFF);
+		long maximumLength = (long) (theCompressed.length - HEADER_LENGTH) * MAXIMUM_EXPANSION_RATIO + MAXIMUM_EXPANSION_ALLOWANCE;
+		if (length < 0 || length > maximumLength) {
+			throw new DataFormatException("Failed to decompress contents: Invalid length " + length + " for " + theCompressed.length + " byte input");
+		}
+		byte[] output = new byte[length];
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(theCompressed, HEADER_LENGTH, theCompressed.length - HEADER_LENGTH);
+			int offset = 0;
+			while (!inflater.finished()) {
+				if (inflater.needsDictionary()) {
+					byte[] dictionary = getDictionary(dictionaryId);
+					if (inflater.getAdler() != adler32(dictionary)) {
+						throw new DataFormatException("Failed to decompress contents: Contents do not match dictionary " + dictionaryId);
+					}
+					inflater.setDictionary(dictionary);
+				}
+				int count = inflater.inflate(output, offset, output.length - offset);
+				offset += count;
+				if (count == 0 && !inflater.finished() && !inflater.needsDictionary()) {
+					throw new DataFormatException("Failed to decompress contents: Truncated input");
+				}
+			}
+			if (offset != length) {
+				throw new DataFormatException("Failed to decompress contents: Expected " + length + " bytes but found " + offset);
+			}
+			return new String(output, StandardCharsets.UTF_8);
+		} catch (java.util.zip.DataFormatException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	static byte[] getDictionary(int theDictionaryId) {
+		String path = ourDictionaryPaths.get(theDictionaryId);
+		if (path == null) {
+			throw new DataFormatException("Failed to decompress contents: Unknown dictionary " + theDictionaryId);
+		}
+		return ourDictionaries.computeIfAbsent(theDictionaryId, id -> loadDictionary(id, path));
+	}
+
+	private static byte[] loadDictionary(int theDictionaryId, String thePath) {
+		byte[] retVal = ClasspathUtil.loadResourceAsByteArray(thePath);
+		int expectedChecksum = ourDictionaryChecksums.get(theDictionaryId);
+		if (adler32(retVal) != expectedChecksum) {
+			throw new IllegalStateException("Dictionary " + theDictionaryId + " at " + thePath + " has been modified");
+		}
+		return retVal;
+	}
+
+	private static int adler32(byte[] theBytes) {
+		Adler32 adler = new Adler32();
+		adler.update(theBytes, 0, theBytes.length);
+		return (int) adler.getValue();
+	}
+
+}
@@ -0,0 +1,182 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handles the storage of historical resource versions as deltas (see
+ * {@link ResourceEncodingEnum#JSOND}).
+ * <p>
+ * Deltas are "reverse" deltas: A superseded version is stored as a delta against the
+ * version that replaced it. This means that the current version of a resource is always
+ * stored in full, so reads and searches are not affected, and only reads of older
+ * versions need to walk forward through the newer versions.
+ * </p>
+ */
+@Service
+public class ResourceHistoryDeltaService {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceHistoryDeltaService.class);
+
+	@Autowired
+	private IResourceHistoryTableDao myResourceHistoryTableDao;
+	@Autowired
+	private DaoConfig myDaoConfig;
+
+	/**
+	 * Called after a new version of a resource has been stored. If delta storage is enabled,
+	 * the previous version is replaced with a delta against the new version.
+	 *
+	 * @param theNewVersion The version that was just stored
+	 */
+	public void supersedeVersion(ResourceHistoryTable theNewVersion) {
+		if (myDaoConfig.getResourceEncoding() != ResourceEncodingEnum.JSOND) {
+			return;
+		}
+		if (!isFullVersion(theNewVersion) || theNewVersion.getVersion() <= 1) {
+			return;
+		}
+
+		long previousVersionNumber = theNewVersion.getVersion() - 1;
+		if (previousVersionNumber % myDaoConfig.getHistoryDeltaSnapshotInterval() == 0) {
+			return;
+		}
+
+		ResourceHistoryTable previousVersion = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(theNewVersion.getResourceId(), previousVersionNumber);
+		if (previousVersion == null || !isFullVersion(previousVersion)) {
+			return;
+		}
+
+		byte[] newBytes = toUtf8(theNewVersion);
+		byte[] previousBytes = toUtf8(previousVersion);
+		byte[] delta = DeltaUtil.computeDelta(newBytes, previousBytes);
+		if (delta.length >= previousVersion.getResource().length) {
+			ourLog.debug("Not storing version {} as a delta, {} byte delta is not smaller than {} byte body", previousVersion.getIdDt(), delta.length, previousVersion.getResource().length);
+			return;
+		}
+
+		ourLog.debug("Replacing {} byte body of version {} with {} byte delta", previousVersion.getResource().length, previousVersion.getIdDt(), delta.length);
+		previousVersion.setEncoding(ResourceEncodingEnum.JSOND);
+		previousVersion.setResource(delta);
+		myResourceHistoryTableDao.save(previousVersion);
+	}
+
+	/**
+	 * Rebuilds the full resource text for a version stored as a {@link ResourceEncodingEnum#JSOND delta}
+	 */
+	public String decodeDeltaVersion(ResourceHistoryTable theVersion) {
+		Validate.isTrue(theVersion.getEncoding() == ResourceEncodingEnum.JSOND, "Version is not a delta");
+
+		List<ResourceHistoryTable> deltas = new ArrayList<>();
+		deltas.add(theVersion);
+		ResourceHistoryTable snapshot = null;
+
+		Pageable page = PageRequest.of(0, myDaoConfig.getHistoryDeltaSnapshotInterval() + 1);
+		while (snapshot == null) {
+			Slice<ResourceHistoryTable> newerVersions = myResourceHistoryTableDao.findForIdAndNewerThanVersion(page, theVersion.getResourceId(), theVersion.getVersion());
+			for (ResourceHistoryTable next : newerVersions) {
+				long expectedVersion = deltas.get(deltas.size() - 1).getVersion() + 1;
+				if (next.getVersion() != expectedVersion) {
+					throw new InternalErrorException("Unable to rebuild " + theVersion.getIdDt().getValue() + ", version " + expectedVersion + " is missing");
+				}
+				if (next.getEncoding() == ResourceEncodingEnum.JSOND) {
+					deltas.add(next);
+				} else if (isFullVersion(next)) {
+					snapshot = next;
+					break;
+				} else {
+					throw new InternalErrorException("Unable to rebuild " + theVersion.getIdDt().getValue() + ", version " + expectedVersion + " has no contents");
+				}
+			}
+			if (snapshot == null) {
+				if (!newerVersions.hasNext()) {
+					throw new InternalErrorException("Unable to rebuild " + theVersion.getIdDt().getValue() + ", no full version found");
+				}
+				page = newerVersions.nextPageable();
+			}
+		}
+
+		byte[] bytes = toUtf8(snapshot);
+		for (int i = deltas.size() - 1; i >= 0; i--) {
+			bytes = DeltaUtil.applyDelta(bytes, deltas.get(i).getResource());
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Must be called before a version is removed from the database. If the version
+	 * preceding it is stored as a delta against it, that version is rewritten as a
+	 * full copy so that it can still be read.
+	 */
+	public void prepareForVersionRemoval(ResourceHistoryTable theVersion) {
+		if (theVersion.getVersion() <= 1) {
+			return;
+		}
+		ResourceHistoryTable previousVersion = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(theVersion.getResourceId(), theVersion.getVersion() - 1);
+		if (previousVersion == null || previousVersion.getEncoding() != ResourceEncodingEnum.JSOND) {
+			return;
+		}
+
+		String text = decodeDeltaVersion(previousVersion);
+		previousVersion.setEncoding(ResourceEncodingEnum.JSONC);
+		previousVersion.setResource(GZipUtil.compress(text));
+		myResourceHistoryTableDao.save(previousVersion);
+	}
+
+	private static boolean isFullVersion(ResourceHistoryTable theVersion) {
+		if (theVersion.getResource() == null) {
+			return false;
+		}
+		switch (theVersion.getEncoding()) {
+			case JSON:
+			case JSONC:
+			case JSONZ:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static byte[] toUtf8(ResourceHistoryTable theVersion) {
+		if (theVersion.getEncoding() == ResourceEncodingEnum.JSON) {
+			return theVersion.getResource();
+		}
+		return BaseHapiFhirDao.decodeResource(theVersion.getResource(), theVersion.getEncoding()).getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -76,12 +76,14 @@ import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.query.Query;
@@ -103,16 +105,19 @@ import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -173,6 +178,8 @@ public class SearchBuilder implements ISearchBuilder {
 	private RequestPartitionId myRequestPartitionId;
 	@Autowired
 	private PartitionSettings myPartitionSettings;
+	@Autowired(required = false)
+	private SearchIncludeLoaderSvc mySearchIncludeLoaderSvc;
 
 	/**
 	 * Constructor
@@ -726,32 +733,22 @@ public class SearchBuilder implements ISearchBuilder {
 
 			HashSet<ResourcePersistentId> pidsToInclude = new HashSet<>();
 
+			/*
+			 * Collect the paths to follow this round, grouping together paths which share the
+			 * same target type restriction so that they can be looked up using a single query
+			 */
+			boolean matchAll = false;
+			Map<Pair<String, Set<String>>, Set<String>> pathsByTargetTypes = new LinkedHashMap<>();
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
 				if (nextInclude.isRecurse() == false) {
 					iter.remove();
 				}
 
-				boolean matchAll = "*".equals(nextInclude.getValue());
-				if (matchAll) {
-					String sql;
-					sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r." + searchFieldName + " IN (:target_pids) ";
-					List<Collection<ResourcePersistentId>> partitions = partition(nextRoundMatches, getMaximumPageSize());
-					for (Collection<ResourcePersistentId> nextPartition : partitions) {
-						TypedQuery<Long> q = theEntityManager.createQuery(sql, Long.class);
-						q.setParameter("target_pids", ResourcePersistentId.toLongList(nextPartition));
-						List<Long> results = q.getResultList();
-						for (Long resourceLink : results) {
-							if (theReverseMode) {
-								pidsToInclude.add(new ResourcePersistentId(resourceLink));
-							} else {
-								pidsToInclude.add(new ResourcePersistentId(resourceLink));
-							}
-						}
-					}
+				if ("*".equals(nextInclude.getValue())) {
+					matchAll = true;
 				} else {
 
-					List<String> paths;
 					RuntimeSearchParam param;
 					String resType = nextInclude.getParamType();
 					if (isBlank(resType)) {
@@ -774,38 +771,60 @@ public class SearchBuilder implements ISearchBuilder {
 						continue;
 					}
 
-					paths = param.getPathsSplit();
-
 					String targetResourceType = defaultString(nextInclude.getParamTargetType(), null);
-					for (String nextPath : paths) {
-						String sql;
+					Pair<String, Set<String>> targetTypes;
+					if (targetResourceType != null) {
+						targetTypes = Pair.of(targetResourceType, null);
+					} else if (param.hasTargets()) {
+						targetTypes = Pair.of(null, param.getTargets());
+					} else {
+						targetTypes = Pair.of(null, null);
+					}
+					pathsByTargetTypes.computeIfAbsent(targetTypes, t -> new HashSet<>()).addAll(param.getPathsSplit());
+				}
+			}
 
-						boolean haveTargetTypesDefinedByParam = param.hasTargets();
+			List<Callable<List<Long>>> lookups = new ArrayList<>();
+			for (Collection<ResourcePersistentId> nextPartition : partition(nextRoundMatches, getMaximumPageSize())) {
+				List<Long> nextPartitionPids = ResourcePersistentId.toLongList(nextPartition);
+				if (matchAll) {
+					String sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r." + searchFieldName + " IN (:target_pids) ";
+					lookups.add(() -> {
+						TypedQuery<Long> q = theEntityManager.createQuery(sql, Long.class);
+						q.setParameter("target_pids", nextPartitionPids);
+						return q.getResultList();
+					});
+				}
+				for (Map.Entry<Pair<String, Set<String>>, Set<String>> nextEntry : pathsByTargetTypes.entrySet()) {
+					String targetResourceType = nextEntry.getKey().getLeft();
+					Set<String> targetResourceTypes = nextEntry.getKey().getRight();
+					Set<String> paths = nextEntry.getValue();
+					String sql;
+					if (targetResourceType != null) {
+						sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r.mySourcePath IN (:src_paths) AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType = :target_resource_type";
+					} else if (targetResourceTypes != null) {
+						sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r.mySourcePath IN (:src_paths) AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType in (:target_resource_types)";
+					} else {
+						sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r.mySourcePath IN (:src_paths) AND r." + searchFieldName + " IN (:target_pids)";
+					}
+					lookups.add(() -> {
+						TypedQuery<Long> q = theEntityManager.createQuery(sql, Long.class);
+						q.setParameter("src_paths", paths);
+						q.setParameter("target_pids", nextPartitionPids);
 						if (targetResourceType != null) {
-							sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType = :target_resource_type";
-						} else if (haveTargetTypesDefinedByParam) {
-							sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType in (:target_resource_types)";
-						} else {
-							sql = "SELECT r." + findFieldName + " FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids)";
+							q.setParameter("target_resource_type", targetResourceType);
+						} else if (targetResourceTypes != null) {
+							q.setParameter("target_resource_types", targetResourceTypes);
 						}
+						return q.getResultList();
+					});
+				}
+			}
 
-						List<Collection<ResourcePersistentId>> partitions = partition(nextRoundMatches, getMaximumPageSize());
-						for (Collection<ResourcePersistentId> nextPartition : partitions) {
-							TypedQuery<Long> q = theEntityManager.createQuery(sql, Long.class);
-							q.setParameter("src_path", nextPath);
-							q.setParameter("target_pids", ResourcePersistentId.toLongList(nextPartition));
-							if (targetResourceType != null) {
-								q.setParameter("target_resource_type", targetResourceType);
-							} else if (haveTargetTypesDefinedByParam) {
-								q.setParameter("target_resource_types", param.getTargets());
-							}
-							List<Long> results = q.getResultList();
-							for (Long resourceLink : results) {
-								if (resourceLink != null) {
-									pidsToInclude.add(new ResourcePersistentId(resourceLink));
-								}
-							}
-						}
+			for (List<Long> nextResults : executeIncludeLookups(lookups)) {
+				for (Long resourceLink : nextResults) {
+					if (resourceLink != null) {
+						pidsToInclude.add(new ResourcePersistentId(resourceLink));
 					}
 				}
 			}
@@ -834,20 +853,8 @@ public class SearchBuilder implements ISearchBuilder {
 		// the user has a chance to know that they were in the results
 		if (allAdded.size() > 0) {
 			List<ResourcePersistentId> includedPidList = new ArrayList<>(allAdded);
-			JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(includedPidList, () -> this);
-			HookParams params = new HookParams()
-				.add(IPreResourceAccessDetails.class, accessDetails)
-				.add(RequestDetails.class, theRequest)
-				.addIfMatchesType(ServletRequestDetails.class, theRequest);
-			JpaInterceptorBroadcaster.doCallHooks(myInterceptorBroadcaster, theRequest, Pointcut.STORAGE_PREACCESS_RESOURCES, params);
-
-			for (int i = includedPidList.size() - 1; i >= 0; i--) {
-				if (accessDetails.isDontReturnResourceAtIndex(i)) {
-					ResourcePersistentId value = includedPidList.remove(i);
-					if (value != null) {
-						theMatches.remove(value);
-					}
-				}
+			for (ResourcePersistentId next : removeInaccessiblePids(includedPidList, theRequest)) {
+				theMatches.remove(next);
 			}
 
 			allAdded = new HashSet<>(includedPidList);
@@ -856,6 +863,54 @@ public class SearchBuilder implements ISearchBuilder {
 		return allAdded;
 	}
 
+	/**
+	 * Independent link lookups are executed concurrently if enabled, otherwise in sequence
+	 * on the calling thread
+	 */
+	private List<List<Long>> executeIncludeLookups(List<Callable<List<Long>>> theLookups) {
+		if (theLookups.size() > 1 && myDaoConfig.isConcurrentIncludeLoadingEnabled() && mySearchIncludeLoaderSvc != null) {
+			return mySearchIncludeLoaderSvc.invokeAll(theLookups);
+		}
+
+		List<List<Long>> retVal = new ArrayList<>(theLookups.size());
+		for (Callable<List<Long>> next : theLookups) {
+			try {
+				retVal.add(next.call());
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new InternalErrorException(e);
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Calls the STORAGE_PREACCESS_RESOURCES pointcut and removes any PIDs which the
+	 * interceptors have asked not to return from the given list
+	 *
+	 * @return Returns the PIDs which were removed
+	 */
+	private List<ResourcePersistentId> removeInaccessiblePids(List<ResourcePersistentId> thePids, RequestDetails theRequest) {
+		JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(thePids, () -> this);
+		HookParams params = new HookParams()
+			.add(IPreResourceAccessDetails.class, accessDetails)
+			.add(RequestDetails.class, theRequest)
+			.addIfMatchesType(ServletRequestDetails.class, theRequest);
+		JpaInterceptorBroadcaster.doCallHooks(myInterceptorBroadcaster, theRequest, Pointcut.STORAGE_PREACCESS_RESOURCES, params);
+
+		List<ResourcePersistentId> retVal = new ArrayList<>();
+		for (int i = thePids.size() - 1; i >= 0; i--) {
+			if (accessDetails.isDontReturnResourceAtIndex(i)) {
+				ResourcePersistentId value = thePids.remove(i);
+				if (value != null) {
+					retVal.add(value);
+				}
+			}
+		}
+		return retVal;
+	}
+
 	private List<Collection<ResourcePersistentId>> partition(Collection<ResourcePersistentId> theNextRoundMatches, int theMaxLoad) {
 		if (theNextRoundMatches.size() <= theMaxLoad) {
 			return Collections.singletonList(theNextRoundMatches);
@@ -1030,15 +1085,24 @@ public class SearchBuilder implements ISearchBuilder {
 		return lastUpdatedPredicates;
 	}
 
+	/**
+	 * Loads the resources referenced (directly or indirectly) by the matches of an
+	 * <code>$everything</code> operation. References are followed breadth first, and each
+	 * query only looks at resources which haven't had their references followed yet, so
+	 * every resource is only visited once. Results are returned as soon as each chunk has
+	 * been loaded so that they can be streamed into the search results.
+	 */
 	public class IncludesIterator extends BaseIterator<ResourcePersistentId> implements Iterator<ResourcePersistentId> {
 
 		private final RequestDetails myRequest;
 		private Iterator<ResourcePersistentId> myCurrentIterator;
 		private final Set<ResourcePersistentId> myCurrentPids;
+		private final ArrayDeque<ResourcePersistentId> myUnvisitedPids;
 		private ResourcePersistentId myNext;
 
 		IncludesIterator(Set<ResourcePersistentId> thePidSet, RequestDetails theRequest) {
 			myCurrentPids = new HashSet<>(thePidSet);
+			myUnvisitedPids = new ArrayDeque<>(thePidSet);
 			myCurrentIterator = EMPTY_LONG_LIST.iterator();
 			myRequest = theRequest;
 		}
@@ -1051,12 +1115,33 @@ public class SearchBuilder implements ISearchBuilder {
 					break;
 				}
 
-				Set<Include> includes = Collections.singleton(new Include("*", true));
-				Set<ResourcePersistentId> newPids = loadIncludes(myContext, myEntityManager, myCurrentPids, includes, false, getParams().getLastUpdated(), mySearchUuid, myRequest);
-				if (newPids.isEmpty()) {
+				if (myUnvisitedPids.isEmpty()) {
 					myNext = NO_MORE;
 					break;
 				}
+
+				List<Long> nextChunk = new ArrayList<>(Math.min(myUnvisitedPids.size(), getMaximumPageSize()));
+				while (nextChunk.size() < getMaximumPageSize() && !myUnvisitedPids.isEmpty()) {
+					nextChunk.add(myUnvisitedPids.poll().getIdAsLong());
+				}
+
+				TypedQuery<Long> q = myEntityManager.createQuery("SELECT r.myTargetResourcePid FROM ResourceLink r WHERE r.mySourceResourcePid IN (:target_pids)", Long.class);
+				q.setParameter("target_pids", nextChunk);
+				List<ResourcePersistentId> newPids = new ArrayList<>();
+				for (Long next : q.getResultList()) {
+					if (next != null) {
+						ResourcePersistentId nextPid = new ResourcePersistentId(next);
+						if (myCurrentPids.add(nextPid)) {
+							newPids.add(nextPid);
+						}
+					}
+				}
+
+				// Resources which are filtered out by an interceptor are not returned, and their references aren't followed
+				if (!newPids.isEmpty()) {
+					removeInaccessiblePids(newPids, myRequest);
+				}
+				myUnvisitedPids.addAll(newPids);
 				myCurrentIterator = newPids.iterator();
 			}
 		}
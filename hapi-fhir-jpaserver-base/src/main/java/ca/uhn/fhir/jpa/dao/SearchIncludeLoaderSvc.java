@@ -0,0 +1,106 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the link lookups for <code>_include</code> and <code>_revinclude</code> processing
+ * concurrently when {@link ca.uhn.fhir.jpa.api.config.DaoConfig#setConcurrentIncludeLoadingEnabled(boolean)}
+ * is enabled. Each lookup runs in its own read-only transaction on a worker thread.
+ */
+@Service
+public class SearchIncludeLoaderSvc {
+
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	private ExecutorService myExecutor;
+	private TransactionTemplate myTxTemplate;
+
+	@PostConstruct
+	public void start() {
+		int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+		myExecutor = Executors.newFixedThreadPool(threadCount, new CustomizableThreadFactory("search_include_"));
+
+		myTxTemplate = new TransactionTemplate(myTxManager);
+		myTxTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		myTxTemplate.setReadOnly(true);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	/**
+	 * Executes the given lookups concurrently and returns their results in the same order
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> theLookups) {
+		List<Future<T>> futures = new ArrayList<>(theLookups.size());
+		for (Callable<T> next : theLookups) {
+			futures.add(myExecutor.submit(() -> myTxTemplate.execute(t -> {
+				try {
+					return next.call();
+				} catch (Exception e) {
+					throw new InternalErrorException(e);
+				}
+			})));
+		}
+
+		List<T> retVal = new ArrayList<>(futures.size());
+		try {
+			for (Future<T> next : futures) {
+				retVal.add(next.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(e.getCause());
+		} finally {
+			for (Future<T> next : futures) {
+				next.cancel(true);
+			}
+		}
+		return retVal;
+	}
+
+}
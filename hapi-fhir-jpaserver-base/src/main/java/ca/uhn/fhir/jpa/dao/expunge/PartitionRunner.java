@@ -24,6 +24,7 @@ import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,7 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 @Service
@@ -42,6 +44,8 @@ public class PartitionRunner {
 	private static final int MAX_POOL_SIZE = 1000;
 
 	private final DaoConfig myDaoConfig;
+	private RateLimiter myRateLimiter;
+	private Integer myRateLimiterRate;
 
 	@Autowired
 	public PartitionRunner(DaoConfig theDaoConfig) {
@@ -87,11 +91,26 @@ public class PartitionRunner {
 		List<Callable<Void>> retval = new ArrayList<>();
 
 		List<List<Long>> partitions = Lists.partition(theResourceIds.getContent(), myDaoConfig.getExpungeBatchSize());
+		RateLimiter rateLimiter = getRateLimiter();
+		int totalCount = theResourceIds.getContent().size();
+		AtomicInteger completedCount = new AtomicInteger();
+		StopWatch sw = new StopWatch();
 
 		for (List<Long> nextPartition : partitions) {
 			Callable<Void> callableTask = () -> {
+				if (rateLimiter != null) {
+					double waited = acquirePermits(rateLimiter, nextPartition.size());
+					if (waited > 0) {
+						ourLog.debug("Waited {}s for expunge rate limit", waited);
+					}
+				}
 				ourLog.info("Expunging any search results pointing to {} resources", nextPartition.size());
 				partitionConsumer.accept(nextPartition);
+
+				int completed = completedCount.addAndGet(nextPartition.size());
+				if (partitions.size() > 1) {
+					ourLog.info("Expunge has processed {}/{} ids in {} ({}/sec) - Estimated time remaining: {}", completed, totalCount, sw, sw.formatThroughput(completed, TimeUnit.SECONDS), sw.getEstimatedTimeRemaining(completed, totalCount));
+				}
 				return null;
 			};
 			retval.add(callableTask);
@@ -101,6 +120,30 @@ public class PartitionRunner {
 	}
 
 
+	/**
+	 * Blocks until the rate limiter grants the given number of permits, returning the
+	 * number of seconds spent waiting. Tests override this so they don't depend on timing.
+	 */
+	double acquirePermits(RateLimiter theRateLimiter, int thePermits) {
+		return theRateLimiter.acquire(thePermits);
+	}
+
+	/**
+	 * The rate limiter is shared by all expunge operations so that the configured
+	 * limit applies to the server as a whole
+	 */
+	private synchronized RateLimiter getRateLimiter() {
+		Integer rate = myDaoConfig.getExpungeMaxRecordsPerSecond();
+		if (rate == null) {
+			return null;
+		}
+		if (myRateLimiter == null || !rate.equals(myRateLimiterRate)) {
+			myRateLimiter = RateLimiter.create(rate);
+			myRateLimiterRate = rate;
+		}
+		return myRateLimiter;
+	}
+
 	private ExecutorService buildExecutor(int numberOfTasks) {
 		int threadCount = Math.min(numberOfTasks, myDaoConfig.getExpungeThreadCount());
 		assert (threadCount > 0);
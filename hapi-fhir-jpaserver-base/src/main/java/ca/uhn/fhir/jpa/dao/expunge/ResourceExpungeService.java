@@ -26,6 +26,7 @@ import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.ResourceHistoryDeltaService;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTagDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceIndexedCompositeStringUniqueDao;
@@ -43,12 +44,27 @@ import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchParamPresentDao;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.model.entity.ForcedId;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryProvenanceEntity;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTag;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedCompositeStringUnique;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamCoords;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.ResourceTag;
+import ca.uhn.fhir.jpa.model.entity.SearchParamPresent;
 import ca.uhn.fhir.jpa.util.JpaInterceptorBroadcaster;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.StopWatch;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -62,6 +78,10 @@ import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -108,6 +128,10 @@ class ResourceExpungeService implements IResourceExpungeService {
 	private ISearchParamPresentDao mySearchParamPresentDao;
 	@Autowired
 	private DaoConfig myDaoConfig;
+	@Autowired
+	private ResourceHistoryDeltaService myResourceHistoryDeltaService;
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
 
 	@Override
 	@Transactional
@@ -152,6 +176,10 @@ class ResourceExpungeService implements IResourceExpungeService {
 	@Override
 	@Transactional
 	public void expungeCurrentVersionOfResources(RequestDetails theRequestDetails, List<Long> theResourceIds, AtomicInteger theRemainingCount) {
+		if (isBulkExpungeAllowed(theRequestDetails) && !hasDeltaVersionsOfResources(theResourceIds) && bulkExpungeResources(theResourceIds, theRemainingCount)) {
+			return;
+		}
+
 		for (Long next : theResourceIds) {
 			expungeCurrentVersionOfResource(theRequestDetails, next, theRemainingCount);
 			if (theRemainingCount.get() <= 0) {
@@ -167,6 +195,8 @@ class ResourceExpungeService implements IResourceExpungeService {
 
 		callHooks(theRequestDetails, theRemainingCount, version, id);
 
+		myResourceHistoryDeltaService.prepareForVersionRemoval(version);
+
 		if (version.getProvenance() != null) {
 			myResourceHistoryProvenanceTableDao.deleteByPid(version.getProvenance().getId());
 		}
@@ -196,6 +226,16 @@ class ResourceExpungeService implements IResourceExpungeService {
 	@Override
 	@Transactional
 	public void expungeHistoricalVersionsOfIds(RequestDetails theRequestDetails, List<Long> theResourceIds, AtomicInteger theRemainingCount) {
+		if (isBulkExpungeAllowed(theRequestDetails) && !hasDeltaVersionsOfResources(theResourceIds)) {
+			List<Long> versionIds = myEntityManager
+				.createQuery("SELECT h.myId FROM ResourceHistoryTable h, ResourceTable r WHERE h.myResourceId = r.myId AND h.myResourceVersion <> r.myVersion AND r.myId IN (:pids)", Long.class)
+				.setParameter("pids", theResourceIds)
+				.setMaxResults(Math.max(theRemainingCount.get(), 0))
+				.getResultList();
+			bulkExpungeVersions(versionIds, theRemainingCount);
+			return;
+		}
+
 		for (Long next : theResourceIds) {
 			expungeHistoricalVersionsOfId(theRequestDetails, next, theRemainingCount);
 			if (theRemainingCount.get() <= 0) {
@@ -207,6 +247,11 @@ class ResourceExpungeService implements IResourceExpungeService {
 	@Override
 	@Transactional
 	public void expungeHistoricalVersions(RequestDetails theRequestDetails, List<Long> theHistoricalIds, AtomicInteger theRemainingCount) {
+		if (isBulkExpungeAllowed(theRequestDetails) && theHistoricalIds.size() <= theRemainingCount.get() && !hasDeltaVersionsOfVersions(theHistoricalIds)) {
+			bulkExpungeVersions(theHistoricalIds, theRemainingCount);
+			return;
+		}
+
 		for (Long next : theHistoricalIds) {
 			expungeHistoricalVersion(theRequestDetails, next, theRemainingCount);
 			if (theRemainingCount.get() <= 0) {
@@ -294,6 +339,120 @@ class ResourceExpungeService implements IResourceExpungeService {
 		}
 	}
 
+	/**
+	 * Set-based deletes can be used as long as nothing needs to see the individual
+	 * resource versions being removed: no interceptor is registered against
+	 * {@link Pointcut#STORAGE_PRESTORAGE_EXPUNGE_RESOURCE}, and versions aren't
+	 * stored as deltas (which require the next older version to be rewritten
+	 * before its base is removed). Since deltas may have been stored before the
+	 * encoding was changed, callers must also check the affected resources using
+	 * {@link #hasDeltaVersionsOfResources(List)} or {@link #hasDeltaVersionsOfVersions(List)}.
+	 */
+	private boolean isBulkExpungeAllowed(RequestDetails theRequestDetails) {
+		if (myDaoConfig.getResourceEncoding() == ResourceEncodingEnum.JSOND) {
+			return false;
+		}
+		return !JpaInterceptorBroadcaster.hasHooks(Pointcut.STORAGE_PRESTORAGE_EXPUNGE_RESOURCE, myInterceptorBroadcaster, theRequestDetails);
+	}
+
+	/**
+	 * Does any version of the given resources have a {@link ResourceEncodingEnum#JSOND delta} body?
+	 */
+	private boolean hasDeltaVersionsOfResources(List<Long> theResourceIds) {
+		if (theResourceIds.isEmpty()) {
+			return false;
+		}
+		Long count = myEntityManager
+			.createQuery("SELECT COUNT(h) FROM ResourceHistoryTable h WHERE h.myEncoding = :encoding AND h.myResourceId IN (:pids)", Long.class)
+			.setParameter("encoding", ResourceEncodingEnum.JSOND)
+			.setParameter("pids", theResourceIds)
+			.getSingleResult();
+		return count > 0;
+	}
+
+	/**
+	 * Does any version of the resources that the given versions belong to have a
+	 * {@link ResourceEncodingEnum#JSOND delta} body?
+	 */
+	private boolean hasDeltaVersionsOfVersions(List<Long> theVersionIds) {
+		if (theVersionIds.isEmpty()) {
+			return false;
+		}
+		Long count = myEntityManager
+			.createQuery("SELECT COUNT(h) FROM ResourceHistoryTable h WHERE h.myEncoding = :encoding AND h.myResourceId IN (SELECT v.myResourceId FROM ResourceHistoryTable v WHERE v.myId IN (:ids))", Long.class)
+			.setParameter("encoding", ResourceEncodingEnum.JSOND)
+			.setParameter("ids", theVersionIds)
+			.getSingleResult();
+		return count > 0;
+	}
+
+	/**
+	 * Deletes a collection of resource versions (along with their tags and provenance) using
+	 * a fixed number of statements
+	 */
+	private void bulkExpungeVersions(List<Long> theVersionIds, AtomicInteger theRemainingCount) {
+		if (theVersionIds.isEmpty()) {
+			return;
+		}
+
+		StopWatch sw = new StopWatch();
+		deleteWhereIn(ResourceHistoryTag.class, "myResourceHistoryPid", theVersionIds);
+		deleteWhereIn(ResourceHistoryProvenanceEntity.class, "myId", theVersionIds);
+		int count = deleteWhereIn(ResourceHistoryTable.class, "myId", theVersionIds);
+		theRemainingCount.addAndGet(-count);
+
+		ourLog.info("Bulk expunged {} resource versions in {}", count, sw);
+	}
+
+	/**
+	 * Deletes a collection of resources including all of their versions and indexes
+	 * using a fixed number of statements
+	 *
+	 * @return Returns <code>false</code> (and deletes nothing) if doing so would exceed the expunge limit
+	 */
+	private boolean bulkExpungeResources(List<Long> theResourceIds, AtomicInteger theRemainingCount) {
+		List<Long> versionIds = myEntityManager
+			.createQuery("SELECT h.myId FROM ResourceHistoryTable h WHERE h.myResourceId IN (:pids)", Long.class)
+			.setParameter("pids", theResourceIds)
+			.getResultList();
+		if (versionIds.size() > theRemainingCount.get()) {
+			return false;
+		}
+
+		StopWatch sw = new StopWatch();
+
+		// The resources may still be present in the session if they were loaded earlier in this transaction
+		myEntityManager.flush();
+		myEntityManager.clear();
+
+		bulkExpungeVersions(versionIds, theRemainingCount);
+
+		deleteWhereIn(ResourceIndexedSearchParamUri.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedSearchParamCoords.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedSearchParamDate.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedSearchParamNumber.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedSearchParamQuantity.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedSearchParamString.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedSearchParamToken.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceIndexedCompositeStringUnique.class, "myResourceId", theResourceIds);
+		deleteWhereIn(SearchParamPresent.class, "myResourcePid", theResourceIds);
+		deleteWhereIn(ResourceLink.class, "mySourceResourcePid", theResourceIds);
+		deleteWhereIn(ResourceTag.class, "myResourceId", theResourceIds);
+		deleteWhereIn(ForcedId.class, "myResourcePid", theResourceIds);
+		int count = deleteWhereIn(ResourceTable.class, "myId", theResourceIds);
+
+		ourLog.info("Bulk expunged {} resources in {}", count, sw);
+		return true;
+	}
+
+	private int deleteWhereIn(Class<?> theEntityType, String theAttributeName, Collection<Long> theIds) {
+		String sql = "DELETE FROM " + theEntityType.getSimpleName() + " t WHERE t." + theAttributeName + " IN (:ids)";
+		return myEntityManager
+			.createQuery(sql)
+			.setParameter("ids", theIds)
+			.executeUpdate();
+	}
+
 	private Slice<Long> toSlice(ResourceHistoryTable myVersion) {
 		Validate.notNull(myVersion);
 		return new SliceImpl<>(Collections.singletonList(myVersion.getId()));
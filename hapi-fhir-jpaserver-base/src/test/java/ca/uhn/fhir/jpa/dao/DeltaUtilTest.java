@@ -0,0 +1,76 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DeltaUtilTest {
+
+	@Test
+	public void testSmallChangeInLargeDocument() {
+		StringBuilder b = new StringBuilder("{\"resourceType\":\"Encounter\",\"status\":\"planned\"");
+		for (int i = 0; i < 100; i++) {
+			b.append(",\"extension\":[{\"url\":\"http://example.com/ext/").append(i).append("\",\"valueString\":\"value ").append(i).append("\"}]");
+		}
+		b.append("}");
+		byte[] base = b.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] target = b.toString().replace("planned", "in-progress").replace("value 50", "value fifty").getBytes(StandardCharsets.UTF_8);
+
+		byte[] delta = DeltaUtil.computeDelta(base, target);
+		assertThat(delta.length, lessThan(50));
+		assertArrayEquals(target, DeltaUtil.applyDelta(base, delta));
+	}
+
+	@Test
+	public void testEmptyAndShortInputs() {
+		assertRoundTrip("", "");
+		assertRoundTrip("", "{}");
+		assertRoundTrip("{}", "");
+		assertRoundTrip("{\"a\":1}", "{\"a\":2}");
+	}
+
+	@Test
+	public void testRandomInputs() {
+		Random random = new Random(0);
+		for (int i = 0; i < 200; i++) {
+			byte[] base = new byte[random.nextInt(2000)];
+			random.nextBytes(base);
+			byte[] target = base.clone();
+			for (int j = 0; j < 5 && target.length > 0; j++) {
+				target[random.nextInt(target.length)] = (byte) random.nextInt();
+			}
+			assertArrayEquals(target, DeltaUtil.applyDelta(base, DeltaUtil.computeDelta(base, target)));
+
+			byte[] unrelated = new byte[random.nextInt(2000)];
+			random.nextBytes(unrelated);
+			assertArrayEquals(unrelated, DeltaUtil.applyDelta(base, DeltaUtil.computeDelta(base, unrelated)));
+		}
+	}
+
+	@Test
+	public void testApplyToWrongBase() {
+		byte[] base = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Simpson\"}]}".getBytes(StandardCharsets.UTF_8);
+		byte[] target = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Flanders\"}]}".getBytes(StandardCharsets.UTF_8);
+		byte[] delta = DeltaUtil.computeDelta(base, target);
+		try {
+			DeltaUtil.applyDelta(new byte[0], delta);
+			fail();
+		} catch (DataFormatException e) {
+			// good
+		}
+	}
+
+	private void assertRoundTrip(String theBase, String theTarget) {
+		byte[] base = theBase.getBytes(StandardCharsets.UTF_8);
+		byte[] target = theTarget.getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(target, DeltaUtil.applyDelta(base, DeltaUtil.computeDelta(base, target)));
+	}
+
+}
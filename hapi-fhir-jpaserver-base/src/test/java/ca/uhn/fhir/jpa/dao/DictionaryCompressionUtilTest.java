@@ -0,0 +1,145 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.util.ClasspathUtil;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DictionaryCompressionUtilTest {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(DictionaryCompressionUtilTest.class);
+	private FhirContext myFhirContext = FhirContext.forR4();
+
+	@Test
+	public void testRoundTrip() {
+		String encoded = myFhirContext.newJsonParser().encodeResourceToString(createPatient());
+
+		byte[] compressed = DictionaryCompressionUtil.compress(encoded);
+		assertEquals(encoded, DictionaryCompressionUtil.decompress(compressed));
+	}
+
+	@Test
+	public void testSmallerThanGzip() {
+		String encoded = myFhirContext.newJsonParser().encodeResourceToString(createPatient());
+
+		byte[] compressed = DictionaryCompressionUtil.compress(encoded);
+		byte[] gzipped = GZipUtil.compress(encoded);
+		ourLog.info("Encoded {} chars, gzip {} bytes, dictionary {} bytes", encoded.length(), gzipped.length, compressed.length);
+
+		assertThat(compressed.length, lessThan(gzipped.length));
+	}
+
+	@Test
+	public void testEmptyResource() {
+		String encoded = "{\"resourceType\":\"Patient\"}";
+		byte[] compressed = DictionaryCompressionUtil.compress(encoded);
+		assertEquals(encoded, DictionaryCompressionUtil.decompress(compressed));
+	}
+
+	@Test
+	public void testPayloadStartsWithDictionaryId() {
+		byte[] compressed = DictionaryCompressionUtil.compress("{\"resourceType\":\"Patient\"}");
+		assertEquals(DictionaryCompressionUtil.CURRENT_DICTIONARY_ID, compressed[0]);
+	}
+
+	/**
+	 * Payloads written with an older dictionary must remain readable, so this fixture
+	 * must never be regenerated
+	 */
+	@Test
+	public void testDecompressDictionary1Fixture() {
+		byte[] compressed = ClasspathUtil.loadResourceAsByteArray("/dictionary-compression/patient-dictionary-1.jsonz");
+		String expected = ClasspathUtil.loadResource("/dictionary-compression/patient-dictionary-1.json").trim();
+
+		String decompressed = DictionaryCompressionUtil.decompress(compressed);
+		assertEquals(expected, decompressed);
+
+		Patient patient = myFhirContext.newJsonParser().parseResource(Patient.class, decompressed);
+		assertEquals("Simpson", patient.getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testDecompressWithUnknownDictionary() {
+		String encoded = myFhirContext.newJsonParser().encodeResourceToString(createPatient());
+		byte[] compressed = DictionaryCompressionUtil.compress(encoded);
+		compressed[0] = 99;
+
+		try {
+			DictionaryCompressionUtil.decompress(compressed);
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Unknown dictionary 99"));
+		}
+	}
+
+	@Test
+	public void testDecompressTruncated() {
+		try {
+			DictionaryCompressionUtil.decompress(new byte[]{1, 0, 0});
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Truncated input"));
+		}
+	}
+
+	@Test
+	public void testDecompressNegativeLength() {
+		byte[] compressed = DictionaryCompressionUtil.compress("{\"resourceType\":\"Patient\"}");
+		compressed[1] = (byte) 0x80;
+
+		try {
+			DictionaryCompressionUtil.decompress(compressed);
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Invalid length"));
+		}
+	}
+
+	@Test
+	public void testDecompressLengthTooLongForInput() {
+		byte[] compressed = DictionaryCompressionUtil.compress("{\"resourceType\":\"Patient\"}");
+		compressed[1] = 0x7F;
+
+		try {
+			DictionaryCompressionUtil.decompress(compressed);
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Invalid length"));
+		}
+	}
+
+	@Test
+	public void testHighlyCompressibleRoundTrip() {
+		StringBuilder b = new StringBuilder("{\"resourceType\":\"Patient\",\"id\":\"");
+		for (int i = 0; i < 1000000; i++) {
+			b.append('a');
+		}
+		b.append("\"}");
+		String encoded = b.toString();
+
+		byte[] compressed = DictionaryCompressionUtil.compress(encoded);
+		assertEquals(encoded, DictionaryCompressionUtil.decompress(compressed));
+	}
+
+	private Patient createPatient() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addIdentifier().setSystem("http://example.com/mrn").setValue("12345");
+		patient.addName().setFamily("Simpson").addGiven("Homer").addGiven("Jay");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("555-555-5555");
+		patient.addAddress().addLine("742 Evergreen Terrace").setCity("Springfield").setPostalCode("12345");
+		patient.getManagingOrganization().setReference("Organization/1");
+		return patient;
+	}
+
+}
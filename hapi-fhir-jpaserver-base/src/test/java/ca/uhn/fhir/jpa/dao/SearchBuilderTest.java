@@ -4,6 +4,7 @@ import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -15,9 +16,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -50,4 +54,31 @@ public class SearchBuilderTest {
 		// hasNext() should return false if the pid added was already on our list going in.
 		assertFalse(includesIterator.hasNext());
 	}
+
+	@Test
+	public void testIncludeIteratorFollowsOnlyNewReferences() {
+		BaseHapiFhirDao<?> mockDao = mock(BaseHapiFhirDao.class);
+		SearchBuilder searchBuilder = new SearchBuilder(mockDao, null, null);
+		searchBuilder.setDaoConfigForUnitTest(new DaoConfig());
+		searchBuilder.setParamsForUnitTest(new SearchParameterMap());
+		EntityManager mockEntityManager = mock(EntityManager.class);
+		searchBuilder.setEntityManagerForUnitTest(mockEntityManager);
+
+		Set<ResourcePersistentId> pidSet = new HashSet<>();
+		pidSet.add(new ResourcePersistentId(1L));
+
+		// 1 -> 3 -> 4 (and 4 refers back to 1)
+		TypedQuery mockQuery = mock(TypedQuery.class);
+		when(mockEntityManager.createQuery(any(), any())).thenReturn(mockQuery);
+		when(mockQuery.getResultList()).thenReturn(Lists.newArrayList(3L), Lists.newArrayList(4L), Lists.newArrayList(1L));
+
+		SearchBuilder.IncludesIterator includesIterator = searchBuilder.new IncludesIterator(pidSet, null);
+		List<Long> found = new ArrayList<>();
+		while (includesIterator.hasNext()) {
+			found.add(includesIterator.next().getIdAsLong());
+		}
+
+		assertEquals(Lists.newArrayList(3L, 4L), found);
+		verify(mockQuery, times(3)).getResultList();
+	}
 }
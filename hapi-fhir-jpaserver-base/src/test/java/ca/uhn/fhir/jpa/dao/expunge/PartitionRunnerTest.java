@@ -5,6 +5,7 @@ import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.config.TestDstu3Config;
 import ca.uhn.test.concurrency.PointcutLatch;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.junit.After;
 import org.junit.Test;
@@ -18,11 +19,13 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.isOneOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
@@ -45,6 +48,7 @@ public class PartitionRunnerTest {
 	public void before() {
 		myDaoConfig.setExpungeThreadCount(new DaoConfig().getExpungeThreadCount());
 		myDaoConfig.setExpungeBatchSize(new DaoConfig().getExpungeBatchSize());
+		myDaoConfig.setExpungeMaxRecordsPerSecond(new DaoConfig().getExpungeMaxRecordsPerSecond());
 		myLatch.clear();
 	}
 
@@ -152,6 +156,56 @@ public class PartitionRunnerTest {
 		}
 	}
 
+	@Test
+	public void rateLimited() throws InterruptedException {
+		Slice<Long> resourceIds = buildSlice(30);
+		myDaoConfig.setExpungeBatchSize(5);
+		myDaoConfig.setExpungeMaxRecordsPerSecond(10);
+
+		// Record the permits instead of waiting for them, so the test doesn't depend on timing
+		List<Integer> permits = Collections.synchronizedList(new ArrayList<>());
+		List<Double> rates = Collections.synchronizedList(new ArrayList<>());
+		PartitionRunner partitionRunner = new PartitionRunner(myDaoConfig) {
+			@Override
+			double acquirePermits(RateLimiter theRateLimiter, int thePermits) {
+				rates.add(theRateLimiter.getRate());
+				permits.add(thePermits);
+				return 0;
+			}
+		};
+
+		Consumer<List<Long>> partitionConsumer = buildPartitionConsumer(myLatch);
+		myLatch.setExpectedCount(6);
+		partitionRunner.runInPartitionedThreads(resourceIds, partitionConsumer);
+		myLatch.awaitExpected();
+
+		// Every partition takes one permit per id before it is processed
+		assertThat(permits, contains(5, 5, 5, 5, 5, 5));
+		assertThat(rates, contains(10.0, 10.0, 10.0, 10.0, 10.0, 10.0));
+	}
+
+	@Test
+	public void notRateLimitedByDefault() throws InterruptedException {
+		Slice<Long> resourceIds = buildSlice(10);
+		myDaoConfig.setExpungeBatchSize(5);
+
+		List<Integer> permits = Collections.synchronizedList(new ArrayList<>());
+		PartitionRunner partitionRunner = new PartitionRunner(myDaoConfig) {
+			@Override
+			double acquirePermits(RateLimiter theRateLimiter, int thePermits) {
+				permits.add(thePermits);
+				return 0;
+			}
+		};
+
+		Consumer<List<Long>> partitionConsumer = buildPartitionConsumer(myLatch);
+		myLatch.setExpectedCount(2);
+		partitionRunner.runInPartitionedThreads(resourceIds, partitionConsumer);
+		myLatch.awaitExpected();
+
+		assertEquals(0, permits.size());
+	}
+
 	private Consumer<List<Long>> buildPartitionConsumer(PointcutLatch latch) {
 		return list -> latch.call(new PartitionCall(Thread.currentThread().getName(), list.size()));
 	}
@@ -0,0 +1,224 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.util.TestUtil;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class FhirResourceDaoR4HistoryDeltaTest extends BaseJpaR4Test {
+
+	@After
+	public void after() {
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
+		myDaoConfig.setHistoryDeltaSnapshotInterval(new DaoConfig().getHistoryDeltaSnapshotInterval());
+		myDaoConfig.setExpungeEnabled(new DaoConfig().isExpungeEnabled());
+	}
+
+	@Before
+	public void before() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSOND);
+		myDaoConfig.setHistoryDeltaSnapshotInterval(5);
+		myDaoConfig.setExpungeEnabled(true);
+	}
+
+	@Test
+	public void testHistoricalVersionsStoredAsDeltas() {
+		IIdType id = createPatientWithVersions(12);
+
+		runInTransaction(() -> {
+			for (long version = 1; version <= 12; version++) {
+				ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), version);
+				ResourceEncodingEnum expected;
+				if (version == 12 || version % 5 == 0) {
+					expected = ResourceEncodingEnum.JSONC;
+				} else {
+					expected = ResourceEncodingEnum.JSOND;
+				}
+				assertEquals("Version " + version, expected, history.getEncoding());
+			}
+		});
+
+		for (int version = 1; version <= 12; version++) {
+			Patient patient = myPatientDao.read(id.withVersion(Integer.toString(version)), mySrd);
+			assertEquals("Family " + version, patient.getNameFirstRep().getFamily());
+			assertEquals(Integer.toString(version), patient.getIdElement().getVersionIdPart());
+		}
+
+		assertEquals("Family 12", myPatientDao.read(id, mySrd).getNameFirstRep().getFamily());
+
+		IBundleProvider history = myPatientDao.history(id, null, null, mySrd);
+		assertEquals(12, history.size().intValue());
+		for (int i = 0; i < 12; i++) {
+			Patient patient = (Patient) history.getResources(i, i + 1).get(0);
+			assertEquals("Family " + (12 - i), patient.getNameFirstRep().getFamily());
+		}
+	}
+
+	@Test
+	public void testDeletedVersionIsNotUsedAsDeltaBase() {
+		IIdType id = createPatientWithVersions(3);
+		myPatientDao.delete(id.toUnqualifiedVersionless(), mySrd);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 3);
+			assertEquals(ResourceEncodingEnum.JSONC, history.getEncoding());
+		});
+
+		assertEquals("Family 1", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("Family 3", myPatientDao.read(id.withVersion("3"), mySrd).getNameFirstRep().getFamily());
+		try {
+			myPatientDao.read(id.toUnqualifiedVersionless(), mySrd);
+			fail();
+		} catch (ResourceGoneException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testExpungeVersionUsedAsDeltaBase() {
+		IIdType id = createPatientWithVersions(4);
+
+		myPatientDao.expunge(id.withVersion("3"), new ExpungeOptions()
+			.setExpungeOldVersions(true), mySrd);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 2);
+			assertEquals(ResourceEncodingEnum.JSONC, history.getEncoding());
+		});
+
+		assertEquals("Family 1", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("Family 2", myPatientDao.read(id.withVersion("2"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("Family 4", myPatientDao.read(id.withVersion("4"), mySrd).getNameFirstRep().getFamily());
+	}
+
+	/**
+	 * Deltas stored before the encoding was changed must still be rebuilt when
+	 * the version they are based on is expunged
+	 */
+	@Test
+	public void testExpungeVersionUsedAsDeltaBaseAfterEncodingChanged() {
+		IIdType id = createPatientWithVersions(4);
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		updatePatient(id, 5);
+
+		myPatientDao.expunge(id.withVersion("3"), new ExpungeOptions()
+			.setExpungeOldVersions(true), mySrd);
+
+		runInTransaction(() -> {
+			assertEquals(ResourceEncodingEnum.JSOND, myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 1).getEncoding());
+			assertEquals(ResourceEncodingEnum.JSONC, myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 2).getEncoding());
+			assertNull(myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 3));
+		});
+
+		for (int version : new int[]{1, 2, 4, 5}) {
+			assertEquals("Family " + version, myPatientDao.read(id.withVersion(Integer.toString(version)), mySrd).getNameFirstRep().getFamily());
+		}
+	}
+
+	@Test
+	public void testExpungeSomeOldVersionsWithMixedEncodings() {
+		IIdType deltaId = createPatientWithVersions(4);
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		IIdType fullId = createPatientWithVersions(4);
+
+		myPatientDao.expunge(new ExpungeOptions()
+			.setExpungeOldVersions(true)
+			.setLimit(2), mySrd);
+
+		// Whichever versions were expunged, the remaining ones can all be read
+		int remaining = 0;
+		for (IIdType next : new IIdType[]{deltaId, fullId}) {
+			for (int version = 1; version <= 4; version++) {
+				Patient patient;
+				try {
+					patient = myPatientDao.read(next.withVersion(Integer.toString(version)), mySrd);
+				} catch (ResourceNotFoundException e) {
+					continue;
+				}
+				assertEquals("Family " + version, patient.getNameFirstRep().getFamily());
+				remaining++;
+			}
+		}
+		assertEquals(6, remaining);
+	}
+
+	@Test
+	public void testExpungeAllOldVersionsWithMixedEncodings() {
+		IIdType deltaId = createPatientWithVersions(4);
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		IIdType fullId = createPatientWithVersions(4);
+
+		myPatientDao.expunge(new ExpungeOptions()
+			.setExpungeOldVersions(true), mySrd);
+
+		runInTransaction(() -> {
+			assertEquals(1, myResourceHistoryTableDao.findAll().stream().filter(t -> t.getResourceId().equals(deltaId.getIdPartAsLong())).count());
+			assertEquals(1, myResourceHistoryTableDao.findAll().stream().filter(t -> t.getResourceId().equals(fullId.getIdPartAsLong())).count());
+		});
+		assertEquals("Family 4", myPatientDao.read(deltaId, mySrd).getNameFirstRep().getFamily());
+		assertEquals("Family 4", myPatientDao.read(fullId, mySrd).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testExpungeDeletedResourcesWithMixedEncodings() {
+		IIdType deltaId = createPatientWithVersions(4);
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		IIdType fullId = createPatientWithVersions(4);
+		IIdType keptId = createPatientWithVersions(2);
+		myPatientDao.delete(deltaId, mySrd);
+		myPatientDao.delete(fullId, mySrd);
+
+		myPatientDao.expunge(new ExpungeOptions()
+			.setExpungeDeletedResources(true), mySrd);
+
+		runInTransaction(() -> {
+			assertFalse(myResourceTableDao.findById(deltaId.getIdPartAsLong()).isPresent());
+			assertFalse(myResourceTableDao.findById(fullId.getIdPartAsLong()).isPresent());
+			assertEquals(0, myResourceHistoryTableDao.findAll().stream().filter(t -> !t.getResourceId().equals(keptId.getIdPartAsLong())).count());
+		});
+		assertEquals("Family 1", myPatientDao.read(keptId.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("Family 2", myPatientDao.read(keptId, mySrd).getNameFirstRep().getFamily());
+	}
+
+	private void updatePatient(IIdType theId, int theVersion) {
+		Patient patient = myPatientDao.read(theId.toUnqualifiedVersionless(), mySrd);
+		patient.getNameFirstRep().setFamily("Family " + theVersion);
+		myPatientDao.update(patient, mySrd);
+	}
+
+	private IIdType createPatientWithVersions(int theVersionCount) {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addIdentifier().setSystem("http://foo").setValue("bar");
+		patient.addName().setFamily("Family 1").addGiven("Given");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		for (int version = 2; version <= theVersionCount; version++) {
+			patient.setId(id);
+			patient.getNameFirstRep().setFamily("Family " + version);
+			myPatientDao.update(patient, mySrd);
+		}
+		return id;
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
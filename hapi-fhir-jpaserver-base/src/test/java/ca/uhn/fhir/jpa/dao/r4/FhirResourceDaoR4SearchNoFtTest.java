@@ -177,6 +177,7 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 		myDaoConfig.setAllowContainsSearches(new DaoConfig().isAllowContainsSearches());
 		myDaoConfig.setSearchPreFetchThresholds(new DaoConfig().getSearchPreFetchThresholds());
 		myDaoConfig.setIndexMissingFields(new DaoConfig().getIndexMissingFields());
+		myDaoConfig.setConcurrentIncludeLoadingEnabled(new DaoConfig().isConcurrentIncludeLoadingEnabled());
 	}
 
 	@Before
@@ -4236,6 +4237,32 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 		}
 	}
 
+	@Test
+	public void testSearchWithMultipleIncludesConcurrent() {
+		myDaoConfig.setConcurrentIncludeLoadingEnabled(true);
+
+		Organization org = new Organization();
+		org.setName("ORG");
+		IIdType orgId = myOrganizationDao.create(org, mySrd).getId().toUnqualifiedVersionless();
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.addName().setFamily("PRACT");
+		IIdType practitionerId = myPractitionerDao.create(practitioner, mySrd).getId().toUnqualifiedVersionless();
+
+		Patient patient = new Patient();
+		patient.addName().setFamily("testSearchWithMultipleIncludesConcurrent");
+		patient.getManagingOrganization().setReferenceElement(orgId);
+		patient.addGeneralPractitioner().setReferenceElement(practitionerId);
+		IIdType patientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("testSearchWithMultipleIncludesConcurrent"));
+		params.addInclude(Patient.INCLUDE_ORGANIZATION);
+		params.addInclude(Patient.INCLUDE_GENERAL_PRACTITIONER);
+		List<String> ids = toUnqualifiedVersionlessIdValues(myPatientDao.search(params));
+		assertThat(ids, containsInAnyOrder(patientId.getValue(), orgId.getValue(), practitionerId.getValue()));
+	}
+
 	@SuppressWarnings("unused")
 	@Test
 	public void testSearchWithIncludesParameterNoRecurse() {
@@ -31,11 +31,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -201,6 +203,41 @@ public class ExpungeR4Test extends BaseResourceProviderR4Test {
 		assertGone(myDeletedObservationId);
 	}
 
+	/**
+	 * With no expunge interceptors registered, resources and versions are removed
+	 * using set-based deletes
+	 */
+	@Test
+	public void testBulkExpungeRemovesDependentRows() {
+		createStandardPatients();
+		Long deletedPid = myDeletedObservationId.getIdPartAsLong();
+		Long twoVersionPid = myTwoVersionObservationId.getIdPartAsLong();
+		runInTransaction(() -> {
+			assertEquals(2, myResourceHistoryTableDao.findAll().stream().filter(t -> t.getResourceId().equals(deletedPid)).count());
+			assertThat(myResourceIndexedSearchParamTokenDao.findAll().stream().filter(t -> t.getResourcePid().equals(twoVersionPid)).collect(Collectors.toList()), not(empty()));
+		});
+
+		myObservationDao.expunge(new ExpungeOptions()
+			.setExpungeDeletedResources(true)
+			.setExpungeOldVersions(true), null);
+
+		runInTransaction(() -> {
+			assertFalse(myResourceTableDao.findById(deletedPid).isPresent());
+			assertEquals(0, myResourceHistoryTableDao.findAll().stream().filter(t -> t.getResourceId().equals(deletedPid)).count());
+			assertEquals(1, myResourceHistoryTableDao.findAll().stream().filter(t -> t.getResourceId().equals(twoVersionPid)).count());
+			assertThat(myResourceIndexedSearchParamTokenDao.findAll().stream().filter(t -> t.getResourcePid().equals(twoVersionPid)).collect(Collectors.toList()), not(empty()));
+		});
+
+		assertExpunged(myDeletedObservationId.withVersion("1"));
+		assertExpunged(myTwoVersionObservationId.withVersion("1"));
+		assertStillThere(myTwoVersionObservationId.withVersion("2"));
+		assertStillThere(myOneVersionObservationId);
+
+		// Patients untouched
+		assertStillThere(myTwoVersionPatientId.withVersion("1"));
+		assertStillThere(myDeletedPatientId.withVersion("1"));
+	}
+
 	@Test
 	public void testExpungeAllVersionsDeletesRow() {
 		// Create then delete
@@ -0,0 +1,193 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceProviderPreEncodedReadR4Test extends BaseResourceProviderR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceProviderPreEncodedReadR4Test.class);
+	/**
+	 * Stored body with its elements out of order, so we can tell whether it was returned as-is
+	 */
+	private static final String STORED_BODY_NAME_FIRST = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Simpson\"}],\"active\":true}";
+	private INarrativeGenerator myNarrativeGenerator;
+
+	@Override
+	public void before() throws Exception {
+		super.before();
+
+		// The base class installs a narrative generator, which prevents pass-through
+		myNarrativeGenerator = myFhirCtx.getNarrativeGenerator();
+		myFhirCtx.setNarrativeGenerator(null);
+		ourRestServer.setPreEncodedResourcePassThrough(true);
+
+		// The base class registers the binary storage interceptor when it creates the server, and
+		// its STORAGE_PRESHOW_RESOURCES hook also prevents pass-through
+		ourRestServer.getInterceptorService().unregisterAllInterceptors();
+	}
+
+	@Override
+	@After
+	public void after() throws Exception {
+		super.after();
+		ourRestServer.setPreEncodedResourcePassThrough(false);
+		myFhirCtx.setNarrativeGenerator(myNarrativeGenerator);
+	}
+
+	@Test
+	public void testReadMatchesNormalEncoding() throws IOException {
+		Patient patient = new Patient();
+		patient.getMeta().addTag("http://tags", "tag0", null);
+		patient.getMeta().addProfile("http://profile");
+		patient.getMeta().setSource("urn:source");
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		patient.setActive(true);
+		IIdType id = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+		patient.setId(id);
+		patient.setActive(false);
+		myPatientDao.update(patient);
+
+		String passedThrough = executeGet("/Patient/" + id.getIdPart() + "?_format=json");
+		String versionPassedThrough = executeGet("/Patient/" + id.getIdPart() + "/_history/1?_format=json");
+
+		ourRestServer.setPreEncodedResourcePassThrough(false);
+		assertEquals(executeGet("/Patient/" + id.getIdPart() + "?_format=json"), passedThrough);
+		assertEquals(executeGet("/Patient/" + id.getIdPart() + "/_history/1?_format=json"), versionPassedThrough);
+
+		assertThat(passedThrough, startsWith("{\"resourceType\":\"Patient\",\"id\":\"" + id.getIdPart() + "\",\"meta\":{\"versionId\":\"2\","));
+		assertThat(versionPassedThrough, startsWith("{\"resourceType\":\"Patient\",\"id\":\"" + id.getIdPart() + "\",\"meta\":{\"versionId\":\"1\","));
+		assertThat(versionPassedThrough, containsString("\"active\":true"));
+	}
+
+	@Test
+	public void testReadReturnsStoredBody() throws IOException {
+		Patient patient = new Patient();
+		patient.getMeta().addTag("http://tags", "tag0", null);
+		patient.setActive(true);
+		IIdType id = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+		patient.setId(id);
+		patient.addName().setFamily("Simpson");
+		myPatientDao.update(patient);
+		replaceStoredBody(id, 2L, STORED_BODY_NAME_FIRST);
+
+		String response = executeGet("/Patient/" + id.getIdPart() + "?_format=json");
+		assertThat(response, startsWith("{\"resourceType\":\"Patient\",\"id\":\"" + id.getIdPart() + "\",\"meta\":{\"versionId\":\"2\",\"lastUpdated\":\""));
+		assertThat(response, containsString("\"tag\":[{\"system\":\"http://tags\",\"code\":\"tag0\"}]"));
+		assertThat(response, endsWith("},\"name\":[{\"family\":\"Simpson\"}],\"active\":true}"));
+
+		response = executeGet("/Patient/" + id.getIdPart() + "/_history/2?_format=json");
+		assertThat(response, startsWith("{\"resourceType\":\"Patient\",\"id\":\"" + id.getIdPart() + "\",\"meta\":{\"versionId\":\"2\","));
+		assertThat(response, endsWith("},\"name\":[{\"family\":\"Simpson\"}],\"active\":true}"));
+	}
+
+	@Test
+	public void testNotUsedWithEncoderOptions() throws IOException {
+		IIdType id = createPatientWithStoredBodyNameFirst();
+
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=xml"));
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=json&_pretty=true"));
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=json&_summary=data"));
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=json&_elements=name,active"));
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=json&_elements:exclude=gender"));
+
+		myFhirCtx.setNarrativeGenerator(myNarrativeGenerator);
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=json"));
+	}
+
+	@Test
+	public void testNotUsedWithStorageInterceptor() throws IOException {
+		IIdType id = createPatientWithStoredBodyNameFirst();
+
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			// nothing
+		};
+		ourRestServer.getInterceptorService().registerAnonymousInterceptor(Pointcut.STORAGE_PRESHOW_RESOURCES, interceptor);
+
+		assertReEncoded(executeGet("/Patient/" + id.getIdPart() + "?_format=json"));
+	}
+
+	/**
+	 * Bodies stored by older versions may contain numbers which are only accepted
+	 * because the tolerant parser corrects them, so they can't be returned as-is
+	 */
+	@Test
+	public void testNotUsedWhenStoredBodyWouldBeNormalised() throws IOException {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType id = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+		replaceStoredBody(id, 1L, "{\"resourceType\":\"Patient\",\"extension\":[{\"url\":\"http://ext\",\"valueDecimal\":.5}],\"name\":[{\"family\":\"Simpson\"}],\"active\":true}");
+
+		String response = executeGet("/Patient/" + id.getIdPart() + "?_format=json");
+		assertThat(response, containsString("\"valueDecimal\":0.5"));
+		assertReEncoded(response);
+	}
+
+	private IIdType createPatientWithStoredBodyNameFirst() throws IOException {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson");
+		IIdType id = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+		replaceStoredBody(id, 1L, STORED_BODY_NAME_FIRST);
+
+		// Sanity check that the stored body is returned when nothing prevents it
+		assertThat(executeGet("/Patient/" + id.getIdPart() + "?_format=json"), endsWith(",\"name\":[{\"family\":\"Simpson\"}],\"active\":true}"));
+		return id;
+	}
+
+	private void replaceStoredBody(IIdType theId, long theVersion, String theBody) {
+		runInTransaction(() -> {
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(theId.getIdPartAsLong(), theVersion);
+			history.setResource(theBody.getBytes(StandardCharsets.UTF_8));
+			history.setEncoding(ResourceEncodingEnum.JSON);
+			myResourceHistoryTableDao.save(history);
+		});
+	}
+
+	/**
+	 * A response which was encoded from the parsed resource has its elements in the normal order
+	 */
+	private static void assertReEncoded(String theResponse) {
+		int activeIndex = theResponse.indexOf("active");
+		int nameIndex = theResponse.indexOf("name");
+		assertTrue(theResponse, activeIndex != -1 && nameIndex != -1);
+		assertTrue(theResponse, activeIndex < nameIndex);
+	}
+
+	private static String executeGet(String thePathAndQuery) throws IOException {
+		HttpGet get = new HttpGet(ourServerBase + thePathAndQuery);
+		try (CloseableHttpResponse response = ourHttpClient.execute(get)) {
+			String responseString = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseString);
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			return responseString;
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -44,6 +44,25 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json Compressed using deflate with a preset dictionary of common element names. The
+	 * ID of the dictionary is stored at the start of the payload so that older dictionaries
+	 * remain decodable. This is smaller than {@link #JSONC} for typical (small) resources
+	 * and is faster to decode.
+	 */
+	JSONZ,
+
+	/**
+	 * Json Delta - A historical (non-current) version stored as a binary delta against
+	 * the next newer version of the same resource. This can not be decoded without
+	 * the newer versions of the resource.
+	 * <p>
+	 * When this is used as the configured storage encoding, current versions are
+	 * stored as {@link #JSONC} and are converted to deltas when they are superseded.
+	 * </p>
+	 */
+	JSOND,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -53,4 +72,15 @@ public enum ResourceEncodingEnum {
 		return theContext.newJsonParser();
 	}
 
+	/**
+	 * Returns the encoding that should be used to store a full (non-delta) copy
+	 * of a resource when this encoding is configured
+	 */
+	public ResourceEncodingEnum getSnapshotEncoding() {
+		if (this == JSOND) {
+			return JSONC;
+		}
+		return this;
+	}
+
 }
@@ -0,0 +1,322 @@
+package ca.uhn.fhir.rest.server;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * A paging provider which stores search results in memory, similar to {@link FifoMemoryPagingProvider}
+ * but suitable for servers which handle a large number of concurrent paging requests.
+ * <ul>
+ * <li>Results are stored and retrieved without any global lock.</li>
+ * <li>Instead of limiting the number of stored result lists, the approximate amount of memory
+ * used by each result list (its <i>weight</i>) is tracked, and the oldest result lists are discarded
+ * when the total exceeds the {@link #setMaximumWeight(long) maximum weight}. A
+ * {@link #setMaximumSize(int) maximum number} of result lists may also be configured.</li>
+ * <li>Result lists expire after a {@link #setExpiryMillis(long) configurable time}.</li>
+ * <li>Optionally, large in-memory result lists (i.e. instances of {@link SimpleBundleProvider}) can be
+ * serialized outside of the Java heap. See {@link #setOffHeapSpillThreshold(long)}.</li>
+ * </ul>
+ *
+ * @since 5.1.0
+ */
+public class ConcurrentMemoryPagingProvider extends BasePagingProvider {
+
+	/**
+	 * Default value for {@link #setMaximumWeight(long)} (256 MB)
+	 */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 256L * 1024L * 1024L;
+	/**
+	 * Default value for {@link #setExpiryMillis(long)} (10 minutes)
+	 */
+	public static final long DEFAULT_EXPIRY_MILLIS = 10 * DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * Default value for {@link #setEstimatedBytesPerResource(long)}
+	 */
+	public static final long DEFAULT_ESTIMATED_BYTES_PER_RESOURCE = 4 * 1024L;
+
+	private final ConcurrentHashMap<String, StoredResultList> myResultLists = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<String> myInsertionOrder = new ConcurrentLinkedQueue<>();
+	private final AtomicLong myTotalWeight = new AtomicLong();
+	private volatile long myMaximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+	private volatile int myMaximumSize = Integer.MAX_VALUE;
+	private volatile long myExpiryMillis = DEFAULT_EXPIRY_MILLIS;
+	private volatile long myEstimatedBytesPerResource = DEFAULT_ESTIMATED_BYTES_PER_RESOURCE;
+	private volatile long myOffHeapSpillThreshold;
+	private volatile ToLongFunction<IBundleProvider> myWeigher;
+
+	/**
+	 * Constructor
+	 */
+	public ConcurrentMemoryPagingProvider() {
+		super();
+	}
+
+	@Override
+	public IBundleProvider retrieveResultList(RequestDetails theRequestDetails, String theSearchId) {
+		StoredResultList stored = myResultLists.get(theSearchId);
+		if (stored == null) {
+			return null;
+		}
+		if (stored.isExpired(System.currentTimeMillis(), myExpiryMillis)) {
+			remove(theSearchId, stored);
+			return null;
+		}
+		return stored.getBundleProvider();
+	}
+
+	@Override
+	public String storeResultList(RequestDetails theRequestDetails, IBundleProvider theList) {
+		IBundleProvider bundleProvider = theList;
+		long weight = weigh(theList);
+
+		if (myOffHeapSpillThreshold > 0 && weight >= myOffHeapSpillThreshold) {
+			FhirContext context = theRequestDetails != null ? theRequestDetails.getFhirContext() : null;
+			OffHeapBundleProvider offHeap = OffHeapBundleProvider.tryCreate(context, theList);
+			if (offHeap != null) {
+				bundleProvider = offHeap;
+				weight = offHeap.getOffHeapBytes();
+			}
+		}
+
+		String key = UUID.randomUUID().toString();
+		myResultLists.put(key, new StoredResultList(bundleProvider, weight, System.currentTimeMillis()));
+		myTotalWeight.addAndGet(weight);
+		myInsertionOrder.add(key);
+
+		evict(key);
+
+		return key;
+	}
+
+	/**
+	 * Discards the oldest result lists while the maximum weight or size is exceeded, or the oldest
+	 * result list has expired. Result lists are evicted in insertion order. The result list that
+	 * has just been stored is never evicted, even if it alone exceeds the maximum weight, since
+	 * the client is about to be given a link to its next page.
+	 */
+	private void evict(String theJustStoredKey) {
+		long now = System.currentTimeMillis();
+		while (true) {
+			String oldestKey = myInsertionOrder.peek();
+			if (oldestKey == null || oldestKey.equals(theJustStoredKey)) {
+				break;
+			}
+			StoredResultList oldest = myResultLists.get(oldestKey);
+			boolean evict = oldest == null
+				|| oldest.isExpired(now, myExpiryMillis)
+				|| myTotalWeight.get() > myMaximumWeight
+				|| myResultLists.size() > myMaximumSize;
+			if (!evict) {
+				break;
+			}
+
+			// Another thread may have evicted the same entry first, in which case we just try again
+			if (myInsertionOrder.remove(oldestKey)) {
+				StoredResultList removed = myResultLists.remove(oldestKey);
+				if (removed != null) {
+					myTotalWeight.addAndGet(-removed.getWeight());
+				}
+			}
+		}
+	}
+
+	private void remove(String theKey, StoredResultList theStored) {
+		if (myResultLists.remove(theKey, theStored)) {
+			myTotalWeight.addAndGet(-theStored.getWeight());
+		}
+	}
+
+	private long weigh(IBundleProvider theList) {
+		ToLongFunction<IBundleProvider> weigher = myWeigher;
+		if (weigher != null) {
+			return Math.max(0, weigher.applyAsLong(theList));
+		}
+		if (theList instanceof OffHeapBundleProvider) {
+			return ((OffHeapBundleProvider) theList).getOffHeapBytes();
+		}
+		Integer size = theList.size();
+		return (size != null ? Math.max(size, 1) : 1) * myEstimatedBytesPerResource;
+	}
+
+	/**
+	 * Returns the number of result lists currently stored
+	 */
+	public int getStoredResultListCount() {
+		return myResultLists.size();
+	}
+
+	/**
+	 * Returns the total weight of all result lists currently stored
+	 */
+	public long getTotalWeight() {
+		return myTotalWeight.get();
+	}
+
+	/**
+	 * The maximum total weight (approximate number of bytes) of stored result lists. When this is
+	 * exceeded, the oldest result lists are discarded. Default is {@link #DEFAULT_MAXIMUM_WEIGHT}.
+	 */
+	public long getMaximumWeight() {
+		return myMaximumWeight;
+	}
+
+	/**
+	 * The maximum total weight (approximate number of bytes) of stored result lists. When this is
+	 * exceeded, the oldest result lists are discarded. Default is {@link #DEFAULT_MAXIMUM_WEIGHT}.
+	 */
+	public ConcurrentMemoryPagingProvider setMaximumWeight(long theMaximumWeight) {
+		Validate.isTrue(theMaximumWeight > 0, "theMaximumWeight must be greater than 0");
+		myMaximumWeight = theMaximumWeight;
+		return this;
+	}
+
+	/**
+	 * The maximum number of result lists to store, regardless of their weight. Default is unlimited.
+	 */
+	public int getMaximumSize() {
+		return myMaximumSize;
+	}
+
+	/**
+	 * The maximum number of result lists to store, regardless of their weight. Default is unlimited.
+	 */
+	public ConcurrentMemoryPagingProvider setMaximumSize(int theMaximumSize) {
+		Validate.isTrue(theMaximumSize > 0, "theMaximumSize must be greater than 0");
+		myMaximumSize = theMaximumSize;
+		return this;
+	}
+
+	/**
+	 * The length of time after being stored that a result list can no longer be retrieved.
+	 * Default is {@link #DEFAULT_EXPIRY_MILLIS}.
+	 */
+	public long getExpiryMillis() {
+		return myExpiryMillis;
+	}
+
+	/**
+	 * The length of time after being stored that a result list can no longer be retrieved.
+	 * Default is {@link #DEFAULT_EXPIRY_MILLIS}.
+	 */
+	public ConcurrentMemoryPagingProvider setExpiryMillis(long theExpiryMillis) {
+		Validate.isTrue(theExpiryMillis > 0, "theExpiryMillis must be greater than 0");
+		myExpiryMillis = theExpiryMillis;
+		return this;
+	}
+
+	/**
+	 * The approximate memory used by each resource in a result list. The default weigher
+	 * multiplies this value by the {@link IBundleProvider#size() size} of the result list.
+	 * Default is {@link #DEFAULT_ESTIMATED_BYTES_PER_RESOURCE}.
+	 */
+	public long getEstimatedBytesPerResource() {
+		return myEstimatedBytesPerResource;
+	}
+
+	/**
+	 * The approximate memory used by each resource in a result list. The default weigher
+	 * multiplies this value by the {@link IBundleProvider#size() size} of the result list.
+	 * Default is {@link #DEFAULT_ESTIMATED_BYTES_PER_RESOURCE}.
+	 */
+	public ConcurrentMemoryPagingProvider setEstimatedBytesPerResource(long theEstimatedBytesPerResource) {
+		Validate.isTrue(theEstimatedBytesPerResource > 0, "theEstimatedBytesPerResource must be greater than 0");
+		myEstimatedBytesPerResource = theEstimatedBytesPerResource;
+		return this;
+	}
+
+	/**
+	 * Supplies a function which calculates the weight (approximate number of bytes) of a
+	 * result list, replacing the default calculation based on
+	 * {@link #setEstimatedBytesPerResource(long)}. This is useful if the server uses
+	 * {@link IBundleProvider} implementations which load resources lazily, since these use
+	 * very little memory regardless of their size.
+	 *
+	 * @param theWeigher The weigher, or <code>null</code> to use the default
+	 */
+	public ConcurrentMemoryPagingProvider setWeigher(ToLongFunction<IBundleProvider> theWeigher) {
+		myWeigher = theWeigher;
+		return this;
+	}
+
+	/**
+	 * If set to a value greater than zero, result lists with a weight of at least this value
+	 * are serialized into memory outside of the Java heap, and parsed again as pages are
+	 * requested. This only applies to instances of {@link SimpleBundleProvider} (i.e. result
+	 * lists which hold all of their resources in memory) containing FHIR resources for
+	 * structure versions DSTU3 and later. The weight of a serialized result list is the
+	 * number of bytes it occupies.
+	 * <p>
+	 * Note that because resources are parsed again, any {@link org.hl7.fhir.instance.model.api.IBase#getUserData(String) user data}
+	 * associated with the resources (other than the search entry mode) is not preserved.
+	 * Default is <code>0</code> (disabled).
+	 * </p>
+	 */
+	public ConcurrentMemoryPagingProvider setOffHeapSpillThreshold(long theOffHeapSpillThreshold) {
+		Validate.isTrue(theOffHeapSpillThreshold >= 0, "theOffHeapSpillThreshold must not be negative");
+		myOffHeapSpillThreshold = theOffHeapSpillThreshold;
+		return this;
+	}
+
+	/**
+	 * @see #setOffHeapSpillThreshold(long)
+	 */
+	public long getOffHeapSpillThreshold() {
+		return myOffHeapSpillThreshold;
+	}
+
+	private static class StoredResultList {
+
+		private final IBundleProvider myBundleProvider;
+		private final long myWeight;
+		private final long myStored;
+
+		StoredResultList(IBundleProvider theBundleProvider, long theWeight, long theStored) {
+			myBundleProvider = theBundleProvider;
+			myWeight = theWeight;
+			myStored = theStored;
+		}
+
+		IBundleProvider getBundleProvider() {
+			return myBundleProvider;
+		}
+
+		long getWeight() {
+			return myWeight;
+		}
+
+		boolean isExpired(long theNow, long theExpiryMillis) {
+			return theNow - myStored > theExpiryMillis;
+		}
+
+	}
+
+}
@@ -0,0 +1,165 @@
+package ca.uhn.fhir.rest.server;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An {@link IBundleProvider} which holds the resources of a {@link SimpleBundleProvider}
+ * as encoded JSON in a direct (off-heap) buffer, parsing them again as they are requested.
+ *
+ * @see ConcurrentMemoryPagingProvider#setOffHeapSpillThreshold(long)
+ */
+class OffHeapBundleProvider implements IBundleProvider {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(OffHeapBundleProvider.class);
+
+	private final FhirContext myContext;
+	private final ByteBuffer myBuffer;
+	private final int[] myOffsets;
+	private final String[] mySearchModes;
+	private final String myUuid;
+	private final IPrimitiveType<Date> myPublished;
+	private final Integer myPreferredPageSize;
+	private final Integer mySize;
+
+	private OffHeapBundleProvider(FhirContext theContext, ByteBuffer theBuffer, int[] theOffsets, String[] theSearchModes, IBundleProvider theSource) {
+		myContext = theContext;
+		myBuffer = theBuffer;
+		myOffsets = theOffsets;
+		mySearchModes = theSearchModes;
+		myUuid = theSource.getUuid();
+		myPublished = theSource.getPublished();
+		myPreferredPageSize = theSource.preferredPageSize();
+		mySize = theSource.size();
+	}
+
+	long getOffHeapBytes() {
+		return myBuffer.capacity();
+	}
+
+	@Override
+	public IPrimitiveType<Date> getPublished() {
+		return myPublished;
+	}
+
+	@Nonnull
+	@Override
+	public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+		int resourceCount = myOffsets.length - 1;
+		int toIndex = Math.min(theToIndex, resourceCount);
+		IParser parser = myContext.newJsonParser();
+		List<IBaseResource> retVal = new ArrayList<>(Math.max(0, toIndex - theFromIndex));
+		for (int i = theFromIndex; i < toIndex; i++) {
+			byte[] bytes = new byte[myOffsets[i + 1] - myOffsets[i]];
+			ByteBuffer buffer = myBuffer.duplicate();
+			buffer.position(myOffsets[i]);
+			buffer.get(bytes);
+
+			IAnyResource resource = (IAnyResource) parser.parseResource(new String(bytes, StandardCharsets.UTF_8));
+			if (mySearchModes[i] != null) {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, mySearchModes[i]);
+			}
+			retVal.add(resource);
+		}
+		return retVal;
+	}
+
+	@Override
+	public String getUuid() {
+		return myUuid;
+	}
+
+	@Override
+	public Integer preferredPageSize() {
+		return myPreferredPageSize;
+	}
+
+	@Override
+	public Integer size() {
+		return mySize;
+	}
+
+	/**
+	 * Creates an off-heap copy of the given provider, or returns <code>null</code> if the
+	 * provider is not suitable (i.e. it is not a plain {@link SimpleBundleProvider}, contains
+	 * resources for a structure version older than DSTU3, or can not be encoded)
+	 */
+	static OffHeapBundleProvider tryCreate(FhirContext theContext, IBundleProvider theSource) {
+		if (theContext == null || !theContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+			return null;
+		}
+		// Subclasses may load their resources lazily or override getResources()
+		if (theSource.getClass() != SimpleBundleProvider.class) {
+			return null;
+		}
+		Integer size = theSource.size();
+		if (size == null) {
+			return null;
+		}
+
+		List<IBaseResource> resources = theSource.getResources(0, size);
+		IParser parser = theContext.newJsonParser();
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		int[] offsets = new int[resources.size() + 1];
+		String[] searchModes = new String[resources.size()];
+		try {
+			for (int i = 0; i < resources.size(); i++) {
+				IBaseResource next = resources.get(i);
+				if (!(next instanceof IAnyResource)) {
+					return null;
+				}
+				searchModes[i] = ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get((IAnyResource) next);
+				byte[] bytes = parser.encodeResourceToString(next).getBytes(StandardCharsets.UTF_8);
+				encoded.write(bytes, 0, bytes.length);
+				offsets[i + 1] = encoded.size();
+			}
+		} catch (DataFormatException e) {
+			ourLog.warn("Unable to move search results off heap: {}", e.toString());
+			return null;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.size());
+		buffer.put(encoded.toByteArray());
+		buffer.flip();
+
+		return new OffHeapBundleProvider(theContext, buffer.asReadOnlyBuffer(), offsets, searchModes, theSource);
+	}
+
+}
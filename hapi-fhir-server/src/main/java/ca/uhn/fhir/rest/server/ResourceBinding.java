@@ -21,12 +21,20 @@ package ca.uhn.fhir.rest.server;
  */
 
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
 import ca.uhn.fhir.rest.server.method.MethodMatchEnum;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
 /**
  * Holds all method bindings for an individual resource type
  */
@@ -36,6 +44,7 @@ public class ResourceBinding {
 
 	private String resourceName;
 	private List<BaseMethodBinding<?>> myMethodBindings = new ArrayList<>();
+	private volatile RoutingIndex myRoutingIndex;
 
 	/**
 	 * Constructor
@@ -61,13 +70,14 @@ public class ResourceBinding {
 		ourLog.debug("Looking for a handler for {}", theRequest);
 
 		/*
-		 * Look for the method with the highest match strength
+		 * Look for the method with the highest match strength, only considering
+		 * the methods which could possibly handle this request type and operation
 		 */
 
 		BaseMethodBinding<?> matchedMethod = null;
 		MethodMatchEnum matchedMethodStrength = null;
 
-		for (BaseMethodBinding<?> rm : myMethodBindings) {
+		for (BaseMethodBinding<?> rm : getRoutingIndex().getCandidates(theRequest)) {
 			MethodMatchEnum nextMethodMatch = rm.incomingServerRequestMatchesMethod(theRequest);
 			if (nextMethodMatch != MethodMatchEnum.NONE) {
 				if (matchedMethodStrength == null || matchedMethodStrength.ordinal() < nextMethodMatch.ordinal()) {
@@ -97,10 +107,22 @@ public class ResourceBinding {
 
 	public void setMethods(List<BaseMethodBinding<?>> methods) {
 		this.myMethodBindings = methods;
+		myRoutingIndex = null;
 	}
 
 	public void addMethod(BaseMethodBinding<?> method) {
 		this.myMethodBindings.add(method);
+		myRoutingIndex = null;
+	}
+
+	private RoutingIndex getRoutingIndex() {
+		RoutingIndex retVal = myRoutingIndex;
+		// The list is also exposed via getMethodBindings() so check that it hasn't been modified
+		if (retVal == null || retVal.myMethodBindings != myMethodBindings || retVal.myMethodCount != myMethodBindings.size()) {
+			retVal = new RoutingIndex(myMethodBindings);
+			myRoutingIndex = retVal;
+		}
+		return retVal;
 	}
 
 	@Override
@@ -115,4 +137,75 @@ public class ResourceBinding {
 		return 0;
 	}
 
+	/**
+	 * Precomputed lookup of the method bindings which could possibly match a given
+	 * request type and operation. Candidate lists preserve the declaration order of
+	 * the bindings, so the first exact match is the same one a full scan would find.
+	 */
+	private static class RoutingIndex {
+
+		private final List<BaseMethodBinding<?>> myMethodBindings;
+		private final int myMethodCount;
+		private final Map<RequestTypeEnum, Map<String, List<BaseMethodBinding<?>>>> myRequestTypeToOperationToMethods = new EnumMap<>(RequestTypeEnum.class);
+		private final Map<RequestTypeEnum, List<BaseMethodBinding<?>>> myRequestTypeToUnknownOperationMethods = new EnumMap<>(RequestTypeEnum.class);
+
+		RoutingIndex(List<BaseMethodBinding<?>> theMethodBindings) {
+			myMethodBindings = theMethodBindings;
+			myMethodCount = theMethodBindings.size();
+
+			Set<String> operationNames = new LinkedHashSet<>();
+			operationNames.add("");
+			for (BaseMethodBinding<?> next : theMethodBindings) {
+				Set<String> nextOperationNames = next.getRoutingOperationNames();
+				if (nextOperationNames != null) {
+					operationNames.addAll(nextOperationNames);
+				}
+			}
+
+			for (RequestTypeEnum nextRequestType : RequestTypeEnum.values()) {
+				Map<String, List<BaseMethodBinding<?>>> operationToMethods = new HashMap<>();
+				List<BaseMethodBinding<?>> unknownOperationMethods = new ArrayList<>();
+				for (String nextOperationName : operationNames) {
+					operationToMethods.put(nextOperationName, new ArrayList<>());
+				}
+
+				for (BaseMethodBinding<?> next : theMethodBindings) {
+					Set<RequestTypeEnum> requestTypes = next.getRoutingRequestTypes();
+					if (requestTypes != null && !requestTypes.contains(nextRequestType)) {
+						continue;
+					}
+					Set<String> nextOperationNames = next.getRoutingOperationNames();
+					if (nextOperationNames == null) {
+						unknownOperationMethods.add(next);
+					}
+					for (Map.Entry<String, List<BaseMethodBinding<?>>> nextEntry : operationToMethods.entrySet()) {
+						if (nextOperationNames == null || nextOperationNames.contains(nextEntry.getKey())) {
+							nextEntry.getValue().add(next);
+						}
+					}
+				}
+
+				myRequestTypeToOperationToMethods.put(nextRequestType, operationToMethods);
+				myRequestTypeToUnknownOperationMethods.put(nextRequestType, unknownOperationMethods);
+			}
+		}
+
+		List<BaseMethodBinding<?>> getCandidates(RequestDetails theRequest) {
+			RequestTypeEnum requestType = theRequest.getRequestType();
+			if (requestType == null) {
+				return myMethodBindings;
+			}
+			String operation = theRequest.getOperation();
+			if (isBlank(operation)) {
+				operation = "";
+			}
+			List<BaseMethodBinding<?>> retVal = myRequestTypeToOperationToMethods.get(requestType).get(operation);
+			if (retVal == null) {
+				retVal = myRequestTypeToUnknownOperationMethods.get(requestType);
+			}
+			return retVal;
+		}
+
+	}
+
 }
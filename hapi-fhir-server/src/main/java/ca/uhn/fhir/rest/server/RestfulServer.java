@@ -71,16 +71,26 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.annotation.Nonnull;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.UnavailableException;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -93,8 +103,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.jar.Manifest;
@@ -157,6 +170,10 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 	private ITenantIdentificationStrategy myTenantIdentificationStrategy;
 	private PreferReturnEnum myDefaultPreferReturn = DEFAULT_PREFER_RETURN;
 	private ElementsSupportEnum myElementsSupport = ElementsSupportEnum.EXTENDED;
+	private Executor myAsyncRequestExecutor;
+	private long myAsyncRequestTimeoutMillis;
+	private boolean myStreamBundleResponses;
+	private boolean myPreEncodedResourcePassThrough;
 
 	/**
 	 * Constructor. Note that if no {@link FhirContext} is passed in to the server (either through the constructor, or
@@ -1418,6 +1435,94 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		myIgnoreServerParsedRequestParameters = theIgnoreServerParsedRequestParameters;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), large search and history pages
+	 * are written to the client as they are loaded from the {@link ca.uhn.fhir.rest.api.server.IBundleProvider}
+	 * instead of first building a Bundle containing every entry on the page. This reduces the memory
+	 * used per request and the time until the first bytes of the response are sent.
+	 * <p>
+	 * Streaming is only used for non pretty-printed JSON responses without <code>_summary</code>,
+	 * <code>_elements</code> or <code>_include</code> parameters, and only if no interceptors are
+	 * registered against {@link Pointcut#SERVER_OUTGOING_RESPONSE}, since those expect to be able to
+	 * inspect or replace the complete Bundle. Note that if loading a chunk of resources fails
+	 * after the response has started, the client will receive a truncated response.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public boolean isStreamBundleResponses() {
+		return myStreamBundleResponses;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), large search and history pages
+	 * are written to the client as they are loaded from the {@link ca.uhn.fhir.rest.api.server.IBundleProvider}
+	 * instead of first building a Bundle containing every entry on the page. This reduces the memory
+	 * used per request and the time until the first bytes of the response are sent.
+	 * <p>
+	 * Streaming is only used for non pretty-printed JSON responses without <code>_summary</code>,
+	 * <code>_elements</code> or <code>_include</code> parameters, and only if no interceptors are
+	 * registered against {@link Pointcut#SERVER_OUTGOING_RESPONSE}, since those expect to be able to
+	 * inspect or replace the complete Bundle. Note that if loading a chunk of resources fails
+	 * after the response has started, the client will receive a truncated response.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public void setStreamBundleResponses(boolean theStreamBundleResponses) {
+		myStreamBundleResponses = theStreamBundleResponses;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), resource providers may return
+	 * resources from read and vread operations which contain only an ID and metadata, along with
+	 * the rest of the resource body in its already encoded JSON form (see
+	 * {@link RestfulServerUtils#setPreEncodedJson(IBaseResource, String)}). The server writes the
+	 * encoded body directly to the client instead of parsing and encoding it again. The JPA server
+	 * uses this to return the JSON it has stored without parsing it.
+	 * <p>
+	 * Providers should only return such resources if
+	 * {@link RestfulServerUtils#isPreEncodedJsonResponsePossible(RequestDetails)} returns <code>true</code>,
+	 * meaning that the response will be non pretty-printed JSON with no <code>_summary</code> or
+	 * <code>_elements</code> filtering, no narrative generator is configured, and no interceptors are
+	 * registered against {@link Pointcut#SERVER_OUTGOING_RESPONSE}. Note that resource provider code which
+	 * modifies the resources returned by another provider or DAO will not work with this setting enabled.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public boolean isPreEncodedResourcePassThrough() {
+		return myPreEncodedResourcePassThrough;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), resource providers may return
+	 * resources from read and vread operations which contain only an ID and metadata, along with
+	 * the rest of the resource body in its already encoded JSON form (see
+	 * {@link RestfulServerUtils#setPreEncodedJson(IBaseResource, String)}). The server writes the
+	 * encoded body directly to the client instead of parsing and encoding it again. The JPA server
+	 * uses this to return the JSON it has stored without parsing it.
+	 * <p>
+	 * Providers should only return such resources if
+	 * {@link RestfulServerUtils#isPreEncodedJsonResponsePossible(RequestDetails)} returns <code>true</code>,
+	 * meaning that the response will be non pretty-printed JSON with no <code>_summary</code> or
+	 * <code>_elements</code> filtering, no narrative generator is configured, and no interceptors are
+	 * registered against {@link Pointcut#SERVER_OUTGOING_RESPONSE}. Note that resource provider code which
+	 * modifies the resources returned by another provider or DAO will not work with this setting enabled.
+	 * </p>
+	 * <p>
+	 * In addition, the JPA server parses the stored JSON as usual if interceptors are registered against
+	 * {@link Pointcut#STORAGE_PREACCESS_RESOURCES} or {@link Pointcut#STORAGE_PRESHOW_RESOURCES}, if the
+	 * resource was stored using a different FHIR version, or if the stored JSON would be normalised by
+	 * parsing it (e.g. decimals without a leading digit written by older versions).
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public void setPreEncodedResourcePassThrough(boolean thePreEncodedResourcePassThrough) {
+		myPreEncodedResourcePassThrough = thePreEncodedResourcePassThrough;
+	}
+
 	/**
 	 * Should the server attempt to decompress incoming request contents (default is <code>true</code>). Typically this
 	 * should be set to <code>true</code> unless the server has other configuration to
@@ -1700,6 +1805,25 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 	protected void service(HttpServletRequest theReq, HttpServletResponse theResp) throws ServletException, IOException {
 		theReq.setAttribute(REQUEST_START_TIME, new Date());
 
+		Executor asyncRequestExecutor = myAsyncRequestExecutor;
+		if (asyncRequestExecutor != null && theReq.isAsyncSupported() && theReq.getDispatcherType() == DispatcherType.REQUEST) {
+			AsyncContext asyncContext = theReq.startAsync(theReq, theResp);
+			asyncContext.setTimeout(myAsyncRequestTimeoutMillis);
+			AsyncRequest asyncRequest = new AsyncRequest(asyncContext, theReq, theResp);
+			asyncContext.addListener(asyncRequest);
+			try {
+				asyncRequestExecutor.execute(asyncRequest);
+			} catch (RejectedExecutionException e) {
+				ourLog.warn("Asynchronous request executor rejected request, processing on the container thread instead: {}", e.toString());
+				asyncRequest.run();
+			}
+			return;
+		}
+
+		dispatchRequest(theReq, theResp);
+	}
+
+	private void dispatchRequest(HttpServletRequest theReq, HttpServletResponse theResp) throws ServletException, IOException {
 		RequestTypeEnum method;
 		try {
 			method = RequestTypeEnum.valueOf(theReq.getMethod());
@@ -1749,6 +1873,75 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		}
 	}
 
+	/**
+	 * Returns the executor used to process requests asynchronously, or <code>null</code> (the default)
+	 * if requests are processed on the servlet container thread which received them.
+	 *
+	 * @see #setAsyncRequestExecutor(Executor)
+	 * @since 5.1.0
+	 */
+	public Executor getAsyncRequestExecutor() {
+		return myAsyncRequestExecutor;
+	}
+
+	/**
+	 * If set (default is <code>null</code>), incoming requests are processed asynchronously using
+	 * Servlet 3.0 async support. The request is handed to this executor and the servlet container
+	 * thread is released immediately, so slow requests (e.g. large searches or long running operations)
+	 * do not hold on to container threads while they wait on the database. The complete request,
+	 * including all interceptor pointcuts, is processed on a single executor thread.
+	 * <p>
+	 * The servlet must be registered with <code>async-supported</code> enabled, otherwise requests
+	 * are processed synchronously as usual. See {@link ca.uhn.fhir.rest.server.servlet.AsyncRequestExecutorFactory}
+	 * for a suitable executor, which uses virtual threads where the JVM supports them. The executor
+	 * is not shut down by the server. If the executor rejects a request (e.g. because its queue is
+	 * full) the request is processed on the container thread instead, which pushes back on the
+	 * container.
+	 * </p>
+	 * <p>
+	 * The SLF4J {@link org.slf4j.MDC} of the container thread is copied to the executor thread, but
+	 * no other thread-bound state is. Anything a servlet filter binds to the container thread is
+	 * therefore not visible to providers or interceptors, for example the Spring
+	 * <code>SecurityContextHolder</code> and <code>RequestContextHolder</code>, or a transaction or
+	 * persistence context opened by the filter. Servers which depend on such state should establish
+	 * it in a server interceptor (which runs on the executor thread) or leave this unset.
+	 * </p>
+	 *
+	 * @see #setAsyncRequestTimeoutMillis(long)
+	 * @since 5.1.0
+	 */
+	public void setAsyncRequestExecutor(Executor theAsyncRequestExecutor) {
+		myAsyncRequestExecutor = theAsyncRequestExecutor;
+	}
+
+	/**
+	 * Returns the timeout for requests which are processed asynchronously
+	 *
+	 * @see #setAsyncRequestTimeoutMillis(long)
+	 * @since 5.1.0
+	 */
+	public long getAsyncRequestTimeoutMillis() {
+		return myAsyncRequestTimeoutMillis;
+	}
+
+	/**
+	 * Sets the timeout (in milliseconds) for requests which are processed asynchronously
+	 * (see {@link #setAsyncRequestExecutor(Executor)}). The default is <code>0</code>, meaning that
+	 * requests never time out, just like requests processed on the container thread.
+	 * <p>
+	 * If a request has not completed when the timeout elapses, the client receives an
+	 * <code>HTTP 503 Service Unavailable</code> response. A request which is still waiting in the
+	 * executor's queue at that point is not processed at all, but one which has already started
+	 * runs to completion and its output is discarded.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public void setAsyncRequestTimeoutMillis(long theAsyncRequestTimeoutMillis) {
+		Validate.isTrue(theAsyncRequestTimeoutMillis >= 0, "theAsyncRequestTimeoutMillis must not be negative");
+		myAsyncRequestTimeoutMillis = theAsyncRequestTimeoutMillis;
+	}
+
 	/**
 	 * If provided (default is <code>null</code>), the tenant identification
 	 * strategy provides a mechanism for a multitenant server to identify which tenant
@@ -1913,4 +2106,458 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 //
 //		return retVal;
 //	}
+
+	/**
+	 * A request which is processed asynchronously. The MDC of the container thread is carried over
+	 * to the thread which processes the request, and whichever of the processing thread or the
+	 * timeout finishes first completes the async context.
+	 * <p>
+	 * The container may recycle the response as soon as the async context is completed, so the
+	 * processing thread writes to a wrapper which drops anything written after a timeout has
+	 * completed the request.
+	 * </p>
+	 */
+	private class AsyncRequest implements Runnable, AsyncListener {
+
+		private final AsyncContext myAsyncContext;
+		private final HttpServletRequest myRequest;
+		private final HttpServletResponse myResponse;
+		private final AsyncResponse myAsyncResponse;
+		private final Map<String, String> myMdcContext;
+		private final Object myLock = new Object();
+		private boolean myCompleted;
+
+		AsyncRequest(AsyncContext theAsyncContext, HttpServletRequest theRequest, HttpServletResponse theResponse) {
+			myAsyncContext = theAsyncContext;
+			myRequest = theRequest;
+			myResponse = theResponse;
+			myAsyncResponse = new AsyncResponse(theResponse);
+			myMdcContext = MDC.getCopyOfContextMap();
+		}
+
+		@Override
+		public void run() {
+			if (isCompleted()) {
+				ourLog.debug("Not processing request which timed out while queued: {}", myRequest.getRequestURI());
+				return;
+			}
+
+			Map<String, String> previousMdcContext = MDC.getCopyOfContextMap();
+			setMdcContext(myMdcContext);
+			try {
+				dispatchRequest(myRequest, myAsyncResponse);
+			} catch (Throwable e) {
+				ourLog.error("Failure during asynchronous request processing", e);
+				if (!myAsyncResponse.isCommitted()) {
+					sendError(myAsyncResponse, Constants.STATUS_HTTP_500_INTERNAL_ERROR);
+				}
+			} finally {
+				setMdcContext(previousMdcContext);
+				if (markCompleted()) {
+					myAsyncContext.complete();
+				}
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent theEvent) {
+			synchronized (myLock) {
+				if (myCompleted) {
+					return;
+				}
+				myCompleted = true;
+
+				/*
+				 * The processing thread may still be running, but anything it writes from now on
+				 * is dropped by the response wrapper, and writes already in progress hold the
+				 * lock, so the error can't be interleaved with them
+				 */
+				ourLog.warn("Asynchronous request timed out after {}ms: {}", myAsyncRequestTimeoutMillis, myRequest.getRequestURI());
+				if (!myResponse.isCommitted()) {
+					sendError(myResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				}
+			}
+			myAsyncContext.complete();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent theEvent) {
+			// nothing
+		}
+
+		@Override
+		public void onError(AsyncEvent theEvent) {
+			// nothing
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent theEvent) {
+			// nothing
+		}
+
+		private boolean isCompleted() {
+			synchronized (myLock) {
+				return myCompleted;
+			}
+		}
+
+		/**
+		 * @return Returns <code>true</code> if the request was not already completed by a timeout
+		 */
+		private boolean markCompleted() {
+			synchronized (myLock) {
+				if (myCompleted) {
+					return false;
+				}
+				myCompleted = true;
+				return true;
+			}
+		}
+
+		private void sendError(HttpServletResponse theResponse, int theStatus) {
+			try {
+				theResponse.sendError(theStatus);
+			} catch (IOException | IllegalStateException e) {
+				ourLog.debug("Failed to send error response", e);
+			}
+		}
+
+		private void setMdcContext(Map<String, String> theContext) {
+			if (theContext != null) {
+				MDC.setContextMap(theContext);
+			} else {
+				MDC.clear();
+			}
+		}
+
+		/**
+		 * Response used by the processing thread, which drops everything written to it once
+		 * the request has been completed by a timeout
+		 */
+		private class AsyncResponse extends HttpServletResponseWrapper {
+
+			private ServletOutputStream myOutputStream;
+			private PrintWriter myWriter;
+
+			AsyncResponse(HttpServletResponse theResponse) {
+				super(theResponse);
+			}
+
+			@Override
+			public ServletOutputStream getOutputStream() throws IOException {
+				synchronized (myLock) {
+					if (myOutputStream == null) {
+						ServletOutputStream delegate = myCompleted ? null : super.getOutputStream();
+						myOutputStream = new AsyncOutputStream(delegate);
+					}
+					return myOutputStream;
+				}
+			}
+
+			@Override
+			public PrintWriter getWriter() throws IOException {
+				synchronized (myLock) {
+					if (myWriter == null) {
+						Writer delegate = myCompleted ? null : super.getWriter();
+						myWriter = new PrintWriter(new AsyncWriter(delegate));
+					}
+					return myWriter;
+				}
+			}
+
+			@Override
+			public boolean isCommitted() {
+				synchronized (myLock) {
+					return myCompleted || super.isCommitted();
+				}
+			}
+
+			@Override
+			public void setStatus(int theStatus) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setStatus(theStatus);
+					}
+				}
+			}
+
+			@Override
+			public void sendError(int theStatus) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.sendError(theStatus);
+					}
+				}
+			}
+
+			@Override
+			public void sendError(int theStatus, String theMessage) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.sendError(theStatus, theMessage);
+					}
+				}
+			}
+
+			@Override
+			public void sendRedirect(String theLocation) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.sendRedirect(theLocation);
+					}
+				}
+			}
+
+			@Override
+			public void setHeader(String theName, String theValue) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setHeader(theName, theValue);
+					}
+				}
+			}
+
+			@Override
+			public void addHeader(String theName, String theValue) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.addHeader(theName, theValue);
+					}
+				}
+			}
+
+			@Override
+			public void setDateHeader(String theName, long theDate) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setDateHeader(theName, theDate);
+					}
+				}
+			}
+
+			@Override
+			public void addDateHeader(String theName, long theDate) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.addDateHeader(theName, theDate);
+					}
+				}
+			}
+
+			@Override
+			public void setIntHeader(String theName, int theValue) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setIntHeader(theName, theValue);
+					}
+				}
+			}
+
+			@Override
+			public void addIntHeader(String theName, int theValue) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.addIntHeader(theName, theValue);
+					}
+				}
+			}
+
+			@Override
+			public void addCookie(Cookie theCookie) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.addCookie(theCookie);
+					}
+				}
+			}
+
+			@Override
+			public void setContentType(String theType) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setContentType(theType);
+					}
+				}
+			}
+
+			@Override
+			public void setCharacterEncoding(String theCharset) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setCharacterEncoding(theCharset);
+					}
+				}
+			}
+
+			@Override
+			public void setContentLength(int theLength) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setContentLength(theLength);
+					}
+				}
+			}
+
+			@Override
+			public void setContentLengthLong(long theLength) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setContentLengthLong(theLength);
+					}
+				}
+			}
+
+			@Override
+			public void setLocale(Locale theLocale) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setLocale(theLocale);
+					}
+				}
+			}
+
+			@Override
+			public void setBufferSize(int theSize) {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.setBufferSize(theSize);
+					}
+				}
+			}
+
+			@Override
+			public void flushBuffer() throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.flushBuffer();
+					}
+				}
+			}
+
+			@Override
+			public void reset() {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.reset();
+					}
+				}
+			}
+
+			@Override
+			public void resetBuffer() {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						super.resetBuffer();
+					}
+				}
+			}
+
+		}
+
+		private class AsyncOutputStream extends ServletOutputStream {
+
+			private final ServletOutputStream myDelegate;
+
+			AsyncOutputStream(ServletOutputStream theDelegate) {
+				myDelegate = theDelegate;
+			}
+
+			@Override
+			public boolean isReady() {
+				synchronized (myLock) {
+					return myCompleted || myDelegate.isReady();
+				}
+			}
+
+			@Override
+			public void setWriteListener(WriteListener theWriteListener) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void write(int theByte) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.write(theByte);
+					}
+				}
+			}
+
+			@Override
+			public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.write(theBytes, theOffset, theLength);
+					}
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.flush();
+					}
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.close();
+					}
+				}
+			}
+
+		}
+
+		private class AsyncWriter extends Writer {
+
+			private final Writer myDelegate;
+
+			AsyncWriter(Writer theDelegate) {
+				myDelegate = theDelegate;
+			}
+
+			@Override
+			public void write(char[] theChars, int theOffset, int theLength) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.write(theChars, theOffset, theLength);
+					}
+				}
+			}
+
+			@Override
+			public void write(String theString, int theOffset, int theLength) throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.write(theString, theOffset, theLength);
+					}
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.flush();
+					}
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				synchronized (myLock) {
+					if (!myCompleted) {
+						myDelegate.close();
+					}
+				}
+			}
+
+		}
+
+	}
+
 }
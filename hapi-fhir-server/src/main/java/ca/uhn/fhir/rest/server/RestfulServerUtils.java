@@ -74,6 +74,7 @@ import static org.apache.commons.lang3.StringUtils.replace;
 import static org.apache.commons.lang3.StringUtils.trim;
 
 public class RestfulServerUtils {
+	private static final String PRE_ENCODED_JSON_KEY = RestfulServerUtils.class.getName() + "_PRE_ENCODED_JSON";
 	static final Pattern ACCEPT_HEADER_PATTERN = Pattern.compile("\\s*([a-zA-Z0-9+.*/-]+)\\s*(;\\s*([a-zA-Z]+)\\s*=\\s*([a-zA-Z0-9.]+)\\s*)?(,?)");
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(RestfulServerUtils.class);
@@ -895,18 +896,7 @@ public class RestfulServerUtils {
 		String charset = Constants.CHARSET_NAME_UTF8;
 
 		Writer writer = response.getResponseWriter(theStatusCode, theStatusMessage, contentType, charset, respondGzip);
-
-		// Interceptor call: SERVER_OUTGOING_WRITER_CREATED
-		if (theServer.getInterceptorService() != null && theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED)) {
-			HookParams params = new HookParams()
-				.add(Writer.class, writer)
-				.add(RequestDetails.class, theRequestDetails)
-				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
-			Object newWriter = theServer.getInterceptorService().callHooksAndReturnObject(Pointcut.SERVER_OUTGOING_WRITER_CREATED, params);
-			if (newWriter != null) {
-				writer = (Writer) newWriter;
-			}
-		}
+		writer = callOutgoingWriterCreatedHook(theServer, theRequestDetails, writer);
 
 		if (theResource == null) {
 			// No response is being returned
@@ -923,12 +913,116 @@ public class RestfulServerUtils {
 		} else {
 			FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
 			IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
-			parser.encodeResourceToWriter(theResource, writer);
+			String preEncodedJson = getPreEncodedJson(theResource);
+			if (preEncodedJson == null) {
+				parser.encodeResourceToWriter(theResource, writer);
+			} else if (responseEncoding.getEncoding() == EncodingEnum.JSON && isUnfiltered(theSummaryMode) && isPreEncodedJsonResponsePossible(theRequestDetails)) {
+				// The provider has supplied the resource body in the exact form we would have encoded it
+				writer.write(spliceIdAndMetaIntoPreEncodedJson(theServer.getFhirContext(), parser, theResource, preEncodedJson));
+			} else {
+				String json = spliceIdAndMetaIntoPreEncodedJson(theServer.getFhirContext(), theServer.getFhirContext().newJsonParser(), theResource, preEncodedJson);
+				IBaseResource parsed = theServer.getFhirContext().newJsonParser().parseResource(theResource.getClass(), json);
+				parser.encodeResourceToWriter(parsed, writer);
+			}
 		}
 
 		return response.sendWriterResponse(theStatusCode, contentType, charset, writer);
 	}
 
+	private static boolean isUnfiltered(Set<SummaryEnum> theSummaryMode) {
+		return theSummaryMode.isEmpty() || (theSummaryMode.size() == 1 && theSummaryMode.contains(SummaryEnum.FALSE));
+	}
+
+	/**
+	 * Can the resource returned by a read or vread operation for the given request be supplied
+	 * as pre-encoded JSON? See {@link RestfulServer#setPreEncodedResourcePassThrough(boolean)}.
+	 *
+	 * @since 5.1.0
+	 */
+	public static boolean isPreEncodedJsonResponsePossible(RequestDetails theRequest) {
+		if (theRequest == null || !(theRequest.getServer() instanceof RestfulServer)) {
+			return false;
+		}
+		RestfulServer server = (RestfulServer) theRequest.getServer();
+		if (!server.isPreEncodedResourcePassThrough()) {
+			return false;
+		}
+		RestOperationTypeEnum operation = theRequest.getRestOperationType();
+		if (operation != RestOperationTypeEnum.READ && operation != RestOperationTypeEnum.VREAD) {
+			return false;
+		}
+		// Binary resources may be returned as raw content
+		if ("Binary".equals(theRequest.getResourceName())) {
+			return false;
+		}
+		if (server.getFhirContext().getNarrativeGenerator() != null) {
+			return false;
+		}
+		if (determineResponseEncodingWithDefault(theRequest).getEncoding() != EncodingEnum.JSON || prettyPrintResponse(server, theRequest)) {
+			return false;
+		}
+		Map<String, String[]> parameters = theRequest.getParameters();
+		if (parameters.containsKey(Constants.PARAM_SUMMARY) || parameters.containsKey(Constants.PARAM_ELEMENTS) || parameters.containsKey(Constants.PARAM_ELEMENTS + Constants.PARAM_ELEMENTS_EXCLUDE_MODIFIER)) {
+			return false;
+		}
+		return server.getInterceptorService() == null || !server.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_RESPONSE);
+	}
+
+	/**
+	 * Supplies the body of a resource in encoded JSON form. The given resource should contain
+	 * only an ID and metadata (which are added to the encoded body when it is written), and the
+	 * encoded JSON must be a compact (non pretty-printed) encoding of the rest of the resource,
+	 * starting with the <code>resourceType</code> property and containing no <code>id</code> or
+	 * <code>meta</code>.
+	 *
+	 * @see #isPreEncodedJsonResponsePossible(RequestDetails)
+	 * @since 5.1.0
+	 */
+	public static void setPreEncodedJson(IBaseResource theResource, String theEncodedJson) {
+		theResource.setUserData(PRE_ENCODED_JSON_KEY, theEncodedJson);
+	}
+
+	private static String getPreEncodedJson(IBaseResource theResource) {
+		return (String) theResource.getUserData(PRE_ENCODED_JSON_KEY);
+	}
+
+	/**
+	 * Encodes the ID and metadata held by the given resource, and inserts them after the
+	 * <code>resourceType</code> property of the pre-encoded resource body
+	 */
+	private static String spliceIdAndMetaIntoPreEncodedJson(FhirContext theContext, IParser theJsonParser, IBaseResource theResource, String thePreEncodedJson) {
+		String prefix = "{\"resourceType\":\"" + theContext.getResourceType(theResource) + "\"";
+		String idAndMeta = theJsonParser.encodeResourceToString(theResource);
+		if (!thePreEncodedJson.startsWith(prefix) || !idAndMeta.startsWith(prefix) || !idAndMeta.endsWith("}")) {
+			throw new InternalErrorException("Unexpected encoding for resource " + theResource.getIdElement().getValue());
+		}
+
+		StringBuilder b = new StringBuilder(idAndMeta.length() + thePreEncodedJson.length());
+		b.append(idAndMeta, 0, idAndMeta.length() - 1);
+		b.append(thePreEncodedJson, prefix.length(), thePreEncodedJson.length());
+		return b.toString();
+	}
+
+	/**
+	 * Interceptor call: SERVER_OUTGOING_WRITER_CREATED
+	 *
+	 * @return Returns the writer which should be used to write the response body
+	 */
+	public static Writer callOutgoingWriterCreatedHook(IRestfulServerDefaults theServer, RequestDetails theRequestDetails, Writer theWriter) {
+		Writer retVal = theWriter;
+		if (theServer.getInterceptorService() != null && theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED)) {
+			HookParams params = new HookParams()
+				.add(Writer.class, theWriter)
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+			Object newWriter = theServer.getInterceptorService().callHooksAndReturnObject(Pointcut.SERVER_OUTGOING_WRITER_CREATED, params);
+			if (newWriter != null) {
+				retVal = (Writer) newWriter;
+			}
+		}
+		return retVal;
+	}
+
 	public static String createEtag(String theVersionId) {
 		return "W/\"" + theVersionId + '"';
 	}
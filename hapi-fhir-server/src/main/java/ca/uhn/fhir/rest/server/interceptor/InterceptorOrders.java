@@ -25,6 +25,8 @@ public class InterceptorOrders {
 	public static final int SERVE_MEDIA_RESOURCE_RAW_INTERCEPTOR = 1000;
 	public static final int RESPONSE_HIGHLIGHTER_INTERCEPTOR = 10000;
 	public static final int RESPONSE_SIZE_CAPTURING_INTERCEPTOR_COMPLETED = -1;
+	public static final int RESPONSE_CACHING_INTERCEPTOR_POST_PROCESSED = 10000;
+	public static final int RESPONSE_CACHING_INTERCEPTOR_OUTGOING_RESPONSE = 20000;
 
 	/**
 	 * Non instantiable
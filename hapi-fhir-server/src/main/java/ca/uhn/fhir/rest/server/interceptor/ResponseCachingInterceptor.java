@@ -0,0 +1,700 @@
+package ca.uhn.fhir.rest.server.interceptor;
+
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.CacheControlDirective;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.apache.commons.lang3.StringUtils.defaultString;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * This interceptor caches the encoded responses to read-mostly requests (such as <code>metadata</code>,
+ * resource reads and popular searches) so that repeated requests can be answered without invoking the
+ * resource provider or encoding the response again.
+ * <p>
+ * Responses are cached using a key built from the normalized request path and parameters (including
+ * <code>_summary</code> and <code>_elements</code>), the response encoding, the <code>Accept</code> header,
+ * the tenant ID and the server base URL. By default the key also includes a hash of the <code>Authorization</code>
+ * header, since cached responses are returned before interceptors such as the
+ * {@link ca.uhn.fhir.rest.server.interceptor.auth.AuthorizationInterceptor AuthorizationInterceptor}
+ * are invoked. See {@link #getCacheKeyDiscriminator(RequestDetails)}.
+ * </p>
+ * <p>
+ * Requests for which no discriminator can be determined (e.g. requests authenticated by a session
+ * cookie, a servlet filter or a client certificate rather than an <code>Authorization</code> header)
+ * are neither cached nor served from the cache, unless {@link #setAllowAnonymousSharing(boolean)} is
+ * enabled. Note also that credentials are not re-validated when a cached response is served, so a
+ * response may continue to be served for a revoked token until it {@link #setTimeToLiveMillis(long) expires}.
+ * </p>
+ * <p>
+ * Each cached response has an ETag (either the one supplied by the server, or a hash of the response body)
+ * and requests with a matching <code>If-None-Match</code> header receive a <code>304 Not Modified</code>
+ * response.
+ * </p>
+ * <p>
+ * Cached responses are invalidated when a resource of a type they depend on is created, updated or deleted
+ * (as signalled by the <code>STORAGE_PRECOMMIT_RESOURCE_*</code> pointcuts, or by a non-GET request
+ * processed by this server), and in any case expire after a {@link #setTimeToLiveMillis(long) configurable time}.
+ * </p>
+ *
+ * @since 5.1.0
+ */
+@Interceptor
+public class ResponseCachingInterceptor {
+
+	/**
+	 * Default value for {@link #setTimeToLiveMillis(long)} (1 minute)
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * Default value for {@link #setMaximumEntries(int)}
+	 */
+	public static final int DEFAULT_MAXIMUM_ENTRIES = 1000;
+	/**
+	 * Default value for {@link #setMaximumEntrySize(int)}
+	 */
+	public static final int DEFAULT_MAXIMUM_ENTRY_SIZE = 1024 * 1024;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ResponseCachingInterceptor.class);
+	private static final String REQUEST_STATE_KEY = ResponseCachingInterceptor.class.getName() + "_REQUEST_STATE";
+	private static final Set<String> DEPENDS_ON_ALL_TYPES = null;
+	private static final String[] CACHED_HEADERS = {Constants.HEADER_ETAG, Constants.HEADER_LAST_MODIFIED, Constants.HEADER_CONTENT_LOCATION};
+
+	private final Map<String, CachedResponse> myCache;
+	private final AtomicLong myGeneration = new AtomicLong();
+	private volatile long myTimeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+	private volatile int myMaximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+	private volatile int myMaximumEntrySize = DEFAULT_MAXIMUM_ENTRY_SIZE;
+	private volatile boolean myAllowAnonymousSharing;
+	private volatile Set<RestOperationTypeEnum> myCacheableOperations = Collections.unmodifiableSet(EnumSet.of(
+		RestOperationTypeEnum.METADATA,
+		RestOperationTypeEnum.READ,
+		RestOperationTypeEnum.VREAD,
+		RestOperationTypeEnum.SEARCH_TYPE,
+		RestOperationTypeEnum.SEARCH_SYSTEM
+	));
+
+	/**
+	 * Constructor
+	 */
+	public ResponseCachingInterceptor() {
+		myCache = Collections.synchronizedMap(new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> theEldest) {
+				return size() > myMaximumEntries;
+			}
+		});
+	}
+
+	/**
+	 * If a cached response is available for the incoming request, write it to the client and abort
+	 * further processing. Note that this is done here rather than at
+	 * {@link Pointcut#SERVER_INCOMING_REQUEST_PRE_HANDLED}, since hooks for that pointcut are not able
+	 * to supply a response.
+	 */
+	@Hook(value = Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED, order = InterceptorOrders.RESPONSE_CACHING_INTERCEPTOR_POST_PROCESSED)
+	public boolean serveCachedResponse(ServletRequestDetails theRequestDetails, HttpServletResponse theServletResponse) throws IOException {
+		if (theRequestDetails.getRequestType() != RequestTypeEnum.GET || !myCacheableOperations.contains(theRequestDetails.getRestOperationType())) {
+			return true;
+		}
+
+		CacheControlDirective cacheControl = new CacheControlDirective().parse(theRequestDetails.getHeaders(Constants.HEADER_CACHE_CONTROL));
+		if (cacheControl.isNoStore()) {
+			return true;
+		}
+
+		String discriminator = getCacheKeyDiscriminator(theRequestDetails);
+		if (discriminator == null && !myAllowAnonymousSharing) {
+			return true;
+		}
+
+		String key = createCacheKey(theRequestDetails, discriminator);
+		theRequestDetails.getUserData().put(REQUEST_STATE_KEY, new RequestState(key, myGeneration.get()));
+		if (cacheControl.isNoCache()) {
+			return true;
+		}
+
+		CachedResponse cached = myCache.get(key);
+		if (cached == null) {
+			return true;
+		}
+		if (cached.isExpired(System.currentTimeMillis(), myTimeToLiveMillis)) {
+			myCache.remove(key, cached);
+			return true;
+		}
+
+		theRequestDetails.getUserData().remove(REQUEST_STATE_KEY);
+		theRequestDetails.getServer().addHeadersToResponse(theServletResponse);
+		for (Map.Entry<String, String> nextHeader : cached.getHeaders().entrySet()) {
+			theServletResponse.setHeader(nextHeader.getKey(), nextHeader.getValue());
+		}
+
+		if (matchesIfNoneMatch(theRequestDetails, cached.getETag())) {
+			theServletResponse.setStatus(Constants.STATUS_HTTP_304_NOT_MODIFIED);
+			return false;
+		}
+
+		theServletResponse.setStatus(Constants.STATUS_HTTP_200_OK);
+		theServletResponse.setContentType(cached.getContentType());
+		byte[] body = cached.getBody();
+		if (theRequestDetails.isRespondGzip()) {
+			theServletResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			try (OutputStream outputStream = new GZIPOutputStream(theServletResponse.getOutputStream())) {
+				outputStream.write(body);
+			}
+		} else {
+			theServletResponse.setContentLength(body.length);
+			try (OutputStream outputStream = theServletResponse.getOutputStream()) {
+				outputStream.write(body);
+			}
+		}
+
+		ourLog.trace("Served cached response for key: {}", key);
+		return false;
+	}
+
+	/**
+	 * Records the resource types the response depends on, so that it can be invalidated
+	 * when resources of those types change
+	 */
+	@Hook(value = Pointcut.SERVER_OUTGOING_RESPONSE, order = InterceptorOrders.RESPONSE_CACHING_INTERCEPTOR_OUTGOING_RESPONSE)
+	public void recordResponse(RequestDetails theRequestDetails, ResponseDetails theResponseDetails) {
+		RequestState state = (RequestState) theRequestDetails.getUserData().get(REQUEST_STATE_KEY);
+		if (state == null) {
+			return;
+		}
+
+		IBaseResource responseResource = theResponseDetails.getResponseResource();
+		if (theResponseDetails.getResponseCode() != Constants.STATUS_HTTP_200_OK || responseResource == null) {
+			theRequestDetails.getUserData().remove(REQUEST_STATE_KEY);
+			return;
+		}
+
+		state.setDependencies(determineDependencies(theRequestDetails, responseResource));
+	}
+
+	/**
+	 * Wraps the response writer so that the response body can be cached. The wrapper holds
+	 * the body back until the writer is closed, so that the cache entry exists before the
+	 * client receives the response.
+	 */
+	@Hook(Pointcut.SERVER_OUTGOING_WRITER_CREATED)
+	public Writer captureResponse(RequestDetails theRequestDetails, Writer theWriter) {
+		RequestState state = (RequestState) theRequestDetails.getUserData().remove(REQUEST_STATE_KEY);
+		if (state == null || !state.isDependenciesRecorded() || !(theRequestDetails instanceof ServletRequestDetails)) {
+			return theWriter;
+		}
+		HttpServletResponse servletResponse = ((ServletRequestDetails) theRequestDetails).getServletResponse();
+		if (servletResponse == null) {
+			return theWriter;
+		}
+		return new CapturingWriter(theWriter, state, servletResponse, myMaximumEntrySize);
+	}
+
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY)
+	public void processingCompleted(RequestDetails theRequestDetails) {
+		theRequestDetails.getUserData().remove(REQUEST_STATE_KEY);
+		if (isModifyingRequest(theRequestDetails)) {
+			invalidateResourceType(theRequestDetails.getResourceName());
+		}
+	}
+
+	private void storeResponse(RequestState theState, HttpServletResponse theServletResponse, String theBody) {
+		if (theServletResponse.getStatus() != Constants.STATUS_HTTP_200_OK || isBlank(theServletResponse.getContentType())) {
+			return;
+		}
+
+		// Don't cache a response which may have been built before a concurrent modification
+		if (theState.getGeneration() != myGeneration.get()) {
+			return;
+		}
+
+		byte[] body = theBody.getBytes(StandardCharsets.UTF_8);
+		Map<String, String> headers = new LinkedHashMap<>();
+		for (String nextHeader : CACHED_HEADERS) {
+			String value = theServletResponse.getHeader(nextHeader);
+			if (isNotBlank(value)) {
+				headers.put(nextHeader, value);
+			}
+		}
+		if (!headers.containsKey(Constants.HEADER_ETAG)) {
+			headers.put(Constants.HEADER_ETAG, "W/\"" + Hashing.murmur3_128().hashBytes(body) + "\"");
+		}
+
+		CachedResponse cached = new CachedResponse(theServletResponse.getContentType(), body, headers, theState.getDependencies(), System.currentTimeMillis());
+		myCache.put(theState.getKey(), cached);
+		ourLog.trace("Cached response for key: {}", theState.getKey());
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_CREATED)
+	public void resourceCreated(IBaseResource theResource) {
+		invalidate(theResource);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_UPDATED)
+	public void resourceUpdated(IBaseResource theOldResource, IBaseResource theNewResource) {
+		invalidate(theNewResource != null ? theNewResource : theOldResource);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_DELETED)
+	public void resourceDeleted(IBaseResource theResource) {
+		invalidate(theResource);
+	}
+
+	private void invalidate(IBaseResource theResource) {
+		String resourceType = null;
+		if (theResource != null) {
+			resourceType = theResource.getIdElement().getResourceType();
+			if (isBlank(resourceType)) {
+				resourceType = theResource.fhirType();
+			}
+		}
+		invalidateResourceType(resourceType);
+	}
+
+	/**
+	 * Removes all cached responses which depend on resources of the given type
+	 *
+	 * @param theResourceType The resource type, or <code>null</code> to remove all cached responses
+	 */
+	public void invalidateResourceType(String theResourceType) {
+		myGeneration.incrementAndGet();
+		if (isBlank(theResourceType)) {
+			clearCache();
+			return;
+		}
+		synchronized (myCache) {
+			Iterator<CachedResponse> iterator = myCache.values().iterator();
+			while (iterator.hasNext()) {
+				Set<String> dependencies = iterator.next().getDependencies();
+				if (dependencies == DEPENDS_ON_ALL_TYPES || dependencies.contains(theResourceType)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached responses
+	 */
+	public void clearCache() {
+		myGeneration.incrementAndGet();
+		myCache.clear();
+	}
+
+	/**
+	 * Returns the number of responses currently cached
+	 */
+	public int getCacheSize() {
+		return myCache.size();
+	}
+
+	/**
+	 * Builds the cache key for a request
+	 */
+	private String createCacheKey(ServletRequestDetails theRequestDetails, String theDiscriminator) {
+		StringBuilder b = new StringBuilder();
+		b.append(defaultString(theRequestDetails.getFhirServerBase()));
+		b.append('|').append(defaultString(theRequestDetails.getTenantId()));
+		b.append('|').append(RestfulServerUtils.determineResponseEncodingWithDefault(theRequestDetails).getEncoding());
+		b.append('|').append(RestfulServerUtils.prettyPrintResponse(theRequestDetails.getServer(), theRequestDetails));
+		b.append('|').append(defaultString(theRequestDetails.getHeader(Constants.HEADER_ACCEPT)));
+		b.append('|').append(defaultString(theDiscriminator));
+		b.append('|').append(theRequestDetails.getRequestPath());
+
+		// Parameter order doesn't matter, but the order of repetitions of the same parameter is preserved
+		char separator = '?';
+		for (Map.Entry<String, String[]> nextParam : new TreeMap<>(theRequestDetails.getParameters()).entrySet()) {
+			for (String nextValue : nextParam.getValue()) {
+				b.append(separator);
+				b.append(UrlUtil.escapeUrlParam(nextParam.getKey()));
+				b.append('=');
+				b.append(UrlUtil.escapeUrlParam(nextValue));
+				separator = '&';
+			}
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Returns a value which is added to the cache key for each request, so that different clients
+	 * never share a cached response. The default implementation returns a hash of the
+	 * <code>Authorization</code> header (or <code>null</code> if there is none), which means that
+	 * cached responses are only ever served to requests with the same credentials as the request
+	 * that populated the cache.
+	 * <p>
+	 * If this method returns <code>null</code>, the request is neither cached nor served from the
+	 * cache unless {@link #setAllowAnonymousSharing(boolean)} is enabled.
+	 * </p>
+	 * <p>
+	 * Subclasses may override this method, for example to return a user or role identifier. If
+	 * this method returns the same value for requests from clients with different access rights,
+	 * those clients may receive responses which would otherwise be rejected or filtered by
+	 * authorization or consent interceptors.
+	 * </p>
+	 */
+	protected String getCacheKeyDiscriminator(RequestDetails theRequestDetails) {
+		String authorization = theRequestDetails.getHeader(Constants.HEADER_AUTHORIZATION);
+		if (isBlank(authorization)) {
+			return null;
+		}
+		return Hashing.sha256().hashString(authorization, StandardCharsets.UTF_8).toString();
+	}
+
+	/**
+	 * Determines which resource types a response depends on, or returns {@link #DEPENDS_ON_ALL_TYPES}
+	 * if this can not be determined cheaply (e.g. for searches using chained parameters, since these
+	 * depend on resource types which do not appear in the results)
+	 */
+	private Set<String> determineDependencies(RequestDetails theRequestDetails, IBaseResource theResponseResource) {
+		String resourceName = theRequestDetails.getResourceName();
+		if (isBlank(resourceName)) {
+			return DEPENDS_ON_ALL_TYPES;
+		}
+
+		Set<String> retVal = new HashSet<>();
+		retVal.add(resourceName);
+		if (isNotBlank(theRequestDetails.getCompartmentName())) {
+			retVal.add(theRequestDetails.getCompartmentName());
+		}
+
+		if (theRequestDetails.getRestOperationType() == RestOperationTypeEnum.SEARCH_TYPE) {
+			for (String nextParam : theRequestDetails.getParameters().keySet()) {
+				if (nextParam.startsWith(Constants.PARAM_REVINCLUDE) || nextParam.startsWith(Constants.PARAM_HAS) || nextParam.contains(".")) {
+					return DEPENDS_ON_ALL_TYPES;
+				}
+			}
+
+			// Included resources may be of any type
+			FhirContext context = theRequestDetails.getFhirContext();
+			if (theResponseResource instanceof IBaseBundle && context != null) {
+				for (IBaseResource next : BundleUtil.toListOfResources(context, (IBaseBundle) theResponseResource)) {
+					retVal.add(context.getResourceType(next));
+				}
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Any request other than a read or search is assumed to have possibly modified data
+	 */
+	private static boolean isModifyingRequest(RequestDetails theRequestDetails) {
+		RequestTypeEnum requestType = theRequestDetails.getRequestType();
+		if (requestType == RequestTypeEnum.GET || requestType == RequestTypeEnum.HEAD || requestType == RequestTypeEnum.OPTIONS) {
+			return false;
+		}
+		RestOperationTypeEnum operation = theRequestDetails.getRestOperationType();
+		return operation != RestOperationTypeEnum.SEARCH_TYPE && operation != RestOperationTypeEnum.SEARCH_SYSTEM && operation != RestOperationTypeEnum.GET_PAGE;
+	}
+
+	private static boolean matchesIfNoneMatch(RequestDetails theRequestDetails, String theETag) {
+		for (String nextHeader : theRequestDetails.getHeaders(Constants.HEADER_IF_NONE_MATCH)) {
+			for (String nextValue : nextHeader.split(",")) {
+				nextValue = nextValue.trim();
+				if (nextValue.equals("*") || stripWeakPrefix(nextValue).equals(stripWeakPrefix(theETag))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static String stripWeakPrefix(String theETag) {
+		if (theETag.startsWith("W/")) {
+			return theETag.substring(2);
+		}
+		return theETag;
+	}
+
+	/**
+	 * The length of time that a cached response may be used for, even if no changes to the
+	 * resources it depends on are detected. Default is {@link #DEFAULT_TIME_TO_LIVE_MILLIS}.
+	 */
+	public long getTimeToLiveMillis() {
+		return myTimeToLiveMillis;
+	}
+
+	/**
+	 * The length of time that a cached response may be used for, even if no changes to the
+	 * resources it depends on are detected. Default is {@link #DEFAULT_TIME_TO_LIVE_MILLIS}.
+	 */
+	public ResponseCachingInterceptor setTimeToLiveMillis(long theTimeToLiveMillis) {
+		Validate.isTrue(theTimeToLiveMillis > 0, "theTimeToLiveMillis must be greater than 0");
+		myTimeToLiveMillis = theTimeToLiveMillis;
+		return this;
+	}
+
+	/**
+	 * The maximum number of responses to cache. When this is exceeded, the least recently
+	 * used response is discarded. Default is {@link #DEFAULT_MAXIMUM_ENTRIES}.
+	 */
+	public int getMaximumEntries() {
+		return myMaximumEntries;
+	}
+
+	/**
+	 * The maximum number of responses to cache. When this is exceeded, the least recently
+	 * used response is discarded. Default is {@link #DEFAULT_MAXIMUM_ENTRIES}.
+	 */
+	public ResponseCachingInterceptor setMaximumEntries(int theMaximumEntries) {
+		Validate.isTrue(theMaximumEntries > 0, "theMaximumEntries must be greater than 0");
+		myMaximumEntries = theMaximumEntries;
+		return this;
+	}
+
+	/**
+	 * The maximum size (in characters) of a response which will be cached. Larger responses
+	 * are never cached. Default is {@link #DEFAULT_MAXIMUM_ENTRY_SIZE}.
+	 */
+	public int getMaximumEntrySize() {
+		return myMaximumEntrySize;
+	}
+
+	/**
+	 * The maximum size (in characters) of a response which will be cached. Larger responses
+	 * are never cached. Default is {@link #DEFAULT_MAXIMUM_ENTRY_SIZE}.
+	 */
+	public ResponseCachingInterceptor setMaximumEntrySize(int theMaximumEntrySize) {
+		Validate.isTrue(theMaximumEntrySize > 0, "theMaximumEntrySize must be greater than 0");
+		myMaximumEntrySize = theMaximumEntrySize;
+		return this;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), requests for which
+	 * {@link #getCacheKeyDiscriminator(RequestDetails)} returns <code>null</code> share a single
+	 * cache entry per URL. This should only be enabled if the server does not restrict access to
+	 * the cached operations, or does not authenticate clients other than by the
+	 * <code>Authorization</code> header.
+	 */
+	public boolean isAllowAnonymousSharing() {
+		return myAllowAnonymousSharing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), requests for which
+	 * {@link #getCacheKeyDiscriminator(RequestDetails)} returns <code>null</code> share a single
+	 * cache entry per URL. This should only be enabled if the server does not restrict access to
+	 * the cached operations, or does not authenticate clients other than by the
+	 * <code>Authorization</code> header.
+	 */
+	public ResponseCachingInterceptor setAllowAnonymousSharing(boolean theAllowAnonymousSharing) {
+		myAllowAnonymousSharing = theAllowAnonymousSharing;
+		return this;
+	}
+
+	/**
+	 * The operations whose responses may be cached. Only HTTP GET requests are ever cached.
+	 * Default is {@link RestOperationTypeEnum#METADATA}, {@link RestOperationTypeEnum#READ},
+	 * {@link RestOperationTypeEnum#VREAD}, {@link RestOperationTypeEnum#SEARCH_TYPE} and
+	 * {@link RestOperationTypeEnum#SEARCH_SYSTEM}.
+	 */
+	public Set<RestOperationTypeEnum> getCacheableOperations() {
+		return myCacheableOperations;
+	}
+
+	/**
+	 * The operations whose responses may be cached. Only HTTP GET requests are ever cached.
+	 * Default is {@link RestOperationTypeEnum#METADATA}, {@link RestOperationTypeEnum#READ},
+	 * {@link RestOperationTypeEnum#VREAD}, {@link RestOperationTypeEnum#SEARCH_TYPE} and
+	 * {@link RestOperationTypeEnum#SEARCH_SYSTEM}.
+	 */
+	public ResponseCachingInterceptor setCacheableOperations(RestOperationTypeEnum... theCacheableOperations) {
+		Validate.notNull(theCacheableOperations, "theCacheableOperations must not be null");
+		EnumSet<RestOperationTypeEnum> operations = EnumSet.noneOf(RestOperationTypeEnum.class);
+		operations.addAll(Arrays.asList(theCacheableOperations));
+		myCacheableOperations = Collections.unmodifiableSet(operations);
+		return this;
+	}
+
+	private static class RequestState {
+
+		private final String myKey;
+		private final long myGeneration;
+		private Set<String> myDependencies = DEPENDS_ON_ALL_TYPES;
+		private boolean myDependenciesRecorded;
+
+		RequestState(String theKey, long theGeneration) {
+			myKey = theKey;
+			myGeneration = theGeneration;
+		}
+
+		String getKey() {
+			return myKey;
+		}
+
+		long getGeneration() {
+			return myGeneration;
+		}
+
+		Set<String> getDependencies() {
+			return myDependencies;
+		}
+
+		void setDependencies(Set<String> theDependencies) {
+			myDependencies = theDependencies;
+			myDependenciesRecorded = true;
+		}
+
+		boolean isDependenciesRecorded() {
+			return myDependenciesRecorded;
+		}
+	}
+
+	private static class CachedResponse {
+
+		private final String myContentType;
+		private final byte[] myBody;
+		private final Map<String, String> myHeaders;
+		private final Set<String> myDependencies;
+		private final long myCreated;
+
+		CachedResponse(String theContentType, byte[] theBody, Map<String, String> theHeaders, Set<String> theDependencies, long theCreated) {
+			myContentType = theContentType;
+			myBody = theBody;
+			myHeaders = theHeaders;
+			myDependencies = theDependencies;
+			myCreated = theCreated;
+		}
+
+		String getContentType() {
+			return myContentType;
+		}
+
+		byte[] getBody() {
+			return myBody;
+		}
+
+		Map<String, String> getHeaders() {
+			return myHeaders;
+		}
+
+		String getETag() {
+			return myHeaders.get(Constants.HEADER_ETAG);
+		}
+
+		Set<String> getDependencies() {
+			return myDependencies;
+		}
+
+		boolean isExpired(long theNow, long theTimeToLiveMillis) {
+			return theNow - myCreated > theTimeToLiveMillis;
+		}
+	}
+
+	/**
+	 * Holds back the response body until the writer is closed, then stores it in the cache
+	 * before passing it to the wrapped writer. If the body exceeds the maximum size, everything
+	 * written so far is passed through and the response is not cached.
+	 */
+	private class CapturingWriter extends Writer {
+
+		private final Writer myWrap;
+		private final RequestState myState;
+		private final HttpServletResponse myServletResponse;
+		private final int myMaximumSize;
+		private StringBuilder myCaptured = new StringBuilder();
+
+		CapturingWriter(Writer theWrap, RequestState theState, HttpServletResponse theServletResponse, int theMaximumSize) {
+			myWrap = theWrap;
+			myState = theState;
+			myServletResponse = theServletResponse;
+			myMaximumSize = theMaximumSize;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			if (myCaptured != null) {
+				if (myCaptured.length() + len <= myMaximumSize) {
+					myCaptured.append(cbuf, off, len);
+					return;
+				}
+				myWrap.append(myCaptured);
+				myCaptured = null;
+			}
+			myWrap.write(cbuf, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (myCaptured == null) {
+				myWrap.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (myCaptured != null) {
+				String body = myCaptured.toString();
+				myCaptured = null;
+				try {
+					storeResponse(myState, myServletResponse, body);
+				} finally {
+					myWrap.write(body);
+				}
+			}
+			myWrap.close();
+		}
+	}
+
+}
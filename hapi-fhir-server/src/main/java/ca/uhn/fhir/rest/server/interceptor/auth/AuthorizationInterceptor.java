@@ -31,6 +31,7 @@ import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
 import ca.uhn.fhir.rest.server.interceptor.consent.ConsentInterceptor;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
@@ -46,9 +47,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -68,13 +74,33 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 @Interceptor
 public class AuthorizationInterceptor implements IRuleApplier {
 
+	/**
+	 * Default value for {@link #setRuleListCacheTimeoutMillis(long)}
+	 */
+	public static final long DEFAULT_RULE_LIST_CACHE_TIMEOUT_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * Default value for {@link #setRuleListCacheMaxSize(int)}
+	 */
+	public static final int DEFAULT_RULE_LIST_CACHE_MAX_SIZE = 1000;
 	private static final AtomicInteger ourInstanceCount = new AtomicInteger(0);
 	private static final Logger ourLog = LoggerFactory.getLogger(AuthorizationInterceptor.class);
 	private final int myInstanceIndex = ourInstanceCount.incrementAndGet();
 	private final String myRequestSeenResourcesKey = AuthorizationInterceptor.class.getName() + "_" + myInstanceIndex + "_SEENRESOURCES";
 	private final String myRequestRuleListKey = AuthorizationInterceptor.class.getName() + "_" + myInstanceIndex + "_RULELIST";
+	private final Map<Object, CompiledRuleList> myRuleListCache = Collections.synchronizedMap(new LinkedHashMap<Object, CompiledRuleList>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, CompiledRuleList> theEldest) {
+			return size() > myRuleListCacheMaxSize;
+		}
+	});
+	private final Map<String, RuleMetrics> myRuleMetrics = new ConcurrentHashMap<>();
 	private PolicyEnum myDefaultPolicy = PolicyEnum.DENY;
 	private Set<AuthorizationFlagsEnum> myFlags = Collections.emptySet();
+	private long myRuleListCacheTimeoutMillis = DEFAULT_RULE_LIST_CACHE_TIMEOUT_MILLIS;
+	private int myRuleListCacheMaxSize = DEFAULT_RULE_LIST_CACHE_MAX_SIZE;
+	private boolean myRuleMetricsEnabled;
 
 	/**
 	 * Constructor
@@ -107,21 +133,27 @@ public class AuthorizationInterceptor implements IRuleApplier {
 	@Override
 	public Verdict applyRulesAndReturnDecision(RestOperationTypeEnum theOperation, RequestDetails theRequestDetails, IBaseResource theInputResource, IIdType theInputResourceId,
 															 IBaseResource theOutputResource, Pointcut thePointcut) {
-		@SuppressWarnings("unchecked")
-		List<IAuthRule> rules = (List<IAuthRule>) theRequestDetails.getUserData().get(myRequestRuleListKey);
-		if (rules == null) {
-			rules = buildRuleList(theRequestDetails);
-			theRequestDetails.getUserData().put(myRequestRuleListKey, rules);
+		CompiledRuleList compiledRules = (CompiledRuleList) theRequestDetails.getUserData().get(myRequestRuleListKey);
+		if (compiledRules == null) {
+			compiledRules = getCompiledRuleList(theRequestDetails);
+			theRequestDetails.getUserData().put(myRequestRuleListKey, compiledRules);
 		}
+		List<IAuthRule> rules = compiledRules.getCandidateRules(theRequestDetails, theOperation, theInputResource, theInputResourceId, theOutputResource);
 		Set<AuthorizationFlagsEnum> flags = getFlags();
-		ourLog.trace("Applying {} rules to render an auth decision for operation {}, theInputResource type={}, theOutputResource type={} ", rules.size(), theOperation,
+		ourLog.trace("Applying {} of {} rules to render an auth decision for operation {}, theInputResource type={}, theOutputResource type={} ", rules.size(), compiledRules.getRules().size(), theOperation,
 			((theInputResource != null) && (theInputResource.getIdElement() != null)) ? theInputResource.getIdElement().getResourceType() : "",
 			((theOutputResource != null) && (theOutputResource.getIdElement() != null)) ? theOutputResource.getIdElement().getResourceType() : "");
 
 		Verdict verdict = null;
 		for (IAuthRule nextRule : rules) {
 			ourLog.trace("Rule being applied - {}", nextRule);
-			verdict = nextRule.applyRule(theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource, this, flags, thePointcut);
+			if (myRuleMetricsEnabled) {
+				long start = System.nanoTime();
+				verdict = nextRule.applyRule(theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource, this, flags, thePointcut);
+				myRuleMetrics.computeIfAbsent(getRuleName(nextRule), RuleMetrics::new).record(verdict, System.nanoTime() - start);
+			} else {
+				verdict = nextRule.applyRule(theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource, this, flags, thePointcut);
+			}
 			if (verdict != null) {
 				ourLog.trace("Rule {} returned decision {}", nextRule, verdict.getDecision());
 				break;
@@ -136,6 +168,53 @@ public class AuthorizationInterceptor implements IRuleApplier {
 		return verdict;
 	}
 
+	private CompiledRuleList getCompiledRuleList(RequestDetails theRequestDetails) {
+		Object cacheKey = myRuleListCacheTimeoutMillis > 0 ? getRuleListCacheKey(theRequestDetails) : null;
+		if (cacheKey == null) {
+			return new CompiledRuleList(buildRuleList(theRequestDetails), System.currentTimeMillis());
+		}
+
+		long now = System.currentTimeMillis();
+		CompiledRuleList retVal = myRuleListCache.get(cacheKey);
+		if (retVal == null || now - retVal.getCreated() > myRuleListCacheTimeoutMillis) {
+			retVal = new CompiledRuleList(buildRuleList(theRequestDetails), now);
+			myRuleListCache.put(cacheKey, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Subclasses may override this method to allow the rule list returned by
+	 * {@link #buildRuleList(RequestDetails)} to be reused across requests. If a non-null
+	 * key is returned (typically an identifier for the authenticated principal),
+	 * the rule list built for the first request with that key will be used for
+	 * subsequent requests with an equal key until it is older than the
+	 * {@link #setRuleListCacheTimeoutMillis(long) cache timeout}.
+	 * <p>
+	 * The key must capture everything that <code>buildRuleList</code> uses to
+	 * decide which rules apply. The default implementation returns <code>null</code>,
+	 * meaning that rules are built for every request.
+	 * </p>
+	 *
+	 * @param theRequestDetails The individual request currently being applied
+	 * @return The cache key, or <code>null</code> if the rules for this request should not be cached
+	 * @since 5.1.0
+	 */
+	protected Object getRuleListCacheKey(RequestDetails theRequestDetails) {
+		return null;
+	}
+
+	/**
+	 * Removes all cached rule lists, e.g. because the permissions of one or more
+	 * principals have changed
+	 *
+	 * @see #getRuleListCacheKey(RequestDetails)
+	 * @since 5.1.0
+	 */
+	public void clearRuleListCache() {
+		myRuleListCache.clear();
+	}
+
 	/**
 	 * Subclasses should override this method to supply the set of rules to be applied to
 	 * this individual request.
@@ -235,6 +314,98 @@ public class AuthorizationInterceptor implements IRuleApplier {
 		return this;
 	}
 
+	/**
+	 * The amount of time that a rule list cached using {@link #getRuleListCacheKey(RequestDetails)}
+	 * may be reused for. Default is {@link #DEFAULT_RULE_LIST_CACHE_TIMEOUT_MILLIS}.
+	 *
+	 * @since 5.1.0
+	 */
+	public long getRuleListCacheTimeoutMillis() {
+		return myRuleListCacheTimeoutMillis;
+	}
+
+	/**
+	 * The amount of time that a rule list cached using {@link #getRuleListCacheKey(RequestDetails)}
+	 * may be reused for. Default is {@link #DEFAULT_RULE_LIST_CACHE_TIMEOUT_MILLIS}. Set to
+	 * <code>0</code> to disable caching.
+	 *
+	 * @since 5.1.0
+	 */
+	public AuthorizationInterceptor setRuleListCacheTimeoutMillis(long theRuleListCacheTimeoutMillis) {
+		Validate.isTrue(theRuleListCacheTimeoutMillis >= 0, "theRuleListCacheTimeoutMillis must not be negative");
+		myRuleListCacheTimeoutMillis = theRuleListCacheTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * The maximum number of rule lists to cache. When this is exceeded, the least recently
+	 * used rule list is discarded. Default is {@link #DEFAULT_RULE_LIST_CACHE_MAX_SIZE}.
+	 *
+	 * @since 5.1.0
+	 */
+	public int getRuleListCacheMaxSize() {
+		return myRuleListCacheMaxSize;
+	}
+
+	/**
+	 * The maximum number of rule lists to cache. When this is exceeded, the least recently
+	 * used rule list is discarded. Default is {@link #DEFAULT_RULE_LIST_CACHE_MAX_SIZE}.
+	 *
+	 * @since 5.1.0
+	 */
+	public AuthorizationInterceptor setRuleListCacheMaxSize(int theRuleListCacheMaxSize) {
+		Validate.isTrue(theRuleListCacheMaxSize > 0, "theRuleListCacheMaxSize must be positive");
+		myRuleListCacheMaxSize = theRuleListCacheMaxSize;
+		return this;
+	}
+
+	/**
+	 * If enabled, the number of times each rule is evaluated, the number of times it
+	 * returns a decision, and the total time spent evaluating it are recorded. These
+	 * can be retrieved using {@link #getRuleMetrics()}. Rules are identified by
+	 * {@link IAuthRule#getName() name}, so rules with the same name are combined.
+	 * Default is <code>false</code>.
+	 *
+	 * @since 5.1.0
+	 */
+	public boolean isRuleMetricsEnabled() {
+		return myRuleMetricsEnabled;
+	}
+
+	/**
+	 * If enabled, the number of times each rule is evaluated, the number of times it
+	 * returns a decision, and the total time spent evaluating it are recorded. These
+	 * can be retrieved using {@link #getRuleMetrics()}. Rules are identified by
+	 * {@link IAuthRule#getName() name}, so rules with the same name are combined.
+	 * Default is <code>false</code>.
+	 *
+	 * @since 5.1.0
+	 */
+	public AuthorizationInterceptor setRuleMetricsEnabled(boolean theRuleMetricsEnabled) {
+		myRuleMetricsEnabled = theRuleMetricsEnabled;
+		return this;
+	}
+
+	/**
+	 * Returns the metrics recorded for each rule since metrics were enabled (or since
+	 * {@link #clearRuleMetrics()} was last called), keyed by rule name
+	 *
+	 * @see #setRuleMetricsEnabled(boolean)
+	 * @since 5.1.0
+	 */
+	public Map<String, RuleMetrics> getRuleMetrics() {
+		return Collections.unmodifiableMap(new TreeMap<>(myRuleMetrics));
+	}
+
+	/**
+	 * Discards all recorded rule metrics
+	 *
+	 * @since 5.1.0
+	 */
+	public void clearRuleMetrics() {
+		myRuleMetrics.clear();
+	}
+
 	/**
 	 * This property configures any flags affecting how authorization is
 	 * applied. By default no flags are applied.
@@ -291,7 +462,7 @@ public class AuthorizationInterceptor implements IRuleApplier {
 	 */
 	protected void handleDeny(Verdict decision) {
 		if (decision.getDecidingRule() != null) {
-			String ruleName = defaultString(decision.getDecidingRule().getName(), "(unnamed rule)");
+			String ruleName = getRuleName(decision.getDecidingRule());
 			throw new ForbiddenOperationException("Access denied by rule: " + ruleName);
 		}
 		throw new ForbiddenOperationException("Access denied by default policy (no applicable rules)");
@@ -460,6 +631,72 @@ public class AuthorizationInterceptor implements IRuleApplier {
 
 	}
 
+	/**
+	 * Evaluation metrics for a single rule
+	 *
+	 * @see #setRuleMetricsEnabled(boolean)
+	 * @since 5.1.0
+	 */
+	public static class RuleMetrics {
+
+		private final String myRuleName;
+		private final LongAdder myEvaluationCount = new LongAdder();
+		private final LongAdder myDecisionCount = new LongAdder();
+		private final LongAdder myTotalNanos = new LongAdder();
+
+		RuleMetrics(String theRuleName) {
+			myRuleName = theRuleName;
+		}
+
+		void record(Verdict theVerdict, long theNanos) {
+			myEvaluationCount.increment();
+			if (theVerdict != null) {
+				myDecisionCount.increment();
+			}
+			myTotalNanos.add(theNanos);
+		}
+
+		public String getRuleName() {
+			return myRuleName;
+		}
+
+		/**
+		 * The number of times the rule was applied
+		 */
+		public long getEvaluationCount() {
+			return myEvaluationCount.sum();
+		}
+
+		/**
+		 * The number of times the rule returned a decision (i.e. the rule applied)
+		 */
+		public long getDecisionCount() {
+			return myDecisionCount.sum();
+		}
+
+		/**
+		 * The total time spent applying the rule, in nanoseconds
+		 */
+		public long getTotalNanos() {
+			return myTotalNanos.sum();
+		}
+
+		@Override
+		public String toString() {
+			ToStringBuilder b = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+			b.append("rule", myRuleName);
+			b.append("evaluations", getEvaluationCount());
+			b.append("decisions", getDecisionCount());
+			b.append("totalNanos", getTotalNanos());
+			return b.build();
+		}
+
+	}
+
+	private static String getRuleName(IAuthRule theRule) {
+		return defaultString(theRule.getName(), "(unnamed rule)");
+	}
+
 	static List<IBaseResource> toListOfResourcesAndExcludeContainer(IBaseResource theResponseObject, FhirContext fhirContext) {
 		if (theResponseObject == null) {
 			return Collections.emptyList();
@@ -104,6 +104,31 @@ abstract class BaseRule implements IAuthRule {
 		return new Verdict(myMode, this);
 	}
 
+	/**
+	 * Used by {@link CompiledRuleList} to skip rules which can not apply to a given
+	 * operation. Implementations must return <code>true</code> unless they are certain
+	 * that {@link #applyRule(RestOperationTypeEnum, RequestDetails, IBaseResource, IIdType, IBaseResource, IRuleApplier, java.util.Set, Pointcut) applyRule}
+	 * would return <code>null</code>.
+	 *
+	 * @param theOperation      The operation type
+	 * @param theOutputResource <code>true</code> if the rule is being applied to a resource being returned by the
+	 *                          server (with no input resource or ID), <code>false</code> if it is being applied to the
+	 *                          request (with no output resource)
+	 */
+	boolean isCandidateForOperation(RestOperationTypeEnum theOperation, boolean theOutputResource) {
+		return true;
+	}
+
+	/**
+	 * Used by {@link CompiledRuleList} to skip rules which can not apply to a resource
+	 * being returned by the server. Implementations must return <code>true</code> unless
+	 * they are certain that the rule would return <code>null</code> for an output resource
+	 * of the given type whose ID has the same resource type.
+	 */
+	boolean isCandidateForOutputResourceType(String theResourceType) {
+		return true;
+	}
+
 	protected boolean isResourceAccess(Pointcut thePointcut) {
 		return thePointcut.equals(Pointcut.STORAGE_PREACCESS_RESOURCES) || thePointcut.equals(Pointcut.STORAGE_PRESHOW_RESOURCES);
 	}
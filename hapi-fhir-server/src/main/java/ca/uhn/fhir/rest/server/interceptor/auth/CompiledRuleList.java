@@ -0,0 +1,124 @@
+package ca.uhn.fhir.rest.server.interceptor.auth;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * A list of rules returned by {@link AuthorizationInterceptor#buildRuleList(RequestDetails)},
+ * indexed by operation type and (for resources being returned by the server) resource type so that
+ * each check only needs to consider the rules which could possibly apply.
+ * <p>
+ * The indexes are built lazily the first time a given operation / resource type is seen, and
+ * always preserve the order of the original list so the first rule to return a verdict is the
+ * same as it would be if every rule were applied. Rules which do not extend {@link BaseRule}
+ * are never skipped.
+ * </p>
+ * <p>
+ * Instances are thread safe, so a single instance can be shared between requests by the same
+ * principal.
+ * </p>
+ */
+class CompiledRuleList {
+
+	private final List<IAuthRule> myRules;
+	private final long myCreated;
+	private final Map<RestOperationTypeEnum, List<IAuthRule>> myInputRules = new ConcurrentHashMap<>();
+	private final Map<RestOperationTypeEnum, List<IAuthRule>> myOutputRules = new ConcurrentHashMap<>();
+	private final Map<RestOperationTypeEnum, Map<String, List<IAuthRule>>> myOutputRulesByResourceType = new ConcurrentHashMap<>();
+
+	CompiledRuleList(List<IAuthRule> theRules, long theCreated) {
+		myRules = Collections.unmodifiableList(new ArrayList<>(theRules));
+		myCreated = theCreated;
+	}
+
+	long getCreated() {
+		return myCreated;
+	}
+
+	List<IAuthRule> getRules() {
+		return myRules;
+	}
+
+	/**
+	 * Returns the rules which could return a verdict for the given check, in their original order
+	 */
+	List<IAuthRule> getCandidateRules(RequestDetails theRequestDetails, RestOperationTypeEnum theOperation, IBaseResource theInputResource, IIdType theInputResourceId, IBaseResource theOutputResource) {
+		if (theOperation == null) {
+			return myRules;
+		}
+
+		if (theOutputResource == null) {
+			return myInputRules.computeIfAbsent(theOperation, op -> filter(myRules, t -> t.isCandidateForOperation(op, false)));
+		}
+
+		if (theInputResource != null || theInputResourceId != null) {
+			return myRules;
+		}
+
+		List<IAuthRule> outputRules = myOutputRules.computeIfAbsent(theOperation, op -> filter(myRules, t -> t.isCandidateForOperation(op, true)));
+
+		/*
+		 * Rules which examine the resource type look at either the resource itself or its
+		 * ID, so we can only narrow by type if the two agree
+		 */
+		IIdType outputResourceId = theOutputResource.getIdElement();
+		if (outputResourceId == null || isBlank(outputResourceId.getResourceType()) || theRequestDetails.getServer() == null) {
+			return outputRules;
+		}
+		FhirContext context = theRequestDetails.getServer().getFhirContext();
+		String resourceType = context.getResourceType(theOutputResource);
+		if (!resourceType.equals(outputResourceId.getResourceType())) {
+			return outputRules;
+		}
+
+		return myOutputRulesByResourceType
+			.computeIfAbsent(theOperation, op -> new ConcurrentHashMap<>())
+			.computeIfAbsent(resourceType, type -> filter(outputRules, t -> t.isCandidateForOutputResourceType(type)));
+	}
+
+	private static List<IAuthRule> filter(List<IAuthRule> theRules, Predicate<BaseRule> thePredicate) {
+		List<IAuthRule> retVal = new ArrayList<>(theRules.size());
+		for (IAuthRule next : theRules) {
+			if (!(next instanceof BaseRule) || thePredicate.test((BaseRule) next)) {
+				retVal.add(next);
+			}
+		}
+		if (retVal.size() == theRules.size()) {
+			return theRules;
+		}
+		return Collections.unmodifiableList(retVal);
+	}
+
+}
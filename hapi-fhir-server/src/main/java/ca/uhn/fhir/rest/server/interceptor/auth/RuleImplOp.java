@@ -28,6 +28,7 @@ import org.hl7.fhir.instance.model.api.IIdType;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -62,6 +63,8 @@ class RuleImplOp extends BaseRule /* implements IAuthRule */ {
 	private Set<String> myAppliesToTypes;
 	private String myClassifierCompartmentName;
 	private Collection<? extends IIdType> myClassifierCompartmentOwners;
+	private Set<String> myClassifierCompartmentOwnerIds;
+	private Set<String> myClassifierCompartmentOwnerRefs;
 	private ClassifierTypeEnum myClassifierType;
 	private RuleOpEnum myOp;
 	private TransactionAppliesToEnum myTransactionAppliesToOp;
@@ -458,69 +461,74 @@ class RuleImplOp extends BaseRule /* implements IAuthRule */ {
 				if (appliesToResourceId != null && appliesToResourceId.size() > 0) {
 					boolean haveOwnersForAll = appliesToResourceId
 						.stream()
-						.allMatch(n -> myClassifierCompartmentOwners.contains(n.toUnqualifiedVersionless()));
+						.allMatch(n -> myClassifierCompartmentOwnerIds.contains(n.toUnqualifiedVersionless().getValue()));
 					if (haveOwnersForAll) {
 						foundMatch = true;
 					}
 				}
 
-				for (IIdType next : myClassifierCompartmentOwners) {
-					if (appliesToResource != null) {
-						if (t.isSourceInCompartmentForTarget(myClassifierCompartmentName, appliesToResource, next)) {
-							foundMatch = true;
-							break;
-						}
+				/*
+				 * Only one of appliesToResource and appliesToResourceType is ever
+				 * populated, so if we have a resource we can check it against all of
+				 * the compartment owners at once instead of once per owner
+				 */
+				if (appliesToResource != null) {
+					if (!foundMatch && t.isSourceInCompartmentForAnyTarget(myClassifierCompartmentName, appliesToResource, myClassifierCompartmentOwnerRefs)) {
+						foundMatch = true;
 					}
+				} else {
+					for (IIdType next : myClassifierCompartmentOwners) {
 
-					/*
-					 * If the client has permission to read compartment
-					 * Patient/ABC, then a search for Patient?_id=Patient/ABC
-					 * should be permitted. This is kind of a one-off case, but
-					 * it makes sense.
-					 */
-					if (next.getResourceType().equals(appliesToResourceType)) {
-						Verdict verdict = checkForSearchParameterMatchingCompartmentAndReturnSuccessfulVerdictOrNull(appliesToSearchParams, next, IAnyResource.SP_RES_ID, theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource);
-						if (verdict != null) {
-							return verdict;
+						/*
+						 * If the client has permission to read compartment
+						 * Patient/ABC, then a search for Patient?_id=Patient/ABC
+						 * should be permitted. This is kind of a one-off case, but
+						 * it makes sense.
+						 */
+						if (next.getResourceType().equals(appliesToResourceType)) {
+							Verdict verdict = checkForSearchParameterMatchingCompartmentAndReturnSuccessfulVerdictOrNull(appliesToSearchParams, next, IAnyResource.SP_RES_ID, theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource);
+							if (verdict != null) {
+								return verdict;
+							}
 						}
-					}
 
-					/*
-					 * If we're trying to read a resource that could potentially be
-					 * in the given compartment, we'll let the request through and
-					 * catch any issues on the response.
-					 *
-					 * This is less than perfect, but it's the best we can do-
-					 * If the user is allowed to see compartment "Patient/123" and
-					 * the client is requesting to read a CarePlan, there is nothing
-					 * in the request URL that indicates whether or not the CarePlan
-					 * might be in the given compartment.
-					 */
-					if (isNotBlank(appliesToResourceType)) {
-						RuntimeResourceDefinition sourceDef = theRequestDetails.getFhirContext().getResourceDefinition(appliesToResourceType);
-						String compartmentOwnerResourceType = next.getResourceType();
-						if (!StringUtils.equals(appliesToResourceType, compartmentOwnerResourceType)) {
-							List<RuntimeSearchParam> params = sourceDef.getSearchParamsForCompartmentName(compartmentOwnerResourceType);
-							if (!params.isEmpty()) {
-
-								/*
-								 * If this is a search, we can at least check whether
-								 * the client has requested a search parameter that
-								 * would match the given compartment. In this case, this
-								 * is a very effective mechanism.
-								 */
-								if (appliesToSearchParams != null && !theFlags.contains(AuthorizationFlagsEnum.NO_NOT_PROACTIVELY_BLOCK_COMPARTMENT_READ_ACCESS)) {
-									for (RuntimeSearchParam nextRuntimeSearchParam : params) {
-										String name = nextRuntimeSearchParam.getName();
-										Verdict verdict = checkForSearchParameterMatchingCompartmentAndReturnSuccessfulVerdictOrNull(appliesToSearchParams, next, name, theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource);
-										if (verdict != null) {
-											return verdict;
+						/*
+						 * If we're trying to read a resource that could potentially be
+						 * in the given compartment, we'll let the request through and
+						 * catch any issues on the response.
+						 *
+						 * This is less than perfect, but it's the best we can do-
+						 * If the user is allowed to see compartment "Patient/123" and
+						 * the client is requesting to read a CarePlan, there is nothing
+						 * in the request URL that indicates whether or not the CarePlan
+						 * might be in the given compartment.
+						 */
+						if (isNotBlank(appliesToResourceType)) {
+							RuntimeResourceDefinition sourceDef = theRequestDetails.getFhirContext().getResourceDefinition(appliesToResourceType);
+							String compartmentOwnerResourceType = next.getResourceType();
+							if (!StringUtils.equals(appliesToResourceType, compartmentOwnerResourceType)) {
+								List<RuntimeSearchParam> params = sourceDef.getSearchParamsForCompartmentName(compartmentOwnerResourceType);
+								if (!params.isEmpty()) {
+
+									/*
+									 * If this is a search, we can at least check whether
+									 * the client has requested a search parameter that
+									 * would match the given compartment. In this case, this
+									 * is a very effective mechanism.
+									 */
+									if (appliesToSearchParams != null && !theFlags.contains(AuthorizationFlagsEnum.NO_NOT_PROACTIVELY_BLOCK_COMPARTMENT_READ_ACCESS)) {
+										for (RuntimeSearchParam nextRuntimeSearchParam : params) {
+											String name = nextRuntimeSearchParam.getName();
+											Verdict verdict = checkForSearchParameterMatchingCompartmentAndReturnSuccessfulVerdictOrNull(appliesToSearchParams, next, name, theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource);
+											if (verdict != null) {
+												return verdict;
+											}
 										}
+									} else if (getMode() == PolicyEnum.ALLOW) {
+										return newVerdict(theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource);
 									}
-								} else if (getMode() == PolicyEnum.ALLOW) {
-									return newVerdict(theOperation, theRequestDetails, theInputResource, theInputResourceId, theOutputResource);
+									break;
 								}
-								break;
 							}
 						}
 					}
@@ -556,6 +564,85 @@ class RuleImplOp extends BaseRule /* implements IAuthRule */ {
 		return verdict;
 	}
 
+	@Override
+	boolean isCandidateForOperation(RestOperationTypeEnum theOperation, boolean theOutputResource) {
+		if (myOp == null) {
+			return true;
+		}
+		switch (myOp) {
+			case READ:
+				if (theOutputResource) {
+					return true;
+				}
+				switch (theOperation) {
+					case READ:
+					case VREAD:
+					case SEARCH_SYSTEM:
+					case SEARCH_TYPE:
+					case HISTORY_SYSTEM:
+					case HISTORY_TYPE:
+					case HISTORY_INSTANCE:
+					case GET_PAGE:
+						return true;
+					default:
+						return false;
+				}
+			case WRITE:
+				if (theOutputResource) {
+					return false;
+				}
+				switch (theOperation) {
+					case CREATE:
+					case UPDATE:
+					case ADD_TAGS:
+					case DELETE_TAGS:
+					case META_ADD:
+					case META_DELETE:
+					case PATCH:
+						return true;
+					default:
+						return false;
+				}
+			case CREATE:
+				return !theOutputResource && theOperation == RestOperationTypeEnum.CREATE;
+			case DELETE:
+				return !theOutputResource && theOperation == RestOperationTypeEnum.DELETE;
+			case GRAPHQL:
+				return theOperation == RestOperationTypeEnum.GRAPHQL_REQUEST;
+			case TRANSACTION:
+				return theOperation == RestOperationTypeEnum.TRANSACTION;
+			case METADATA:
+				return theOperation == RestOperationTypeEnum.METADATA;
+			case ALL:
+			default:
+				return true;
+		}
+	}
+
+	@Override
+	boolean isCandidateForOutputResourceType(String theResourceType) {
+		if (myOp != RuleOpEnum.READ || myAppliesTo == null) {
+			return true;
+		}
+		switch (myAppliesTo) {
+			case TYPES:
+				return myAppliesToTypes == null || myAppliesToTypes.contains(theResourceType);
+			case INSTANCES:
+				if (myAppliesToInstances == null) {
+					return true;
+				}
+				for (IIdType next : myAppliesToInstances) {
+					if (!next.hasResourceType() || theResourceType.equals(next.getResourceType())) {
+						return true;
+					}
+				}
+				return false;
+			case ALL_RESOURCES:
+			default:
+				return true;
+		}
+	}
+
 	public void setTransactionAppliesToOp(TransactionAppliesToEnum theOp) {
 		myTransactionAppliesToOp = theOp;
 	}
@@ -594,6 +681,18 @@ class RuleImplOp extends BaseRule /* implements IAuthRule */ {
 
 	void setClassifierCompartmentOwners(Collection<? extends IIdType> theInCompartmentOwners) {
 		myClassifierCompartmentOwners = theInCompartmentOwners;
+
+		// Precompute the owner IDs so that each resource can be checked with set lookups
+		myClassifierCompartmentOwnerIds = null;
+		myClassifierCompartmentOwnerRefs = null;
+		if (theInCompartmentOwners != null) {
+			myClassifierCompartmentOwnerIds = new HashSet<>();
+			myClassifierCompartmentOwnerRefs = new HashSet<>();
+			for (IIdType next : theInCompartmentOwners) {
+				myClassifierCompartmentOwnerIds.add(next.getValue());
+				myClassifierCompartmentOwnerRefs.add(next.toUnqualifiedVersionless().getValue());
+			}
+		}
 	}
 
 	void setClassifierType(ClassifierTypeEnum theClassifierType) {
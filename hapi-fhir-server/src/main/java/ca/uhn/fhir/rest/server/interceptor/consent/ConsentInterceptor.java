@@ -39,6 +39,10 @@ import ca.uhn.fhir.util.IModelVisitor2;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,9 +55,11 @@ public class ConsentInterceptor {
 	private final String myRequestAuthorizedKey = ConsentInterceptor.class.getName() + "_" + myInstanceIndex + "_AUTHORIZED";
 	private final String myRequestCompletedKey = ConsentInterceptor.class.getName() + "_" + myInstanceIndex + "_COMPLETED";
 	private final String myRequestSeenResourcesKey = ConsentInterceptor.class.getName() + "_" + myInstanceIndex + "_SEENRESOURCES";
+	private final String myRequestCanSeeOutcomesKey = ConsentInterceptor.class.getName() + "_" + myInstanceIndex + "_CANSEEOUTCOMES";
 
 	private IConsentService myConsentService;
 	private IConsentContextServices myContextConsentServices;
+	private boolean myCacheOutcomesForRequest;
 
 	/**
 	 * Constructor
@@ -92,6 +98,48 @@ public class ConsentInterceptor {
 		myConsentService = theConsentService;
 	}
 
+	/**
+	 * If enabled (default is <code>false</code>), the outcome of
+	 * {@link IConsentService#canSeeResource(RequestDetails, IBaseResource, IConsentContextServices) canSeeResource}
+	 * for a given resource ID and version is remembered for the remainder of the request, so the consent
+	 * service is only consulted once for each resource even if it is loaded several times. Outcomes which
+	 * replace the resource are never reused.
+	 * <p>
+	 * Outcomes of {@link IConsentService#willSeeResource(RequestDetails, IBaseResource, IConsentContextServices) willSeeResource}
+	 * are never cached, since implementations may mask the resource instance they are given and must
+	 * therefore see every instance that is returned.
+	 * </p>
+	 * <p>
+	 * Only enable this if the consent service's decision for a resource does not change during a request.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public boolean isCacheOutcomesForRequest() {
+		return myCacheOutcomesForRequest;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the outcome of
+	 * {@link IConsentService#canSeeResource(RequestDetails, IBaseResource, IConsentContextServices) canSeeResource}
+	 * for a given resource ID and version is remembered for the remainder of the request, so the consent
+	 * service is only consulted once for each resource even if it is loaded several times. Outcomes which
+	 * replace the resource are never reused.
+	 * <p>
+	 * Outcomes of {@link IConsentService#willSeeResource(RequestDetails, IBaseResource, IConsentContextServices) willSeeResource}
+	 * are never cached, since implementations may mask the resource instance they are given and must
+	 * therefore see every instance that is returned.
+	 * </p>
+	 * <p>
+	 * Only enable this if the consent service's decision for a resource does not change during a request.
+	 * </p>
+	 *
+	 * @since 5.1.0
+	 */
+	public void setCacheOutcomesForRequest(boolean theCacheOutcomesForRequest) {
+		myCacheOutcomesForRequest = theCacheOutcomesForRequest;
+	}
+
 	@Hook(value = Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
 	public void interceptPreHandled(RequestDetails theRequestDetails) {
 		ConsentOutcome outcome = myConsentService.startOperation(theRequestDetails, myContextConsentServices);
@@ -130,9 +178,14 @@ public class ConsentInterceptor {
 			return;
 		}
 
+		List<IBaseResource> resources = new ArrayList<>(thePreResourceAccessDetails.size());
 		for (int i = 0; i < thePreResourceAccessDetails.size(); i++) {
-			IBaseResource nextResource = thePreResourceAccessDetails.getResource(i);
-			ConsentOutcome nextOutcome = myConsentService.canSeeResource(theRequestDetails, nextResource, myContextConsentServices);
+			resources.add(thePreResourceAccessDetails.getResource(i));
+		}
+		List<ConsentOutcome> outcomes = getOutcomes(theRequestDetails, resources, false);
+
+		for (int i = 0; i < outcomes.size(); i++) {
+			ConsentOutcome nextOutcome = outcomes.get(i);
 			switch (nextOutcome.getStatus()) {
 				case PROCEED:
 					break;
@@ -152,13 +205,22 @@ public class ConsentInterceptor {
 		}
 		IdentityHashMap<IBaseResource, Boolean> alreadySeenResources = getAlreadySeenResourcesMap(theRequestDetails);
 
+		List<Integer> indexes = new ArrayList<>(thePreResourceShowDetails.size());
+		List<IBaseResource> resources = new ArrayList<>(thePreResourceShowDetails.size());
 		for (int i = 0; i < thePreResourceShowDetails.size(); i++) {
 			IBaseResource nextResource = thePreResourceShowDetails.getResource(i);
 			if (alreadySeenResources.putIfAbsent(nextResource, Boolean.TRUE) != null) {
 				continue;
 			}
+			indexes.add(i);
+			resources.add(nextResource);
+		}
+		List<ConsentOutcome> outcomes = getOutcomes(theRequestDetails, resources, true);
 
-			ConsentOutcome nextOutcome = myConsentService.willSeeResource(theRequestDetails, nextResource, myContextConsentServices);
+		for (int outcomeIdx = 0; outcomeIdx < outcomes.size(); outcomeIdx++) {
+			int i = indexes.get(outcomeIdx);
+			IBaseResource nextResource = resources.get(outcomeIdx);
+			ConsentOutcome nextOutcome = outcomes.get(outcomeIdx);
 			switch (nextOutcome.getStatus()) {
 				case PROCEED:
 					if (nextOutcome.getResource() != null) {
@@ -186,6 +248,77 @@ public class ConsentInterceptor {
 		}
 	}
 
+	private ConsentOutcome getWillSeeOutcome(RequestDetails theRequestDetails, IBaseResource theResource) {
+		return getOutcomes(theRequestDetails, Collections.singletonList(theResource), true).get(0);
+	}
+
+	/**
+	 * Returns the outcome of canSeeResource or willSeeResource for each of the given resources,
+	 * reusing canSeeResource outcomes that have already been determined for the same resource
+	 * ID/version during this request (if enabled) and consulting the consent service (as a single
+	 * batch, if it supports batches) for the rest.
+	 */
+	private List<ConsentOutcome> getOutcomes(RequestDetails theRequestDetails, List<IBaseResource> theResources, boolean theWillSee) {
+		Map<String, ConsentOutcome> outcomeCache = null;
+		if (myCacheOutcomesForRequest && !theWillSee) {
+			outcomeCache = getOutcomeCache(theRequestDetails, myRequestCanSeeOutcomesKey);
+		}
+
+		ConsentOutcome[] retVal = new ConsentOutcome[theResources.size()];
+		List<Integer> uncachedIndexes = new ArrayList<>(theResources.size());
+		List<IBaseResource> uncachedResources = new ArrayList<>(theResources.size());
+		String[] cacheKeys = new String[theResources.size()];
+		for (int i = 0; i < theResources.size(); i++) {
+			IBaseResource next = theResources.get(i);
+			if (outcomeCache != null) {
+				cacheKeys[i] = toOutcomeCacheKey(theRequestDetails, next);
+				if (cacheKeys[i] != null) {
+					retVal[i] = outcomeCache.get(cacheKeys[i]);
+					if (retVal[i] != null) {
+						continue;
+					}
+				}
+			}
+			uncachedIndexes.add(i);
+			uncachedResources.add(next);
+		}
+
+		if (!uncachedResources.isEmpty()) {
+			List<ConsentOutcome> outcomes;
+			if (myConsentService instanceof IBatchConsentService && uncachedResources.size() > 1) {
+				IBatchConsentService batchConsentService = (IBatchConsentService) myConsentService;
+				if (theWillSee) {
+					outcomes = batchConsentService.willSeeResources(theRequestDetails, uncachedResources, myContextConsentServices);
+				} else {
+					outcomes = batchConsentService.canSeeResources(theRequestDetails, uncachedResources, myContextConsentServices);
+				}
+				Validate.isTrue(outcomes != null && outcomes.size() == uncachedResources.size(), "Consent service returned %s outcomes for %d resources", outcomes != null ? outcomes.size() : null, uncachedResources.size());
+			} else {
+				outcomes = new ArrayList<>(uncachedResources.size());
+				for (IBaseResource next : uncachedResources) {
+					if (theWillSee) {
+						outcomes.add(myConsentService.willSeeResource(theRequestDetails, next, myContextConsentServices));
+					} else {
+						outcomes.add(myConsentService.canSeeResource(theRequestDetails, next, myContextConsentServices));
+					}
+				}
+			}
+
+			for (int i = 0; i < outcomes.size(); i++) {
+				int index = uncachedIndexes.get(i);
+				ConsentOutcome outcome = outcomes.get(i);
+				retVal[index] = outcome;
+
+				// Outcomes that replace the resource are specific to the instance that was checked
+				if (outcomeCache != null && cacheKeys[index] != null && outcome != null && outcome.getResource() == null && outcome.getOperationOutcome() == null) {
+					outcomeCache.put(cacheKeys[index], outcome);
+				}
+			}
+		}
+
+		return Arrays.asList(retVal);
+	}
+
 	private IdentityHashMap<IBaseResource, Boolean> getAlreadySeenResourcesMap(RequestDetails theRequestDetails) {
 		return getAlreadySeenResourcesMap(theRequestDetails, myRequestSeenResourcesKey);
 	}
@@ -203,7 +336,7 @@ public class ConsentInterceptor {
 
 		// See outer resource
 		if (alreadySeenResources.putIfAbsent(theResource.getResponseResource(), Boolean.TRUE) == null) {
-			final ConsentOutcome outcome = myConsentService.willSeeResource(theRequestDetails, theResource.getResponseResource(), myContextConsentServices);
+			final ConsentOutcome outcome = getWillSeeOutcome(theRequestDetails, theResource.getResponseResource());
 			if (outcome.getResource() != null) {
 				theResource.setResponseResource(outcome.getResource());
 			}
@@ -245,7 +378,7 @@ public class ConsentInterceptor {
 					if (alreadySeenResources.putIfAbsent((IBaseResource) theElement, Boolean.TRUE) != null) {
 						return true;
 					}
-					ConsentOutcome childOutcome = myConsentService.willSeeResource(theRequestDetails, (IBaseResource) theElement, myContextConsentServices);
+					ConsentOutcome childOutcome = getWillSeeOutcome(theRequestDetails, (IBaseResource) theElement);
 
 					IBaseResource replacementResource = null;
 					boolean shouldReplaceResource = false;
@@ -318,6 +451,38 @@ public class ConsentInterceptor {
 		return alreadySeenResources;
 	}
 
+	@SuppressWarnings("unchecked")
+	private static Map<String, ConsentOutcome> getOutcomeCache(RequestDetails theRequestDetails, String theKey) {
+		Map<String, ConsentOutcome> retVal = (Map<String, ConsentOutcome>) theRequestDetails.getUserData().get(theKey);
+		if (retVal == null) {
+			retVal = new HashMap<>();
+			theRequestDetails.getUserData().put(theKey, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns a key identifying the given resource ID and version, or <code>null</code> if the resource
+	 * has no ID (or only a local ID, as contained resources do)
+	 */
+	private static String toOutcomeCacheKey(RequestDetails theRequestDetails, IBaseResource theResource) {
+		if (theResource == null) {
+			return null;
+		}
+		IIdType id = theResource.getIdElement();
+		if (id == null || !id.hasIdPart() || id.isLocal()) {
+			return null;
+		}
+		StringBuilder b = new StringBuilder();
+		b.append(theRequestDetails.getFhirContext().getResourceType(theResource));
+		b.append('/');
+		b.append(id.getIdPart());
+		if (id.hasVersionIdPart()) {
+			b.append('/').append(Constants.PARAM_HISTORY).append('/').append(id.getVersionIdPart());
+		}
+		return b.toString();
+	}
+
 	private static ForbiddenOperationException toForbiddenOperationException(ConsentOutcome theOutcome) {
 		IBaseOperationOutcome operationOutcome = null;
 		if (theOutcome.getOperationOutcome() != null) {
@@ -0,0 +1,92 @@
+package ca.uhn.fhir.rest.server.interceptor.consent;
+
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link IConsentService} which is able to make consent decisions for a batch
+ * of resources (e.g. a page of search results) at once. If the consent service
+ * supplied to {@link ConsentInterceptor} implements this interface, the batch methods
+ * are called instead of calling
+ * {@link #canSeeResource(RequestDetails, IBaseResource, IConsentContextServices) canSeeResource}
+ * and {@link #willSeeResource(RequestDetails, IBaseResource, IConsentContextServices) willSeeResource}
+ * once per resource.
+ * <p>
+ * This is useful for implementations which consult an external system (such as a policy
+ * decision engine) since a single call can be made for the whole batch.
+ * </p>
+ *
+ * @since 5.1.0
+ */
+public interface IBatchConsentService extends IConsentService {
+
+	/**
+	 * This method is called with a batch of resources that a user may potentially see. It
+	 * has the same semantics as calling
+	 * {@link #canSeeResource(RequestDetails, IBaseResource, IConsentContextServices)} once for
+	 * each resource, which is what the default implementation does.
+	 *
+	 * @param theRequestDetails  Contains details about the operation that is
+	 *                           beginning, including details about the request type,
+	 *                           URL, etc.
+	 * @param theResources       The resources that will be exposed
+	 * @param theContextServices An object passed in by the consent framework that
+	 *                           provides utility functions relevant to acting on
+	 *                           consent directives.
+	 * @return A list containing one outcome for each resource in <code>theResources</code>, in the same order
+	 */
+	default List<ConsentOutcome> canSeeResources(RequestDetails theRequestDetails, List<IBaseResource> theResources, IConsentContextServices theContextServices) {
+		List<ConsentOutcome> retVal = new ArrayList<>(theResources.size());
+		for (IBaseResource next : theResources) {
+			retVal.add(canSeeResource(theRequestDetails, next, theContextServices));
+		}
+		return retVal;
+	}
+
+	/**
+	 * This method is called with a batch of resources that a user is about to see. It
+	 * has the same semantics as calling
+	 * {@link #willSeeResource(RequestDetails, IBaseResource, IConsentContextServices)} once for
+	 * each resource, which is what the default implementation does.
+	 *
+	 * @param theRequestDetails  Contains details about the operation that is
+	 *                           beginning, including details about the request type,
+	 *                           URL, etc.
+	 * @param theResources       The resources that will be exposed
+	 * @param theContextServices An object passed in by the consent framework that
+	 *                           provides utility functions relevant to acting on
+	 *                           consent directives.
+	 * @return A list containing one outcome for each resource in <code>theResources</code>, in the same order
+	 */
+	default List<ConsentOutcome> willSeeResources(RequestDetails theRequestDetails, List<IBaseResource> theResources, IConsentContextServices theContextServices) {
+		List<ConsentOutcome> retVal = new ArrayList<>(theResources.size());
+		for (IBaseResource next : theResources) {
+			retVal.add(willSeeResource(theRequestDetails, next, theContextServices));
+		}
+		return retVal;
+	}
+
+}
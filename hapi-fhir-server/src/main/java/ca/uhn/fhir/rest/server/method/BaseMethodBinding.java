@@ -28,6 +28,7 @@ import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.annotation.*;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IRestfulServer;
@@ -219,6 +220,29 @@ public abstract class BaseMethodBinding<T> {
 
 	public abstract MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest);
 
+	/**
+	 * Returns the values of {@link RequestDetails#getOperation()} for which this method could
+	 * possibly match an incoming request, with a blank operation represented by an empty string.
+	 * This is used to build a routing index so that {@link #incomingServerRequestMatchesMethod(RequestDetails)}
+	 * only needs to be called for a small number of candidate methods. Implementations must not
+	 * exclude any operation that could match.
+	 *
+	 * @return Returns <code>null</code> (the default) if this method may match any operation
+	 */
+	public Set<String> getRoutingOperationNames() {
+		return null;
+	}
+
+	/**
+	 * Returns the HTTP request types for which this method could possibly match an incoming
+	 * request. See {@link #getRoutingOperationNames()}.
+	 *
+	 * @return Returns <code>null</code> (the default) if this method may match any request type
+	 */
+	public Set<RequestTypeEnum> getRoutingRequestTypes() {
+		return null;
+	}
+
 	public abstract Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException;
 
 	protected final Object invokeServerMethod(IRestfulServer<?> theServer, RequestDetails theRequest, Object[] theMethodParams) {
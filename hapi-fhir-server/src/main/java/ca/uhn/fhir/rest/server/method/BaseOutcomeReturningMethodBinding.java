@@ -140,6 +140,16 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding<Metho
 		return MethodMatchEnum.EXACT;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Collections.singleton(StringUtils.defaultString(getMatchingOperation()));
+	}
+
+	@Override
+	public Set<RequestTypeEnum> getRoutingRequestTypes() {
+		return provideAllowableRequestTypes();
+	}
+
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
 
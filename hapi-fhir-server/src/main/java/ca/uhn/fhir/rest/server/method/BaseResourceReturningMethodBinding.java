@@ -121,6 +121,7 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 		int numToReturn;
 		String searchId = null;
 		List<IBaseResource> resourceList;
+		StreamingBundleWriter streamingWriter = null;
 		Integer numTotalResults = theResult.size();
 		if (theServer.getPagingProvider() == null) {
 			numToReturn = numTotalResults;
@@ -143,7 +144,12 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 				numToReturn = Math.min(numToReturn, numTotalResults - theOffset);
 			}
 
-			if (numToReturn > 0 || theResult.getCurrentPageId() != null) {
+			if (isStreamingRequested(theRequest) && numToReturn > StreamingBundleWriter.CHUNK_SIZE && isBlank(theResult.getCurrentPageId()) && (theIncludes == null || theIncludes.isEmpty())) {
+				// Only load the first chunk now, the rest is loaded as the response is written
+				int firstChunkEnd = theOffset + StreamingBundleWriter.CHUNK_SIZE;
+				resourceList = theResult.getResources(theOffset, firstChunkEnd);
+				streamingWriter = new StreamingBundleWriter(theServer, theRequest, theResult, resourceList, firstChunkEnd, theOffset + numToReturn, theBundleType, theRequest.getFhirServerBase());
+			} else if (numToReturn > 0 || theResult.getCurrentPageId() != null) {
 				resourceList = theResult.getResources(theOffset, numToReturn + theOffset);
 			} else {
 				resourceList = Collections.emptyList();
@@ -228,6 +234,10 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 		}
 
 		bundleFactory.addRootPropertiesToBundle(theResult.getUuid(), serverBase, theLinkSelf, linkPrev, linkNext, theResult.size(), theBundleType, theResult.getPublished());
+		if (streamingWriter != null) {
+			theRequest.getUserData().put(StreamingBundleWriter.USER_DATA_KEY, streamingWriter);
+			return bundleFactory.getResourceBundle();
+		}
 		bundleFactory.addResourcesToBundle(new ArrayList<>(resourceList), theBundleType, serverBase, theServer.getBundleInclusionRule(), theIncludes);
 
 		if (theServer.getPagingProvider() != null) {
@@ -381,7 +391,18 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
 
-		IBaseResource response = doInvokeServer(theServer, theRequest);
+		IBaseResource response;
+		Object streamingWriter = null;
+		if (StreamingBundleWriter.isStreamingPossible(theServer, theRequest)) {
+			theRequest.getUserData().put(StreamingBundleWriter.USER_DATA_KEY, Boolean.TRUE);
+			try {
+				response = doInvokeServer(theServer, theRequest);
+			} finally {
+				streamingWriter = theRequest.getUserData().remove(StreamingBundleWriter.USER_DATA_KEY);
+			}
+		} else {
+			response = doInvokeServer(theServer, theRequest);
+		}
 		if (response == null) {
 			return null;
 		}
@@ -396,6 +417,10 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 			return null;
 		}
 
+		if (streamingWriter instanceof StreamingBundleWriter && responseDetails.getResponseResource() == response) {
+			return ((StreamingBundleWriter) streamingWriter).stream(response);
+		}
+
 		boolean prettyPrint = RestfulServerUtils.prettyPrintResponse(theServer, theRequest);
 
 		return theRequest.getResponse().streamResponseAsResource(responseDetails.getResponseResource(), prettyPrint, summaryMode, responseDetails.getResponseCode(), null, theRequest.isRespondGzip(), isAddContentLocationHeader());
@@ -404,6 +429,10 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 
 	public abstract Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest, Object[] theMethodParams) throws InvalidRequestException, InternalErrorException;
 
+	private static boolean isStreamingRequested(RequestDetails theRequest) {
+		return Boolean.TRUE.equals(theRequest.getUserData().get(StreamingBundleWriter.USER_DATA_KEY));
+	}
+
 	/**
 	 * Should the response include a Content-Location header. Search method bunding (and any others?) may override this to disable the content-location, since it doesn't make sense
 	 */
@@ -39,6 +39,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
 
 public class GraphQLMethodBinding extends BaseMethodBinding<String> {
 
@@ -75,6 +77,11 @@ public class GraphQLMethodBinding extends BaseMethodBinding<String> {
 		return MethodMatchEnum.NONE;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Collections.singleton(Constants.OPERATION_NAME_GRAPHQL);
+	}
+
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
 		Object[] methodParams = createMethodParams(theRequest);
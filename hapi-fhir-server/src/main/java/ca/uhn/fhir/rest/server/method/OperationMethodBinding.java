@@ -51,7 +51,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -265,6 +267,19 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 		return myCanOperateAtServerLevel ? MethodMatchEnum.EXACT : MethodMatchEnum.NONE;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		if (myName.equals(WILDCARD_NAME)) {
+			return null;
+		}
+		return Collections.singleton(myName);
+	}
+
+	@Override
+	public Set<RequestTypeEnum> getRoutingRequestTypes() {
+		return EnumSet.of(RequestTypeEnum.GET, RequestTypeEnum.POST);
+	}
+
 	@Override
 	public RestOperationTypeEnum getRestOperationType(RequestDetails theRequestDetails) {
 		RestOperationTypeEnum retVal = super.getRestOperationType(theRequestDetails);
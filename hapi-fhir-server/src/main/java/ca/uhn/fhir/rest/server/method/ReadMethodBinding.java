@@ -49,7 +49,11 @@ import org.hl7.fhir.instance.model.api.IIdType;
 import javax.annotation.Nonnull;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -57,6 +61,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class ReadMethodBinding extends BaseResourceReturningMethodBinding {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ReadMethodBinding.class);
+	private static final Set<String> ROUTING_OPERATION_NAMES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("", Constants.PARAM_HISTORY)));
 
 	private Integer myIdIndex;
 	private boolean mySupportsVersion;
@@ -150,6 +155,16 @@ public class ReadMethodBinding extends BaseResourceReturningMethodBinding {
 		return MethodMatchEnum.EXACT;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return ROUTING_OPERATION_NAMES;
+	}
+
+	@Override
+	public Set<RequestTypeEnum> getRoutingRequestTypes() {
+		return EnumSet.of(RequestTypeEnum.GET, RequestTypeEnum.HEAD);
+	}
+
 
 	@Override
 	public IBundleProvider invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest, Object[] theMethodParams) throws InvalidRequestException, InternalErrorException {
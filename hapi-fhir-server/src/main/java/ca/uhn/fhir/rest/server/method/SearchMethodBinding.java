@@ -41,9 +41,12 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -64,6 +67,8 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 		SPECIAL_SEARCH_PARAMS = Collections.unmodifiableSet(specialSearchParams);
 	}
 
+	private static final Set<String> ROUTING_OPERATION_NAMES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("", Constants.PARAM_SEARCH)));
+
 	private final String myResourceProviderResourceName;
 	private final List<String> myRequiredParamNames;
 	private final List<String> myOptionalParamNames;
@@ -192,16 +197,19 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 			}
 		}
 
+		Map<String, String[]> requestParams = theRequest.getParameters();
 		Set<String> unqualifiedNames = theRequest.getUnqualifiedToQualifiedNames().keySet();
-		Set<String> qualifiedParamNames = theRequest.getParameters().keySet();
+		Set<String> qualifiedParamNames = requestParams.keySet();
 
 		MethodMatchEnum retVal = MethodMatchEnum.EXACT;
-		for (String nextRequestParam : theRequest.getParameters().keySet()) {
+		for (Map.Entry<String, String[]> nextRequestParamEntry : requestParams.entrySet()) {
+			String nextRequestParam = nextRequestParamEntry.getKey();
 			String nextUnqualifiedRequestParam = ParameterUtil.stripModifierPart(nextRequestParam);
 			if (nextRequestParam.startsWith("_") && !SPECIAL_SEARCH_PARAMS.contains(nextUnqualifiedRequestParam)) {
 				continue;
 			}
 
+			boolean repeated = nextRequestParamEntry.getValue().length > 1;
 			boolean parameterMatches = false;
 			boolean approx = false;
 			for (BaseQueryParameter nextMethodParam : getQueryParameters()) {
@@ -219,7 +227,7 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 				}
 
 				// Repetitions supplied by URL but not supported by this parameter
-				if (theRequest.getParameters().get(nextRequestParam).length > 1 != nextMethodParam.supportsRepetition()) {
+				if (repeated != nextMethodParam.supportsRepetition()) {
 					approx = true;
 				}
 
@@ -271,6 +279,16 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 		return retVal;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return ROUTING_OPERATION_NAMES;
+	}
+
+	@Override
+	public Set<RequestTypeEnum> getRoutingRequestTypes() {
+		return EnumSet.of(RequestTypeEnum.GET, RequestTypeEnum.POST);
+	}
+
 	@Override
 	public IBundleProvider invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest, Object[] theMethodParams) throws InvalidRequestException, InternalErrorException {
 		if (myIdParamIndex != null) {
@@ -0,0 +1,207 @@
+package ca.uhn.fhir.rest.server.method;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.api.BundleInclusionRule;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.model.valueset.BundleTypeEnum;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.IVersionSpecificBundleFactory;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.IRestfulResponse;
+import ca.uhn.fhir.rest.api.server.IRestfulServer;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes a search/history page as a JSON Bundle directly to the response, fetching the
+ * entries from the {@link IBundleProvider} in small chunks instead of building a
+ * Bundle containing the whole page first. The root properties (id, type, total, links)
+ * are encoded from a Bundle with no entries, and each chunk of entries is built using
+ * the normal {@link IVersionSpecificBundleFactory} so the entries are identical to the
+ * ones a fully materialized Bundle would contain.
+ *
+ * @see RestfulServer#setStreamBundleResponses(boolean)
+ */
+class StreamingBundleWriter {
+
+	/**
+	 * Key for {@link RequestDetails#getUserData()}. Set to {@link Boolean#TRUE} when a streaming
+	 * response is possible, and replaced with a {@link StreamingBundleWriter} if the bundle
+	 * being created is suitable for streaming.
+	 */
+	static final String USER_DATA_KEY = StreamingBundleWriter.class.getName();
+	static final int CHUNK_SIZE = 50;
+	private static final String ENTRY_ARRAY_START = "\"entry\":[";
+
+	private final IRestfulServer<?> myServer;
+	private final RequestDetails myRequest;
+	private final IBundleProvider myResult;
+	private final List<IBaseResource> myFirstChunk;
+	private final int myFirstChunkEnd;
+	private final int myEnd;
+	private final BundleTypeEnum myBundleType;
+	private final String myServerBase;
+
+	StreamingBundleWriter(IRestfulServer<?> theServer, RequestDetails theRequest, IBundleProvider theResult, List<IBaseResource> theFirstChunk, int theFirstChunkEnd, int theEnd, BundleTypeEnum theBundleType, String theServerBase) {
+		myServer = theServer;
+		myRequest = theRequest;
+		myResult = theResult;
+		myFirstChunk = theFirstChunk;
+		myFirstChunkEnd = theFirstChunkEnd;
+		myEnd = theEnd;
+		myBundleType = theBundleType;
+		myServerBase = theServerBase;
+	}
+
+	Object stream(IBaseResource theBundleWithoutEntries) throws IOException {
+		FhirContext context = myServer.getFhirContext();
+		IRestfulResponse response = myRequest.getResponse();
+
+		IPrimitiveType<Date> lastUpdated = RestfulServerUtils.extractLastUpdatedFromResource(theBundleWithoutEntries);
+		if (lastUpdated != null && !lastUpdated.isEmpty()) {
+			response.addHeader(Constants.HEADER_LAST_MODIFIED, DateUtils.formatDate(lastUpdated.getValue()));
+		}
+
+		String contentType = RestfulServerUtils.determineResponseEncodingWithDefault(myRequest).getResourceContentType();
+		String charset = Constants.CHARSET_NAME_UTF8;
+		Writer writer = response.getResponseWriter(Constants.STATUS_HTTP_200_OK, null, contentType, charset, myRequest.isRespondGzip());
+		writer = RestfulServerUtils.callOutgoingWriterCreatedHook(myServer, myRequest, writer);
+
+		IParser parser = RestfulServerUtils.getNewParser(context, theBundleWithoutEntries.getStructureFhirVersionEnum(), myRequest);
+
+		// Write everything but the closing brace, then append the entries
+		String root = parser.encodeResourceToString(theBundleWithoutEntries);
+		if (!root.endsWith("}")) {
+			throw new InternalErrorException("Unexpected bundle encoding");
+		}
+		writer.write(root, 0, root.length() - 1);
+
+		boolean first = true;
+		List<IBaseResource> chunk = myFirstChunk;
+		int chunkEnd = myFirstChunkEnd;
+		while (true) {
+			String entries = encodeEntries(parser, chunk);
+			if (!entries.isEmpty()) {
+				writer.write(first ? "," + ENTRY_ARRAY_START : ",");
+				writer.write(entries);
+				first = false;
+			}
+
+			if (chunk.isEmpty() || chunkEnd >= myEnd) {
+				break;
+			}
+			int nextChunkEnd = Math.min(chunkEnd + CHUNK_SIZE, myEnd);
+			chunk = myResult.getResources(chunkEnd, nextChunkEnd);
+			RestfulServerUtils.validateResourceListNotNull(chunk);
+			chunkEnd = nextChunkEnd;
+		}
+
+		if (!first) {
+			writer.write("]");
+		}
+		writer.write("}");
+
+		return response.sendWriterResponse(Constants.STATUS_HTTP_200_OK, contentType, charset, writer);
+	}
+
+	/**
+	 * Builds a bundle containing only the given resources and returns the encoded
+	 * contents of its entry array (without the surrounding brackets)
+	 */
+	private String encodeEntries(IParser theParser, List<IBaseResource> theResources) {
+		List<IBaseResource> resources = new ArrayList<>(theResources);
+		resources.removeIf(Objects::isNull);
+		if (resources.isEmpty()) {
+			return "";
+		}
+		for (IBaseResource next : resources) {
+			if (next.getIdElement() == null || next.getIdElement().isEmpty()) {
+				if (!(next instanceof IBaseOperationOutcome)) {
+					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
+				}
+			}
+		}
+
+		IVersionSpecificBundleFactory bundleFactory = myServer.getFhirContext().newBundleFactory();
+		bundleFactory.addRootPropertiesToBundle(null, myServerBase, null, null, null, null, myBundleType, null);
+		bundleFactory.addResourcesToBundle(resources, myBundleType, myServerBase, myServer.getBundleInclusionRule(), Collections.emptySet());
+		String encoded = theParser.encodeResourceToString(bundleFactory.getResourceBundle());
+
+		int start = encoded.indexOf(ENTRY_ARRAY_START);
+		if (start == -1 || !encoded.endsWith("]}")) {
+			throw new InternalErrorException("Unexpected bundle encoding");
+		}
+		return encoded.substring(start + ENTRY_ARRAY_START.length(), encoded.length() - 2);
+	}
+
+	/**
+	 * Can the response to this request be streamed? Streaming is only used if it has been
+	 * enabled on the server, the response is non pretty-printed JSON with no summary or
+	 * element filtering, and no interceptors need to see (or modify) the response bundle.
+	 */
+	static boolean isStreamingPossible(IRestfulServer<?> theServer, RequestDetails theRequest) {
+		if (!(theServer instanceof RestfulServer) || !((RestfulServer) theServer).isStreamBundleResponses()) {
+			return false;
+		}
+		if (theRequest.getResponse() == null) {
+			return false;
+		}
+		if (theServer.getBundleInclusionRule() != BundleInclusionRule.BASED_ON_INCLUDES) {
+			return false;
+		}
+		if (RestfulServerUtils.determineResponseEncodingWithDefault(theRequest).getEncoding() != EncodingEnum.JSON) {
+			return false;
+		}
+		if (RestfulServerUtils.prettyPrintResponse(theServer, theRequest)) {
+			return false;
+		}
+		Map<String, String[]> parameters = theRequest.getParameters();
+		if (parameters.containsKey(Constants.PARAM_SUMMARY) || parameters.containsKey(Constants.PARAM_ELEMENTS) || parameters.containsKey(Constants.PARAM_ELEMENTS + Constants.PARAM_ELEMENTS_EXCLUDE_MODIFIER)) {
+			return false;
+		}
+		IInterceptorService interceptorService = theServer.getInterceptorService();
+		if (interceptorService != null && interceptorService.hasHooks(Pointcut.SERVER_OUTGOING_RESPONSE)) {
+			return false;
+		}
+		return true;
+	}
+
+}
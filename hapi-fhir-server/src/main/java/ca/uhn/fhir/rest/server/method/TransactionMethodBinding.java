@@ -22,7 +22,9 @@ package ca.uhn.fhir.rest.server.method;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
@@ -101,6 +103,16 @@ public class TransactionMethodBinding extends BaseResourceReturningMethodBinding
 		return MethodMatchEnum.EXACT;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Collections.singleton("");
+	}
+
+	@Override
+	public Set<RequestTypeEnum> getRoutingRequestTypes() {
+		return Collections.singleton(RequestTypeEnum.POST);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest, Object[] theMethodParams) throws InvalidRequestException, InternalErrorException {
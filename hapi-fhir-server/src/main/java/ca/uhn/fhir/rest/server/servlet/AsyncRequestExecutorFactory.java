@@ -0,0 +1,121 @@
+package ca.uhn.fhir.rest.server.servlet;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2020 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates executors suitable for use with
+ * {@link ca.uhn.fhir.rest.server.RestfulServer#setAsyncRequestExecutor(java.util.concurrent.Executor)}.
+ * <p>
+ * Requests spend most of their time blocked on I/O (database queries, remote calls, writing
+ * the response) so where the JVM supports virtual threads (Java 21+) each request is given its
+ * own virtual thread. On older JVMs a fixed size pool of platform threads with a bounded queue
+ * is used instead. When that queue is full the executor rejects new requests, and the server
+ * processes them on the container thread so that the container's own limits apply again.
+ * Virtual thread executors do not queue and never reject requests.
+ * </p>
+ */
+public class AsyncRequestExecutorFactory {
+
+	/**
+	 * The default number of requests which may wait for a platform thread
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 100;
+	private static final Logger ourLog = LoggerFactory.getLogger(AsyncRequestExecutorFactory.class);
+
+	/**
+	 * Non instantiable
+	 */
+	private AsyncRequestExecutorFactory() {
+		super();
+	}
+
+	/**
+	 * Creates a new executor, using virtual threads if the JVM supports them
+	 *
+	 * @param thePlatformThreadCount The number of threads to use if virtual threads are not available
+	 */
+	public static ExecutorService newExecutor(int thePlatformThreadCount) {
+		ExecutorService retVal = newVirtualThreadExecutor();
+		if (retVal == null) {
+			retVal = newPlatformThreadExecutor(thePlatformThreadCount);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates a new executor which runs each task in a new virtual thread
+	 *
+	 * @return Returns <code>null</code> if the JVM does not support virtual threads
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			ExecutorService retVal = (ExecutorService) factoryMethod.invoke(null);
+			ourLog.info("Using virtual threads for asynchronous request processing");
+			return retVal;
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			ourLog.warn("Failed to create virtual thread executor: {}", e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a new executor backed by a fixed size pool of platform threads, with a queue
+	 * of {@link #DEFAULT_QUEUE_CAPACITY} requests
+	 */
+	public static ExecutorService newPlatformThreadExecutor(int theThreadCount) {
+		return newPlatformThreadExecutor(theThreadCount, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Creates a new executor backed by a fixed size pool of platform threads. Requests which arrive
+	 * while all threads are busy wait in a queue, and once the queue is full further requests are
+	 * rejected with a {@link java.util.concurrent.RejectedExecutionException}.
+	 *
+	 * @param theThreadCount   The number of threads
+	 * @param theQueueCapacity The maximum number of requests waiting for a thread
+	 */
+	public static ExecutorService newPlatformThreadExecutor(int theThreadCount, int theQueueCapacity) {
+		Validate.isTrue(theThreadCount > 0, "theThreadCount must be positive");
+		Validate.isTrue(theQueueCapacity > 0, "theQueueCapacity must be positive");
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+			.namingPattern("fhir-request-%d")
+			.daemon(true)
+			.build();
+		ourLog.info("Using {} platform threads and a queue of {} for asynchronous request processing", theThreadCount, theQueueCapacity);
+		return new ThreadPoolExecutor(theThreadCount, theThreadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(theQueueCapacity), threadFactory);
+	}
+
+}
@@ -38,6 +38,7 @@ import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -68,6 +69,12 @@ public class ServletRequestDetails extends RequestDetails {
 						GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(requestContents));
 						requestContents = IOUtils.toByteArray(gis);
 					}
+				} else if (Constants.ENCODING_DEFLATE.equals(contentEncoding)) {
+					ourLog.debug("Uncompressing (Deflate) incoming content");
+					if (requestContents.length > 0) {
+						InflaterInputStream iis = new InflaterInputStream(new ByteArrayInputStream(requestContents));
+						requestContents = IOUtils.toByteArray(iis);
+					}
 				}
 			}
 			return requestContents;
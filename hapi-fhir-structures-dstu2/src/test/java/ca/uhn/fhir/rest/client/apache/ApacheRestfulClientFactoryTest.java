@@ -1,13 +1,20 @@
 package ca.uhn.fhir.rest.client.apache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.junit.Test;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
 import ca.uhn.fhir.rest.client.impl.BaseClient;
+import ca.uhn.fhir.rest.client.impl.ConnectionPoolStats;
 
 public class ApacheRestfulClientFactoryTest {
 
@@ -24,6 +31,52 @@ public class ApacheRestfulClientFactoryTest {
 		}
 	}
 
+	@Test
+	public void testConnectionPoolStats() {
+		ApacheRestfulClientFactory factory = new ApacheRestfulClientFactory();
+		factory.setFhirContext(FhirContext.forDstu2());
+		factory.setPoolMaxTotal(7);
+		assertNull(factory.getConnectionPoolStats());
+
+		factory.getNativeHttpClient();
+		ConnectionPoolStats stats = factory.getConnectionPoolStats();
+		assertNotNull(stats);
+		assertEquals(7, stats.getMax());
+		assertEquals(0, stats.getLeased());
+		assertEquals(0, stats.getPending());
+		assertEquals(0, stats.getLeaseCount());
+
+		// Stats aren't available for a client which was supplied externally
+		factory.setHttpClient(HttpClients.createDefault());
+		assertNull(factory.getConnectionPoolStats());
+	}
+
+	@Test
+	public void testPoolMaxForRoute() {
+		ApacheRestfulClientFactory factory = new ApacheRestfulClientFactory();
+		factory.setFhirContext(FhirContext.forDstu2());
+		factory.setPoolMaxPerRoute(5);
+		factory.setPoolMaxForRoute("https://example.com/fhir", 2);
+		factory.setIdleConnectionTimeout(1000);
+		factory.setConnectionTimeToLive(60000);
+		factory.getNativeHttpClient();
+
+		PoolingHttpClientConnectionManager connectionManager = factory.getConnectionManager();
+		assertEquals(5, connectionManager.getDefaultMaxPerRoute());
+		HttpRoute route = new HttpRoute(new HttpHost("example.com", 443, "https"), null, true);
+		assertEquals(2, connectionManager.getMaxPerRoute(route));
+		assertEquals(2, connectionManager.getStats(route).getMax());
+		HttpRoute otherRoute = new HttpRoute(new HttpHost("example.com", 80, "http"));
+		assertEquals(5, connectionManager.getMaxPerRoute(otherRoute));
+
+		try {
+			factory.setPoolMaxForRoute("/fhir", 2);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("theServerBase must be an absolute URL", e.getMessage());
+		}
+	}
+
 	@Test
 	public void testValidatateBase() {
 		FhirContext ctx = FhirContext.forDstu2();
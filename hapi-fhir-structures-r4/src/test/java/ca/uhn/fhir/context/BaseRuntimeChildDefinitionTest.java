@@ -0,0 +1,41 @@
+package ca.uhn.fhir.context;
+
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BaseRuntimeChildDefinitionTest {
+
+	@Test
+	public void testGetSingleValueOrNull() {
+		FhirContext ctx = FhirContext.forR4();
+		RuntimeResourceDefinition def = ctx.getResourceDefinition("Patient");
+
+		Patient patient = new Patient();
+		BaseRuntimeChildDefinition activeChild = def.getChildByName("active");
+		assertNull(activeChild.getAccessor().getSingleValueOrNull(patient));
+
+		patient.setActive(true);
+		assertSame(patient.getActiveElement(), activeChild.getAccessor().getSingleValueOrNull(patient));
+		assertEquals(1, activeChild.getAccessor().getValues(patient).size());
+
+		BaseRuntimeChildDefinition organizationChild = def.getChildByName("managingOrganization");
+		patient.setManagingOrganization(new Reference("Organization/1"));
+		assertSame(patient.getManagingOrganization(), organizationChild.getAccessor().getSingleValueOrNull(patient));
+	}
+
+	@Test
+	public void testGetSingleValueOrNullForListChild() {
+		FhirContext ctx = FhirContext.forR4();
+		BaseRuntimeChildDefinition nameChild = ctx.getResourceDefinition("Patient").getChildByName("name");
+
+		Patient patient = new Patient();
+		assertNull(nameChild.getAccessor().getSingleValueOrNull(patient));
+
+		patient.addName().setFamily("Smith");
+		assertSame(patient.getNameFirstRep(), nameChild.getAccessor().getSingleValueOrNull(patient));
+	}
+
+}
@@ -0,0 +1,84 @@
+package ca.uhn.fhir.context;
+
+import ca.uhn.fhir.model.api.annotation.Child;
+import ca.uhn.fhir.model.api.annotation.DatatypeDef;
+import ca.uhn.fhir.util.ElementUtil;
+import org.hl7.fhir.instance.model.api.ICompositeType;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.Type;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RuntimeChildAnyTest {
+
+	@Test
+	public void testSealedStateSharedByChildrenWithSameName() {
+		FhirContext ctx = FhirContext.forR4();
+
+		RuntimeResourceDefinition patientDef = ctx.getResourceDefinition("Patient");
+		RuntimeChildAny patientExtension = (RuntimeChildAny) patientDef.getChildByName("extension");
+		BaseRuntimeElementCompositeDefinition<?> contactDef = (BaseRuntimeElementCompositeDefinition<?>) patientDef.getChildByName("contact").getChildByName("contact");
+		RuntimeChildAny contactExtension = (RuntimeChildAny) contactDef.getChildByName("extension");
+
+		assertNotSame(patientExtension, contactExtension);
+		assertEquals(patientExtension.getChoices(), contactExtension.getChoices());
+		assertSame(patientExtension.getResourceTypes(), contactExtension.getResourceTypes());
+	}
+
+	/**
+	 * A datatype which is scanned lazily adds a new definition, so children sealed by that scan
+	 * must not reuse the state sealed before it
+	 */
+	@Test
+	public void testSealedStateRebuiltWhenCustomDatatypeScanned() {
+		FhirContext ctx = FhirContext.forR4();
+
+		BaseRuntimeElementCompositeDefinition<?> extensionDef = (BaseRuntimeElementCompositeDefinition<?>) ctx.getElementDefinition(Extension.class);
+		RuntimeChildAny extensionValue = (RuntimeChildAny) extensionDef.getChildByName("value[x]");
+		RuntimeChildAny.SharedSealState state = ctx.getAnyChildSealState();
+		assertNotNull(state);
+		assertFalse(extensionValue.getChoices().contains(MyDatatype.class));
+
+		BaseRuntimeElementCompositeDefinition<?> myDatatypeDef = (BaseRuntimeElementCompositeDefinition<?>) ctx.getElementDefinition(MyDatatype.class);
+		RuntimeChildAny myDatatypeValue = (RuntimeChildAny) myDatatypeDef.getChildByName("value[x]");
+
+		assertNotSame(state, ctx.getAnyChildSealState());
+		assertTrue(myDatatypeValue.getChoices().contains(MyDatatype.class));
+		assertSame(myDatatypeDef, myDatatypeValue.getChildElementDefinitionByDatatype(MyDatatype.class));
+		assertEquals("valueMyDatatype", myDatatypeValue.getChildNameByDatatype(MyDatatype.class));
+		assertFalse(extensionValue.getChoices().contains(MyDatatype.class));
+	}
+
+	@DatatypeDef(name = "MyDatatype")
+	public static class MyDatatype extends Type implements ICompositeType {
+
+		private static final long serialVersionUID = 1L;
+
+		@Child(name = "value", order = 0, min = 0, max = 1, type = {})
+		private Type myValue;
+
+		public Type getValue() {
+			return myValue;
+		}
+
+		public MyDatatype setValue(Type theValue) {
+			myValue = theValue;
+			return this;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return ElementUtil.isEmpty(myValue);
+		}
+
+		@Override
+		protected MyDatatype typedCopy() {
+			MyDatatype retVal = new MyDatatype();
+			super.copyValues(retVal);
+			retVal.myValue = myValue;
+			return retVal;
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -85,6 +86,53 @@ public class CustomTypeR4Test {
 		}
 	}
 
+	@SuppressWarnings("serial")
+	@ResourceDef
+	public static class PatientWithSingleExtensionInList extends Patient {
+		@Child(name = "source", min = 0, max = 1)
+		@Extension(url = "http://example.com/extension#source", definedLocally = true, isModifier = false)
+		private List<Reference> mySource;
+
+		public List<Reference> getSource() {
+			if (mySource == null) {
+				mySource = new ArrayList<>();
+			}
+			return mySource;
+		}
+	}
+
+	/**
+	 * A child with a maximum cardinality of 1 which is backed by a list may still have
+	 * several values, and references in all of them must be found
+	 */
+	@Test
+	public void testEncodeContainsAllReferencesInListChildWithMaxOne() {
+		PatientWithSingleExtensionInList pt = new PatientWithSingleExtensionInList();
+		pt.getSource().add(new Reference(new Organization().setName("ORG1")));
+		pt.getSource().add(new Reference(new Organization().setName("ORG2")));
+
+		String encoded = ourCtx.newJsonParser().encodeResourceToString(pt);
+		ourLog.info(encoded);
+
+		assertThat(encoded, stringContainsInOrder("\"contained\"", "ORG1", "ORG2"));
+		assertThat(encoded, not(stringContainsInOrder("ORG1", "ORG1")));
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	@Test
+	public void testEncodeWrongGenericType() {
+		Patient pt = new Patient();
+		List names = pt.getName();
+		names.add("name");
+
+		try {
+			ourCtx.newJsonParser().encodeResourceToString(pt);
+			fail();
+		} catch (ClassCastException e) {
+			assertEquals("Found instance of class java.lang.String - Did you set a field value to the incorrect type? Expected org.hl7.fhir.instance.model.api.IBase", e.getMessage());
+		}
+	}
+
 	@Test
 	public void testExtensionWithOneTypes() {
 		PatientWithExtensionWithOneTypes pt = new PatientWithExtensionWithOneTypes();
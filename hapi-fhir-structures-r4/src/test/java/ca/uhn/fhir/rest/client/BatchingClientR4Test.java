@@ -0,0 +1,202 @@
+package ca.uhn.fhir.rest.client;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.impl.BatchingClient;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class BatchingClientR4Test extends BaseGenericClientR4Test {
+
+	@Test
+	public void testCallsCoalescedIntoBatch() throws Exception {
+		Bundle response = new Bundle();
+		response.setType(Bundle.BundleType.BATCHRESPONSE);
+		response.addEntry().setResource(new Patient().setActive(true).setId("Patient/1/_history/3")).getResponse().setStatus("200 OK");
+		OperationOutcome notFound = new OperationOutcome();
+		notFound.addIssue().setDiagnostics("Resource Patient/2 is not known");
+		response.addEntry().getResponse().setStatus("404 Not Found").setOutcome(notFound);
+		response.addEntry().getResponse().setStatus("201 Created").setLocation("Patient/3/_history/1");
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForResponse(response);
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		CompletableFuture<Patient> read1;
+		CompletableFuture<Patient> read2;
+		CompletableFuture<MethodOutcome> create;
+		try (BatchingClient batchingClient = new BatchingClient(client)) {
+			batchingClient.setMaximumBatchSize(3);
+			batchingClient.setMaximumDelayMillis(60000);
+			read1 = batchingClient.read(Patient.class, "1");
+			read2 = batchingClient.read(Patient.class, "2");
+			create = batchingClient.create(new Patient().setActive(false));
+
+			assertTrue(read1.get().getActive());
+		}
+
+		assertEquals(1, capt.getAllValues().size());
+		assertEquals("http://example.com/fhir", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("POST", capt.getAllValues().get(0).getMethod());
+		String requestBody = IOUtils.toString(((HttpEntityEnclosingRequestBase) capt.getAllValues().get(0)).getEntity().getContent(), StandardCharsets.UTF_8);
+		Bundle request = ourCtx.newJsonParser().parseResource(Bundle.class, requestBody);
+		assertEquals(Bundle.BundleType.BATCH, request.getType());
+		assertEquals(3, request.getEntry().size());
+		assertEquals(Bundle.HTTPVerb.GET, request.getEntry().get(0).getRequest().getMethod());
+		assertEquals("Patient/1", request.getEntry().get(0).getRequest().getUrl());
+		assertEquals("Patient/2", request.getEntry().get(1).getRequest().getUrl());
+		assertEquals(Bundle.HTTPVerb.POST, request.getEntry().get(2).getRequest().getMethod());
+		assertEquals("Patient", request.getEntry().get(2).getRequest().getUrl());
+		assertEquals(false, ((Patient) request.getEntry().get(2).getResource()).getActive());
+
+		try {
+			read2.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(ResourceNotFoundException.class, e.getCause().getClass());
+			assertEquals("HTTP 404 Not Found: Resource Patient/2 is not known", e.getCause().getMessage());
+		}
+
+		assertEquals("Patient/3/_history/1", create.get().getId().getValue());
+		assertTrue(create.get().getCreated());
+	}
+
+	@Test
+	public void testBatchSentAfterDelay() throws Exception {
+		Bundle response = new Bundle();
+		response.setType(Bundle.BundleType.BATCHRESPONSE);
+		response.addEntry().getResponse().setStatus("200 OK").setLocation("Patient/1/_history/2");
+		response.addEntry().getResponse().setStatus("204 No Content");
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForResponse(response);
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		try (BatchingClient batchingClient = new BatchingClient(client)) {
+			batchingClient.setMaximumDelayMillis(10);
+			CompletableFuture<MethodOutcome> update = batchingClient.update(new Patient().setId("Patient/1"));
+			CompletableFuture<MethodOutcome> delete = batchingClient.delete(new IdType("Patient/2"));
+
+			assertEquals("Patient/1/_history/2", update.get().getId().getValue());
+			delete.get();
+		}
+
+		assertEquals(1, capt.getAllValues().size());
+		String requestBody = IOUtils.toString(((HttpEntityEnclosingRequestBase) capt.getAllValues().get(0)).getEntity().getContent(), StandardCharsets.UTF_8);
+		Bundle request = ourCtx.newJsonParser().parseResource(Bundle.class, requestBody);
+		assertEquals(Bundle.HTTPVerb.PUT, request.getEntry().get(0).getRequest().getMethod());
+		assertEquals("Patient/1", request.getEntry().get(0).getRequest().getUrl());
+		assertEquals(Bundle.HTTPVerb.DELETE, request.getEntry().get(1).getRequest().getMethod());
+		assertEquals("Patient/2", request.getEntry().get(1).getRequest().getUrl());
+	}
+
+	@Test
+	public void testBatchFailureCompletesAllCalls() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenThrow(new IOException("Connection refused"));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		List<CompletableFuture<Patient>> futures = new ArrayList<>();
+		try (BatchingClient batchingClient = new BatchingClient(client)) {
+			futures.add(batchingClient.read(Patient.class, "1"));
+			futures.add(batchingClient.read(Patient.class, "2"));
+		}
+
+		for (CompletableFuture<Patient> next : futures) {
+			try {
+				next.get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("Connection refused"));
+			}
+		}
+	}
+
+	/**
+	 * Every call accepted before the client was closed must be completed, even if a batch
+	 * fills up while the client is being closed
+	 */
+	@Test
+	public void testCloseWhileSubmitting() throws Exception {
+		when(myHttpClient.execute(any(HttpUriRequest.class))).thenThrow(new IOException("Connection refused"));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		BatchingClient batchingClient = new BatchingClient(client);
+		batchingClient.setMaximumBatchSize(2);
+		batchingClient.setMaximumDelayMillis(60000);
+
+		int threadCount = 4;
+		List<CompletableFuture<Patient>> futures = Collections.synchronizedList(new ArrayList<>());
+		AtomicReference<Throwable> unexpected = new AtomicReference<>();
+		CountDownLatch started = new CountDownLatch(threadCount);
+		ExecutorService submitters = Executors.newFixedThreadPool(threadCount);
+		for (int t = 0; t < threadCount; t++) {
+			submitters.execute(() -> {
+				started.countDown();
+				for (int i = 0; i < 10000; i++) {
+					try {
+						futures.add(batchingClient.read(Patient.class, Integer.toString(i)));
+					} catch (IllegalArgumentException e) {
+						// The client has been closed
+						return;
+					} catch (Throwable e) {
+						unexpected.set(e);
+						return;
+					}
+				}
+			});
+		}
+
+		started.await();
+		batchingClient.close();
+		submitters.shutdown();
+		assertTrue(submitters.awaitTermination(1, TimeUnit.MINUTES));
+
+		assertNull(unexpected.get());
+		for (CompletableFuture<Patient> next : futures) {
+			assertTrue(next.isDone());
+		}
+	}
+
+	private ArgumentCaptor<HttpUriRequest> prepareClientForResponse(Bundle theResponse) throws IOException {
+		String body = ourCtx.newJsonParser().encodeResourceToString(theResponse);
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON_NEW + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(t -> (InputStream) new ReaderInputStream(new StringReader(body), StandardCharsets.UTF_8));
+		return capt;
+	}
+
+}
@@ -0,0 +1,336 @@
+package ca.uhn.fhir.rest.client;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.Create;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.ResourceParam;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.client.api.ClientResiliencePolicy;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.IRestfulClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.test.utilities.JettyUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClientResiliencePolicyR4Test {
+
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static AtomicInteger ourFailuresRemaining = new AtomicInteger();
+	private static AtomicInteger ourRequestCount = new AtomicInteger();
+	private static volatile long ourFirstRequestDelayMillis;
+	private static int ourPort;
+	private static Server ourServer;
+	private IGenericClient myClient;
+
+	@Before
+	public void before() {
+		ourFailuresRemaining.set(0);
+		ourRequestCount.set(0);
+		ourFirstRequestDelayMillis = 0;
+
+		ourCtx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+		myClient = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort);
+	}
+
+	@Test
+	public void testRetryReadOnServiceUnavailable() throws Exception {
+		ClientResiliencePolicy policy = new ClientResiliencePolicy()
+			.setInitialBackoffMillis(10);
+		myClient.setResiliencePolicy(policy);
+
+		ourFailuresRemaining.set(2);
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("123", patient.getIdElement().getIdPart());
+		assertEquals(3, ourRequestCount.get());
+		assertEquals(1, policy.getMetrics().getRequests());
+		assertEquals(3, policy.getMetrics().getAttempts());
+		assertEquals(2, policy.getMetrics().getRetries());
+
+		ourFailuresRemaining.set(1);
+		patient = myClient.read().resource(Patient.class).withId("456").executeAsync().get();
+		assertEquals("456", patient.getIdElement().getIdPart());
+		assertEquals(5, ourRequestCount.get());
+	}
+
+	@Test
+	public void testRetriesExhausted() {
+		myClient.setResiliencePolicy(new ClientResiliencePolicy()
+			.setMaximumAttempts(3)
+			.setInitialBackoffMillis(1)
+			.setCircuitBreakerFailureThreshold(0));
+
+		ourFailuresRemaining.set(100);
+		try {
+			myClient.read().resource(Patient.class).withId("123").execute();
+			fail();
+		} catch (BaseServerResponseException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+		assertEquals(3, ourRequestCount.get());
+	}
+
+	@Test
+	public void testNonIdempotentRequestNotRetried() {
+		ClientResiliencePolicy policy = new ClientResiliencePolicy()
+			.setInitialBackoffMillis(1);
+		myClient.setResiliencePolicy(policy);
+
+		ourFailuresRemaining.set(1);
+		try {
+			myClient.create().resource(new Patient()).execute();
+			fail();
+		} catch (BaseServerResponseException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+		assertEquals(1, ourRequestCount.get());
+
+		policy.setRetryNonIdempotentRequests(true);
+		ourFailuresRemaining.set(1);
+		MethodOutcome outcome = myClient.create().resource(new Patient()).execute();
+		assertEquals("1", outcome.getId().getIdPart());
+		assertEquals(3, ourRequestCount.get());
+	}
+
+	@Test
+	public void testTimeoutBudgetPreventsRetry() {
+		myClient.setResiliencePolicy(new ClientResiliencePolicy()
+			.setInitialBackoffMillis(5000)
+			.setTimeoutBudgetMillis(500));
+
+		ourFailuresRemaining.set(1);
+		try {
+			myClient.read().resource(Patient.class).withId("123").execute();
+			fail();
+		} catch (BaseServerResponseException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+		assertEquals(1, ourRequestCount.get());
+	}
+
+	@Test
+	public void testHedgedRead() {
+		ClientResiliencePolicy policy = new ClientResiliencePolicy()
+			.setHedgeDelayMillis(100);
+		myClient.setResiliencePolicy(policy);
+
+		ourFirstRequestDelayMillis = 3000;
+		long start = System.currentTimeMillis();
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertEquals("123", patient.getIdElement().getIdPart());
+		assertTrue("Took " + elapsed + "ms", elapsed < 2500);
+		assertEquals(1, policy.getMetrics().getHedgedAttempts());
+		assertEquals(1, policy.getMetrics().getHedgeWins());
+		assertEquals(2, policy.getMetrics().getAttempts());
+	}
+
+	@Test
+	public void testCircuitBreaker() throws Exception {
+		ClientResiliencePolicy policy = new ClientResiliencePolicy()
+			.setMaximumAttempts(1)
+			.setCircuitBreakerFailureThreshold(2)
+			.setCircuitBreakerOpenMillis(300);
+		myClient.setResiliencePolicy(policy);
+
+		ourFailuresRemaining.set(100);
+		for (int i = 0; i < 2; i++) {
+			try {
+				myClient.read().resource(Patient.class).withId("123").execute();
+				fail();
+			} catch (BaseServerResponseException e) {
+				assertEquals(503, e.getStatusCode());
+			}
+		}
+		assertTrue(policy.isCircuitOpen("http://localhost:" + ourPort + "/Patient"));
+
+		try {
+			myClient.read().resource(Patient.class).withId("123").execute();
+			fail();
+		} catch (FhirClientConnectionException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Circuit breaker is open"));
+		}
+		assertEquals(2, ourRequestCount.get());
+		assertEquals(1, policy.getMetrics().getCircuitBreakerTrips());
+		assertEquals(1, policy.getMetrics().getCircuitBreakerRejections());
+
+		// Once the breaker has been open long enough, a successful trial request closes it
+		ourFailuresRemaining.set(0);
+		Thread.sleep(400);
+		myClient.read().resource(Patient.class).withId("123").execute();
+		assertFalse(policy.isCircuitOpen("http://localhost:" + ourPort + "/Patient"));
+		assertEquals(3, ourRequestCount.get());
+	}
+
+	@Test
+	public void testAnnotationClient() {
+		IPatientClient client = ourCtx.newRestfulClient(IPatientClient.class, "http://localhost:" + ourPort);
+		ClientResiliencePolicy policy = new ClientResiliencePolicy()
+			.setInitialBackoffMillis(1);
+		client.setResiliencePolicy(policy);
+		assertSame(policy, client.getResiliencePolicy());
+
+		ourFailuresRemaining.set(1);
+		Patient patient = client.read(new IdType("Patient/123"));
+		assertEquals("123", patient.getIdElement().getIdPart());
+		assertEquals(2, ourRequestCount.get());
+		assertEquals(1, policy.getMetrics().getRetries());
+	}
+
+	@Test
+	public void testNoExecutorThreadAvailable() throws Exception {
+		ExecutorService executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.execute(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+
+			ClientResiliencePolicy policy = new ClientResiliencePolicy()
+				.setExecutor(executor)
+				.setHedgeDelayMillis(100);
+			myClient.setResiliencePolicy(policy);
+
+			// Asynchronous requests fail rather than queueing
+			try {
+				myClient.read().resource(Patient.class).withId("123").executeAsync().get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().toString(), e.getCause() instanceof FhirClientConnectionException);
+			}
+			assertEquals(0, ourRequestCount.get());
+
+			// Reads are sent without hedging
+			Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+			assertEquals("123", patient.getIdElement().getIdPart());
+			assertEquals(1, ourRequestCount.get());
+			assertEquals(0, policy.getMetrics().getHedgedAttempts());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testClose() {
+		ClientResiliencePolicy policy = new ClientResiliencePolicy()
+			.setMaximumThreads(2);
+		ExecutorService created = policy.getExecutor();
+		assertEquals(2, ((ThreadPoolExecutor) created).getMaximumPoolSize());
+		policy.close();
+		assertTrue(created.isShutdown());
+
+		// Supplied executors are left running
+		ExecutorService supplied = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+		try {
+			policy.setExecutor(supplied);
+			assertSame(supplied, policy.getExecutor());
+			policy.close();
+			assertFalse(supplied.isShutdown());
+		} finally {
+			supplied.shutdown();
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		JettyUtil.closeServer(ourServer);
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourServer = new Server(0);
+
+		RestfulServer servlet = new RestfulServer(ourCtx) {
+			@Override
+			protected void service(HttpServletRequest theReq, HttpServletResponse theResp) throws ServletException, IOException {
+				if (ourRequestCount.incrementAndGet() == 1 && ourFirstRequestDelayMillis > 0) {
+					try {
+						Thread.sleep(ourFirstRequestDelayMillis);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				if (ourFailuresRemaining.getAndDecrement() > 0) {
+					theResp.setStatus(503);
+					theResp.getWriter().close();
+					return;
+				}
+				super.service(theReq, theResp);
+			}
+		};
+		servlet.setResourceProviders(new DummyPatientResourceProvider());
+
+		ServletHandler proxyHandler = new ServletHandler();
+		proxyHandler.addServletWithMapping(new ServletHolder(servlet), "/*");
+		ourServer.setHandler(proxyHandler);
+		JettyUtil.startServer(ourServer);
+		ourPort = JettyUtil.getPortForStartedServer(ourServer);
+	}
+
+	public interface IPatientClient extends IRestfulClient {
+
+		@Read
+		Patient read(@IdParam IdType theId);
+
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Create
+		public MethodOutcome create(@ResourceParam Patient thePatient) {
+			return new MethodOutcome(new IdType("Patient", "1"));
+		}
+
+		@Override
+		public Class<Patient> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			Patient retVal = new Patient();
+			retVal.setId(theId);
+			return retVal;
+		}
+
+	}
+
+}
@@ -0,0 +1,207 @@
+package ca.uhn.fhir.rest.client;
+
+import ca.uhn.fhir.rest.api.CacheControlDirective;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.interceptor.BearerTokenAuthInterceptor;
+import ca.uhn.fhir.rest.client.interceptor.ClientResponseCachingInterceptor;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.http.Header;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class ClientResponseCachingInterceptorR4Test extends BaseGenericClientR4Test {
+
+	private ArgumentCaptor<HttpUriRequest> myCapt;
+	private int myStatus;
+	private String myBody;
+	private List<Header> myHeaders;
+	private ClientResponseCachingInterceptor myInterceptor;
+	private IGenericClient myClient;
+
+	@Override
+	@Before
+	public void before() {
+		super.before();
+		myInterceptor = new ClientResponseCachingInterceptor();
+		myClient = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		myClient.registerInterceptor(myInterceptor);
+	}
+
+	@Test
+	public void testNotModifiedServedFromCache() throws Exception {
+		prepareClient();
+
+		respondWith(200, "Patient/123", "W/\"1\"", null);
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("123", patient.getIdElement().getIdPart());
+		assertNull(myCapt.getAllValues().get(0).getFirstHeader(Constants.HEADER_IF_NONE_MATCH));
+		assertEquals(1, myInterceptor.getCachedResponseCount());
+
+		respondWith(304, null, null, null);
+		patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("123", patient.getIdElement().getIdPart());
+		assertEquals("W/\"1\"", myCapt.getAllValues().get(1).getFirstHeader(Constants.HEADER_IF_NONE_MATCH).getValue());
+
+		// A changed resource replaces the cached copy
+		respondWith(200, "Patient/456", "W/\"2\"", null);
+		patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("456", patient.getIdElement().getIdPart());
+		assertEquals("W/\"1\"", myCapt.getAllValues().get(2).getFirstHeader(Constants.HEADER_IF_NONE_MATCH).getValue());
+
+		respondWith(304, null, null, null);
+		patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("456", patient.getIdElement().getIdPart());
+		assertEquals("W/\"2\"", myCapt.getAllValues().get(3).getFirstHeader(Constants.HEADER_IF_NONE_MATCH).getValue());
+	}
+
+	@Test
+	public void testCacheKeyIncludesAcceptHeader() throws Exception {
+		prepareClient();
+
+		respondWith(200, "Patient/123", "W/\"1\"", null);
+		myClient.read().resource(Patient.class).withId("123").encodedJson().execute();
+		myClient.read().resource(Patient.class).withId("123").accept(Constants.CT_FHIR_JSON_NEW).execute();
+
+		assertNull(myCapt.getAllValues().get(1).getFirstHeader(Constants.HEADER_IF_NONE_MATCH));
+		assertEquals(2, myInterceptor.getCachedResponseCount());
+	}
+
+	/**
+	 * Clients authenticating as different users may share an interceptor, and the server
+	 * may filter responses per user without changing the ETag
+	 */
+	@Test
+	public void testCacheKeyIncludesAuthorizationHeader() throws Exception {
+		prepareClient();
+		IGenericClient clientA = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		clientA.registerInterceptor(new BearerTokenAuthInterceptor("token-a"));
+		clientA.registerInterceptor(myInterceptor);
+		IGenericClient clientB = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		clientB.registerInterceptor(new BearerTokenAuthInterceptor("token-b"));
+		clientB.registerInterceptor(myInterceptor);
+
+		respondWith(200, "Patient/123", "W/\"1\"", null);
+		clientA.read().resource(Patient.class).withId("123").execute();
+
+		respondWith(200, "Patient/456", "W/\"1\"", null);
+		Patient patient = clientB.read().resource(Patient.class).withId("123").execute();
+		assertNull(myCapt.getAllValues().get(1).getFirstHeader(Constants.HEADER_IF_NONE_MATCH));
+		assertEquals("456", patient.getIdElement().getIdPart());
+		assertEquals(2, myInterceptor.getCachedResponseCount());
+
+		respondWith(304, null, null, null);
+		patient = clientB.read().resource(Patient.class).withId("123").execute();
+		assertEquals("456", patient.getIdElement().getIdPart());
+		patient = clientA.read().resource(Patient.class).withId("123").execute();
+		assertEquals("123", patient.getIdElement().getIdPart());
+	}
+
+	@Test
+	public void testExplicitIfNoneMatchNotModified() throws Exception {
+		prepareClient();
+
+		respondWith(200, "Patient/123", "W/\"1\"", null);
+		myClient.read().resource(Patient.class).withId("123").execute();
+
+		// The caller asked for a 304 to be reported, so the cached copy must not be substituted
+		respondWith(304, null, null, null);
+		Patient patient = myClient.read().resource(Patient.class).withId("123").ifVersionMatches("1").returnNull().execute();
+		assertNull(patient);
+	}
+
+	@Test
+	public void testNoStoreNotCached() throws Exception {
+		prepareClient();
+
+		respondWith(200, "Patient/123", "W/\"1\"", "private, no-store");
+		myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals(0, myInterceptor.getCachedResponseCount());
+
+		respondWith(200, null, "W/\"1\"", null);
+		myBody = ourCtx.newJsonParser().encodeResourceToString(new Bundle());
+		myClient
+			.search()
+			.forResource(Patient.class)
+			.returnBundle(Bundle.class)
+			.cacheControl(new CacheControlDirective().setNoStore(true))
+			.execute();
+		assertEquals(Constants.CACHE_CONTROL_NO_STORE, myCapt.getAllValues().get(1).getFirstHeader(Constants.HEADER_CACHE_CONTROL).getValue());
+		assertEquals(0, myInterceptor.getCachedResponseCount());
+
+		respondWith(200, "Patient/123", null, null);
+		myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals(0, myInterceptor.getCachedResponseCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		prepareClient();
+		myInterceptor.setMaximumEntries(2);
+
+		respondWith(200, "Patient/1", "W/\"1\"", null);
+		myClient.read().resource(Patient.class).withId("1").execute();
+		myClient.read().resource(Patient.class).withId("2").execute();
+		myClient.read().resource(Patient.class).withId("3").execute();
+		assertEquals(2, myInterceptor.getCachedResponseCount());
+
+		myClient.read().resource(Patient.class).withId("1").execute();
+		assertNull(myCapt.getAllValues().get(3).getFirstHeader(Constants.HEADER_IF_NONE_MATCH));
+		myClient.read().resource(Patient.class).withId("3").execute();
+		assertEquals("W/\"1\"", myCapt.getAllValues().get(4).getFirstHeader(Constants.HEADER_IF_NONE_MATCH).getValue());
+
+		myInterceptor.setMaximumTotalSize(1);
+		myClient.read().resource(Patient.class).withId("4").execute();
+		assertEquals(0, myInterceptor.getCachedResponseCount());
+	}
+
+	private void respondWith(int theStatus, String theId, String theETag, String theCacheControl) {
+		myStatus = theStatus;
+		myBody = "";
+		if (theId != null) {
+			Patient patient = new Patient();
+			patient.setId(theId);
+			myBody = ourCtx.newJsonParser().encodeResourceToString(patient);
+		}
+		myHeaders = new ArrayList<>();
+		if (theETag != null) {
+			myHeaders.add(new BasicHeader(Constants.HEADER_ETAG, theETag));
+		}
+		if (theCacheControl != null) {
+			myHeaders.add(new BasicHeader(Constants.HEADER_CACHE_CONTROL, theCacheControl));
+		}
+	}
+
+	private void prepareClient() throws IOException {
+		myCapt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(myCapt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).then(t -> new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), myStatus, "Status"));
+		when(myHttpResponse.getAllHeaders()).then(t -> myHeaders.toArray(new Header[0]));
+		when(myHttpResponse.getHeaders(anyString())).then(t -> myHeaders
+			.stream()
+			.filter(h -> h.getName().equalsIgnoreCase(t.getArgument(0)))
+			.toArray(Header[]::new));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON_NEW + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(t -> (InputStream) new ReaderInputStream(new StringReader(myBody), StandardCharsets.UTF_8));
+	}
+
+}
@@ -21,6 +21,8 @@ import org.junit.*;
 import javax.servlet.http.HttpServletRequest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 import ca.uhn.fhir.test.utilities.JettyUtil;
 
@@ -37,6 +39,8 @@ public class CompressOutgoingContentInterceptorTest {
 	@Before
 	public void before() {
 		ourClient = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort);
+		ourLastReq = null;
+		ourLastPatient = null;
 	}
 
 
@@ -54,6 +58,57 @@ public class CompressOutgoingContentInterceptorTest {
 		assertEquals("gzip", ourLastResponseEncoding);
 	}
 
+	@Test
+	public void testCreateBelowMinimumContentLength() {
+		ourClient.registerInterceptor(new GZipContentInterceptor().setMinimumContentLength(10000));
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY");
+
+		ourClient.create().resource(p).execute();
+
+		assertNull(ourLastReq);
+		assertEquals("FAMILY", ourLastPatient.getName().get(0).getFamily());
+	}
+
+	@Test
+	public void testCreateAboveMinimumContentLength() {
+		ourClient.registerInterceptor(new GZipContentInterceptor().setMinimumContentLength(10000));
+
+		Patient p = new Patient();
+		for (int i = 0; i < 1000; i++) {
+			p.addName().setFamily("FAMILY" + i);
+		}
+
+		ourClient.create().resource(p).execute();
+
+		assertEquals("gzip", ourLastReq);
+		assertEquals(1000, ourLastPatient.getName().size());
+		assertEquals("FAMILY999", ourLastPatient.getName().get(999).getFamily());
+	}
+
+	@Test
+	public void testCreateDeflate() {
+		ourClient.registerInterceptor(new GZipContentInterceptor().setContentEncoding(Constants.ENCODING_DEFLATE));
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY");
+
+		ourClient.create().resource(p).execute();
+
+		assertEquals("deflate", ourLastReq);
+		assertEquals("FAMILY", ourLastPatient.getName().get(0).getFamily());
+	}
+
+	@Test
+	public void testUnsupportedContentEncoding() {
+		try {
+			new GZipContentInterceptor().setContentEncoding("br");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("Unsupported content encoding: br", e.getMessage());
+		}
+	}
 
 	@AfterClass
 	public static void afterClassClearContext() throws Exception {
@@ -0,0 +1,160 @@
+package ca.uhn.fhir.rest.client;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+public class GenericClientAsyncR4Test extends BaseGenericClientR4Test {
+
+	@Test
+	public void testReadAsync() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("Patient/123");
+		patient.setActive(true);
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForResponse(200, ourCtx.newJsonParser().encodeResourceToString(patient));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		CompletableFuture<Patient> future = client
+			.read()
+			.resource(Patient.class)
+			.withId("123")
+			.executeAsync();
+
+		Patient result = future.get();
+		assertEquals("123", result.getIdElement().getIdPart());
+		assertTrue(result.getActive());
+		assertEquals("http://example.com/fhir/Patient/123", capt.getAllValues().get(0).getURI().toASCIIString());
+	}
+
+	@Test
+	public void testReadAsyncNotModified() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForResponse(304, "");
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		Patient result = client
+			.read()
+			.resource(Patient.class)
+			.withId("123")
+			.ifVersionMatches("2").returnNull()
+			.executeAsync()
+			.get();
+
+		assertNull(result);
+		assertEquals("\"2\"", capt.getAllValues().get(0).getFirstHeader(Constants.HEADER_IF_NONE_MATCH).getValue());
+	}
+
+	@Test
+	public void testReadAsyncNotFound() throws Exception {
+		prepareClientForResponse(404, "{\"resourceType\":\"OperationOutcome\"}");
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		CompletableFuture<Patient> future = client
+			.read()
+			.resource(Patient.class)
+			.withId("123")
+			.executeAsync();
+
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(ResourceNotFoundException.class, e.getCause().getClass());
+		}
+	}
+
+	@Test
+	public void testSearchAsync() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForSearchResponse();
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		Bundle result = client
+			.search()
+			.forResource(Patient.class)
+			.where(Patient.NAME.matches().value("SMITH"))
+			.returnBundle(Bundle.class)
+			.executeAsync()
+			.get();
+
+		assertEquals(1, result.getEntry().size());
+		assertEquals("http://example.com/fhir/Patient?name=SMITH", capt.getAllValues().get(0).getURI().toASCIIString());
+	}
+
+	@Test
+	public void testTransactionAsync() throws Exception {
+		Bundle response = new Bundle();
+		response.setType(Bundle.BundleType.TRANSACTIONRESPONSE);
+		response.addEntry().getResponse().setStatus("201 Created");
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForResponse(200, ourCtx.newJsonParser().encodeResourceToString(response));
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		input.addEntry().setResource(new Patient()).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		Bundle result = client
+			.transaction()
+			.withBundle(input)
+			.executeAsync()
+			.get();
+
+		assertEquals("201 Created", result.getEntryFirstRep().getResponse().getStatus());
+		assertEquals("http://example.com/fhir", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("POST", capt.getAllValues().get(0).getMethod());
+	}
+
+	@Test
+	public void testOperationAsyncWrapsNonParametersResponse() throws Exception {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForResponse(200, ourCtx.newJsonParser().encodeResourceToString(patient));
+
+		Parameters input = new Parameters();
+		input.addParameter().setName("name").setValue(new StringType("value"));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		Parameters result = client
+			.operation()
+			.onType(Patient.class)
+			.named("everything")
+			.withParameters(input)
+			.executeAsync()
+			.get();
+
+		assertTrue(((Patient) result.getParameterFirstRep().getResource()).getActive());
+		assertEquals("http://example.com/fhir/Patient/$everything", capt.getAllValues().get(0).getURI().toASCIIString());
+	}
+
+	private ArgumentCaptor<HttpUriRequest> prepareClientForResponse(int theStatus, String theBody) throws IOException {
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), theStatus, "Status"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON_NEW + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(t -> (InputStream) new ReaderInputStream(new StringReader(theBody), StandardCharsets.UTF_8));
+		return capt;
+	}
+
+}
@@ -50,6 +50,7 @@ import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
@@ -60,13 +61,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.startsWith;
@@ -1039,6 +1045,66 @@ public class GenericClientR4Test extends BaseGenericClientR4Test {
 		assertEquals("http://example.com/fhir/$opname", capt.getAllValues().get(0).getURI().toASCIIString());
 	}
 
+	@Test
+	public void testOperationAsStream() throws Exception {
+		final byte[] respBytes = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 100};
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", "application/weird-numbers"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(t -> new ByteArrayInputStream(respBytes));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		byte[] result = client
+			.operation()
+			.onInstance(new IdType("DocumentReference/123"))
+			.named("$binary-access-read")
+			.withParameter(Parameters.class, "path", new StringType("DocumentReference.content.attachment"))
+			.useHttpGet()
+			.executeAsStream((contentType, content) -> {
+				assertEquals("application/weird-numbers", contentType);
+				return IOUtils.toByteArray(content);
+			});
+
+		assertArrayEquals(respBytes, result);
+		assertEquals("http://example.com/fhir/DocumentReference/123/$binary-access-read?path=DocumentReference.content.attachment", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("*/*", capt.getAllValues().get(0).getFirstHeader(Constants.HEADER_ACCEPT).getValue());
+	}
+
+	@Test
+	public void testReadAsStream() throws Exception {
+		final byte[] respBytes = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 100};
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", "image/png"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(t -> new ByteArrayInputStream(respBytes));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		byte[] result = client
+			.read()
+			.resource(Binary.class)
+			.withId("123")
+			.executeAsStream((contentType, content) -> {
+				assertEquals("image/png", contentType);
+				return IOUtils.toByteArray(content);
+			});
+		assertArrayEquals(respBytes, result);
+		assertEquals("http://example.com/fhir/Binary/123", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("*/*", capt.getAllValues().get(0).getFirstHeader(Constants.HEADER_ACCEPT).getValue());
+
+		// An explicit Accept header is respected
+		client
+			.read()
+			.resource(Binary.class)
+			.withId("123")
+			.accept("image/*")
+			.executeAsStream((contentType, content) -> IOUtils.toByteArray(content));
+		assertEquals("image/*", capt.getAllValues().get(1).getFirstHeader(Constants.HEADER_ACCEPT).getValue());
+	}
+
 	@Test
 	public void testOperationType() throws Exception {
 		IParser p = ourCtx.newXmlParser();
@@ -1844,6 +1910,82 @@ public class GenericClientR4Test extends BaseGenericClientR4Test {
 
 	}
 
+	@Test
+	public void testSearchIteratePages() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForPagedSearchResponse(3);
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		Iterator<Bundle> pages = client
+			.search()
+			.forResource(Patient.class)
+			.where(Patient.NAME.matches().value("SMITH"))
+			.returnBundle(Bundle.class)
+			.encodedJson()
+			.executeAndIteratePages();
+
+		List<String> ids = new ArrayList<>();
+		while (pages.hasNext()) {
+			Bundle page = pages.next();
+			ids.add(page.getEntryFirstRep().getResource().getIdElement().getIdPart());
+		}
+		assertEquals(Arrays.asList("0", "1", "2"), ids);
+
+		assertEquals(3, capt.getAllValues().size());
+		assertEquals("http://example.com/fhir/Patient?name=SMITH&_format=json", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("http://example.com/fhir?_getpages=abc&_getpagesoffset=1", capt.getAllValues().get(1).getURI().toASCIIString());
+		assertEquals("http://example.com/fhir?_getpages=abc&_getpagesoffset=2", capt.getAllValues().get(2).getURI().toASCIIString());
+
+		try {
+			pages.next();
+			fail();
+		} catch (NoSuchElementException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testSearchStreamResources() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForPagedSearchResponse(3);
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		List<String> ids = client
+			.search()
+			.forResource(Patient.class)
+			.returnBundle(Bundle.class)
+			.executeAndStreamResources()
+			.map(t -> t.getIdElement().getIdPart())
+			.collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("0", "1", "2"), ids);
+		assertEquals(3, capt.getAllValues().size());
+	}
+
+	/**
+	 * Responds to a search, and to each subsequent page request, with a page containing a single
+	 * patient whose ID is the page number. All but the last page have a <code>next</code> link.
+	 */
+	private ArgumentCaptor<HttpUriRequest> prepareClientForPagedSearchResponse(int thePageCount) throws IOException {
+		AtomicReference<String> body = new AtomicReference<>();
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenAnswer(t -> {
+			String uri = ((HttpUriRequest) t.getArguments()[0]).getURI().toASCIIString();
+			int pageIndex = uri.contains("_getpagesoffset=") ? Integer.parseInt(uri.replaceAll(".*_getpagesoffset=([0-9]+).*", "$1")) : 0;
+
+			Bundle page = new Bundle();
+			page.setType(BundleType.SEARCHSET);
+			page.addEntry().setResource(new Patient().setId("Patient/" + pageIndex));
+			if (pageIndex + 1 < thePageCount) {
+				page.addLink().setRelation(Constants.LINK_NEXT).setUrl("http://example.com/fhir?_getpages=abc&_getpagesoffset=" + (pageIndex + 1));
+			}
+			body.set(ourCtx.newJsonParser().encodeResourceToString(page));
+			return myHttpResponse;
+		});
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON_NEW + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(t -> new ReaderInputStream(new StringReader(body.get()), StandardCharsets.UTF_8));
+		return capt;
+	}
+
 	@Test
 	public void testSearchWithMap() throws Exception {
 		String msg = "{\"resourceType\":\"Bundle\",\"id\":null,\"base\":\"http://localhost:57931/fhir/contextDev\",\"total\":1,\"link\":[{\"relation\":\"self\",\"url\":\"http://localhost:57931/fhir/contextDev/Patient?identifier=urn%3AMultiFhirVersionTest%7CtestSubmitPatient01&_format=json\"}],\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\",\"meta\":{\"versionId\":\"1\",\"lastUpdated\":\"2014-12-20T18:41:29.706-05:00\"},\"identifier\":[{\"system\":\"urn:MultiFhirVersionTest\",\"value\":\"testSubmitPatient01\"}]}}]}";
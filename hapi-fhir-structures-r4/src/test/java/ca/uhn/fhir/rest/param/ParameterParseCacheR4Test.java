@@ -0,0 +1,99 @@
+package ca.uhn.fhir.rest.param;
+
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import ca.uhn.fhir.util.TestUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParameterParseCacheR4Test {
+
+	private TimeZone myDefaultTimeZone = TimeZone.getDefault();
+
+	@After
+	public void after() {
+		TimeZone.setDefault(myDefaultTimeZone);
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+		ParameterParseCache<String> cache = new ParameterParseCache<>(3);
+		for (int i = 0; i < 10; i++) {
+			assertEquals("v" + i, cache.get("k" + i, t -> "v" + t.substring(1)));
+			assertTrue(cache.size() <= 3);
+		}
+		assertEquals("v9", cache.get("k9", t -> "not cached"));
+	}
+
+	@Test
+	public void testCachedDateValuesAreNotShared() {
+		DateParam first = new DateParam("ge2020-01-02T10:11:12Z");
+		DateParam second = new DateParam("lt2020-01-02T10:11:12Z");
+		assertEquals(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, first.getPrefix());
+		assertEquals(ParamPrefixEnum.LESSTHAN, second.getPrefix());
+		assertEquals(first.getValue(), second.getValue());
+		assertEquals(TemporalPrecisionEnum.SECOND, second.getPrecision());
+
+		first.getValue().setTime(0);
+		assertEquals(second.getValue(), first.getValue());
+
+		first.setValue(new Date(0));
+		assertEquals(0, first.getValue().getTime());
+		assertEquals("2020-01-02T10:11:12Z", second.getValueAsString());
+		assertEquals("2020-01-02T10:11:12Z", new DateParam("2020-01-02T10:11:12Z").getValueAsString());
+	}
+
+	@Test
+	public void testCachedDateValuesRespectDefaultTimeZone() {
+		TimeZone.setDefault(TimeZone.getTimeZone("America/Toronto"));
+		Date toronto = new DateParam("2020-01-02").getValue();
+		TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+		Date tokyo = new DateParam("2020-01-02").getValue();
+		assertNotEquals(toronto, tokyo);
+	}
+
+	@Test
+	public void testInvalidDateNotCached() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				new DateParam("2020-13-01");
+				fail();
+			} catch (Exception e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("2020-13-01"));
+			}
+		}
+	}
+
+	@Test
+	public void testReferenceParam() {
+		ReferenceParam param = new ReferenceParam("http://example.com/fhir/Patient/123");
+		assertEquals("http://example.com/fhir", param.getBaseUrl());
+		assertEquals("Patient", param.getResourceType());
+		assertEquals("123", param.getIdPart());
+
+		param = new ReferenceParam("Patient/123");
+		assertNull(param.getBaseUrl());
+		assertEquals("Patient", param.getResourceType());
+
+		param = new ReferenceParam();
+		param.setValueAsQueryToken(null, null, ":Patient", "Patient/123");
+		assertEquals("123", param.getIdPart());
+		param.setValueAsQueryToken(null, null, ":Observation", "Patient/123");
+		assertEquals("Patient/123", param.getIdPart());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -0,0 +1,419 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.rest.server.servlet.AsyncRequestExecutorFactory;
+import ca.uhn.fhir.test.utilities.JettyUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncRequestR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(AsyncRequestR4Test.class);
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static ExecutorService ourExecutor;
+	private static List<String> ourMdcRequestIds = Collections.synchronizedList(new ArrayList<>());
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+	private static CountDownLatch ourProcessingCompletedLatch;
+	private static CountDownLatch ourSlowReadLatch;
+	private static List<String> ourSlowResponseCalls = Collections.synchronizedList(new ArrayList<>());
+	private static List<String> ourThreadNames = Collections.synchronizedList(new ArrayList<>());
+
+	@Before
+	public void before() {
+		ourThreadNames.clear();
+		ourMdcRequestIds.clear();
+	}
+
+	@Test
+	public void testReadProcessedOnExecutorThread() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/123");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseContent);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertThat(responseContent, containsString("\"id\":\"123\""));
+		}
+
+		// Pre-handled hook, provider method, outgoing response hook
+		assertEquals(ourThreadNames.toString(), 3, ourThreadNames.size());
+		for (String next : ourThreadNames) {
+			assertThat(next, startsWith("fhir-request-"));
+		}
+		assertEquals(1, ourThreadNames.stream().distinct().count());
+	}
+
+	@Test
+	public void testExceptionReturnedFromExecutorThread() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/999");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseContent);
+			assertEquals(404, status.getStatusLine().getStatusCode());
+			assertThat(responseContent, containsString("Patient/999 is not known"));
+		}
+	}
+
+	@Test
+	public void testMdcPropagatedToExecutorThread() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/123");
+		httpGet.addHeader(MdcFilter.REQUEST_ID_HEADER, "abc-123");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+		}
+
+		assertEquals(Collections.singletonList("abc-123"), ourMdcRequestIds);
+		assertThat(ourThreadNames.get(0), startsWith("fhir-request-"));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ourServlet.setAsyncRequestTimeoutMillis(500);
+		ourSlowReadLatch = new CountDownLatch(1);
+		try {
+			HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/slow");
+			try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+				assertEquals(503, status.getStatusLine().getStatusCode());
+			}
+		} finally {
+			ourSlowReadLatch.countDown();
+			ourServlet.setAsyncRequestTimeoutMillis(0);
+		}
+	}
+
+	/**
+	 * The container may recycle the response once the timeout has completed the request, so
+	 * the processing thread must not write anything to it after that
+	 */
+	@Test
+	public void testResponseNotWrittenByProcessingThreadAfterTimeout() throws Exception {
+		ourServlet.setAsyncRequestTimeoutMillis(500);
+		ourSlowReadLatch = new CountDownLatch(1);
+		ourProcessingCompletedLatch = new CountDownLatch(1);
+		ourSlowResponseCalls.clear();
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/slow");
+		httpGet.addHeader(SlowResponseRecordingFilter.RECORD_HEADER, "true");
+		try {
+			try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+				assertEquals(503, status.getStatusLine().getStatusCode());
+			}
+
+			// The read now fails with a 404, which would be written to the response
+			ourSlowReadLatch.countDown();
+			assertTrue(ourProcessingCompletedLatch.await(10, TimeUnit.SECONDS));
+		} finally {
+			ourSlowReadLatch.countDown();
+			ourServlet.setAsyncRequestTimeoutMillis(0);
+		}
+
+		ourLog.info("Response calls: {}", ourSlowResponseCalls);
+		int timeoutIndex = ourSlowResponseCalls.indexOf("sendError 503");
+		assertTrue(ourSlowResponseCalls.toString(), timeoutIndex >= 0);
+		assertEquals(ourSlowResponseCalls.toString(), timeoutIndex, ourSlowResponseCalls.size() - 1);
+
+		// The server still responds normally afterwards
+		httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/123");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertThat(responseContent, containsString("\"id\":\"123\""));
+		}
+	}
+
+	@Test
+	public void testPlatformThreadExecutorQueueIsBounded() throws Exception {
+		ExecutorService executor = AsyncRequestExecutorFactory.newPlatformThreadExecutor(1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.execute(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+
+			// Queued behind the running task
+			executor.execute(() -> {
+			});
+
+			try {
+				executor.execute(() -> {
+				});
+				fail();
+			} catch (RejectedExecutionException e) {
+				// good
+			}
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		JettyUtil.closeServer(ourServer);
+		ourExecutor.shutdown();
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourServer = new Server(0);
+		ourExecutor = AsyncRequestExecutorFactory.newPlatformThreadExecutor(2);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setDefaultResponseEncoding(EncodingEnum.JSON);
+		ourServlet.registerProvider(new DummyPatientResourceProvider());
+		ourServlet.registerInterceptor(new ThreadRecordingInterceptor());
+		ourServlet.setAsyncRequestExecutor(ourExecutor);
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		servletHolder.setAsyncSupported(true);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		FilterHolder filterHolder = new FilterHolder(new MdcFilter());
+		filterHolder.setAsyncSupported(true);
+		proxyHandler.addFilterWithMapping(filterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
+		FilterHolder recordingFilterHolder = new FilterHolder(new SlowResponseRecordingFilter());
+		recordingFilterHolder.setAsyncSupported(true);
+		proxyHandler.addFilterWithMapping(recordingFilterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
+		ourServer.setHandler(proxyHandler);
+		JettyUtil.startServer(ourServer);
+		ourPort = JettyUtil.getPortForStartedServer(ourServer);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	/**
+	 * Sets an MDC entry on the container thread, the way a logging filter would
+	 */
+	public static class MdcFilter implements Filter {
+
+		static final String REQUEST_ID_HEADER = "X-Test-Request-Id";
+		static final String MDC_KEY = "requestId";
+
+		@Override
+		public void init(FilterConfig theFilterConfig) {
+			// nothing
+		}
+
+		@Override
+		public void doFilter(ServletRequest theRequest, ServletResponse theResponse, FilterChain theChain) throws IOException, ServletException {
+			String requestId = ((HttpServletRequest) theRequest).getHeader(REQUEST_ID_HEADER);
+			if (requestId != null) {
+				MDC.put(MDC_KEY, requestId);
+			}
+			try {
+				theChain.doFilter(theRequest, theResponse);
+			} finally {
+				MDC.remove(MDC_KEY);
+			}
+		}
+
+		@Override
+		public void destroy() {
+			// nothing
+		}
+
+	}
+
+	/**
+	 * Records the calls made to the response of requests with a {@link #RECORD_HEADER} header
+	 */
+	public static class SlowResponseRecordingFilter implements Filter {
+
+		static final String RECORD_HEADER = "X-Test-Record";
+
+		@Override
+		public void init(FilterConfig theFilterConfig) {
+			// nothing
+		}
+
+		@Override
+		public void doFilter(ServletRequest theRequest, ServletResponse theResponse, FilterChain theChain) throws IOException, ServletException {
+			ServletResponse response = theResponse;
+			if (((HttpServletRequest) theRequest).getHeader(RECORD_HEADER) != null) {
+				response = new RecordingResponse((HttpServletResponse) theResponse);
+			}
+			theChain.doFilter(theRequest, response);
+		}
+
+		@Override
+		public void destroy() {
+			// nothing
+		}
+
+	}
+
+	private static class RecordingResponse extends HttpServletResponseWrapper {
+
+		RecordingResponse(HttpServletResponse theResponse) {
+			super(theResponse);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			ourSlowResponseCalls.add("getOutputStream");
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			ourSlowResponseCalls.add("getWriter");
+			return super.getWriter();
+		}
+
+		@Override
+		public void setStatus(int theStatus) {
+			ourSlowResponseCalls.add("setStatus " + theStatus);
+			super.setStatus(theStatus);
+		}
+
+		@Override
+		public void sendError(int theStatus) throws IOException {
+			ourSlowResponseCalls.add("sendError " + theStatus);
+			super.sendError(theStatus);
+		}
+
+		@Override
+		public void setHeader(String theName, String theValue) {
+			ourSlowResponseCalls.add("setHeader " + theName);
+			super.setHeader(theName, theValue);
+		}
+
+		@Override
+		public void addHeader(String theName, String theValue) {
+			ourSlowResponseCalls.add("addHeader " + theName);
+			super.addHeader(theName, theValue);
+		}
+
+		@Override
+		public void setContentType(String theType) {
+			ourSlowResponseCalls.add("setContentType " + theType);
+			super.setContentType(theType);
+		}
+
+	}
+
+	@Interceptor
+	public static class ThreadRecordingInterceptor {
+
+		@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+		public void processingCompleted(RequestDetails theRequestDetails) {
+			// The request itself can't be used here, since it is recycled once a timeout completes it
+			if (theRequestDetails.getUserData().containsKey(SlowResponseRecordingFilter.RECORD_HEADER)) {
+				ourProcessingCompletedLatch.countDown();
+			}
+		}
+
+		@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+		public void preHandled(RequestDetails theRequestDetails) {
+			ourThreadNames.add(Thread.currentThread().getName());
+			if (theRequestDetails.getHeader(SlowResponseRecordingFilter.RECORD_HEADER) != null) {
+				theRequestDetails.getUserData().put(SlowResponseRecordingFilter.RECORD_HEADER, Boolean.TRUE);
+			}
+		}
+
+		@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+		public void outgoingResponse() {
+			ourThreadNames.add(Thread.currentThread().getName());
+		}
+
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			ourThreadNames.add(Thread.currentThread().getName());
+			String mdcRequestId = MDC.get(MdcFilter.MDC_KEY);
+			if (mdcRequestId != null) {
+				ourMdcRequestIds.add(mdcRequestId);
+			}
+			if ("slow".equals(theId.getIdPart())) {
+				try {
+					ourSlowReadLatch.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (!"123".equals(theId.getIdPart())) {
+				throw new ResourceNotFoundException(theId);
+			}
+			Patient retVal = new Patient();
+			retVal.setId(theId);
+			retVal.setActive(true);
+			return retVal;
+		}
+
+	}
+
+}
@@ -0,0 +1,205 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentMemoryPagingProviderTest {
+
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private ServletRequestDetails myRequestDetails;
+
+	@Before
+	public void before() {
+		RestfulServer server = new RestfulServer(ourCtx);
+		myRequestDetails = new ServletRequestDetails(null);
+		myRequestDetails.setServer(server);
+	}
+
+	@Test
+	public void testOldestEvictedWhenMaximumWeightExceeded() {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setEstimatedBytesPerResource(100);
+		provider.setMaximumWeight(1000);
+
+		String first = provider.storeResultList(myRequestDetails, createProvider(4));
+		String second = provider.storeResultList(myRequestDetails, createProvider(4));
+		assertEquals(800, provider.getTotalWeight());
+
+		String third = provider.storeResultList(myRequestDetails, createProvider(4));
+		assertNull(provider.retrieveResultList(myRequestDetails, first));
+		assertNotNull(provider.retrieveResultList(myRequestDetails, second));
+		assertNotNull(provider.retrieveResultList(myRequestDetails, third));
+		assertEquals(800, provider.getTotalWeight());
+		assertEquals(2, provider.getStoredResultListCount());
+	}
+
+	@Test
+	public void testJustStoredResultListNeverEvicted() {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setEstimatedBytesPerResource(100);
+		provider.setMaximumWeight(1000);
+
+		String small = provider.storeResultList(myRequestDetails, createProvider(2));
+		IBundleProvider large = createProvider(50);
+		String largeKey = provider.storeResultList(myRequestDetails, large);
+
+		assertNull(provider.retrieveResultList(myRequestDetails, small));
+		assertSame(large, provider.retrieveResultList(myRequestDetails, largeKey));
+		assertEquals(5000, provider.getTotalWeight());
+	}
+
+	@Test
+	public void testMaximumSize() {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setMaximumSize(2);
+
+		String first = provider.storeResultList(myRequestDetails, createProvider(1));
+		String second = provider.storeResultList(myRequestDetails, createProvider(1));
+		String third = provider.storeResultList(myRequestDetails, createProvider(1));
+
+		assertNull(provider.retrieveResultList(myRequestDetails, first));
+		assertNotNull(provider.retrieveResultList(myRequestDetails, second));
+		assertNotNull(provider.retrieveResultList(myRequestDetails, third));
+		assertEquals(2, provider.getStoredResultListCount());
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setExpiryMillis(50);
+
+		String key = provider.storeResultList(myRequestDetails, createProvider(1));
+		assertNotNull(provider.retrieveResultList(myRequestDetails, key));
+
+		Thread.sleep(100);
+		assertNull(provider.retrieveResultList(myRequestDetails, key));
+		assertEquals(0, provider.getStoredResultListCount());
+		assertEquals(0, provider.getTotalWeight());
+	}
+
+	@Test
+	public void testCustomWeigher() {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setWeigher(t -> 7);
+
+		provider.storeResultList(myRequestDetails, createProvider(100));
+		provider.storeResultList(myRequestDetails, createProvider(100));
+		assertEquals(14, provider.getTotalWeight());
+	}
+
+	@Test
+	public void testConcurrentStoreAndRetrieve() throws Exception {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setEstimatedBytesPerResource(1);
+		provider.setMaximumWeight(100);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 500; j++) {
+						IBundleProvider list = createProvider(1);
+						String key = provider.storeResultList(myRequestDetails, list);
+						IBundleProvider retrieved = provider.retrieveResultList(myRequestDetails, key);
+						if (retrieved != null) {
+							assertSame(list, retrieved);
+						}
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(provider.getTotalWeight() <= 100 + 8);
+		assertEquals(provider.getStoredResultListCount(), provider.getTotalWeight());
+	}
+
+	@Test
+	public void testOffHeapSpill() {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setEstimatedBytesPerResource(100);
+		provider.setOffHeapSpillThreshold(1000);
+
+		List<IBaseResource> resources = createResources(20);
+		ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((Patient) resources.get(3), BundleEntrySearchModeEnum.INCLUDE.getCode());
+		SimpleBundleProvider original = new SimpleBundleProvider(resources, "my-uuid");
+		original.setPreferredPageSize(7);
+
+		String key = provider.storeResultList(myRequestDetails, original);
+		IBundleProvider retrieved = provider.retrieveResultList(myRequestDetails, key);
+		assertTrue(retrieved instanceof OffHeapBundleProvider);
+		assertEquals(((OffHeapBundleProvider) retrieved).getOffHeapBytes(), provider.getTotalWeight());
+		assertEquals(20, retrieved.size().intValue());
+		assertEquals("my-uuid", retrieved.getUuid());
+		assertEquals(7, retrieved.preferredPageSize().intValue());
+
+		List<IBaseResource> page = retrieved.getResources(2, 5);
+		assertEquals(3, page.size());
+		assertEquals("Patient/2", page.get(0).getIdElement().getValue());
+		assertEquals("Family 4", ((Patient) page.get(2)).getNameFirstRep().getFamily());
+		assertEquals(BundleEntrySearchModeEnum.INCLUDE.getCode(), ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get((Patient) page.get(1)));
+		assertNull(ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get((Patient) page.get(0)));
+
+		assertEquals(2, retrieved.getResources(18, 50).size());
+	}
+
+	@Test
+	public void testOffHeapSpillNotUsedForSubclasses() {
+		ConcurrentMemoryPagingProvider provider = new ConcurrentMemoryPagingProvider();
+		provider.setOffHeapSpillThreshold(1);
+
+		IBundleProvider lazy = new SimpleBundleProvider(createResources(5)) {
+			// e.g. a provider which loads resources lazily
+		};
+		String key = provider.storeResultList(myRequestDetails, lazy);
+		assertSame(lazy, provider.retrieveResultList(myRequestDetails, key));
+	}
+
+	private static SimpleBundleProvider createProvider(int theSize) {
+		return new SimpleBundleProvider(createResources(theSize));
+	}
+
+	private static List<IBaseResource> createResources(int theSize) {
+		List<IBaseResource> resources = new ArrayList<>();
+		for (int i = 0; i < theSize; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/" + i);
+			patient.addName().setFamily("Family " + i);
+			resources.add(patient);
+		}
+		return resources;
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -0,0 +1,199 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.test.utilities.JettyUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PreEncodedResourceR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(PreEncodedResourceR4Test.class);
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+	private static boolean ourLastRequestPassThroughPossible;
+
+	@Before
+	public void before() {
+		ourServlet.setPreEncodedResourcePassThrough(true);
+		ourLastRequestPassThroughPossible = false;
+	}
+
+	@After
+	public void after() {
+		ourServlet.setPreEncodedResourcePassThrough(false);
+	}
+
+	@Test
+	public void testPreEncodedJsonMatchesNormalEncoding() throws Exception {
+		String response = executeGet("/Patient/123?_format=json");
+		assertTrue(ourLastRequestPassThroughPossible);
+
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(createFullPatient()), response);
+	}
+
+	@Test
+	public void testVersionedRead() throws Exception {
+		String response = executeGet("/Patient/123/_history/3?_format=json");
+		assertTrue(ourLastRequestPassThroughPossible);
+		assertThat(response, containsString("\"meta\":{\"versionId\":\"3\",\"lastUpdated\":\"2020-01-02T10:11:12.000+00:00\"}"));
+	}
+
+	@Test
+	public void testNotPossibleWithSummaryOrPrettyOrXml() throws Exception {
+		String expectedXml = ourCtx.newXmlParser().encodeResourceToString(createFullPatient());
+
+		assertEquals(expectedXml, executeGet("/Patient/123?_format=xml"));
+		assertFalse(ourLastRequestPassThroughPossible);
+
+		assertThat(executeGet("/Patient/123?_format=json&_pretty=true"), containsString("\n"));
+		assertFalse(ourLastRequestPassThroughPossible);
+
+		String summary = executeGet("/Patient/123?_format=json&_elements=gender");
+		assertFalse(ourLastRequestPassThroughPossible);
+		assertThat(summary, containsString("SUBSETTED"));
+		assertFalse(summary.contains("Simpson"));
+	}
+
+	@Test
+	public void testNotPossibleWithOutgoingResponseInterceptor() throws Exception {
+		OutgoingResponseInterceptor interceptor = new OutgoingResponseInterceptor();
+		ourServlet.registerInterceptor(interceptor);
+		try {
+			String response = executeGet("/Patient/123?_format=json");
+			assertFalse(ourLastRequestPassThroughPossible);
+			assertEquals(ourCtx.newJsonParser().encodeResourceToString(createFullPatient()), response);
+		} finally {
+			ourServlet.unregisterInterceptor(interceptor);
+		}
+	}
+
+	@Test
+	public void testNotPossibleWhenDisabled() throws Exception {
+		ourServlet.setPreEncodedResourcePassThrough(false);
+		executeGet("/Patient/123?_format=json");
+		assertFalse(ourLastRequestPassThroughPossible);
+	}
+
+	private String executeGet(String thePath) throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + thePath);
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseContent);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			return responseContent;
+		}
+	}
+
+	private static Patient createFullPatient() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123/_history/3");
+		patient.getMeta().setVersionId("3");
+		patient.getMeta().setLastUpdatedElement(new InstantType("2020-01-02T10:11:12.000+00:00"));
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		return patient;
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		JettyUtil.closeServer(ourServer);
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourServer = new Server(0);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.registerProvider(new DummyPatientResourceProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		JettyUtil.startServer(ourServer);
+		ourPort = JettyUtil.getPortForStartedServer(ourServer);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	@Interceptor
+	public static class OutgoingResponseInterceptor {
+
+		@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+		public void outgoingResponse() {
+			// nothing
+		}
+
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		/**
+		 * Behaves like the JPA server, which stores resources without their ID and metadata
+		 */
+		@Read(version = true)
+		public Patient read(@IdParam IdType theId, RequestDetails theRequestDetails) {
+			Patient patient = createFullPatient();
+
+			Patient stored = patient.copy();
+			stored.setIdElement(null);
+			stored.setMeta(null);
+			IdType id = patient.getIdElement();
+			String storedJson = ourCtx.newJsonParser().setDontEncodeElements(Collections.singleton("*.meta")).encodeResourceToString(stored);
+
+			Patient hollow = new Patient();
+			hollow.setId(id);
+			hollow.setMeta(patient.getMeta());
+			RestfulServerUtils.setPreEncodedJson(hollow, storedJson);
+
+			ourLastRequestPassThroughPossible = RestfulServerUtils.isPreEncodedJsonResponsePossible(theRequestDetails);
+			return hollow;
+		}
+
+	}
+
+}
@@ -1,13 +1,20 @@
 package ca.uhn.fhir.rest.server;
 
 import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.annotation.History;
+import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.IncludeParam;
+import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
+import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.SearchStyleEnum;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import com.google.common.collect.Lists;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.StringType;
 import org.junit.Test;
@@ -143,7 +150,65 @@ public class ServerMethodSelectionR4Test extends BaseR4ServerTest {
 		assertEquals(1, results.getEntry().size());
 	}
 
+	/**
+	 * Requests are routed using an index of the request type and operation
+	 * supported by each method, make sure each one still lands in the right place
+	 */
+	@Test
+	public void testRouteToMethodByRequestTypeAndOperation() throws Exception {
+
+		class MyProvider extends MyBaseProvider {
+			@Read(version = true)
+			public Patient read(@IdParam IdType theId) {
+				return (Patient) new Patient().setActive(true).setId(theId.withVersion("2"));
+			}
 
+			@Search
+			public List<IBaseResource> search(@OptionalParam(name = "name") StringType theName) {
+				return Lists.newArrayList(new Patient().setActive(true).setId("Patient/search"));
+			}
+
+			@History
+			public List<IBaseResource> history(@IdParam IdType theId) {
+				return Lists.newArrayList(new Patient().setActive(true).setId("Patient/history"));
+			}
+
+			@Operation(name = "$foo", idempotent = true)
+			public Parameters foo(@IdParam IdType theId) {
+				Parameters retVal = new Parameters();
+				retVal.addParameter().setName("id").setValue(new StringType(theId.getIdPart()));
+				return retVal;
+			}
+		}
+		MyProvider provider = new MyProvider();
+
+		startServer(provider);
+
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("123", patient.getIdElement().getIdPart());
+
+		patient = myClient.read().resource(Patient.class).withIdAndVersion("123", "2").execute();
+		assertEquals("2", patient.getIdElement().getVersionIdPart());
+
+		Bundle results = myClient.search().forResource(Patient.class).returnBundle(Bundle.class).execute();
+		assertEquals("search", results.getEntryFirstRep().getResource().getIdElement().getIdPart());
+
+		results = myClient.search().forResource(Patient.class).usingStyle(SearchStyleEnum.POST).returnBundle(Bundle.class).execute();
+		assertEquals("search", results.getEntryFirstRep().getResource().getIdElement().getIdPart());
+
+		results = myClient.history().onInstance(new IdType("Patient/123")).returnBundle(Bundle.class).execute();
+		assertEquals("history", results.getEntryFirstRep().getResource().getIdElement().getIdPart());
+
+		Parameters outcome = myClient.operation().onInstance(new IdType("Patient/123")).named("$foo").withNoParameters(Parameters.class).useHttpGet().execute();
+		assertEquals("123", outcome.getParameterFirstRep().getValue().primitiveValue());
+
+		try {
+			myClient.operation().onInstance(new IdType("Patient/123")).named("$bar").withNoParameters(Parameters.class).execute();
+			fail();
+		} catch (InvalidRequestException e) {
+			assertThat(e.getMessage(), containsString("Invalid request: The FHIR endpoint on this server does not know how to handle POST operation[Patient/123/$bar]"));
+		}
+	}
 
 	public static class MyBaseProvider implements IResourceProvider {
 
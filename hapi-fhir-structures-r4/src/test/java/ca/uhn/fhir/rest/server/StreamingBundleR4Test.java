@@ -0,0 +1,190 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.test.utilities.JettyUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class StreamingBundleR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(StreamingBundleR4Test.class);
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+	private static List<String> ourRequestedRanges = Collections.synchronizedList(new ArrayList<>());
+
+	@Before
+	public void before() {
+		ourRequestedRanges.clear();
+		ourServlet.setStreamBundleResponses(true);
+	}
+
+	@After
+	public void after() {
+		ourServlet.setStreamBundleResponses(false);
+	}
+
+	@Test
+	public void testStreamedResponseMatchesMaterializedResponse() throws Exception {
+		String url = "http://localhost:" + ourPort + "/Patient?_format=json&_count=120";
+
+		Bundle streamed = executeSearch(url);
+		assertThat(ourRequestedRanges, contains("0-50", "50-100", "100-120"));
+
+		ourRequestedRanges.clear();
+		ourServlet.setStreamBundleResponses(false);
+		Bundle materialized = executeSearch(url);
+		assertThat(ourRequestedRanges, contains("0-120"));
+
+		assertEquals(Bundle.BundleType.SEARCHSET, streamed.getType());
+		assertEquals(materialized.getTotal(), streamed.getTotal());
+		assertEquals(120, streamed.getEntry().size());
+		assertEquals(toFullUrls(materialized), toFullUrls(streamed));
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(materialized.getEntry().get(119).getResource()), ourCtx.newJsonParser().encodeResourceToString(streamed.getEntry().get(119).getResource()));
+		assertEquals("Patient/119", streamed.getEntry().get(119).getResource().getIdElement().toUnqualifiedVersionless().getValue());
+		assertEquals(materialized.getLink().stream().map(Bundle.BundleLinkComponent::getRelation).collect(Collectors.toList()), streamed.getLink().stream().map(Bundle.BundleLinkComponent::getRelation).collect(Collectors.toList()));
+		assertEquals(materialized.getLink("self").getUrl(), streamed.getLink("self").getUrl());
+	}
+
+	@Test
+	public void testSmallPageNotStreamed() throws Exception {
+		Bundle bundle = executeSearch("http://localhost:" + ourPort + "/Patient?_format=json&_count=10");
+		assertThat(ourRequestedRanges, contains("0-10"));
+		assertEquals(10, bundle.getEntry().size());
+	}
+
+	@Test
+	public void testXmlNotStreamed() throws Exception {
+		Bundle bundle = executeSearch("http://localhost:" + ourPort + "/Patient?_format=xml&_count=120");
+		assertThat(ourRequestedRanges, contains("0-120"));
+		assertEquals(120, bundle.getEntry().size());
+	}
+
+	@Test
+	public void testNotStreamedWithOutgoingResponseInterceptor() throws Exception {
+		OutgoingResponseInterceptor interceptor = new OutgoingResponseInterceptor();
+		ourServlet.registerInterceptor(interceptor);
+		try {
+			Bundle bundle = executeSearch("http://localhost:" + ourPort + "/Patient?_format=json&_count=120");
+			assertThat(ourRequestedRanges, contains("0-120"));
+			assertEquals(120, bundle.getEntry().size());
+		} finally {
+			ourServlet.unregisterInterceptor(interceptor);
+		}
+	}
+
+	private Bundle executeSearch(String theUrl) throws Exception {
+		HttpGet httpGet = new HttpGet(theUrl);
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.debug(responseContent);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			if (theUrl.contains("_format=xml")) {
+				return ourCtx.newXmlParser().parseResource(Bundle.class, responseContent);
+			}
+			return ourCtx.newJsonParser().parseResource(Bundle.class, responseContent);
+		}
+	}
+
+	private List<String> toFullUrls(Bundle theBundle) {
+		return theBundle.getEntry().stream().map(Bundle.BundleEntryComponent::getFullUrl).collect(Collectors.toList());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		JettyUtil.closeServer(ourServer);
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourServer = new Server(0);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setPagingProvider(new FifoMemoryPagingProvider(10).setMaximumPageSize(500));
+		ourServlet.registerProvider(new DummyPatientResourceProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		JettyUtil.startServer(ourServer);
+		ourPort = JettyUtil.getPortForStartedServer(ourServer);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	@Interceptor
+	public static class OutgoingResponseInterceptor {
+
+		@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+		public void outgoingResponse() {
+			// nothing
+		}
+
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Search
+		public IBundleProvider search() {
+			List<IBaseResource> patients = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				Patient patient = new Patient();
+				patient.setId("Patient/" + i);
+				patient.addName().setFamily("Family " + i);
+				patients.add(patient);
+			}
+			return new SimpleBundleProvider(patients) {
+				@Override
+				public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+					ourRequestedRanges.add(theFromIndex + "-" + theToIndex);
+					return super.getResources(theFromIndex, theToIndex);
+				}
+			};
+		}
+
+	}
+
+}
@@ -5,6 +5,8 @@ import ca.uhn.fhir.context.api.BundleInclusionRule;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.Search;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.SimplePreResourceAccessDetails;
+import ca.uhn.fhir.rest.api.server.SimplePreResourceShowDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.param.StringParam;
@@ -13,8 +15,11 @@ import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.interceptor.consent.ConsentInterceptor;
 import ca.uhn.fhir.rest.server.interceptor.consent.ConsentOperationStatusEnum;
 import ca.uhn.fhir.rest.server.interceptor.consent.ConsentOutcome;
+import ca.uhn.fhir.rest.server.interceptor.consent.IBatchConsentService;
+import ca.uhn.fhir.rest.server.interceptor.consent.IConsentContextServices;
 import ca.uhn.fhir.rest.server.interceptor.consent.IConsentService;
 import ca.uhn.fhir.rest.server.provider.HashMapResourceProvider;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.test.utilities.JettyUtil;
 import com.google.common.base.Charsets;
 import org.apache.commons.io.IOUtils;
@@ -42,12 +47,16 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -380,6 +389,159 @@ public class ConsentInterceptorTest {
 		assertEquals("Failed to call access method: java.lang.NullPointerException: A MESSAGE", myExceptionCaptor.getValue().getMessage());
 	}
 
+	@Test
+	public void testBatchConsentServiceCalledOncePerPage() throws IOException {
+		ourPatientProvider.store((Patient) new Patient().setActive(true).setId("PTA"));
+		ourPatientProvider.store((Patient) new Patient().setActive(false).setId("PTB"));
+
+		RecordingBatchConsentService consentSvc = new RecordingBatchConsentService();
+		ourServlet.unregisterInterceptor(myInterceptor);
+		myInterceptor = new ConsentInterceptor(consentSvc);
+		ourServlet.registerInterceptor(myInterceptor);
+
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), Charsets.UTF_8);
+			ourLog.info("Response: {}", responseContent);
+			assertThat(responseContent, containsString("PTA"));
+			assertThat(responseContent, containsString("PTB"));
+		}
+
+		assertEquals(Collections.singletonList(2), consentSvc.myCanSeeBatchSizes);
+		assertEquals(0, consentSvc.myCanSeeCount);
+		assertEquals(Collections.singletonList(2), consentSvc.myWillSeeBatchSizes);
+		assertEquals(1, consentSvc.myWillSeeCount); // the bundle
+	}
+
+	@Test
+	public void testOutcomesCachedForRequest() {
+		RecordingBatchConsentService consentSvc = new RecordingBatchConsentService();
+		ConsentInterceptor interceptor = new ConsentInterceptor(consentSvc);
+		interceptor.setCacheOutcomesForRequest(true);
+		ServletRequestDetails requestDetails = new ServletRequestDetails(null);
+		requestDetails.setServer(ourServlet);
+
+		interceptor.interceptPreAccess(requestDetails, new SimplePreResourceAccessDetails(Arrays.asList(
+			new Patient().setId("Patient/A/_history/1"),
+			new Patient().setId("Patient/B/_history/1"))));
+		assertEquals(Collections.singletonList(2), consentSvc.myCanSeeBatchSizes);
+		assertEquals(0, consentSvc.myCanSeeCount);
+
+		// Different instances of the same resources, plus one new resource and one new version
+		interceptor.interceptPreAccess(requestDetails, new SimplePreResourceAccessDetails(Arrays.asList(
+			new Patient().setId("Patient/A/_history/1"),
+			new Patient().setId("Patient/B/_history/1"),
+			new Patient().setId("Patient/B/_history/2"),
+			new Patient().setId("Patient/C/_history/1"))));
+		assertEquals(Arrays.asList(2, 2), consentSvc.myCanSeeBatchSizes);
+
+		interceptor.interceptPreAccess(requestDetails, new SimplePreResourceAccessDetails(new Patient().setId("Patient/C/_history/1")));
+		assertEquals(Arrays.asList(2, 2), consentSvc.myCanSeeBatchSizes);
+		assertEquals(0, consentSvc.myCanSeeCount);
+
+		// A new request starts with no cached outcomes
+		ServletRequestDetails requestDetails2 = new ServletRequestDetails(null);
+		requestDetails2.setServer(ourServlet);
+		interceptor.interceptPreAccess(requestDetails2, new SimplePreResourceAccessDetails(new Patient().setId("Patient/C/_history/1")));
+		assertEquals(1, consentSvc.myCanSeeCount);
+
+		// Caching disabled
+		interceptor.setCacheOutcomesForRequest(false);
+		interceptor.interceptPreAccess(requestDetails2, new SimplePreResourceAccessDetails(new Patient().setId("Patient/C/_history/1")));
+		assertEquals(2, consentSvc.myCanSeeCount);
+	}
+
+	@Test
+	public void testOutcomesNotCachedByDefault() {
+		RecordingBatchConsentService consentSvc = new RecordingBatchConsentService();
+		ConsentInterceptor interceptor = new ConsentInterceptor(consentSvc);
+		assertFalse(interceptor.isCacheOutcomesForRequest());
+		ServletRequestDetails requestDetails = new ServletRequestDetails(null);
+		requestDetails.setServer(ourServlet);
+
+		interceptor.interceptPreAccess(requestDetails, new SimplePreResourceAccessDetails(new Patient().setId("Patient/A/_history/1")));
+		interceptor.interceptPreAccess(requestDetails, new SimplePreResourceAccessDetails(new Patient().setId("Patient/A/_history/1")));
+		assertEquals(2, consentSvc.myCanSeeCount);
+	}
+
+	/**
+	 * willSeeResource may mask the instance it is given, so every instance must be shown to the service
+	 */
+	@Test
+	public void testWillSeeOutcomesNeverCached() {
+		when(myConsentSvc.willSeeResource(any(), any(), any())).thenAnswer(t -> {
+			Patient patient = t.getArgument(1, Patient.class);
+			patient.getNameFirstRep().setFamily("MASKED");
+			return ConsentOutcome.PROCEED;
+		});
+		ConsentInterceptor interceptor = new ConsentInterceptor(myConsentSvc);
+		interceptor.setCacheOutcomesForRequest(true);
+		ServletRequestDetails requestDetails = new ServletRequestDetails(null);
+		requestDetails.setServer(ourServlet);
+
+		Patient first = new Patient();
+		first.setId("Patient/A/_history/1");
+		first.addName().setFamily("SIMPSON");
+		interceptor.interceptPreShow(requestDetails, new SimplePreResourceShowDetails(first));
+		Patient second = new Patient();
+		second.setId("Patient/A/_history/1");
+		second.addName().setFamily("SIMPSON");
+		interceptor.interceptPreShow(requestDetails, new SimplePreResourceShowDetails(second));
+
+		verify(myConsentSvc, times(2)).willSeeResource(any(), any(), any());
+		assertEquals("MASKED", first.getNameFirstRep().getFamily());
+		assertEquals("MASKED", second.getNameFirstRep().getFamily());
+	}
+
+	private static class RecordingBatchConsentService implements IBatchConsentService {
+
+		private final List<Integer> myCanSeeBatchSizes = new ArrayList<>();
+		private final List<Integer> myWillSeeBatchSizes = new ArrayList<>();
+		private int myCanSeeCount;
+		private int myWillSeeCount;
+
+		@Override
+		public ConsentOutcome startOperation(RequestDetails theRequestDetails, IConsentContextServices theContextServices) {
+			return ConsentOutcome.PROCEED;
+		}
+
+		@Override
+		public ConsentOutcome canSeeResource(RequestDetails theRequestDetails, IBaseResource theResource, IConsentContextServices theContextServices) {
+			myCanSeeCount++;
+			return ConsentOutcome.PROCEED;
+		}
+
+		@Override
+		public List<ConsentOutcome> canSeeResources(RequestDetails theRequestDetails, List<IBaseResource> theResources, IConsentContextServices theContextServices) {
+			myCanSeeBatchSizes.add(theResources.size());
+			return Collections.nCopies(theResources.size(), ConsentOutcome.PROCEED);
+		}
+
+		@Override
+		public ConsentOutcome willSeeResource(RequestDetails theRequestDetails, IBaseResource theResource, IConsentContextServices theContextServices) {
+			myWillSeeCount++;
+			return ConsentOutcome.PROCEED;
+		}
+
+		@Override
+		public List<ConsentOutcome> willSeeResources(RequestDetails theRequestDetails, List<IBaseResource> theResources, IConsentContextServices theContextServices) {
+			myWillSeeBatchSizes.add(theResources.size());
+			return Collections.nCopies(theResources.size(), ConsentOutcome.PROCEED);
+		}
+
+		@Override
+		public void completeOperationSuccess(RequestDetails theRequestDetails, IConsentContextServices theContextServices) {
+			// nothing
+		}
+
+		@Override
+		public void completeOperationFailure(RequestDetails theRequestDetails, BaseServerResponseException theException, IConsentContextServices theContextServices) {
+			// nothing
+		}
+
+	}
+
 	public static class DummyPatientResourceProvider extends HashMapResourceProvider<Patient> {
 
 		public DummyPatientResourceProvider(FhirContext theFhirContext) {
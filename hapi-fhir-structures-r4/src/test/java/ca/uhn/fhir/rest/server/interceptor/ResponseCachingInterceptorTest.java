@@ -0,0 +1,373 @@
+package ca.uhn.fhir.rest.server.interceptor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.OptionalParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.ResourceParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Update;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.test.utilities.JettyUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+
+public class ResponseCachingInterceptorTest {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResponseCachingInterceptorTest.class);
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+	private static AtomicInteger ourReadCount = new AtomicInteger();
+	private static AtomicInteger ourSearchCount = new AtomicInteger();
+	private static String ourFamily;
+	private ResponseCachingInterceptor myInterceptor;
+
+	@Before
+	public void before() {
+		ourReadCount.set(0);
+		ourSearchCount.set(0);
+		ourFamily = "SIMPSON";
+		myInterceptor = new ResponseCachingInterceptor();
+		myInterceptor.setAllowAnonymousSharing(true);
+		ourServlet.registerInterceptor(myInterceptor);
+	}
+
+	@After
+	public void after() {
+		ourServlet.unregisterInterceptor(myInterceptor);
+	}
+
+	@Test
+	public void testReadServedFromCache() throws Exception {
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+
+		Response first = executeGet(url, null);
+		Response second = executeGet(url, null);
+
+		assertEquals(1, ourReadCount.get());
+		assertEquals(200, second.myStatus);
+		assertEquals(first.myBody, second.myBody);
+		assertEquals(first.myContentType, second.myContentType);
+		assertEquals("W/\"3\"", second.myETag);
+		assertEquals(1, myInterceptor.getCacheSize());
+	}
+
+	@Test
+	public void testDifferentEncodingAndSummaryCachedSeparately() throws Exception {
+		executeGet("http://localhost:" + ourPort + "/Patient/1?_format=json", null);
+		Response xml = executeGet("http://localhost:" + ourPort + "/Patient/1?_format=xml", null);
+		Response summary = executeGet("http://localhost:" + ourPort + "/Patient/1?_format=json&_summary=true", null);
+		executeGet("http://localhost:" + ourPort + "/Patient/1?_format=xml", null);
+
+		assertEquals(3, ourReadCount.get());
+		assertThat(xml.myBody, containsString("<Patient"));
+		assertThat(summary.myBody, containsString("SUBSETTED"));
+	}
+
+	@Test
+	public void testParameterOrderNormalized() throws Exception {
+		executeGet("http://localhost:" + ourPort + "/Patient?_format=json&name=foo", null);
+		executeGet("http://localhost:" + ourPort + "/Patient?name=foo&_format=json", null);
+		assertEquals(1, ourSearchCount.get());
+	}
+
+	@Test
+	public void testIfNoneMatch() throws Exception {
+		String url = "http://localhost:" + ourPort + "/Patient?_format=json";
+		executeGet(url, null);
+		Response cached = executeGet(url, null);
+		assertNotNull(cached.myETag);
+
+		Response notModified = executeGet(url, cached.myETag);
+		assertEquals(304, notModified.myStatus);
+		assertEquals(cached.myETag, notModified.myETag);
+		assertEquals(1, ourSearchCount.get());
+	}
+
+	@Test
+	public void testAuthorizationHeaderPartOfKey() throws Exception {
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+		executeGet(url, null);
+
+		HttpGet httpGet = new HttpGet(url);
+		httpGet.addHeader(Constants.HEADER_AUTHORIZATION, "Bearer 123");
+		assertEquals(200, execute(httpGet).myStatus);
+
+		assertEquals(2, ourReadCount.get());
+	}
+
+	@Test
+	public void testUnauthenticatedRequestsNotSharedByDefault() throws Exception {
+		myInterceptor.setAllowAnonymousSharing(false);
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+
+		// Two sessions authenticated by cookie (i.e. by something other than the Authorization header)
+		for (String nextSession : new String[]{"JSESSIONID=user-a", "JSESSIONID=user-b"}) {
+			HttpGet httpGet = new HttpGet(url);
+			httpGet.addHeader("Cookie", nextSession);
+			assertEquals(200, execute(httpGet).myStatus);
+		}
+
+		assertEquals(2, ourReadCount.get());
+		assertEquals(0, myInterceptor.getCacheSize());
+	}
+
+	@Test
+	public void testAuthorizedRequestsCachedWithoutAnonymousSharing() throws Exception {
+		myInterceptor.setAllowAnonymousSharing(false);
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+
+		for (int i = 0; i < 2; i++) {
+			HttpGet httpGet = new HttpGet(url);
+			httpGet.addHeader(Constants.HEADER_AUTHORIZATION, "Bearer 123");
+			assertEquals(200, execute(httpGet).myStatus);
+		}
+		executeGet(url, null);
+
+		assertEquals(2, ourReadCount.get());
+		assertEquals(1, myInterceptor.getCacheSize());
+	}
+
+	/**
+	 * The entry must exist before the client sees the response, otherwise a client repeating
+	 * the request straight away would not be served from the cache
+	 */
+	@Test
+	public void testStoredBeforeResponseSent() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1?_format=json");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals(1, myInterceptor.getCacheSize());
+		}
+	}
+
+	@Test
+	public void testNoCacheBypassesCache() throws Exception {
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+		executeGet(url, null);
+
+		HttpGet httpGet = new HttpGet(url);
+		httpGet.addHeader(Constants.HEADER_CACHE_CONTROL, Constants.CACHE_CONTROL_NO_CACHE);
+		assertEquals(200, execute(httpGet).myStatus);
+
+		assertEquals(2, ourReadCount.get());
+	}
+
+	@Test
+	public void testInvalidatedByUpdate() throws Exception {
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+		executeGet(url, null);
+
+		Patient patient = new Patient();
+		patient.setId("Patient/1");
+		patient.addName().setFamily("FLANDERS");
+		HttpPut httpPut = new HttpPut("http://localhost:" + ourPort + "/Patient/1");
+		httpPut.setEntity(new StringEntity(ourCtx.newJsonParser().encodeResourceToString(patient), ContentType.create(Constants.CT_FHIR_JSON_NEW, StandardCharsets.UTF_8)));
+		assertEquals(200, execute(httpPut).myStatus);
+		assertEquals(0, myInterceptor.getCacheSize());
+
+		Response response = executeGet(url, null);
+		assertThat(response.myBody, containsString("FLANDERS"));
+		assertEquals(2, ourReadCount.get());
+	}
+
+	@Test
+	public void testInvalidatedByStoragePointcutForDependentTypeOnly() throws Exception {
+		executeGet("http://localhost:" + ourPort + "/Patient/1?_format=json", null);
+		executeGet("http://localhost:" + ourPort + "/Patient?_format=json", null);
+		assertEquals(2, myInterceptor.getCacheSize());
+
+		Observation observation = new Observation();
+		observation.setId("Observation/1");
+		callStorageHook(observation);
+		assertEquals(2, myInterceptor.getCacheSize());
+
+		Patient patient = new Patient();
+		patient.setId("Patient/2");
+		callStorageHook(patient);
+		assertEquals(0, myInterceptor.getCacheSize());
+	}
+
+	@Test
+	public void testChainedSearchInvalidatedByAnyType() throws Exception {
+		executeGet("http://localhost:" + ourPort + "/Patient?_format=json&organization.name=foo", null);
+		assertEquals(1, myInterceptor.getCacheSize());
+
+		Observation observation = new Observation();
+		observation.setId("Observation/1");
+		callStorageHook(observation);
+		assertEquals(0, myInterceptor.getCacheSize());
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		myInterceptor.setTimeToLiveMillis(50);
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+		executeGet(url, null);
+		Thread.sleep(100);
+		executeGet(url, null);
+		assertEquals(2, ourReadCount.get());
+	}
+
+	@Test
+	public void testLargeResponseNotCached() throws Exception {
+		myInterceptor.setMaximumEntrySize(10);
+		String url = "http://localhost:" + ourPort + "/Patient/1?_format=json";
+		executeGet(url, null);
+		executeGet(url, null);
+		assertEquals(2, ourReadCount.get());
+		assertEquals(0, myInterceptor.getCacheSize());
+	}
+
+	private void callStorageHook(IBaseResource theResource) {
+		ServletRequestDetails requestDetails = new ServletRequestDetails(null);
+		HookParams params = new HookParams()
+			.add(IBaseResource.class, theResource)
+			.add(RequestDetails.class, requestDetails)
+			.add(ServletRequestDetails.class, requestDetails)
+			.add(TransactionDetails.class, new TransactionDetails());
+		ourServlet.getInterceptorService().callHooks(Pointcut.STORAGE_PRECOMMIT_RESOURCE_CREATED, params);
+	}
+
+	private Response executeGet(String theUrl, String theIfNoneMatch) throws Exception {
+		HttpGet httpGet = new HttpGet(theUrl);
+		if (theIfNoneMatch != null) {
+			httpGet.addHeader(Constants.HEADER_IF_NONE_MATCH, theIfNoneMatch);
+		}
+		return execute(httpGet);
+	}
+
+	/**
+	 * Always reads the whole response, so the server has finished with the request before the next one is sent
+	 */
+	private Response execute(HttpUriRequest theRequest) throws Exception {
+		try (CloseableHttpResponse status = ourClient.execute(theRequest)) {
+			Response retVal = new Response();
+			retVal.myStatus = status.getStatusLine().getStatusCode();
+			if (status.getEntity() != null) {
+				retVal.myBody = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+				if (status.getEntity().getContentType() != null) {
+					retVal.myContentType = status.getEntity().getContentType().getValue();
+				}
+			}
+			if (status.getFirstHeader(Constants.HEADER_ETAG) != null) {
+				retVal.myETag = status.getFirstHeader(Constants.HEADER_ETAG).getValue();
+			}
+			ourLog.debug(retVal.myBody);
+			return retVal;
+		}
+	}
+
+	private static class Response {
+		private int myStatus;
+		private String myBody;
+		private String myContentType;
+		private String myETag;
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		JettyUtil.closeServer(ourServer);
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourServer = new Server(0);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.registerProvider(new DummyPatientResourceProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		JettyUtil.startServer(ourServer);
+		ourPort = JettyUtil.getPortForStartedServer(ourServer);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			ourReadCount.incrementAndGet();
+			Patient patient = new Patient();
+			patient.setId(theId.toUnqualifiedVersionless().withVersion("3"));
+			patient.addName().setFamily(ourFamily);
+			patient.setActive(true);
+			return patient;
+		}
+
+		@Search
+		public List<Patient> search(@OptionalParam(name = "name") StringParam theName, @OptionalParam(name = "organization.name") StringParam theOrganizationName) {
+			ourSearchCount.incrementAndGet();
+			Patient patient = new Patient();
+			patient.setId("Patient/1");
+			patient.addName().setFamily(ourFamily);
+			List<Patient> retVal = new ArrayList<>();
+			retVal.add(patient);
+			return retVal;
+		}
+
+		@Update
+		public MethodOutcome update(@IdParam IdType theId, @ResourceParam Patient thePatient) {
+			ourFamily = thePatient.getNameFirstRep().getFamily();
+			return new MethodOutcome(theId.withVersion("4"));
+		}
+
+	}
+
+}
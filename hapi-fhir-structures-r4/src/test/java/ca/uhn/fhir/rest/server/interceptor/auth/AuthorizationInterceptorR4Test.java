@@ -98,7 +98,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.hamcrest.Matchers.containsString;
@@ -2228,6 +2230,88 @@ public class AuthorizationInterceptorR4Test {
 	}
 
 
+	@Test
+	public void testRuleListCachedByKey() throws Exception {
+		AtomicInteger buildCount = new AtomicInteger();
+		AuthorizationInterceptor interceptor = new AuthorizationInterceptor(PolicyEnum.DENY) {
+			@Override
+			public List<IAuthRule> buildRuleList(RequestDetails theRequestDetails) {
+				buildCount.incrementAndGet();
+				return new RuleBuilder()
+					.allow("Rule 1").read().resourcesOfType(Patient.class).withAnyId().andThen()
+					.build();
+			}
+
+			@Override
+			protected Object getRuleListCacheKey(RequestDetails theRequestDetails) {
+				return theRequestDetails.getHeader("X-User");
+			}
+		};
+		ourServlet.registerInterceptor(interceptor);
+
+		ourReturn = Collections.singletonList(createPatient(2));
+		executeGetWithUser("/Patient/2", "user1");
+		executeGetWithUser("/Patient/2", "user1");
+		assertEquals(1, buildCount.get());
+
+		executeGetWithUser("/Patient/2", "user2");
+		assertEquals(2, buildCount.get());
+
+		interceptor.clearRuleListCache();
+		executeGetWithUser("/Patient/2", "user1");
+		assertEquals(3, buildCount.get());
+
+		interceptor.setRuleListCacheTimeoutMillis(0);
+		executeGetWithUser("/Patient/2", "user1");
+		executeGetWithUser("/Patient/2", "user1");
+		assertEquals(5, buildCount.get());
+	}
+
+	private void executeGetWithUser(String thePath, String theUser) throws IOException {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + thePath);
+		httpGet.addHeader("X-User", theUser);
+		HttpResponse status = ourClient.execute(httpGet);
+		extractResponseAndClose(status);
+		assertEquals(200, status.getStatusLine().getStatusCode());
+	}
+
+	@Test
+	public void testRulesForOtherResourceTypesNotAppliedToOutput() throws Exception {
+		AuthorizationInterceptor interceptor = new AuthorizationInterceptor(PolicyEnum.DENY) {
+			@Override
+			public List<IAuthRule> buildRuleList(RequestDetails theRequestDetails) {
+				return new RuleBuilder()
+					.allow("Rule Observation").read().resourcesOfType(Observation.class).withAnyId().andThen()
+					.allow("Rule Patient").read().resourcesOfType(Patient.class).withAnyId().andThen()
+					.denyAll("Deny All")
+					.build();
+			}
+		};
+		interceptor.setRuleMetricsEnabled(true);
+		ourServlet.registerInterceptor(interceptor);
+
+		ourReturn = Lists.newArrayList(createPatient(1), createPatient(2), createPatient(3));
+		ourHitMethod = false;
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient");
+		HttpResponse status = ourClient.execute(httpGet);
+		extractResponseAndClose(status);
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertTrue(ourHitMethod);
+
+		Map<String, AuthorizationInterceptor.RuleMetrics> metrics = interceptor.getRuleMetrics();
+		ourLog.info("Rule metrics: {}", metrics.values());
+
+		// Only the incoming search is checked against the Observation rule
+		assertEquals(1, metrics.get("Rule Observation").getEvaluationCount());
+		assertEquals(0, metrics.get("Rule Observation").getDecisionCount());
+		assertEquals(4, metrics.get("Rule Patient").getEvaluationCount());
+		assertEquals(4, metrics.get("Rule Patient").getDecisionCount());
+		assertFalse(metrics.containsKey("Deny All"));
+
+		interceptor.clearRuleMetrics();
+		assertTrue(interceptor.getRuleMetrics().isEmpty());
+	}
+
 	@Test
 	public void testReadByCompartmentReadByIdParam() throws Exception {
 		ourServlet.registerInterceptor(new AuthorizationInterceptor(PolicyEnum.DENY) {